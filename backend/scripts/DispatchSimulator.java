@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.shopeefood.backend.dispatch.DispatchPlanner;
+import com.shopeefood.backend.util.GeoUtils;
+
+/**
+ * Benchmark bộ ghép đơn của điều phối tự động (DispatchPlanner) với dữ liệu giả quanh Hà Nội.
+ * Chạy (sau khi mvn compile):
+ *   java -cp target/classes scripts/DispatchSimulator.java [soShipper] [soDon] [soLan]
+ * Mặc định 10000 shipper, 5000 đơn, 20 lần. In độ trễ p50/p95 mỗi lượt ghép, số đơn ghép được,
+ * khoảng cách trung bình, và so sánh với cách quét toàn bộ (mỗi đơn tính khoảng cách tới mọi shipper).
+ */
+public class DispatchSimulator {
+
+    private static final double CENTER_LAT = 21.0285;
+    private static final double CENTER_LNG = 105.8542;
+    // Bán kính khu vực sinh dữ liệu (độ, ~15km)
+    private static final double SPREAD_DEG = 0.14;
+
+    private static final int CANDIDATES = 5;
+    private static final double MAX_KM = 5;
+    private static final double CELL_KM = 0.5;
+
+    public static void main(String[] args) {
+        int shipperCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int orderCount = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Random random = new Random(42);
+        List<DispatchPlanner.Point> shippers = randomPoints(shipperCount, random);
+        List<DispatchPlanner.Point> orders = randomPoints(orderCount, random);
+
+        // Khởi động JIT
+        for (int i = 0; i < 10; i++) {
+            DispatchPlanner.plan(orders, shippers, CANDIDATES, MAX_KM, CELL_KM, (o, s) -> false);
+        }
+
+        long[] nanos = new long[runs];
+        List<DispatchPlanner.Assignment> result = List.of();
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            result = DispatchPlanner.plan(orders, shippers, CANDIDATES, MAX_KM, CELL_KM, (o, s) -> false);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double avgKm = result.stream().mapToDouble(DispatchPlanner.Assignment::distanceKm).average().orElse(0);
+        System.out.printf("Lưới không gian: %d shipper, %d đơn, %d lần%n", shipperCount, orderCount, runs);
+        System.out.printf("  p50 = %.1f ms, p95 = %.1f ms%n", ms(percentile(nanos, 50)), ms(percentile(nanos, 95)));
+        System.out.printf("  ghép được %d/%d đơn, khoảng cách TB %.2f km%n", result.size(), orderCount, avgKm);
+
+        long start = System.nanoTime();
+        List<DispatchPlanner.Assignment> baseline = bruteForce(orders, shippers);
+        long baselineNanos = System.nanoTime() - start;
+        double baselineKm = baseline.stream().mapToDouble(DispatchPlanner.Assignment::distanceKm).average().orElse(0);
+        System.out.printf("Quét toàn bộ (tham lam theo thứ tự đơn, không lưới):%n");
+        System.out.printf("  %.1f ms, ghép được %d/%d đơn, khoảng cách TB %.2f km%n",
+                ms(baselineNanos), baseline.size(), orderCount, baselineKm);
+    }
+
+    private static List<DispatchPlanner.Point> randomPoints(int count, Random random) {
+        List<DispatchPlanner.Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Dày ở trung tâm, thưa dần ra ngoài
+            double r = SPREAD_DEG * Math.sqrt(random.nextDouble()) * (0.5 + random.nextDouble() / 2);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            points.add(new DispatchPlanner.Point(i + 1,
+                    CENTER_LAT + r * Math.sin(angle), CENTER_LNG + r * Math.cos(angle)));
+        }
+        return points;
+    }
+
+    // Cách làm ngây thơ: mỗi đơn lần lượt lấy shipper rảnh gần nhất, O(đơn x shipper)
+    private static List<DispatchPlanner.Assignment> bruteForce(List<DispatchPlanner.Point> orders,
+            List<DispatchPlanner.Point> shippers) {
+        boolean[] taken = new boolean[shippers.size()];
+        List<DispatchPlanner.Assignment> result = new ArrayList<>();
+        for (DispatchPlanner.Point order : orders) {
+            int best = -1;
+            double bestKm = MAX_KM;
+            for (int s = 0; s < shippers.size(); s++) {
+                if (taken[s]) {
+                    continue;
+                }
+                DispatchPlanner.Point shipper = shippers.get(s);
+                double d = GeoUtils.distanceKm(order.lat(), order.lng(), shipper.lat(), shipper.lng());
+                if (d <= bestKm) {
+                    best = s;
+                    bestKm = d;
+                }
+            }
+            if (best >= 0) {
+                taken[best] = true;
+                result.add(new DispatchPlanner.Assignment(order.id(), shippers.get(best).id(), bestKm));
+            }
+        }
+        return result;
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
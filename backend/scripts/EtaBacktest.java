@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.shopeefood.backend.eta.EtaModel;
+import com.shopeefood.backend.util.GeoUtils;
+
+/**
+ * Backtest ETA (EtaModel) trên lịch sử giao hàng.
+ * Duyệt các chuyến theo thứ tự thời gian: dự đoán trước bằng mô hình chỉ học từ các chuyến trước đó,
+ * rồi mới cho mô hình học chuyến này (giống hệt lúc chạy thật), sau đó chấm sai số.
+ * Chạy (sau khi mvn compile):
+ *   psql -f scripts/export_delivery_history.sql
+ *   java -cp target/classes scripts/EtaBacktest.java delivery_history.csv
+ *   java -cp target/classes scripts/EtaBacktest.java --synthetic   (dữ liệu giả, để thử nhanh)
+ * Tham số mặc định giống application.properties (eta.*).
+ */
+public class EtaBacktest {
+
+    private static final double DEFAULT_SPEED_KMH = 18;
+    private static final double DEFAULT_PICKUP_MINUTES = 10;
+    private static final int WINDOW = 200;
+    private static final double BUFFER_RATIO = 0.2;
+    private static final int MIN_MINUTES = 10;
+    private static final int MAX_MINUTES = 120;
+    // Giá trị cũ (estimatedDeliveryTimeMinutes mặc định) để so sánh
+    private static final int LEGACY_MINUTES = 2;
+
+    public static void main(String[] args) throws IOException {
+        List<EtaModel.Trip> trips = args.length > 0 && !"--synthetic".equals(args[0])
+                ? readCsv(Path.of(args[0]))
+                : synthetic(20_000, new Random(7));
+        trips.sort(Comparator.comparing(EtaModel.Trip::completedAt));
+
+        EtaModel model = new EtaModel(DEFAULT_SPEED_KMH / 60.0, DEFAULT_PICKUP_MINUTES, WINDOW, 5);
+        List<Double> errors = new ArrayList<>();
+        double bias = 0;
+        int late = 0;
+        int legacyLate = 0;
+        double meanTotal = 0;
+        double meanBaselineError = 0;
+        int n = 0;
+        for (EtaModel.Trip trip : trips) {
+            double actual = Duration.between(trip.shippedAt(), trip.completedAt()).toMillis() / 60_000.0;
+            double predicted = model.estimateMinutes(trip.shipperId(), trip.distanceKm(), trip.shippedAt().getHour());
+            if (!model.record(trip)) {
+                continue;
+            }
+            double promised = Math.max(MIN_MINUTES, Math.min(MAX_MINUTES, Math.ceil(predicted * (1 + BUFFER_RATIO))));
+            errors.add(Math.abs(predicted - actual));
+            bias += predicted - actual;
+            late += actual > promised ? 1 : 0;
+            legacyLate += actual > LEGACY_MINUTES ? 1 : 0;
+            // Mốc so sánh: dự đoán bằng trung bình thời gian giao của mọi chuyến trước đó
+            meanBaselineError += n == 0 ? 0 : Math.abs(meanTotal - actual);
+            n++;
+            meanTotal += (actual - meanTotal) / n;
+        }
+        if (n == 0) {
+            System.out.println("Không có chuyến nào dùng được");
+            return;
+        }
+
+        double[] sorted = errors.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        System.out.printf("Số chuyến: %d (bỏ qua %d chuyến thiếu mốc thời gian / nhiễu)%n", n, trips.size() - n);
+        System.out.printf("EtaModel:     MAE = %.2f phút, p50 = %.2f, p90 = %.2f, lệch TB = %+.2f phút%n",
+                Arrays.stream(sorted).average().orElse(0), percentile(sorted, 50), percentile(sorted, 90), bias / n);
+        System.out.printf("              trễ so với hạn giao (ETA x %.1f): %.1f%%%n",
+                1 + BUFFER_RATIO, 100.0 * late / n);
+        System.out.printf("Trung bình chung: MAE = %.2f phút%n", meanBaselineError / Math.max(1, n - 1));
+        System.out.printf("Mặc định %d phút: trễ so với hạn giao %.1f%%%n", LEGACY_MINUTES, 100.0 * legacyLate / n);
+    }
+
+    // CSV: shipper_id, quán lat, quán lng, giao lat, giao lng, shipped_at, delivery_started_at, completed_at
+    private static List<EtaModel.Trip> readCsv(Path path) throws IOException {
+        List<EtaModel.Trip> trips = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            String[] f = line.split(",", -1);
+            if (f.length < 8 || f[1].isEmpty() || f[2].isEmpty() || f[3].isEmpty() || f[4].isEmpty()) {
+                continue;
+            }
+            double distanceKm = GeoUtils.distanceKm(Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                    Double.parseDouble(f[3]), Double.parseDouble(f[4]));
+            trips.add(new EtaModel.Trip(f[0].isEmpty() ? null : Integer.valueOf(f[0]), distanceKm,
+                    parseTime(f[5]), parseTime(f[6]), parseTime(f[7])));
+        }
+        return trips;
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        // psql xuất dạng "2024-05-01 12:34:56.789"
+        return LocalDateTime.parse(value.replace(' ', 'T'), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    // Dữ liệu giả: shipper nhanh / chậm khác nhau, giờ cao điểm chậm hơn, thời gian chờ quán dao động
+    private static List<EtaModel.Trip> synthetic(int count, Random random) {
+        int shippers = 200;
+        double[] shipperFactor = new double[shippers];
+        for (int i = 0; i < shippers; i++) {
+            shipperFactor[i] = Math.max(0.5, 1 + 0.25 * random.nextGaussian());
+        }
+        List<EtaModel.Trip> trips = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.now().minusDays(60);
+        for (int i = 0; i < count; i++) {
+            int shipper = random.nextInt(shippers);
+            LocalDateTime shippedAt = start.plusMinutes((long) (random.nextDouble() * 60 * 24 * 60));
+            int hour = shippedAt.getHour();
+            boolean rush = (hour >= 7 && hour <= 8) || (hour >= 17 && hour <= 19);
+            double distanceKm = 0.5 + random.nextDouble() * 7.5;
+            double pickup = 5 + (rush ? 6 : 3) * -Math.log(1 - random.nextDouble());
+            double speed = 0.35 * shipperFactor[shipper] * (rush ? 0.6 : 1.0);
+            double leg = distanceKm / speed * Math.exp(0.15 * random.nextGaussian());
+            LocalDateTime startedAt = shippedAt.plusSeconds((long) (pickup * 60));
+            trips.add(new EtaModel.Trip(shipper + 1, distanceKm, shippedAt, startedAt,
+                    startedAt.plusSeconds((long) (leg * 60))));
+        }
+        return trips;
+    }
+
+    private static double percentile(double[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
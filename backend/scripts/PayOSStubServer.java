@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Server giả lập API tạo link thanh toán của PayOS, có thể thêm độ trễ và lỗi.
+ *
+ * Chạy server giả, trỏ backend vào (payos.api-base-url=http://localhost:9090):
+ *      java scripts/PayOSStubServer.java 9090 [độ trễ ms] [tỉ lệ lỗi 0..1]
+ * Các chuyển trạng thái của breaker trong PayOSClient được kiểm tra bởi PayOSClientTest.
+ */
+public class PayOSStubServer {
+
+    private static volatile long latencyMs;
+    private static volatile double errorRate;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9090;
+        latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        start(port);
+        System.out.printf("PayOS giả chạy ở http://localhost:%d (trễ %d ms, lỗi %.0f%%)%n",
+                port, latencyMs, errorRate * 100);
+    }
+
+    private static HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v2/payment-requests", PayOSStubServer::handle);
+        server.start();
+        return server;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean fail = ThreadLocalRandom.current().nextDouble() < errorRate;
+        String body = fail
+                ? "{\"code\":\"99\",\"desc\":\"Internal error\"}"
+                : "{\"code\":\"00\",\"desc\":\"success\",\"data\":{\"bin\":\"970422\",\"accountNumber\":\"0000\","
+                        + "\"accountName\":\"STUB\",\"amount\":10000,\"description\":\"FO1\",\"orderCode\":1,"
+                        + "\"qrCode\":\"stub\",\"checkoutUrl\":\"http://localhost/stub\"}}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(fail ? 500 : 200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.security.AuthPrincipal;
+import com.shopeefood.backend.security.InvalidTokenException;
+import com.shopeefood.backend.security.SessionTokenCodec;
+
+/**
+ * Kiểm tra SessionTokenCodec (không cần DB / Spring):
+ * - Token hợp lệ trả đúng accountId + role
+ * - Sửa payload / chữ ký, ký bằng khóa khác, hết hạn -> bị từ chối
+ * - Thời gian kiểm tra 1 token (so với 1 lần query accounts trước đây)
+ *
+ * Chạy (từ thư mục backend, cần target/classes + jackson trên classpath):
+ *   java -cp target/classes:<jackson jars> scripts/SessionTokenCheck.java
+ */
+public class SessionTokenCheck {
+
+    public static void main(String[] args) {
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] secret = "khoa-bi-mat-dung-de-kiem-tra-token-0123456789".getBytes(StandardCharsets.UTF_8);
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        SessionTokenCodec codec = new SessionTokenCodec(secret, Duration.ofMinutes(60), mapper,
+                Clock.fixed(now, ZoneOffset.UTC));
+
+        String token = codec.issue(42, "ROLE_owner");
+        AuthPrincipal principal = codec.verify(token);
+        check(principal.accountId() == 42 && "OWNER".equals(principal.role()), "token hợp lệ: " + principal);
+
+        int last = token.lastIndexOf('.');
+        int first = token.indexOf('.');
+        String forgedPayload = java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"sub\":1,\"role\":\"ADMIN\",\"exp\":9999999999}".getBytes(StandardCharsets.UTF_8));
+        rejected(codec, token.substring(0, first + 1) + forgedPayload + token.substring(last), "sửa payload");
+        char flipped = token.charAt(token.length() - 2) == 'A' ? 'B' : 'A';
+        rejected(codec, token.substring(0, token.length() - 2) + flipped + token.charAt(token.length() - 1), "sửa chữ ký");
+        rejected(codec, "abc.def", "sai định dạng");
+
+        SessionTokenCodec otherKey = new SessionTokenCodec("mot-khoa-khac-hoan-toan-dai-hon-32-byte-nhe".getBytes(StandardCharsets.UTF_8),
+                Duration.ofMinutes(60), mapper, Clock.fixed(now, ZoneOffset.UTC));
+        rejected(otherKey, token, "ký bằng khóa khác");
+
+        SessionTokenCodec within = new SessionTokenCodec(secret, Duration.ofMinutes(60), mapper,
+                Clock.fixed(now.plusSeconds(3600 + 10), ZoneOffset.UTC));
+        check(within.verify(token).accountId() == 42, "quá hạn 10s vẫn nhận (lệch đồng hồ 30s)");
+        SessionTokenCodec later = new SessionTokenCodec(secret, Duration.ofMinutes(60), mapper,
+                Clock.fixed(now.plusSeconds(3600 + 60), ZoneOffset.UTC));
+        rejected(later, token, "hết hạn");
+
+        int rounds = 200_000;
+        for (int i = 0; i < 20_000; i++) {
+            codec.verify(token);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            codec.verify(token);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / rounds;
+        System.out.printf("Kiểm tra 1 token: %.2f µs (%d lần)%n", micros, rounds);
+        System.out.println("OK");
+    }
+
+    private static void rejected(SessionTokenCodec codec, String token, String label) {
+        try {
+            codec.verify(token);
+            check(false, label + " bị từ chối");
+        } catch (InvalidTokenException e) {
+            check(true, label + " bị từ chối (" + e.getMessage() + ")");
+        }
+    }
+
+    private static void check(boolean ok, String message) {
+        System.out.println((ok ? "  [ok] " : "  [LỖI] ") + message);
+        if (!ok) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server SMTP giả lập (trong 1 tiến trình, không gửi mail thật), có thể thêm độ trễ và lỗi.
+ *
+ * Chạy server giả, trỏ backend vào:
+ *      java scripts/SmtpStubServer.java 2525 [trễ khi kết nối ms] [trễ mỗi email ms] [tỉ lệ lỗi 0..1]
+ * rồi chạy backend với:
+ *      --spring.mail.host=localhost --spring.mail.port=2525 --spring.mail.username=noreply@test.local
+ *      --spring.mail.properties.mail.smtp.starttls.enable=false
+ * Gọi quên mật khẩu / duyệt quán: API trả về ngay dù server giả chậm, email xuất hiện ở log server giả
+ * (mỗi phiên in số email đã nhận). Email bị từ chối (tỉ lệ lỗi) được thử lại theo mail.outbox.backoff-*
+ * (thử lại / backoff / FAILED được kiểm tra tự động trong MailOutboxDispatcherTest).
+ */
+public class SmtpStubServer {
+
+    private static volatile long connectDelayMs;
+    private static volatile long messageDelayMs;
+    private static volatile double errorRate;
+    private static final AtomicInteger sessions = new AtomicInteger();
+    private static final AtomicInteger accepted = new AtomicInteger();
+    private static final AtomicInteger rejected = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2525;
+        connectDelayMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        messageDelayMs = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        ServerSocket server = start(port);
+        System.out.println("SMTP giả lập tại localhost:" + server.getLocalPort()
+                + " (trễ kết nối " + connectDelayMs + "ms, trễ mỗi email " + messageDelayMs
+                + "ms, tỉ lệ lỗi " + errorRate + ")");
+        Thread.currentThread().join();
+    }
+
+    private static ServerSocket start(int port) throws IOException {
+        ServerSocket server = new ServerSocket(port);
+        ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "smtp-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    pool.execute(() -> session(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "smtp-stub-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    // 1 phiên SMTP: EHLO, AUTH (chấp nhận mọi tài khoản), MAIL/RCPT/DATA lặp lại, QUIT
+    private static void session(Socket socket) {
+        int session = sessions.incrementAndGet();
+        int received = 0;
+        try (socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                OutputStream out = socket.getOutputStream()) {
+            // Giả lập thời gian bắt tay TCP/TLS + đăng nhập của SMTP thật
+            sleep(connectDelayMs);
+            reply(out, "220 localhost SMTP stub");
+            String rcpt = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                } else if (command.startsWith("HELO")) {
+                    reply(out, "250 localhost");
+                } else if (command.startsWith("AUTH LOGIN")) {
+                    reply(out, "334 VXNlcm5hbWU6");
+                    in.readLine();
+                    reply(out, "334 UGFzc3dvcmQ6");
+                    in.readLine();
+                    reply(out, "235 Authenticated");
+                } else if (command.startsWith("AUTH PLAIN")) {
+                    if (command.trim().equals("AUTH PLAIN")) {
+                        reply(out, "334 ");
+                        in.readLine();
+                    }
+                    reply(out, "235 Authenticated");
+                } else if (command.startsWith("MAIL FROM")) {
+                    rcpt = null;
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    rcpt = line.substring(line.indexOf(':') + 1).trim();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    String data;
+                    while ((data = in.readLine()) != null && !data.equals(".")) {
+                        // bỏ qua nội dung
+                    }
+                    sleep(messageDelayMs);
+                    if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                        rejected.incrementAndGet();
+                        reply(out, "451 Temporary failure (stub)");
+                    } else {
+                        received++;
+                        accepted.incrementAndGet();
+                        reply(out, "250 OK queued");
+                        System.out.println("[phiên " + session + "] nhận email tới " + rcpt);
+                    }
+                } else if (command.startsWith("RSET") || command.startsWith("NOOP")) {
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    break;
+                } else {
+                    reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[phiên " + session + "] lỗi: " + e.getMessage());
+        }
+        System.out.println("[phiên " + session + "] kết thúc, " + received + " email");
+    }
+
+    private static void reply(OutputStream out, String text) throws IOException {
+        out.write((text + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
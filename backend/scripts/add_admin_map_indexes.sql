@@ -0,0 +1,7 @@
+-- Index cho bản đồ admin theo khung nhìn (AdminMapService.getViewport)
+-- Database: PostgreSQL
+-- Quán dùng sẵn idx_restaurants_status_lat_lng (scripts/add_restaurant_geohash.sql).
+
+-- Lọc / gom cụm shipper theo khung nhìn: current_lat BETWEEN ... AND current_long BETWEEN ...
+CREATE INDEX IF NOT EXISTS idx_shippers_lat_long
+    ON shippers (current_lat, current_long);
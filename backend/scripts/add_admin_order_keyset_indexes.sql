@@ -0,0 +1,23 @@
+-- Index cho danh sách đơn của admin phân trang keyset (AdminOrderService.getOrderPage, GET /api/admin/orders/page)
+-- và xuất CSV theo khoảng ngày (GET /api/admin/orders/export)
+-- Database: PostgreSQL
+-- Sắp xếp theo (created_at DESC, id DESC): mỗi trang là 1 lần đi xuống index từ vị trí cursor, không OFFSET.
+-- Tạo CONCURRENTLY để không khóa bảng orders khi đang chạy (chạy từng lệnh, ngoài transaction).
+
+-- Tab "Tất cả" (status IN nhiều giá trị, lọc trên từng dòng khi đi theo index)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_created
+    ON orders (created_at DESC, id DESC);
+
+-- Lọc theo 1 trạng thái
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_status_created
+    ON orders (status, created_at DESC, id DESC);
+
+ANALYZE orders;
+
+-- Kiểm tra kế hoạch truy vấn (mong đợi Index Scan trên idx_orders_status_created, không có Sort):
+-- EXPLAIN (ANALYZE, BUFFERS)
+-- SELECT * FROM orders
+-- WHERE status = 'COMPLETED' AND created_at >= '2026-01-01' AND created_at <= '2026-01-31 23:59:59'
+--   AND created_at <= '2026-01-20 12:00' AND (created_at < '2026-01-20 12:00' OR id < 123456)
+-- ORDER BY created_at DESC, id DESC
+-- LIMIT 51;
@@ -0,0 +1,70 @@
+-- Bảng tổng hợp doanh thu theo ngày cho dashboard admin / owner
+-- (thay cho SUM / GROUP BY trên toàn bộ orders mỗi lần mở dashboard)
+-- Database: PostgreSQL
+-- Ngày thống kê = ngày tạo đơn (CAST(created_at AS DATE)), giống các query dashboard cũ.
+-- Backend tính lại ô (quán, ngày) mỗi khi đơn vào / ra COMPLETED, REFUNDED hoặc đổi tiền hoàn,
+-- và đối soát N ngày gần nhất hằng đêm (DailyStatsService, stats.daily.reconcile-cron).
+
+CREATE TABLE IF NOT EXISTS daily_restaurant_stats (
+    restaurant_id    INTEGER NOT NULL REFERENCES restaurants (id) ON DELETE CASCADE,
+    stat_date        DATE NOT NULL,
+    -- Đơn COMPLETED: tổng total_amount và số đơn (dashboard admin)
+    revenue          NUMERIC(15, 2) NOT NULL DEFAULT 0,
+    completed_orders BIGINT NOT NULL DEFAULT 0,
+    -- Đơn COMPLETED + REFUNDED: subtotal - owner_refund_amount và số đơn (dashboard owner)
+    net_revenue      NUMERIC(15, 2) NOT NULL DEFAULT 0,
+    settled_orders   BIGINT NOT NULL DEFAULT 0,
+    updated_at       TIMESTAMP,
+    PRIMARY KEY (restaurant_id, stat_date)
+);
+
+-- Dashboard admin đọc theo khoảng ngày cho toàn sàn
+CREATE INDEX IF NOT EXISTS idx_daily_restaurant_stats_date
+    ON daily_restaurant_stats (stat_date);
+
+-- Số lượng / doanh thu theo món (top sản phẩm của owner)
+CREATE TABLE IF NOT EXISTS daily_product_stats (
+    restaurant_id INTEGER NOT NULL REFERENCES restaurants (id) ON DELETE CASCADE,
+    stat_date     DATE NOT NULL,
+    product_id    INTEGER NOT NULL REFERENCES products (id) ON DELETE CASCADE,
+    quantity      BIGINT NOT NULL DEFAULT 0,
+    revenue       NUMERIC(15, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (restaurant_id, stat_date, product_id)
+);
+
+-- Tính lại 1 ô (quán, ngày) chỉ quét đơn của quán trong ngày đó
+CREATE INDEX IF NOT EXISTS idx_orders_restaurant_created_at
+    ON orders (restaurant_id, created_at);
+
+-- Khởi tạo dữ liệu từ orders hiện có
+INSERT INTO daily_restaurant_stats
+    (restaurant_id, stat_date, revenue, completed_orders, net_revenue, settled_orders, updated_at)
+SELECT o.restaurant_id, CAST(o.created_at AS DATE),
+       COALESCE(SUM(o.total_amount) FILTER (WHERE o.status = 'COMPLETED'), 0),
+       COUNT(*) FILTER (WHERE o.status = 'COMPLETED'),
+       COALESCE(SUM(COALESCE(o.subtotal, 0) - COALESCE(ref.amount, 0)), 0),
+       COUNT(*), now()
+FROM orders o
+LEFT JOIN LATERAL (SELECT SUM(i.owner_refund_amount) AS amount
+                   FROM issues i WHERE i.order_id = o.id) ref ON TRUE
+WHERE o.status IN ('COMPLETED', 'REFUNDED')
+  AND o.restaurant_id IS NOT NULL AND o.created_at IS NOT NULL
+GROUP BY o.restaurant_id, CAST(o.created_at AS DATE)
+ON CONFLICT (restaurant_id, stat_date) DO UPDATE SET
+    revenue = EXCLUDED.revenue,
+    completed_orders = EXCLUDED.completed_orders,
+    net_revenue = EXCLUDED.net_revenue,
+    settled_orders = EXCLUDED.settled_orders,
+    updated_at = now();
+
+INSERT INTO daily_product_stats (restaurant_id, stat_date, product_id, quantity, revenue)
+SELECT o.restaurant_id, CAST(o.created_at AS DATE), oi.product_id,
+       SUM(oi.quantity), SUM(oi.price * oi.quantity)
+FROM order_items oi
+JOIN orders o ON oi.order_id = o.id
+WHERE o.status IN ('COMPLETED', 'REFUNDED')
+  AND o.restaurant_id IS NOT NULL AND o.created_at IS NOT NULL AND oi.product_id IS NOT NULL
+GROUP BY o.restaurant_id, CAST(o.created_at AS DATE), oi.product_id
+ON CONFLICT (restaurant_id, stat_date, product_id) DO UPDATE SET
+    quantity = EXCLUDED.quantity,
+    revenue = EXCLUDED.revenue;
@@ -0,0 +1,15 @@
+-- Index cho điều phối tự động (DispatchService, chạy mỗi vài giây)
+-- Database: PostgreSQL
+
+-- Đơn chờ shipper: index một phần chỉ chứa đơn PREPARING chưa có shipper nên rất nhỏ,
+-- đọc sẵn theo thứ tự created_at (đơn chờ lâu được ghép trước)
+CREATE INDEX IF NOT EXISTS idx_orders_open_for_dispatch
+    ON orders (created_at)
+    WHERE status = 'PREPARING' AND shipper_id IS NULL;
+
+-- Shipper ONLINE kèm vị trí
+CREATE INDEX IF NOT EXISTS idx_shippers_status
+    ON shippers (status);
+
+-- Kiểm tra: phải dùng Index Scan trên idx_orders_open_for_dispatch
+-- EXPLAIN ANALYZE SELECT id FROM orders WHERE status = 'PREPARING' AND shipper_id IS NULL ORDER BY created_at;
@@ -0,0 +1,27 @@
+-- Bảng ảnh đã upload theo mã băm nội dung (ImageUploadService)
+-- Database: PostgreSQL
+-- Cùng 1 ảnh upload nhiều lần (nhiều món dùng chung ảnh, shipper gửi lại ảnh cũ) chỉ lưu 1 lần trên storage.
+
+CREATE TABLE IF NOT EXISTS image_assets (
+    content_hash VARCHAR(64) PRIMARY KEY, -- SHA-256 dạng hex
+    storage_key VARCHAR(255) NOT NULL,
+    url VARCHAR(1024) NOT NULL,
+    format VARCHAR(16) NOT NULL,
+    content_type VARCHAR(255),
+    size_bytes BIGINT,
+    width INTEGER,
+    height INTEGER,
+    variant_format VARCHAR(16),
+    variant_widths VARCHAR(64),
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Bảng đã tạo từ bản trước: thêm cột bản thu nhỏ (định dạng + các chiều rộng, vd 'jpg' / '320,800')
+ALTER TABLE image_assets ADD COLUMN IF NOT EXISTS variant_format VARCHAR(16);
+ALTER TABLE image_assets ADD COLUMN IF NOT EXISTS variant_widths VARCHAR(64);
+
+-- Thực đơn tra bản thu nhỏ theo URL ảnh món (MenuSnapshotService)
+CREATE INDEX IF NOT EXISTS idx_image_assets_url ON image_assets (url);
+
+-- Thống kê dung lượng tiết kiệm được nhờ dùng lại ảnh:
+-- SELECT count(*), pg_size_pretty(sum(size_bytes)) FROM image_assets;
@@ -0,0 +1,45 @@
+-- Index cho danh sách khiếu nại phân trang keyset (IssueService.listPage) và dòng thời gian (listEvents)
+-- Database: PostgreSQL
+-- Mọi danh sách sắp xếp theo (created_at DESC, id DESC): mỗi trang là 1 lần đi xuống index từ vị trí cursor,
+-- thời gian không tăng theo số trang đã lướt (khác OFFSET).
+-- Tạo CONCURRENTLY để không khóa bảng issues khi đang chạy (chạy từng lệnh, ngoài transaction).
+
+-- scope=ALL (admin), không lọc
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_created
+    ON issues (created_at DESC, id DESC);
+
+-- scope=ALL + status (hàng chờ xử lý của admin: OPEN, NEED_ADMIN_ACTION...)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_status_created
+    ON issues (status, created_at DESC, id DESC);
+
+-- scope=ALL + category / target_type (lọc theo loại khiếu nại, đối tượng bị khiếu nại)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_category_created
+    ON issues (category, created_at DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_target_type_created
+    ON issues (target_type, created_at DESC, id DESC);
+
+-- scope=MY
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_creator_created
+    ON issues (created_by_id, created_at DESC, id DESC);
+
+-- scope=ASSIGNED (có / không lọc status)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_owner_created
+    ON issues (assigned_owner_id, created_at DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_owner_status_created
+    ON issues (assigned_owner_id, status, created_at DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_admin_created
+    ON issues (assigned_admin_id, created_at DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issues_admin_status_created
+    ON issues (assigned_admin_id, status, created_at DESC, id DESC);
+
+-- Dòng thời gian: trang mới nhất / cũ hơn id
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_issue_events_issue_id
+    ON issue_events (issue_id, id);
+
+-- Kiểm tra kế hoạch truy vấn (mong đợi Index Scan trên idx_issues_status_created, không có Sort):
+-- EXPLAIN (ANALYZE, BUFFERS)
+-- SELECT * FROM issues
+-- WHERE status = 'NEED_ADMIN_ACTION'
+--   AND created_at <= '2026-01-01 00:00' AND (created_at < '2026-01-01 00:00' OR id < 123456)
+-- ORDER BY created_at DESC, id DESC
+-- LIMIT 21;
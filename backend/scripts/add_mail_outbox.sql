@@ -0,0 +1,37 @@
+-- Bảng outbox cho email thông báo (EmailService ghi, MailOutboxDispatcher gửi)
+-- Database: PostgreSQL
+
+CREATE TABLE IF NOT EXISTS mail_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT now(),
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    sent_at TIMESTAMP,
+    sensitive BOOLEAN NOT NULL DEFAULT false
+);
+
+-- Bảng tạo trước khi có cột sensitive
+ALTER TABLE mail_outbox ADD COLUMN IF NOT EXISTS sensitive BOOLEAN NOT NULL DEFAULT false;
+
+-- Dòng đã gửi trước khi dispatcher xóa nội dung (có thể chứa mật khẩu mới)
+UPDATE mail_outbox SET body = '[đã xóa sau khi gửi]' WHERE status = 'SENT' AND body <> '[đã xóa sau khi gửi]';
+
+-- Dispatcher chỉ quét email chờ gửi theo mốc đến hạn: index một phần nên không phình theo lịch sử đã gửi
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_due
+    ON mail_outbox (next_attempt_at, id)
+    WHERE status = 'PENDING';
+
+-- Email gửi lỗi hẳn (để kiểm tra / gửi lại bằng tay):
+-- SELECT id, recipient, subject, attempts, last_error FROM mail_outbox WHERE status = 'FAILED' ORDER BY id DESC;
+-- Gửi lại: UPDATE mail_outbox SET status = 'PENDING', attempts = 0, next_attempt_at = now() WHERE id = ...;
+
+-- Dọn dữ liệu cũ: MailOutboxDispatcher.purge chạy mỗi đêm (mail.outbox.retention-days, mặc định 30 ngày)
+-- Index cho lệnh xóa đó (status + created_at)
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_finished_created
+    ON mail_outbox (created_at)
+    WHERE status IN ('SENT', 'FAILED');
@@ -0,0 +1,19 @@
+-- Thêm cột due_at (hạn giao hàng) cho bảng orders
+-- Database: PostgreSQL
+-- due_at = shipped_at + estimated_delivery_time_minutes, được set khi shipper nhận đơn.
+-- Index một phần chỉ chứa đơn SHIPPING nên rất nhỏ, OverdueOrderService quét theo index này
+-- thay vì findAll() toàn bộ bảng orders.
+
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS due_at TIMESTAMP;
+
+-- Bổ sung cho dữ liệu cũ
+UPDATE orders
+SET due_at = shipped_at + make_interval(mins => COALESCE(estimated_delivery_time_minutes, 2))
+WHERE shipped_at IS NOT NULL AND due_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_orders_shipping_due_at
+    ON orders (due_at)
+    WHERE status = 'SHIPPING';
+
+-- Kiểm tra: phải dùng Index Scan trên idx_orders_shipping_due_at
+-- EXPLAIN ANALYZE SELECT id FROM orders WHERE status = 'SHIPPING' AND due_at <= now() + interval '60 seconds';
@@ -0,0 +1,33 @@
+-- Thêm cột option_fingerprint cho bảng order_items
+-- Database: PostgreSQL
+-- option_fingerprint = 16 ký tự hex đầu của SHA-256 chuỗi product_detail_id tăng dần, không trùng,
+-- nối bằng dấu phẩy (vd "3,7,12"; không có option -> chuỗi rỗng). Phải khớp OptionFingerprint.java.
+-- Giỏ hàng được load cả giỏ vào bộ nhớ (CartStore, lọc theo order_id) rồi gộp dòng bằng
+-- (product_id, option_fingerprint) trong bộ nhớ, không phải so order_item_options của từng dòng.
+
+ALTER TABLE order_items ADD COLUMN IF NOT EXISTS option_fingerprint VARCHAR(16);
+
+-- Bổ sung cho dữ liệu cũ
+WITH fp AS (
+    SELECT oi.id,
+           COALESCE((SELECT string_agg(x.detail_id::text, ',' ORDER BY x.detail_id)
+                     FROM (SELECT DISTINCT oio.product_detail_id AS detail_id
+                           FROM order_item_options oio
+                           WHERE oio.order_item_id = oi.id) x), '') AS canonical
+    FROM order_items oi
+    WHERE oi.option_fingerprint IS NULL
+)
+UPDATE order_items o
+SET option_fingerprint = substr(encode(sha256(convert_to(fp.canonical, 'UTF8')), 'hex'), 1, 16)
+FROM fp
+WHERE fp.id = o.id;
+
+-- Không query nào lọc theo (product_id, option_fingerprint): bỏ index 3 cột (nếu đã tạo ở bản trước),
+-- chỉ giữ index theo order_id cho lúc load giỏ (findCartItemsByOrderIds / findByOrderIdIn)
+DROP INDEX IF EXISTS idx_order_items_order_product_fingerprint;
+CREATE INDEX IF NOT EXISTS idx_order_items_order_id
+    ON order_items (order_id);
+
+-- Kiểm tra: dòng không có option phải là e3b0c44298fc1c14 (SHA-256 của chuỗi rỗng)
+-- SELECT option_fingerprint, count(*) FROM order_items GROUP BY 1 ORDER BY 2 DESC LIMIT 5;
+-- EXPLAIN SELECT id FROM order_items WHERE order_id IN (1, 2);
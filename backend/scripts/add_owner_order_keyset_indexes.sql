@@ -0,0 +1,25 @@
+-- Index cho màn đơn hàng của chủ quán phân trang keyset (OrderService.getOrderPageForOwner, GET /api/owner/orders/page)
+-- Database: PostgreSQL
+-- Danh sách sắp xếp theo (created_at DESC, id DESC): mỗi trang là 1 lần đi xuống index từ vị trí cursor,
+-- trang 500 tốn như trang 1 (OFFSET phải đọc lại rồi bỏ qua toàn bộ các trang trước).
+-- Tạo CONCURRENTLY để không khóa bảng orders khi đang chạy (chạy từng lệnh, ngoài transaction).
+
+-- Lọc theo 1 trạng thái (tab PENDING / PREPARING / ...)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_restaurant_status_created
+    ON orders (restaurant_id, status, created_at DESC, id DESC);
+
+-- Tab "Tất cả": status IN (...) nhiều giá trị không đọc được theo thứ tự từ index trên,
+-- đi theo (restaurant_id, created_at, id) và lọc status trên từng dòng
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_restaurant_created
+    ON orders (restaurant_id, created_at DESC, id DESC);
+
+ANALYZE orders;
+
+-- Kiểm tra kế hoạch truy vấn (mong đợi Index Scan trên idx_orders_restaurant_status_created, không có Sort,
+-- số buffer đọc gần như nhau dù cursor ở trang đầu hay trang rất sâu):
+-- EXPLAIN (ANALYZE, BUFFERS)
+-- SELECT o.* FROM orders o JOIN restaurants r ON r.id = o.restaurant_id
+-- WHERE r.owner_id = 1 AND o.restaurant_id = 2 AND o.status = 'COMPLETED'
+--   AND o.created_at <= '2026-01-01 00:00' AND (o.created_at < '2026-01-01 00:00' OR o.id < 123456)
+-- ORDER BY o.created_at DESC, o.id DESC
+-- LIMIT 21;
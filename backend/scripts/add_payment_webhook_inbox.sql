@@ -0,0 +1,32 @@
+-- Bảng inbox cho callback của cổng thanh toán (PaymentInboxService)
+-- Database: PostgreSQL
+-- Khóa duy nhất (gateway, transaction_code): cổng gửi lại cùng callback chỉ tạo 1 dòng (INSERT ... ON CONFLICT),
+-- riêng dòng đã FAILED thì được đặt lại PENDING để xử lý lại.
+
+CREATE TABLE IF NOT EXISTS payment_webhook_inbox (
+    id BIGSERIAL PRIMARY KEY,
+    gateway VARCHAR(20) NOT NULL,
+    transaction_code VARCHAR(64) NOT NULL,
+    order_id INTEGER NOT NULL,
+    amount BIGINT,
+    success BOOLEAN,
+    payload TEXT,
+    status VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    received_at TIMESTAMP NOT NULL DEFAULT now(),
+    processed_at TIMESTAMP,
+    CONSTRAINT uq_payment_webhook_inbox_gateway_code UNIQUE (gateway, transaction_code)
+);
+
+-- Worker chỉ đọc các dòng chờ xử lý: index một phần nên không phình theo lịch sử callback
+CREATE INDEX IF NOT EXISTS idx_payment_webhook_inbox_pending
+    ON payment_webhook_inbox (id)
+    WHERE status = 'PENDING';
+
+-- Tra cứu giao dịch theo mã (worker cập nhật transactions theo transaction_code)
+CREATE INDEX IF NOT EXISTS idx_transactions_transaction_code
+    ON transactions (transaction_code);
+
+-- Dọn dữ liệu cũ định kỳ (giữ 90 ngày để đối soát):
+-- DELETE FROM payment_webhook_inbox WHERE status = 'DONE' AND processed_at < now() - interval '90 days';
@@ -0,0 +1,15 @@
+-- Thêm cột geohash cho bảng restaurants (tìm quán gần nhất bằng index)
+-- Database: PostgreSQL
+-- Giá trị geohash được backend tự tính khi lưu quán (setter latitude/longitude)
+-- và tự bổ sung cho dữ liệu cũ khi ứng dụng khởi động (RestaurantGeoService.backfillGeohash).
+
+ALTER TABLE restaurants ADD COLUMN IF NOT EXISTS geohash VARCHAR(12);
+
+-- Lọc theo 9 ô geohash: r.status = ? AND r.geohash LIKE 'w3gv2%'
+-- text_pattern_ops để LIKE 'prefix%' dùng được index
+CREATE INDEX IF NOT EXISTS idx_restaurants_status_geohash
+    ON restaurants (status, geohash text_pattern_ops);
+
+-- Bounding box prefilter: latitude/longitude BETWEEN ...
+CREATE INDEX IF NOT EXISTS idx_restaurants_status_lat_lng
+    ON restaurants (status, latitude, longitude);
@@ -0,0 +1,30 @@
+-- Bảng tổng hợp rating theo quán (thay cho AVG/COUNT trên feedbacks ở landing page)
+-- Database: PostgreSQL
+-- Backend cộng dồn bảng này mỗi khi lưu Feedback và đối soát lại định kỳ
+-- (RestaurantRatingService.reconcile, cron cấu hình qua rating.reconcile-cron).
+
+CREATE TABLE IF NOT EXISTS restaurant_rating_stats (
+    restaurant_id  INTEGER PRIMARY KEY REFERENCES restaurants (id) ON DELETE CASCADE,
+    rating_sum     BIGINT NOT NULL DEFAULT 0,
+    rating_count   BIGINT NOT NULL DEFAULT 0,
+    review_count   BIGINT NOT NULL DEFAULT 0,
+    average_rating NUMERIC(6, 4),
+    updated_at     TIMESTAMP
+);
+
+-- Sort theo rating trên landing page
+CREATE INDEX IF NOT EXISTS idx_restaurant_rating_stats_avg
+    ON restaurant_rating_stats (average_rating DESC NULLS LAST);
+
+-- Khởi tạo dữ liệu từ bảng feedbacks hiện có
+INSERT INTO restaurant_rating_stats
+    (restaurant_id, rating_sum, rating_count, review_count, average_rating, updated_at)
+SELECT f.restaurant_id, COALESCE(SUM(f.rating), 0), COUNT(f.rating), COUNT(f.id), AVG(f.rating), now()
+FROM feedbacks f
+GROUP BY f.restaurant_id
+ON CONFLICT (restaurant_id) DO UPDATE SET
+    rating_sum = EXCLUDED.rating_sum,
+    rating_count = EXCLUDED.rating_count,
+    review_count = EXCLUDED.review_count,
+    average_rating = EXCLUDED.average_rating,
+    updated_at = now();
@@ -0,0 +1,86 @@
+-- Benchmark: bản đồ admin lấy toàn bộ (findAll) so với lấy theo khung nhìn + gom cụm
+-- Database: PostgreSQL
+-- Chạy: psql -f benchmark_admin_map_viewport.sql
+-- Script tạo dữ liệu giả trong schema riêng "map_bench" nên không đụng vào bảng thật.
+
+\set n_restaurants 100000
+\set n_shippers 5000
+\timing on
+
+DROP SCHEMA IF EXISTS map_bench CASCADE;
+CREATE SCHEMA map_bench;
+SET search_path TO map_bench;
+
+CREATE TABLE restaurants (
+    id SERIAL PRIMARY KEY,
+    name TEXT,
+    status TEXT,
+    address TEXT,
+    phone TEXT,
+    cover_image TEXT,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION
+);
+CREATE TABLE shippers (
+    account_id SERIAL PRIMARY KEY,
+    full_name TEXT,
+    current_lat DOUBLE PRECISION,
+    current_long DOUBLE PRECISION
+);
+
+-- Quán rải đều quanh Việt Nam (lat 8..23, lng 102..110), 90% ACTIVE / CLOSE
+INSERT INTO restaurants (name, status, address, phone, latitude, longitude)
+SELECT 'Quan ' || g,
+       CASE WHEN random() < 0.8 THEN 'ACTIVE' WHEN random() < 0.5 THEN 'CLOSE' ELSE 'PENDING' END,
+       'Dia chi ' || g, '09' || g,
+       8 + random() * 15,
+       102 + random() * 8
+FROM generate_series(1, :n_restaurants) g;
+
+-- Shipper tập trung quanh Hà Nội
+INSERT INTO shippers (full_name, current_lat, current_long)
+SELECT 'Shipper ' || g, 21.0285 + (random() - 0.5) * 0.4, 105.8542 + (random() - 0.5) * 0.4
+FROM generate_series(1, :n_shippers) g;
+
+CREATE INDEX idx_restaurants_status_lat_lng ON restaurants (status, latitude, longitude);
+CREATE INDEX idx_shippers_lat_long ON shippers (current_lat, current_long);
+ANALYZE;
+
+-- ============ 1. Cũ: toàn bộ quán + toàn bộ shipper mỗi lần refresh ============
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM restaurants;
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM shippers;
+
+-- ============ 2. Zoom 6 (cả nước): gom cụm, ô = 360 / 2^6 / 4 = 1.40625 độ ============
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*), AVG(r.latitude), AVG(r.longitude) FROM restaurants r
+WHERE r.status IN ('ACTIVE', 'CLOSE')
+  AND r.latitude BETWEEN 8 AND 23.5 AND r.longitude BETWEEN 102 AND 110
+GROUP BY FLOOR(r.latitude / 1.40625), FLOOR(r.longitude / 1.40625);
+
+-- ============ 3. Zoom 11 (thành phố): gom cụm, ô = 360 / 2^11 / 4 = 0.0439453125 độ ============
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*), AVG(r.latitude), AVG(r.longitude) FROM restaurants r
+WHERE r.status IN ('ACTIVE', 'CLOSE')
+  AND r.latitude BETWEEN 20.9 AND 21.15 AND r.longitude BETWEEN 105.7 AND 106.0
+GROUP BY FLOOR(r.latitude / 0.0439453125), FLOOR(r.longitude / 0.0439453125);
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*), AVG(current_lat), AVG(current_long) FROM shippers
+WHERE current_lat BETWEEN 20.9 AND 21.15 AND current_long BETWEEN 105.7 AND 106.0
+GROUP BY FLOOR(current_lat / 0.0439453125), FLOOR(current_long / 0.0439453125);
+
+-- ============ 4. Zoom 15 (vài con phố): từng điểm ============
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.name, r.latitude, r.longitude, r.status, r.address, r.cover_image, r.phone
+FROM restaurants r
+WHERE r.status IN ('ACTIVE', 'CLOSE')
+  AND r.latitude BETWEEN 21.02 AND 21.04 AND r.longitude BETWEEN 105.84 AND 105.87
+LIMIT 2001;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT account_id FROM shippers
+WHERE current_lat BETWEEN 21.02 AND 21.04 AND current_long BETWEEN 105.84 AND 105.87
+LIMIT 2001;
+
+RESET search_path;
+-- Dọn dẹp: DROP SCHEMA map_bench CASCADE;
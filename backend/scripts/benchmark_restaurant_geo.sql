@@ -0,0 +1,144 @@
+-- Benchmark: tìm quán gần nhất bằng geohash so với query cũ (acos trên từng dòng)
+-- Database: PostgreSQL
+-- Chạy: psql -f benchmark_restaurant_geo.sql
+-- Script tạo dữ liệu giả trong schema riêng "geo_bench" nên không đụng vào bảng thật.
+-- Đổi :n_restaurants để so sánh 500 / 5k / 50k quán.
+
+\set n_restaurants 50000
+\set products_per_restaurant 10
+\set user_lat 21.0285
+\set user_lng 105.8542
+\timing on
+
+DROP SCHEMA IF EXISTS geo_bench CASCADE;
+CREATE SCHEMA geo_bench;
+SET search_path TO geo_bench;
+
+-- Geohash (giống GeoUtils.encodeGeohash)
+CREATE FUNCTION geohash(lat DOUBLE PRECISION, lng DOUBLE PRECISION, precision INT)
+RETURNS TEXT LANGUAGE plpgsql IMMUTABLE AS $$
+DECLARE
+    base32 CONSTANT TEXT := '0123456789bcdefghjkmnpqrstuvwxyz';
+    min_lat DOUBLE PRECISION := -90;  max_lat DOUBLE PRECISION := 90;
+    min_lng DOUBLE PRECISION := -180; max_lng DOUBLE PRECISION := 180;
+    mid DOUBLE PRECISION;
+    even_bit BOOLEAN := TRUE;
+    bit INT := 0;
+    ch INT := 0;
+    result TEXT := '';
+BEGIN
+    WHILE length(result) < precision LOOP
+        IF even_bit THEN
+            mid := (min_lng + max_lng) / 2;
+            IF lng >= mid THEN ch := ch * 2 + 1; min_lng := mid; ELSE ch := ch * 2; max_lng := mid; END IF;
+        ELSE
+            mid := (min_lat + max_lat) / 2;
+            IF lat >= mid THEN ch := ch * 2 + 1; min_lat := mid; ELSE ch := ch * 2; max_lat := mid; END IF;
+        END IF;
+        even_bit := NOT even_bit;
+        bit := bit + 1;
+        IF bit = 5 THEN
+            result := result || substr(base32, ch + 1, 1);
+            bit := 0;
+            ch := 0;
+        END IF;
+    END LOOP;
+    RETURN result;
+END $$;
+
+CREATE TABLE restaurants (
+    id SERIAL PRIMARY KEY,
+    name TEXT,
+    status TEXT,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION,
+    geohash VARCHAR(12),
+    created_at TIMESTAMP
+);
+CREATE TABLE categories (id SERIAL PRIMARY KEY, name TEXT);
+CREATE TABLE products (id SERIAL PRIMARY KEY, restaurant_id INT, category_id INT, name TEXT);
+CREATE TABLE product_details (id SERIAL PRIMARY KEY, product_id INT, value TEXT);
+CREATE TABLE feedbacks (id SERIAL PRIMARY KEY, restaurant_id INT, rating INT);
+
+-- Quán rải đều quanh Việt Nam (lat 8..23, lng 102..110), 90% ACTIVE
+INSERT INTO restaurants (name, status, latitude, longitude, created_at)
+SELECT 'Quan ' || g,
+       CASE WHEN random() < 0.9 THEN 'ACTIVE' ELSE 'PENDING' END,
+       8 + random() * 15,
+       102 + random() * 8,
+       now() - (random() * INTERVAL '365 days')
+FROM generate_series(1, :n_restaurants) g;
+UPDATE restaurants SET geohash = geohash(latitude, longitude, 7);
+
+INSERT INTO categories (name) SELECT 'Danh muc ' || g FROM generate_series(1, 20) g;
+INSERT INTO products (restaurant_id, category_id, name)
+SELECT r.id, 1 + (random() * 19)::INT, 'Mon ' || r.id || '-' || g
+FROM restaurants r, generate_series(1, :products_per_restaurant) g;
+INSERT INTO product_details (product_id, value) SELECT p.id, 'Size L' FROM products p;
+
+CREATE INDEX ON products (restaurant_id);
+CREATE INDEX ON product_details (product_id);
+CREATE INDEX ON feedbacks (restaurant_id);
+CREATE INDEX idx_restaurants_status_geohash ON restaurants (status, geohash text_pattern_ops);
+CREATE INDEX idx_restaurants_status_lat_lng ON restaurants (status, latitude, longitude);
+ANALYZE;
+
+-- ============ 1. Query cũ: JOIN toàn bộ menu + acos() trên từng dòng ============
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.*
+FROM restaurants r
+LEFT JOIN products p ON r.id = p.restaurant_id
+LEFT JOIN categories c ON p.category_id = c.id
+LEFT JOIN product_details d ON p.id = d.product_id
+WHERE r.status = 'ACTIVE'
+GROUP BY r.id
+ORDER BY (6371 * acos(cos(radians(:user_lat)) * cos(radians(r.latitude))
+          * cos(radians(r.longitude) - radians(:user_lng))
+          + sin(radians(:user_lat)) * sin(radians(r.latitude)))) ASC,
+         r.created_at DESC
+LIMIT 8;
+
+-- ============ 2. Query mới: 9 ô geohash (precision 6) + bounding box ============
+-- Giống RestaurantRepository.findNearbyCandidates
+-- Kích thước ô precision 6: 0.0054931640625 độ (lat) x 0.010986328125 độ (lng)
+-- Bán kính phủ ~0.6km -> bounding box tương ứng
+SELECT
+       geohash(:user_lat + (-1) * 0.0054931640625, :user_lng + (-1) * 0.010986328125, 6) || '%' AS c0,
+       geohash(:user_lat + (-1) * 0.0054931640625, :user_lng + (0) * 0.010986328125, 6) || '%' AS c1,
+       geohash(:user_lat + (-1) * 0.0054931640625, :user_lng + (1) * 0.010986328125, 6) || '%' AS c2,
+       geohash(:user_lat + (0) * 0.0054931640625, :user_lng + (-1) * 0.010986328125, 6) || '%' AS c3,
+       geohash(:user_lat + (0) * 0.0054931640625, :user_lng + (0) * 0.010986328125, 6) || '%' AS c4,
+       geohash(:user_lat + (0) * 0.0054931640625, :user_lng + (1) * 0.010986328125, 6) || '%' AS c5,
+       geohash(:user_lat + (1) * 0.0054931640625, :user_lng + (-1) * 0.010986328125, 6) || '%' AS c6,
+       geohash(:user_lat + (1) * 0.0054931640625, :user_lng + (0) * 0.010986328125, 6) || '%' AS c7,
+       geohash(:user_lat + (1) * 0.0054931640625, :user_lng + (1) * 0.010986328125, 6) || '%' AS c8 \gset
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.*
+FROM restaurants r
+WHERE r.status = 'ACTIVE'
+  AND r.latitude BETWEEN :user_lat - 0.0055 AND :user_lat + 0.0055
+  AND r.longitude BETWEEN :user_lng - 0.0059 AND :user_lng + 0.0059
+  AND (r.geohash LIKE :'c0' OR r.geohash LIKE :'c1' OR r.geohash LIKE :'c2' OR r.geohash LIKE :'c3' OR r.geohash LIKE :'c4' OR r.geohash LIKE :'c5' OR r.geohash LIKE :'c6' OR r.geohash LIKE :'c7' OR r.geohash LIKE :'c8');
+
+-- Query mới ở precision thấp hơn (khi ô gần không đủ quán, service mở rộng ô)
+-- Precision 4: ô 0.17578125 x 0.3515625 độ, bán kính phủ ~19km
+SELECT
+       geohash(:user_lat + (-1) * 0.17578125, :user_lng + (-1) * 0.3515625, 4) || '%' AS c0,
+       geohash(:user_lat + (-1) * 0.17578125, :user_lng + (0) * 0.3515625, 4) || '%' AS c1,
+       geohash(:user_lat + (-1) * 0.17578125, :user_lng + (1) * 0.3515625, 4) || '%' AS c2,
+       geohash(:user_lat + (0) * 0.17578125, :user_lng + (-1) * 0.3515625, 4) || '%' AS c3,
+       geohash(:user_lat + (0) * 0.17578125, :user_lng + (0) * 0.3515625, 4) || '%' AS c4,
+       geohash(:user_lat + (0) * 0.17578125, :user_lng + (1) * 0.3515625, 4) || '%' AS c5,
+       geohash(:user_lat + (1) * 0.17578125, :user_lng + (-1) * 0.3515625, 4) || '%' AS c6,
+       geohash(:user_lat + (1) * 0.17578125, :user_lng + (0) * 0.3515625, 4) || '%' AS c7,
+       geohash(:user_lat + (1) * 0.17578125, :user_lng + (1) * 0.3515625, 4) || '%' AS c8 \gset
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.*
+FROM restaurants r
+WHERE r.status = 'ACTIVE'
+  AND r.latitude BETWEEN :user_lat - 0.176 AND :user_lat + 0.176
+  AND r.longitude BETWEEN :user_lng - 0.189 AND :user_lng + 0.189
+  AND (r.geohash LIKE :'c0' OR r.geohash LIKE :'c1' OR r.geohash LIKE :'c2' OR r.geohash LIKE :'c3' OR r.geohash LIKE :'c4' OR r.geohash LIKE :'c5' OR r.geohash LIKE :'c6' OR r.geohash LIKE :'c7' OR r.geohash LIKE :'c8');
+
+RESET search_path;
+-- Dọn dẹp: DROP SCHEMA geo_bench CASCADE;
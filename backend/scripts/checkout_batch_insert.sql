@@ -0,0 +1,21 @@
+-- Chuẩn bị DB cho luồng tạo đơn theo batch (CheckoutService)
+-- Database: PostgreSQL
+
+-- 1. Sequence sinh mã đơn (order_number) -> không phải UPDATE đơn sau khi INSERT.
+--    Bắt đầu sau id lớn nhất + 10000 để không trùng mã cũ (mã cũ dùng id % 10000 trong ngày).
+CREATE SEQUENCE IF NOT EXISTS order_number_seq;
+SELECT setval('order_number_seq', (SELECT COALESCE(MAX(id), 0) FROM orders) + 10000);
+
+-- 2. OrderItem dùng @SequenceGenerator(allocationSize = 50): sequence của cột id phải tăng 50/lần.
+--    Hibernate lấy 1 giá trị rồi tự cấp 50 id trong bộ nhớ, INSERT order_items gom được thành batch.
+--    Dùng pg_get_serial_sequence để chạy được cho cả cột SERIAL và IDENTITY.
+DO $$
+DECLARE
+    seq TEXT := pg_get_serial_sequence('order_items', 'id');
+BEGIN
+    EXECUTE format('ALTER SEQUENCE %s INCREMENT BY 50', seq);
+    EXECUTE format('SELECT setval(%L, (SELECT COALESCE(MAX(id), 0) + 50 FROM order_items))', seq);
+END $$;
+
+-- Kiểm tra: tên sequence phải là order_items_id_seq (khớp sequenceName trong OrderItem)
+SELECT pg_get_serial_sequence('order_items', 'id');
@@ -0,0 +1,5 @@
+-- Xuất lịch sử giao hàng cho scripts/EtaBacktest.java
+-- Database: PostgreSQL
+-- Chạy: psql -f export_delivery_history.sql  (tạo file delivery_history.csv ở thư mục hiện tại)
+
+\copy (SELECT o.shipper_id, r.latitude, r.longitude, COALESCE(o.shipping_lat, c.latitude), COALESCE(o.shipping_long, c.longitude), o.shipped_at, o.delivery_started_at, o.completed_at FROM orders o JOIN restaurants r ON r.id = o.restaurant_id LEFT JOIN customers c ON c.account_id = o.customer_id WHERE o.status = 'COMPLETED' AND o.shipped_at IS NOT NULL AND o.delivery_started_at IS NOT NULL ORDER BY o.completed_at) TO 'delivery_history.csv' WITH (FORMAT csv)
@@ -0,0 +1,64 @@
+// Load test tạo đơn: POST /api/orders/create
+// Công cụ: k6 (https://k6.io) - chạy: k6 run load_test_checkout.js
+// Biến môi trường:
+//   BASE_URL      (mặc định http://localhost:8080)
+//   ACCOUNT_ID    tài khoản khách dùng để đặt
+//   RESTAURANT_ID quán đặt món
+//   PRODUCT_IDS   danh sách id món của quán, cách nhau bởi dấu phẩy
+//   ITEMS         số dòng món mỗi đơn (mặc định 5)
+// So sánh trước / sau: chạy script trên code cũ và code mới, xem "http_reqs" (đơn/giây)
+// và p(95) của http_req_duration ở mức tải mà lỗi (http_req_failed) còn < 1%.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const ACCOUNT_ID = Number(__ENV.ACCOUNT_ID || 1);
+const RESTAURANT_ID = Number(__ENV.RESTAURANT_ID || 1);
+const PRODUCT_IDS = (__ENV.PRODUCT_IDS || '1,2,3,4,5').split(',').map(Number);
+const ITEMS = Number(__ENV.ITEMS || 5);
+
+// Tăng dần số đơn/giây để tìm ngưỡng
+export const options = {
+    scenarios: {
+        checkout: {
+            executor: 'ramping-arrival-rate',
+            startRate: 10,
+            timeUnit: '1s',
+            preAllocatedVUs: 50,
+            maxVUs: 300,
+            stages: [
+                { target: 50, duration: '30s' },
+                { target: 100, duration: '30s' },
+                { target: 200, duration: '30s' },
+                { target: 400, duration: '30s' },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export default function () {
+    const items = [];
+    for (let i = 0; i < ITEMS; i++) {
+        items.push({
+            productId: PRODUCT_IDS[i % PRODUCT_IDS.length],
+            quantity: 1 + (i % 3),
+        });
+    }
+
+    const res = http.post(
+        `${BASE_URL}/api/orders/create`,
+        JSON.stringify({
+            accountId: ACCOUNT_ID,
+            restaurantId: RESTAURANT_ID,
+            address: 'Load test',
+            items,
+        }),
+        { headers: { 'Content-Type': 'application/json' } }
+    );
+
+    check(res, { 'đặt hàng thành công': (r) => r.status === 200 });
+}
@@ -0,0 +1,46 @@
+// Load test xem thực đơn quán (k6)
+// Chạy: k6 run -e BASE_URL=http://localhost:8080 -e RESTAURANT_IDS=1,2,3 scripts/load_test_menu.js
+// Mỗi VU giả lập 1 khách mở lại thực đơn: lần đầu nhận JSON + ETag, các lần sau gửi If-None-Match.
+// Theo dõi song song: /actuator/metrics/menu.snapshot (hit / miss), menu.snapshot.bytes
+// và số câu SELECT trên bảng products (pg_stat_user_tables.seq_scan + idx_scan).
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+import { Counter } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const RESTAURANT_IDS = (__ENV.RESTAURANT_IDS || '1').split(',').map((id) => parseInt(id, 10));
+const notModified = new Counter('menu_not_modified');
+
+export const options = {
+    scenarios: {
+        customers: {
+            executor: 'constant-vus',
+            vus: parseInt(__ENV.VUS || '500', 10),
+            duration: __ENV.DURATION || '2m',
+        },
+    },
+    thresholds: {
+        http_req_duration: ['p(95)<30'],
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+// ETag đã nhận theo quán (riêng từng VU, như cache của trình duyệt)
+const etags = {};
+
+export default function () {
+    const restaurantId = RESTAURANT_IDS[Math.floor(Math.random() * RESTAURANT_IDS.length)];
+    const headers = etags[restaurantId] ? { 'If-None-Match': etags[restaurantId] } : {};
+    const res = http.get(`${BASE_URL}/api/products?restaurantId=${restaurantId}`, {
+        headers,
+        responseCallback: http.expectedStatuses(200, 304),
+    });
+
+    check(res, { 'status 200/304': (r) => r.status === 200 || r.status === 304 });
+    if (res.status === 304) {
+        notModified.add(1);
+    } else if (res.headers.Etag) {
+        etags[restaurantId] = res.headers.Etag;
+    }
+    sleep(1);
+}
@@ -0,0 +1,37 @@
+// Load test nhận callback thanh toán khi cổng gửi lại dồn dập (k6)
+// Chạy: k6 run -e BASE_URL=http://localhost:8080 -e ORDER_IDS=1,2,3 scripts/load_test_payment_callbacks.js
+// Mỗi VU gửi lại liên tục callback xác nhận thanh toán của 1 vài đơn (giống cổng retry).
+// Kỳ vọng: độ trễ phẳng vì mỗi lần gửi lại chỉ là 1 INSERT ... ON CONFLICT DO NOTHING.
+// Theo dõi: /actuator/metrics/payment.inbox.received (result=new / duplicate), payment.inbox.processed
+// và SELECT status, count(*) FROM payment_webhook_inbox GROUP BY status;
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const ORDER_IDS = (__ENV.ORDER_IDS || '1').split(',').map((id) => parseInt(id, 10));
+
+export const options = {
+    scenarios: {
+        retry_storm: {
+            executor: 'ramping-arrival-rate',
+            startRate: 50,
+            timeUnit: '1s',
+            preAllocatedVUs: 200,
+            stages: [
+                { target: 2000, duration: '30s' },
+                { target: 2000, duration: '1m' },
+                { target: 50, duration: '30s' },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_duration: ['p(95)<30'],
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export default function () {
+    const orderId = ORDER_IDS[Math.floor(Math.random() * ORDER_IDS.length)];
+    const res = http.post(`${BASE_URL}/api/payment/confirm-success?orderId=${orderId}`);
+    check(res, { acked: (r) => r.status === 200 });
+}
@@ -0,0 +1,43 @@
+// Load test nhận vị trí GPS shipper (k6)
+// Chạy: k6 run -e BASE_URL=http://localhost:8080 -e SHIPPER_IDS=1,2,3 scripts/load_test_shipper_location.js
+// Mỗi VU giả lập 1 shipper gửi lô 3 fix mỗi 3 giây.
+// Theo dõi song song: /actuator/metrics/shipper.location.fixes, shipper.location.pending,
+// shipper.location.flush.lag và số câu UPDATE trên bảng shippers (pg_stat_user_tables.n_tup_upd).
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const SHIPPER_IDS = (__ENV.SHIPPER_IDS || '1').split(',').map((id) => parseInt(id, 10));
+
+export const options = {
+    scenarios: {
+        riders: {
+            executor: 'constant-vus',
+            vus: parseInt(__ENV.VUS || '2000', 10),
+            duration: __ENV.DURATION || '2m',
+        },
+    },
+    thresholds: {
+        http_req_duration: ['p(95)<50'],
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export default function () {
+    const shipperId = SHIPPER_IDS[(__VU - 1) % SHIPPER_IDS.length];
+    const now = Date.now();
+    const fixes = [];
+    for (let i = 2; i >= 0; i--) {
+        fixes.push({
+            lat: 21.0285 + (Math.random() - 0.5) * 0.05,
+            lng: 105.8542 + (Math.random() - 0.5) * 0.05,
+            recordedAt: now - i * 1000,
+        });
+    }
+
+    const res = http.post(`${BASE_URL}/api/shipper/location?shipperId=${shipperId}`,
+        JSON.stringify({ fixes }),
+        { headers: { 'Content-Type': 'application/json' } });
+    check(res, { accepted: (r) => r.status === 202 });
+    sleep(3);
+}
@@ -0,0 +1,34 @@
+package com.shopeefood.backend.config;
+
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.cloudinary.Cloudinary;
+import com.shopeefood.backend.storage.CloudinaryImageStorage;
+import com.shopeefood.backend.storage.ImageStorage;
+import com.shopeefood.backend.storage.LocalDiskImageStorage;
+
+@Configuration
+public class ImageStorageConfig {
+
+    // cloudinary | local
+    @Value("${upload.storage:cloudinary}")
+    private String storageType;
+
+    @Value("${upload.local.root:./uploads}")
+    private String localRoot;
+
+    @Value("${upload.local.base-url:http://localhost:8080/images}")
+    private String localBaseUrl;
+
+    @Bean
+    public ImageStorage imageStorage(Cloudinary cloudinary) {
+        if ("local".equalsIgnoreCase(storageType)) {
+            return new LocalDiskImageStorage(Paths.get(localRoot), localBaseUrl);
+        }
+        return new CloudinaryImageStorage(cloudinary);
+    }
+}
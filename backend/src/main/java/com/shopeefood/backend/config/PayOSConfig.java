@@ -1,8 +1,13 @@
 package com.shopeefood.backend.config;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.payment.CircuitBreaker;
+import com.shopeefood.backend.payment.payos.PayOSClient;
 import vn.payos.PayOS;
 
 @Configuration
@@ -17,9 +22,41 @@ public class PayOSConfig {
     @Value("${payos.checksum-key}")
     private String checksumKey;
 
+    @Value("${payos.api-base-url:https://api-merchant.payos.vn}")
+    private String apiBaseUrl;
+
+    @Value("${payos.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${payos.client.read-timeout-ms:8000}")
+    private long readTimeoutMs;
+
+    @Value("${payos.client.max-concurrent:20}")
+    private int maxConcurrent;
+
+    @Value("${payos.client.acquire-timeout-ms:500}")
+    private long acquireTimeoutMs;
+
+    @Value("${payos.client.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${payos.client.breaker.open-seconds:30}")
+    private long breakerOpenSeconds;
+
     @Bean
     public PayOS payOS() {
         return new PayOS(clientId, apiKey, checksumKey);
     }
 
+    // Client HTTP dùng chung để tạo link thanh toán (thay cho HttpClient tạo mới mỗi request)
+    @Bean
+    public PayOSClient payOSClient(ObjectMapper objectMapper) {
+        return new PayOSClient(apiBaseUrl, clientId, apiKey, objectMapper,
+                Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(readTimeoutMs),
+                maxConcurrent,
+                Duration.ofMillis(acquireTimeoutMs),
+                new CircuitBreaker("payos", breakerFailureThreshold, breakerOpenSeconds * 1000));
+    }
+
 }
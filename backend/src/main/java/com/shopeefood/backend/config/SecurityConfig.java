@@ -1,21 +1,33 @@
 package com.shopeefood.backend.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.security.SessionTokenCodec;
+import com.shopeefood.backend.security.TokenAuthenticationFilter;
 import com.shopeefood.backend.service.CustomUserDetailsService;
+import com.shopeefood.backend.service.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider; // Có thể xóa dòng này nếu không dùng nữa
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 
 @Configuration
@@ -25,6 +37,30 @@ public class SecurityConfig {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    // Khóa ký token (>= 32 ký tự). Để trống: sinh ngẫu nhiên mỗi lần khởi động (token cũ hết hiệu lực)
+    @Value("${auth.token.secret:}")
+    private String tokenSecret;
+
+    @Value("${auth.token.ttl-minutes:720}")
+    private long tokenTtlMinutes;
+
+    // true: mọi API (trừ đăng nhập / webhook / public) bắt buộc có token
+    @Value("${auth.token.required:false}")
+    private boolean tokenRequired;
+
+    @Bean
+    public SessionTokenCodec sessionTokenCodec(ObjectMapper objectMapper) {
+        byte[] secret;
+        if (tokenSecret == null || tokenSecret.isBlank()) {
+            System.err.println("auth.token.secret chưa được cấu hình, dùng khóa ngẫu nhiên (token mất hiệu lực khi khởi động lại)");
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = tokenSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        return new SessionTokenCodec(secret, Duration.ofMinutes(tokenTtlMinutes), objectMapper, Clock.systemUTC());
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -56,16 +92,41 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, SessionTokenCodec sessionTokenCodec,
+            PrincipalCache principalCache) throws Exception {
         http
                 // --- 2. KÍCH HOẠT CORS TẠI ĐÂY ---
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
-                .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/api/admin/map/**").permitAll()
-                        .requestMatchers("/api/shipper/public/**").permitAll()
-                        .anyRequest().permitAll());
+                // Token tự chứa thông tin đăng nhập: không tạo HttpSession
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new TokenAuthenticationFilter(sessionTokenCodec, principalCache),
+                        UsernamePasswordAuthenticationFilter.class)
+                .authorizeHttpRequests(auth -> {
+                    auth
+                            .requestMatchers("/api/auth/**").permitAll()
+                            .requestMatchers("/api/shipper/public/**").permitAll()
+                            // Cổng thanh toán gọi vào, không có token người dùng
+                            .requestMatchers("/api/payment/webhook", "/api/payment/vnpay/**").permitAll()
+                            .requestMatchers("/images/**", "/actuator/health").permitAll()
+                            // Khách chưa đăng nhập vẫn xem được quán / món / danh mục
+                            .requestMatchers(HttpMethod.GET, "/api/restaurants/**", "/api/products/**",
+                                    "/api/categories/**").permitAll();
+                    if (tokenRequired) {
+                        auth.requestMatchers("/api/admin/**").hasRole("ADMIN")
+                                .requestMatchers("/api/owner/**").hasRole("OWNER")
+                                .requestMatchers("/api/shipper/**").hasRole("SHIPPER")
+                                .anyRequest().authenticated();
+                    } else {
+                        auth.anyRequest().permitAll();
+                    }
+                })
+                .exceptionHandling(ex -> ex.authenticationEntryPoint((request, response, e) -> {
+                    response.setStatus(401);
+                    response.setCharacterEncoding("UTF-8");
+                    response.setContentType("application/json");
+                    response.getWriter().write("{\"error\":\"Vui lòng đăng nhập\"}");
+                }));
         return http.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.shopeefood.backend.config;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.shopeefood.backend.util.SqlStatementCounter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Số câu SQL của mỗi request /api (tính cả lazy load lúc Jackson ghi JSON nhờ open-in-view):
+ * - Metric http.sql.statements{method, uri} (uri là pattern của controller, vd /api/owner/orders)
+ * - Vượt sql.statement-count.warn-threshold -> ghi log để tìm N+1
+ * - sql.statement-count.header=true: thêm header X-Sql-Count (response được giữ lại tới cuối request
+ *   để đếm cả lúc serialize; không áp dụng cho SSE và file xuất CSV). Chỉ để đo tay, không bật trên production;
+ *   ngân sách từng màn được kiểm tra trong SqlStatementBudgetTest.
+ */
+@Component
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Sql-Count";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${sql.statement-count.header:false}")
+    private boolean exposeHeader;
+
+    @Value("${sql.statement-count.warn-threshold:50}")
+    private int warnThreshold;
+
+    public SqlStatementCountFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatementCounter.reset();
+        boolean buffer = exposeHeader && !isStreamed(request);
+        ContentCachingResponseWrapper wrapper = buffer ? new ContentCachingResponseWrapper(response) : null;
+        try {
+            chain.doFilter(request, buffer ? wrapper : response);
+        } finally {
+            int count = SqlStatementCounter.current();
+            SqlStatementCounter.reset();
+            record(request, count);
+            if (buffer) {
+                wrapper.setHeader(HEADER, String.valueOf(count));
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, int count) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("http.sql.statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(count);
+        if (count > warnThreshold) {
+            System.err.println("Request " + request.getMethod() + " " + uri + " chạy " + count + " câu SQL");
+        }
+    }
+
+    // Response ghi dần ra client (SSE, xuất CSV): không giữ lại trong bộ nhớ
+    private static boolean isStreamed(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return request.getRequestURI().endsWith("/stream") || request.getRequestURI().endsWith("/export")
+                || (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE));
+    }
+}
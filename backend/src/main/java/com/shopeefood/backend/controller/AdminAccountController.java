@@ -2,6 +2,7 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.Account;
 import com.shopeefood.backend.repository.AccountRepository;
+import com.shopeefood.backend.service.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +18,9 @@ public class AdminAccountController {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     /**
      * Lấy danh sách tất cả tài khoản
      * GET: /api/admin/accounts
@@ -55,6 +59,8 @@ public class AdminAccountController {
 
         account.setIsActive(false);
         accountRepository.save(account);
+        // Token cũ của tài khoản bị từ chối ngay ở thao tác kế tiếp (không chờ hết hạn cache)
+        principalCache.invalidate(accountId);
 
         return ResponseEntity.ok("Đã vô hiệu hóa tài khoản thành công");
     }
@@ -81,6 +87,7 @@ public class AdminAccountController {
 
         account.setIsActive(true);
         accountRepository.save(account);
+        principalCache.invalidate(accountId);
 
         return ResponseEntity.ok("Đã kích hoạt lại tài khoản thành công");
     }
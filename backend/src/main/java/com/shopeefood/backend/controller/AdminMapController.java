@@ -1,12 +1,14 @@
 package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.dto.MapLocationDTO;
+import com.shopeefood.backend.dto.MapViewportResponse;
 import com.shopeefood.backend.service.AdminMapService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -25,4 +27,24 @@ public class AdminMapController {
     public ResponseEntity<List<MapLocationDTO>> getAllLocations() {
         return ResponseEntity.ok(adminMapService.getAllLocations());
     }
+
+    // API lấy vị trí trong khung nhìn (gom cụm khi zoom xa, chỉ trả phần thay đổi khi có since)
+    // URL: GET http://localhost:8080/api/admin/map/viewport?minLat=20.9&maxLat=21.1&minLng=105.7&maxLng=105.9&zoom=14&since=0&snapshot=0
+    @GetMapping("/viewport")
+    public ResponseEntity<?> getViewport(
+            @RequestParam double minLat,
+            @RequestParam double maxLat,
+            @RequestParam double minLng,
+            @RequestParam double maxLng,
+            @RequestParam int zoom,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long snapshot) {
+        try {
+            MapViewportResponse response = adminMapService.getViewport(minLat, maxLat, minLng, maxLng, zoom,
+                    since, snapshot);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 }
\ No newline at end of file
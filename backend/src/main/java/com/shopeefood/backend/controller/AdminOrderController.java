@@ -1,12 +1,16 @@
 package com.shopeefood.backend.controller;
 
+import com.shopeefood.backend.dto.CursorPage;
 import com.shopeefood.backend.dto.OrderDTO;
 import com.shopeefood.backend.service.AdminOrderService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -19,22 +23,72 @@ public class AdminOrderController {
     @Autowired
     private AdminOrderService orderService;
 
-    // GET: Lấy danh sách (Hỗ trợ filter)
+    // GET: Lấy danh sách (Hỗ trợ filter) - đã thay bằng /page
+    // Chỉ trả trang đầu (tối đa limit đơn, mặc định 50, trần 200) thay vì cả khoảng ngày;
+    // header X-Has-More=true nghĩa là còn đơn, client chuyển sang /page để lấy tiếp
     // VD: /api/admin/orders?status=SHIPPING&startDate=2023-12-01&endDate=2023-12-03
+    @Deprecated
     @GetMapping
     public ResponseEntity<List<OrderDTO>> getOrders(
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false, defaultValue = "ALL") String status,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer limit
     ) {
         // Nếu không truyền ngày, mặc định lấy ngày hôm nay
         if (startDate == null || endDate == null) {
             startDate = LocalDate.now();
             endDate = LocalDate.now();
         }
-        List<OrderDTO> orders = orderService.getOrders(keyword, status, startDate, endDate);
-        return ResponseEntity.ok(orders);
+        CursorPage<OrderDTO> page = orderService.getOrderPage(keyword, status, startDate, endDate, null, limit);
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header(HttpHeaders.LINK, "</api/admin/orders/page>; rel=\"successor-version\"")
+                .header("X-Has-More", String.valueOf(page.isHasMore()))
+                .body(page.getItems());
+    }
+
+    // GET: Danh sách theo trang (cursor), mới nhất trước; trang sau gửi lại nextCursor
+    // VD: /api/admin/orders/page?status=ALL&startDate=2023-12-01&endDate=2023-12-31&limit=50&cursor=...
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<OrderDTO>> getOrderPage(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false, defaultValue = "ALL") String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
+    ) {
+        // Nếu không truyền ngày, mặc định lấy ngày hôm nay
+        if (startDate == null || endDate == null) {
+            startDate = LocalDate.now();
+            endDate = LocalDate.now();
+        }
+        return ResponseEntity.ok(orderService.getOrderPage(keyword, status, startDate, endDate, cursor, limit));
+    }
+
+    // GET: Xuất CSV (cùng bộ lọc), ghi từng dòng ra response nên xuất cả tháng không tốn thêm bộ nhớ
+    // VD: /api/admin/orders/export?status=COMPLETED&startDate=2023-12-01&endDate=2023-12-31
+    @GetMapping("/export")
+    public void exportOrders(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false, defaultValue = "ALL") String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpServletResponse response
+    ) throws IOException {
+        if (startDate == null || endDate == null) {
+            startDate = LocalDate.now();
+            endDate = LocalDate.now();
+        }
+        String filename = "orders_" + startDate + "_" + endDate + ".csv";
+        // Header file chỉ đặt khi đã nhận lượt xuất, hết lượt thì trả 503 JSON bình thường
+        orderService.exportCsv(keyword, status, startDate, endDate, () -> {
+            response.setContentType("text/csv; charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+            return response.getOutputStream();
+        });
     }
 
     // PUT: Cập nhật trạng thái
@@ -10,13 +10,14 @@ import com.shopeefood.backend.entity.Shipper;
 import com.shopeefood.backend.repository.AccountRepository;
 import com.shopeefood.backend.repository.ShipperRepository;
 
+import java.time.Instant;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
-import com.shopeefood.backend.service.EmailService;
+import com.shopeefood.backend.security.SessionTokenCodec;
 import com.shopeefood.backend.service.AuthService;
 
 @RestController
@@ -27,9 +28,6 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
-    @Autowired
-    private EmailService emailService;
-
     @Autowired
     private AccountRepository accountRepository;
 
@@ -42,6 +40,9 @@ public class AuthController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private SessionTokenCodec sessionTokenCodec;
+
     // 1. Đăng nhập
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest request) {
@@ -60,23 +61,26 @@ public class AuthController {
 
         // Dùng hàm matches để so sánh password thô (request) và password mã hóa (DB)
         if (passwordEncoder.matches(request.getPassword(), account.getPassword())) {
+            // Trả về thông tin tài khoản (không kèm mật khẩu) + token đăng nhập
+            Map<String, Object> response = new java.util.HashMap<>();
+            response.put("id", account.getId());
+            response.put("username", account.getUsername());
+            response.put("email", account.getEmail());
+            response.put("phone", account.getPhone());
+            response.put("role", account.getRole());
+            response.put("image", account.getImage());
+            response.put("isActive", account.getIsActive());
             // Nếu là shipper, thêm shipperId vào response
             if ("SHIPPER".equals(account.getRole())) {
                 Shipper shipper = shipperRepository.findById(account.getId()).orElse(null);
                 if (shipper != null) {
-                    // Tạo Map để trả về thông tin đầy đủ
-                    Map<String, Object> response = new java.util.HashMap<>();
-                    response.put("id", account.getId());
-                    response.put("username", account.getUsername());
-                    response.put("email", account.getEmail());
-                    response.put("phone", account.getPhone());
-                    response.put("role", account.getRole());
                     response.put("shipperId", shipper.getAccountId());
                     response.put("fullName", shipper.getFullName());
-                    return ResponseEntity.ok(response);
                 }
             }
-            return ResponseEntity.ok(account);
+            response.put("token", sessionTokenCodec.issue(account.getId(), account.getRole()));
+            response.put("tokenExpiresAt", Instant.now().plus(sessionTokenCodec.getTtl()).toEpochMilli());
+            return ResponseEntity.ok(response);
         }
 
         return ResponseEntity.status(401).body("Sai tài khoản hoặc mật khẩu");
@@ -101,25 +105,13 @@ public class AuthController {
     @PostMapping("/forgot-password")
     public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> request) {
         String email = request.get("email");
-        Account account = accountRepository.findByEmail(email).orElse(null);
-
-        if (account == null) {
-            return ResponseEntity.badRequest().body("Email không tồn tại trong hệ thống");
-        }
-
-        // Tạo mật khẩu ngẫu nhiên (ví dụ lấy 6 ký tự đầu của thời gian hiện tại)
-        String newPassword = String.valueOf(System.currentTimeMillis()).substring(0, 6);
-
-        // Lưu mật khẩu mới vào DB
-        account.setPassword(passwordEncoder.encode(newPassword));
-        accountRepository.save(account);
 
-        // GỬI EMAIL
+        // Đổi mật khẩu + xếp email vào hàng đợi gửi (không chờ SMTP)
         try {
-            emailService.sendNewPasswordEmail(email, newPassword);
+            authService.resetPassword(email);
             return ResponseEntity.ok("Mật khẩu mới đã được gửi vào email của bạn. Vui lòng kiểm tra.");
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body("Lỗi gửi email: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 }
\ No newline at end of file
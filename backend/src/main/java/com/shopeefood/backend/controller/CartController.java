@@ -4,6 +4,7 @@ import com.shopeefood.backend.dto.AddToCartRequest;
 import com.shopeefood.backend.dto.CartResponse;
 import com.shopeefood.backend.dto.UpdateCartItemRequest;
 import com.shopeefood.backend.dto.UpdateItemQuantityRequest;
+import com.shopeefood.backend.security.RequestPrincipal;
 import com.shopeefood.backend.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -16,21 +17,24 @@ public class CartController {
     @Autowired
     private CartService cartService;
 
+    // accountId client gửi phải khớp token (nếu request có token)
     // Lấy giỏ hàng hiện tại theo accountId
     @GetMapping
     public ResponseEntity<?> getCart(@RequestParam Integer accountId, @RequestParam Integer restaurantId) {
-        return ResponseEntity.ok(cartService.getCart(accountId, restaurantId));
+        return ResponseEntity.ok(cartService.getCart(RequestPrincipal.resolveActorId(accountId), restaurantId));
     }
 
     // Thêm món vào giỏ
     @PostMapping("/items")
     public ResponseEntity<?> addItem(@RequestBody AddToCartRequest request) {
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         return ResponseEntity.ok(cartService.addToCart(request));
     }
 
     // Cập nhật số lượng 1 món
     @PutMapping("/items")
     public ResponseEntity<?> updateItem(@RequestBody UpdateCartItemRequest request) {
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         return ResponseEntity.ok(cartService.updateItem(request));
     }
 
@@ -41,20 +45,20 @@ public class CartController {
             @RequestParam(required = false) Integer restaurantId,
             @PathVariable Integer productId
     ) {
-        return ResponseEntity.ok(cartService.removeItem(accountId, restaurantId, productId));
+        return ResponseEntity.ok(cartService.removeItem(RequestPrincipal.resolveActorId(accountId), restaurantId, productId));
     }
 
     // Xoá toàn bộ giỏ
     @DeleteMapping
     public ResponseEntity<?> clearCart(@RequestParam Integer accountId, @RequestParam Integer restaurantId) {
-        cartService.clearCart(accountId, restaurantId);
+        cartService.clearCart(RequestPrincipal.resolveActorId(accountId), restaurantId);
         return ResponseEntity.noContent().build();
     }
 
     @PutMapping("/items/quantity")
     public CartResponse updateItemQuantity(@RequestBody UpdateItemQuantityRequest request) {
         return cartService.updateItemQuantity(
-                request.getAccountId(),
+                RequestPrincipal.resolveActorId(request.getAccountId()),
                 request.getItemId(),
                 request.getQuantity()
         );
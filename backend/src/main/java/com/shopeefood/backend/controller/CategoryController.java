@@ -2,7 +2,7 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.Category;
 import com.shopeefood.backend.entity.CategoryAttribute;
-import com.shopeefood.backend.repository.CategoryRepository;
+import com.shopeefood.backend.service.ReferenceDataCache;
 import com.shopeefood.backend.service.ProductService;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,12 +21,12 @@ public class CategoryController {
     @Autowired
     private ProductService productService;
     @Autowired
-    private CategoryRepository categoryRepository;
+    private ReferenceDataCache referenceDataCache;
 
     // API lấy danh sách tất cả danh mục
     @GetMapping
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        return referenceDataCache.getCategories();
     }
 
     // API lấy danh sách attributes theo category ID
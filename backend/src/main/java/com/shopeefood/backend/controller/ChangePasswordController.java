@@ -2,6 +2,7 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.dto.ChangePasswordRequest;
 import com.shopeefood.backend.service.CustomerService;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,7 @@ public class ChangePasswordController {
     // API đơn giản hóa: PUT /api/customers/change-password
     @PutMapping("/change-password")
     public ResponseEntity<?> changePassword(@RequestBody ChangePasswordRequest request) {
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         try {
             // Gọi service xử lý
             customerService.changePassword(request);
@@ -6,6 +6,9 @@ import com.shopeefood.backend.entity.Account;
 import com.shopeefood.backend.entity.Customer;
 import com.shopeefood.backend.repository.AccountRepository;
 import com.shopeefood.backend.repository.CustomerRepository;
+import com.shopeefood.backend.service.CartService;
+import com.shopeefood.backend.service.PrincipalCache;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -24,6 +27,12 @@ public class CustomerProfileController {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
     /**
      * Lấy thông tin tài khoản + thông tin customer
      * GET /api/customer/profile/{accountId}
@@ -31,6 +40,7 @@ public class CustomerProfileController {
     @GetMapping("/{accountId}")
     public ResponseEntity<CustomerProfileResponse> getProfile(
             @PathVariable Integer accountId) {
+        accountId = RequestPrincipal.resolveActorId(accountId);
 
         Account acc = accountRepository.findById(accountId)
                 .orElseThrow(() ->
@@ -68,8 +78,9 @@ public class CustomerProfileController {
      */
     @PutMapping("/{accountId}")
     public ResponseEntity<?> updateProfile(
-            @PathVariable Integer accountId,
+            @PathVariable("accountId") Integer requestedId,
             @RequestBody CustomerProfileUpdateRequest request) {
+        Integer accountId = RequestPrincipal.resolveActorId(requestedId);
 
         Account acc = accountRepository.findById(accountId)
                 .orElseThrow(() ->
@@ -93,6 +104,7 @@ public class CustomerProfileController {
             acc.setImage(request.getImage());
         }
         accountRepository.save(acc);
+        principalCache.invalidate(acc.getId());
 
         // --------- cập nhật bảng customers ----------
         Customer customer = customerRepository.findById(accountId)
@@ -108,6 +120,9 @@ public class CustomerProfileController {
         customer.setLongitude(request.getLongitude());
         customerRepository.save(customer);
 
+        // Giỏ hàng đang mở giao tới địa chỉ mới
+        cartService.syncShippingAddress(accountId, request.getAddress());
+
         return ResponseEntity.ok("Cập nhật thông tin thành công");
     }
 }
@@ -1,7 +1,10 @@
 package com.shopeefood.backend.controller;
 
-import com.shopeefood.backend.service.CloudinaryService;
+import com.shopeefood.backend.service.ImageUploadService;
+import com.shopeefood.backend.storage.ImageStorageUnavailableException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -12,17 +15,23 @@ import org.springframework.web.multipart.MultipartFile;
 public class FileUploadController {
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private ImageUploadService imageUploadService;
 
     @PostMapping("/image")
     public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
         try {
-            // Gọi service để upload lên Cloudinary
-            String imageUrl = cloudinaryService.uploadImage(file);
+            // Trả URL khi ảnh đã nằm trên storage
+            String imageUrl = imageUploadService.uploadImage(file);
 
-            // Trả về URL của Cloudinary
             return ResponseEntity.ok(imageUrl);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (ImageStorageUnavailableException e) {
+            // Hàng đợi đầy / storage chậm: báo client gửi lại sau
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ImageStorageUnavailableException.RETRY_AFTER_SECONDS))
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Lỗi upload ảnh: " + e.getMessage());
         }
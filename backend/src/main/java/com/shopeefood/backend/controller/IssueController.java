@@ -2,7 +2,9 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.dto.*;
 import com.shopeefood.backend.entity.Issue;
+import com.shopeefood.backend.entity.IssueEvent;
 import com.shopeefood.backend.service.IssueService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,7 +34,7 @@ public class IssueController {
 
     /**
      * GET /api/issues/{id}?actorId=1
-     * returns: { issue: ..., events: [...] }
+     * returns: { issue: ..., events: [...50 newest, oldest first], eventsCursor, hasMoreEvents }
      */
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, Object>> detail(@PathVariable Integer id, @RequestParam Integer actorId) {
@@ -40,15 +42,50 @@ public class IssueController {
     }
 
     /**
+     * Deprecated: use /page. Returns at most the 500 newest issues;
+     * X-Has-More: true means the list was cut off.
      * scope:
      * - MY (default): issues created by actor
      * - ASSIGNED: assignedOwnerId (OWNER) or assignedAdminId (ADMIN)
      * - ALL: admin only
      */
+    @Deprecated
     @GetMapping
     public ResponseEntity<List<Issue>> list(@RequestParam Integer actorId,
                                             @RequestParam(required = false, defaultValue = "MY") String scope) {
-        return ResponseEntity.ok(issueService.list(actorId, scope));
+        CursorPage<Issue> page = issueService.list(actorId, scope);
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header(HttpHeaders.LINK, "</api/issues/page>; rel=\"successor-version\"")
+                .header("X-Has-More", String.valueOf(page.isHasMore()))
+                .body(page.getItems());
+    }
+
+    /**
+     * GET /api/issues/page?actorId=1&scope=ALL&status=OPEN&category=FOOD&targetType=ORDER&cursor=...&limit=20
+     * Keyset pagination, newest first. Pass nextCursor back as cursor for the next page.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<Issue>> listPage(@RequestParam Integer actorId,
+                                                      @RequestParam(required = false, defaultValue = "MY") String scope,
+                                                      @RequestParam(required = false) String status,
+                                                      @RequestParam(required = false) String category,
+                                                      @RequestParam(required = false) String targetType,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(issueService.listPage(actorId, scope, status, category, targetType, cursor, limit));
+    }
+
+    /**
+     * GET /api/issues/{id}/events?actorId=1&before=<eventsCursor>&limit=50
+     * Older timeline page (oldest first within the page).
+     */
+    @GetMapping("/{id}/events")
+    public ResponseEntity<CursorPage<IssueEvent>> events(@PathVariable Integer id,
+                                                         @RequestParam Integer actorId,
+                                                         @RequestParam(required = false) String before,
+                                                         @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(issueService.listEvents(id, actorId, before, limit));
     }
 
     @PostMapping("/{id}/messages")
@@ -1,5 +1,6 @@
 package com.shopeefood.backend.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -9,6 +10,8 @@ import org.springframework.web.server.ResponseStatusException;
 import java.io.IOException;
 import java.util.Map;
 
+import com.shopeefood.backend.storage.ImageStorageUnavailableException;
+
 @RestControllerAdvice
 public class IssueExceptionHandler {
 
@@ -35,6 +38,14 @@ public class IssueExceptionHandler {
         return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", errorMessage));
     }
 
+    // Hàng đợi / storage ảnh quá tải: client gửi lại sau Retry-After giây
+    @ExceptionHandler(ImageStorageUnavailableException.class)
+    public ResponseEntity<Map<String, String>> imageStorageUnavailable(ImageStorageUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ImageStorageUnavailableException.RETRY_AFTER_SECONDS))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<Map<String, String>> handleResponseStatusException(ResponseStatusException ex) {
         HttpStatus status = (HttpStatus) ex.getStatusCode();
@@ -2,6 +2,7 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.Owner;
 import com.shopeefood.backend.repository.OwnerRepository;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -19,6 +20,7 @@ public class OwnerController {
     // Lấy Owner ID từ Account ID
     @GetMapping("/byAccount/{accountId}")
     public ResponseEntity<?> getOwnerIdByAccount(@PathVariable Integer accountId) {
+        accountId = RequestPrincipal.resolveActorId(accountId);
         Optional<Owner> ownerOpt = ownerRepository.findByAccount_Id(accountId);
         if (ownerOpt.isPresent()) {
             Integer ownerId = ownerOpt.get().getId();
@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.shopeefood.backend.dto.OwnerDashboardResponse;
 import com.shopeefood.backend.service.OwnerDashboardService;
+import com.shopeefood.backend.security.RequestPrincipal;
 
 @RestController
 @RequestMapping("/api/owner/dashboard")
@@ -23,6 +24,7 @@ public class OwnerDashboardController {
             @RequestParam(required = false) Integer restaurantId,
             @RequestParam String startDate,
             @RequestParam String endDate) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
         return ownerDashboardService.getFullDashboardData(ownerId, restaurantId, startDate, endDate);
     }
 }
\ No newline at end of file
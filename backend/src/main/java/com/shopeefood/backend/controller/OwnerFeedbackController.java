@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.shopeefood.backend.dto.OwnerFeedbackDTO;
 import com.shopeefood.backend.dto.RestaurantFilterDTO;
 import com.shopeefood.backend.service.OwnerFeedbackService;
+import com.shopeefood.backend.security.RequestPrincipal;
 
 import lombok.RequiredArgsConstructor;
 
@@ -30,6 +31,7 @@ public class OwnerFeedbackController {
     // Endpoint 1: Lấy danh sách Nhà hàng (SỬA ĐỔI để nhận ownerId)
     @GetMapping("/restaurants")
     public List<RestaurantFilterDTO> getOwnerRestaurantsForFilter(@RequestParam Integer ownerId) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
         // Truyền ownerId nhận được từ tham số query vào Service
         return ownerFeedbackService.getRestaurantsByOwner(ownerId);
     }
@@ -43,6 +45,7 @@ public class OwnerFeedbackController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
 
         // Truyền ownerId nhận được vào Service
         return ownerFeedbackService.getFeedbacksByOwner(
@@ -58,6 +61,7 @@ public class OwnerFeedbackController {
     // và ownerId)
     @GetMapping("/{feedbackId}")
     public OwnerFeedbackDTO getFeedbackDetail(@PathVariable Integer feedbackId, @RequestParam Integer ownerId) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
         // Truyền ownerId nhận được vào Service
         return ownerFeedbackService.getFeedbackById(feedbackId, ownerId);
     }
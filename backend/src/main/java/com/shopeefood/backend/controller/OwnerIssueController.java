@@ -22,6 +22,7 @@ import com.shopeefood.backend.dto.IssueEventRequest;
 import com.shopeefood.backend.dto.IssueResponseDTO; 
 import com.shopeefood.backend.entity.IssueEvent;
 import com.shopeefood.backend.service.OwnerIssueService;
+import com.shopeefood.backend.security.RequestPrincipal;
 
 @RestController
 @RequestMapping("/api/owner/issues")
@@ -42,6 +43,7 @@ public class OwnerIssueController {
             @RequestParam(required = false) String search,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
 
         // Sắp xếp theo updatedAt mới nhất
         Pageable pageable = PageRequest.of(page, size, Sort.by("updatedAt").descending());
@@ -65,6 +67,7 @@ public class OwnerIssueController {
     public ResponseEntity<IssueEvent> postEvent(
             @PathVariable Integer id,
             @RequestBody IssueEventRequest request) {
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         return ResponseEntity.ok(issueService.addEvent(id, request));
     }
 
@@ -75,6 +78,7 @@ public class OwnerIssueController {
     public ResponseEntity<IssueResponseDTO> handleDecision(
             @PathVariable Integer id,
             @RequestBody IssueDecisionRequest request) { 
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         return ResponseEntity.ok(issueService.handleDecision(id, request));
     }
 }
\ No newline at end of file
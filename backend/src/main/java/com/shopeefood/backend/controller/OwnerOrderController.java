@@ -12,9 +12,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.shopeefood.backend.dto.CursorPage;
 import com.shopeefood.backend.dto.OrderDTO;
 import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.service.OrderService;
+import com.shopeefood.backend.security.RequestPrincipal;
 
 @RestController
 @RequestMapping("/api/owner/orders")
@@ -37,10 +39,30 @@ public class OwnerOrderController {
 
             @RequestParam(defaultValue = "createdAt") String sortField,
             @RequestParam(defaultValue = "desc") String sortDir) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
         return orderService.getOrdersForOwner(ownerId, restaurantId, status, page, size,
                 search, from, to, sortField, sortDir);
     }
 
+    // Lấy danh sách đơn hàng cho Owner theo cursor (mới nhất trước), trang sâu không chậm dần như page/size
+    // VD: /api/owner/orders/page?ownerId=1&restaurantId=2&status=PENDING&limit=20&includeTotal=true
+    // Trang sau: gửi lại nextCursor của trang trước qua tham số cursor
+    @GetMapping("/page")
+    public CursorPage<OrderDTO> getOrderPage(
+            @RequestParam Integer ownerId,
+            @RequestParam(required = false) Integer restaurantId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
+        return orderService.getOrderPageForOwner(ownerId, restaurantId, status, search, from, to,
+                cursor, limit, includeTotal);
+    }
+
     // Cập nhật trạng thái đơn hàng (Logic đã được đơn giản hóa)
     @PutMapping("/{orderId}/status")
     public OrderDTO updateStatus(
@@ -1,5 +1,7 @@
 package com.shopeefood.backend.controller;
 
+import java.io.IOException;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -17,10 +19,13 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.shopeefood.backend.dto.OwnerProductDTO;
 import com.shopeefood.backend.dto.ProductUpdateRequestDTO;
+import com.shopeefood.backend.service.ImageUploadService;
 import com.shopeefood.backend.service.OwnerProductService;
+import com.shopeefood.backend.security.RequestPrincipal;
 
 import lombok.RequiredArgsConstructor;
 
@@ -31,6 +36,7 @@ import lombok.RequiredArgsConstructor;
 public class OwnerProductController {
 
     private final OwnerProductService ownerProductService;
+    private final ImageUploadService imageUploadService;
 
     // Lấy danh sách sản phẩm
     @GetMapping
@@ -41,6 +47,7 @@ public class OwnerProductController {
             @RequestParam(required = false) Boolean isAvailable,
             @RequestParam(required = false) String search,
             @PageableDefault(size = 10, sort = "id", direction = Sort.Direction.DESC) Pageable pageable) {
+        ownerId = RequestPrincipal.resolveActorId(ownerId);
 
         return ResponseEntity.ok(ownerProductService.getProductsByOwner(ownerId, restaurantId, categoryId, isAvailable, search, pageable));
     }
@@ -57,7 +64,8 @@ public class OwnerProductController {
             @RequestPart("productRequest") ProductUpdateRequestDTO requestDto,
             @RequestPart(value = "imageFile", required = false) MultipartFile imageFile) {
         
-        return ResponseEntity.status(HttpStatus.CREATED).body(ownerProductService.createProduct(requestDto, imageFile));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ownerProductService.createProduct(requestDto, uploadIfPresent(imageFile)));
     }
 
     // CẬP NHẬT
@@ -67,7 +75,7 @@ public class OwnerProductController {
             @RequestPart("productRequest") ProductUpdateRequestDTO requestDto,
             @RequestPart(value = "imageFile", required = false) MultipartFile imageFile) {
 
-        return ResponseEntity.ok(ownerProductService.updateProduct(productId, requestDto, imageFile));
+        return ResponseEntity.ok(ownerProductService.updateProduct(productId, requestDto, uploadIfPresent(imageFile)));
     }
 
     // XÓA MỀM
@@ -76,4 +84,16 @@ public class OwnerProductController {
         ownerProductService.deleteProduct(productId);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    // Lưu ảnh trước khi vào transaction của service: chờ storage không giữ kết nối DB
+    private String uploadIfPresent(MultipartFile imageFile) {
+        if (imageFile == null || imageFile.isEmpty()) {
+            return null;
+        }
+        try {
+            return imageUploadService.uploadImage(imageFile);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi upload ảnh.");
+        }
+    }
+}
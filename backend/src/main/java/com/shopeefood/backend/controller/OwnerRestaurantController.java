@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.List;
 import java.util.Map;
 import com.shopeefood.backend.dto.RestaurantRegistrationRequest;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.web.multipart.MultipartFile;
 
 @RestController
@@ -26,6 +27,7 @@ public class OwnerRestaurantController {
     @GetMapping
     public ResponseEntity<List<RestaurantDTO>> getOwnerRestaurants(
             @RequestParam Integer accountId) {
+        accountId = RequestPrincipal.resolveActorId(accountId);
         List<RestaurantDTO> restaurants = ownerRestaurantService.getRestaurantsByOwnerId(accountId);
         return ResponseEntity.ok(restaurants);
     }
@@ -39,6 +41,7 @@ public class OwnerRestaurantController {
             @PathVariable Integer restaurantId,
             @RequestParam Integer accountId,
             @RequestBody Map<String, String> statusUpdate) { // Sử dụng Map<String, String>
+        accountId = RequestPrincipal.resolveActorId(accountId);
 
         String newStatusString = statusUpdate.get("status");
 
@@ -67,6 +70,7 @@ public class OwnerRestaurantController {
     public ResponseEntity<?> updateRestaurantDetails(
             @PathVariable Integer restaurantId,
             @RequestBody RestaurantRegistrationRequest request) { 
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
 
         try {
             RestaurantDTO updatedRestaurant = ownerRestaurantService.updateRestaurantDetails(
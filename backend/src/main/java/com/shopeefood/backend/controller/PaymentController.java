@@ -2,10 +2,13 @@ package com.shopeefood.backend.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.shopeefood.backend.dto.PaymentLinkDTO;
+import com.shopeefood.backend.payment.PaymentGatewayUnavailableException;
 import com.shopeefood.backend.payment.vnpay.VnpayService;
+import com.shopeefood.backend.service.PaymentInboxService;
 import com.shopeefood.backend.service.PaymentService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,21 +21,26 @@ public class PaymentController {
 
     private final PaymentService paymentService;
     private final VnpayService vnpayService;
+    private final PaymentInboxService paymentInboxService;
 
     @PostMapping("/create-link/{orderId}")
     public ResponseEntity<?> createPaymentLink(@PathVariable Integer orderId) {
         try {
             PaymentLinkDTO dto = paymentService.createPaymentLink(orderId);
             return ResponseEntity.ok(dto);
+        } catch (PaymentGatewayUnavailableException e) {
+            // PayOS chậm / lỗi: báo client thử lại sau hoặc chọn VNPay / COD
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    // Chỉ xác thực chữ ký + ghi vào inbox rồi trả lời ngay, cập nhật đơn chạy ở worker (PaymentInboxService)
     @PostMapping("/webhook")
     public ResponseEntity<?> webhook(@RequestBody JsonNode body) {
         try {
-            paymentService.processPayOSWebhook(body);
+            paymentInboxService.receive(paymentService.verifyPayOSWebhook(body));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -41,7 +49,9 @@ public class PaymentController {
 
     @PostMapping("/confirm-success")
     public ResponseEntity<?> confirmSuccess(@RequestParam("orderId") Integer orderId) {
-        paymentService.markPaidFromClient(orderId);
+        // Mỗi đơn chỉ ghi nhận 1 lần dù client gọi lại nhiều lần; lần trước FAILED thì client gọi lại sẽ được xử lý lại
+        paymentInboxService.receive(new PaymentInboxService.InboxEvent(
+                PaymentInboxService.GATEWAY_CLIENT, "order-" + orderId, orderId, null, true, null));
         return ResponseEntity.ok().build();
     }
 
@@ -67,7 +77,11 @@ public class PaymentController {
     @PostMapping("/vnpay/confirm-return")
     public ResponseEntity<?> confirmVnpayReturn(@RequestParam Map<String, String> params) {
         try {
-            return ResponseEntity.ok(vnpayService.confirmReturn(params));
+            VnpayService.VerifiedReturn verified = vnpayService.verifyReturn(params);
+            if (verified.event() != null) {
+                paymentInboxService.receive(verified.event());
+            }
+            return ResponseEntity.ok(verified.result());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -2,15 +2,20 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.Product;
 import com.shopeefood.backend.repository.ProductRepository;
+import com.shopeefood.backend.service.ImageUploadService;
+import com.shopeefood.backend.service.MenuSnapshotService;
+import com.shopeefood.backend.service.MenuSnapshotService.MenuSnapshot;
 import com.shopeefood.backend.service.ProductService;
 import com.shopeefood.backend.dto.ProductCreationRequest;
 import com.shopeefood.backend.dto.ProductUpdateRequestDTO;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/products")
@@ -21,21 +26,36 @@ public class ProductController {
     private ProductRepository productRepository;
     @Autowired
     private ProductService productService;
+    @Autowired
+    private MenuSnapshotService menuSnapshotService;
+    @Autowired
+    private ImageUploadService imageUploadService;
 
     @GetMapping
-    public List<Product> getProducts(
+    public ResponseEntity<?> getProducts(
             @RequestParam(required = false) Integer categoryId,
-            @RequestParam(required = false) Integer restaurantId) {
+            @RequestParam(required = false) Integer restaurantId,
+            WebRequest request) {
 
         if (categoryId != null) {
-            return productRepository.findByCategoryIdWithDetails(categoryId);
+            return ResponseEntity.ok(productRepository.findByCategoryIdWithDetails(categoryId));
         }
 
         if (restaurantId != null) {
-            return productRepository.findByRestaurantIdWithDetails(restaurantId);
+            // Thực đơn dựng sẵn: không đổi kể từ lần xem trước -> 304
+            MenuSnapshot menu = menuSnapshotService.getMenu(restaurantId);
+            if (request.checkNotModified(menu.etag())) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .eTag(menu.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(menu.json());
         }
 
-        return productRepository.findAll();
+        // Không lọc -> không trả toàn bộ món của hệ thống
+        return ResponseEntity.badRequest().body("Vui lòng chọn nhà hàng hoặc danh mục");
     }
 
     // Tạo sản phẩm
@@ -44,7 +64,9 @@ public class ProductController {
             @RequestPart("productRequest") ProductCreationRequest request,
             @RequestPart("imageFile") MultipartFile imageFile) throws Exception {
 
-        Product newProduct = productService.createNewProduct(request, imageFile);
+        // Lưu ảnh trước khi vào transaction của service: chờ storage không giữ kết nối DB
+        String imageUrl = imageUploadService.uploadImage(imageFile);
+        Product newProduct = productService.createNewProduct(request, imageUrl);
         return ResponseEntity.ok(newProduct);
     }
 
@@ -56,7 +78,8 @@ public class ProductController {
             @RequestPart(value = "imageFile", required = false) MultipartFile imageFile) throws Exception {
 
         request.setId(id.intValue());
-        Product updatedProduct = productService.updateProduct(request, imageFile);
+        String imageUrl = imageFile != null && !imageFile.isEmpty() ? imageUploadService.uploadImage(imageFile) : null;
+        Product updatedProduct = productService.updateProduct(request, imageUrl);
         return ResponseEntity.ok(updatedProduct);
     }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import com.shopeefood.backend.dto.RestaurantLandingDTO;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -65,6 +66,7 @@ public class RestaurantController {
 
     @PostMapping("/register")
     public ResponseEntity<?> registerRestaurant(@RequestBody RestaurantRegistrationRequest request) {
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         try {
             Restaurant newRestaurant = restaurantService.registerRestaurant(request);
             return ResponseEntity.ok(newRestaurant);
@@ -78,6 +80,7 @@ public class RestaurantController {
     // API lấy danh sách quán đã đăng ký của 1 user cụ thể
     @GetMapping("/account/{accountId}")
     public ResponseEntity<List<Restaurant>> getRestaurantsByAccountId(@PathVariable Integer accountId) {
+        accountId = RequestPrincipal.resolveActorId(accountId);
         List<Restaurant> list = restaurantRepository.findByOwnerId(accountId);
         return ResponseEntity.ok(list);
     }
@@ -102,6 +105,7 @@ public class RestaurantController {
             @RequestParam(required = false) Double lat, // Nhận vĩ độ từ Frontend
             @RequestParam(required = false) Double lng, // Nhận kinh độ từ Frontend
             @RequestParam(required = false, defaultValue = "newest") String sort, // Nhận kiểu sort
+            @RequestParam(required = false) Double radius, // Bán kính tìm kiếm (km), không bắt buộc
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "8") int size) {
 
@@ -109,7 +113,7 @@ public class RestaurantController {
 
         // Gọi Service với các tham số mới
         Page<RestaurantLandingDTO> result = restaurantService.getActiveRestaurantsWithRating(keyword, lat, lng, sort,
-                pageable);
+                radius, pageable);
 
         return ResponseEntity.ok(result);
     }
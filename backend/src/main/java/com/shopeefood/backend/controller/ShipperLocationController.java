@@ -0,0 +1,51 @@
+package com.shopeefood.backend.controller;
+
+import com.shopeefood.backend.dto.LocationFixBatchRequest;
+import com.shopeefood.backend.service.ShipperLocationService;
+import com.shopeefood.backend.security.RequestPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/shipper/location")
+@CrossOrigin(origins = { "http://localhost:5173", "http://localhost:5174" })
+public class ShipperLocationController {
+
+    // Giới hạn số fix trong 1 request (app gửi vài giây 1 lần)
+    private static final int MAX_FIXES_PER_REQUEST = 100;
+
+    @Autowired
+    private ShipperLocationService shipperLocationService;
+
+    /**
+     * Nhận lô vị trí GPS của shipper. Chỉ cập nhật bộ nhớ, DB được ghi định kỳ theo lô.
+     * POST: http://localhost:8080/api/shipper/location?shipperId=1
+     * Body: { "fixes": [ { "lat": 21.02, "lng": 105.85, "recordedAt": 1700000000000 } ] }
+     */
+    @PostMapping
+    public ResponseEntity<?> ingest(
+            @RequestParam Integer shipperId,
+            @RequestBody LocationFixBatchRequest request) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
+        List<LocationFixBatchRequest.Fix> fixes = request != null ? request.getFixes() : null;
+        if (fixes == null || fixes.isEmpty()) {
+            return ResponseEntity.badRequest().body("Không có vị trí nào");
+        }
+        if (fixes.size() > MAX_FIXES_PER_REQUEST) {
+            return ResponseEntity.badRequest().body("Tối đa " + MAX_FIXES_PER_REQUEST + " vị trí mỗi lần gửi");
+        }
+
+        try {
+            int accepted = shipperLocationService.ingest(shipperId, fixes);
+            return ResponseEntity.accepted().body(Map.of(
+                    "accepted", accepted,
+                    "dropped", fixes.size() - accepted));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.*;
 import com.shopeefood.backend.repository.*;
+import com.shopeefood.backend.service.ShipperLocationService;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,19 +27,25 @@ public class ShipperMapController {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private ShipperLocationService shipperLocationService;
+
     /**
      * Lấy vị trí shipper và customer cho bản đồ giao hàng
      * GET: http://localhost:8080/api/shipper/map/locations?shipperId=1
      */
     @GetMapping("/locations")
     public ResponseEntity<List<Map<String, Object>>> getMapLocations(@RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         List<Map<String, Object>> locations = new ArrayList<>();
         
         // 1. Lấy vị trí shipper hiện tại
         Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
         if (shipper != null) {
-            Double shipperLat = shipper.getCurrentLat();
-            Double shipperLong = shipper.getCurrentLong();
+            // Vị trí mới nhất: ưu tiên vị trí vừa gửi lên (bộ nhớ), chưa có thì lấy trong DB
+            ShipperLocationService.Position position = shipperLocationService.resolve(shipper);
+            Double shipperLat = position != null ? position.lat() : null;
+            Double shipperLong = position != null ? position.lng() : null;
             
             // Validate tọa độ: Kiểm tra xem có nằm trong phạm vi hợp lý của Việt Nam không
             // Hà Nội: lat ~21.0, long ~105.8
@@ -46,14 +54,10 @@ public class ShipperMapController {
                     && shipperLat >= 8.0 && shipperLat <= 23.0
                     && shipperLong >= 102.0 && shipperLong <= 110.0;
             
-            // Nếu tọa độ không hợp lệ, set mặc định về Hà Nội
+            // Nếu tọa độ không hợp lệ, hiển thị mặc định ở Hà Nội (chỉ để hiển thị, không ghi DB trong GET)
             if (!isValidLocation) {
                 shipperLat = 21.0285; // Hà Nội
                 shipperLong = 105.8542;
-                // Tự động cập nhật lại database với tọa độ đúng
-                shipper.setCurrentLat(shipperLat);
-                shipper.setCurrentLong(shipperLong);
-                shipperRepository.save(shipper);
             }
             
             Map<String, Object> shipperLocation = new HashMap<>();
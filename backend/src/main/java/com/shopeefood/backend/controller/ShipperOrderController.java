@@ -2,10 +2,24 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.*;
 import com.shopeefood.backend.repository.*;
+import com.shopeefood.backend.service.AvailableOrderFeedService;
+import com.shopeefood.backend.service.DailyStatsService;
+import com.shopeefood.backend.service.DispatchService;
+import com.shopeefood.backend.service.EtaService;
+import com.shopeefood.backend.service.OrderClaimService;
+import com.shopeefood.backend.service.OverdueOrderService;
+import com.shopeefood.backend.service.RestaurantRatingService;
+import com.shopeefood.backend.service.ShipperLocationService;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +43,36 @@ public class ShipperOrderController {
     @Autowired
     private FeedbackRepository feedbackRepository;
 
+    @Autowired
+    private RestaurantRatingService restaurantRatingService;
+
+    @Autowired
+    private AvailableOrderFeedService availableOrderFeedService;
+
+    @Autowired
+    private OrderClaimService orderClaimService;
+
+    @Autowired
+    private OverdueOrderService overdueOrderService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DailyStatsService dailyStatsService;
+
+    @Autowired
+    private ShipperLocationService shipperLocationService;
+
+    @Autowired
+    private DispatchService dispatchService;
+
+    @Autowired
+    private EtaService etaService;
+
+    // Đổi mỗi lần khởi động để ETag cũ của client không trùng version mới
+    private final long feedEpoch = System.currentTimeMillis();
+
     /**
      * Lấy danh sách đơn hàng có sẵn cho shipper
      * Chỉ hiển thị đơn đã được Owner duyệt (status = PREPARING) và chưa có shipper
@@ -36,62 +80,28 @@ public class ShipperOrderController {
      * GET: http://localhost:8080/api/shipper/orders/available
      */
     @GetMapping("/available")
-    public ResponseEntity<List<Map<String, Object>>> getAvailableOrders() {
-        List<Order> orders = orderRepository.findAvailableOrders();
-
-        // Load tất cả Customer một lần để tránh N+1 problem
-        List<Integer> customerIds = orders.stream()
-                .filter(o -> o.getCustomer() != null)
-                .map(o -> o.getCustomer().getId())
-                .distinct()
-                .collect(Collectors.toList());
-        Map<Integer, Customer> customerMap = customerRepository.findAllById(customerIds).stream()
-                .collect(Collectors.toMap(Customer::getAccountId, c -> c));
-
-        return ResponseEntity.ok(orders.stream().map(order -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", order.getId());
-            map.put("restaurantName", order.getRestaurant() != null ? order.getRestaurant().getName() : "N/A");
-            map.put("shippingAddress", order.getShippingAddress());
-            map.put("totalAmount", order.getTotalAmount());
-            map.put("paymentMethod", order.getPaymentMethod());
-            map.put("createdAt", order.getCreatedAt());
-            map.put("note", order.getNote());
-            
-            // Lấy tọa độ customer (địa chỉ giao hàng): ưu tiên từ đơn hàng, nếu không có thì lấy từ Customer
-            Double shippingLat = order.getShippingLat();
-            Double shippingLong = order.getShippingLong();
-
-            // Nếu đơn hàng chưa có tọa độ, thử lấy từ Customer
-            if ((shippingLat == null || shippingLong == null) && order.getCustomer() != null) {
-                Customer customer = customerMap.get(order.getCustomer().getId());
-                if (customer != null) {
-                    if (customer.getLatitude() != null && customer.getLongitude() != null) {
-                        shippingLat = customer.getLatitude();
-                        shippingLong = customer.getLongitude();
-
-                        // Tự động cập nhật tọa độ vào đơn hàng để lần sau không phải lấy lại
-                        order.setShippingLat(shippingLat);
-                        order.setShippingLong(shippingLong);
-                        orderRepository.save(order);
-                    }
-                }
-            }
+    public ResponseEntity<List<Map<String, Object>>> getAvailableOrders(WebRequest request) {
+        // Danh sách chưa đổi kể từ lần poll trước -> 304, không query DB
+        String etag = "\"" + feedEpoch + "-" + availableOrderFeedService.getVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(availableOrderFeedService.getAvailableOrders());
+    }
 
-            map.put("shippingLat", shippingLat);
-            map.put("shippingLong", shippingLong);
-            
-            // Thêm tọa độ restaurant
-            if (order.getRestaurant() != null) {
-                map.put("restaurantLat", order.getRestaurant().getLatitude());
-                map.put("restaurantLong", order.getRestaurant().getLongitude());
-            } else {
-                map.put("restaurantLat", null);
-                map.put("restaurantLong", null);
-            }
-            
-            return map;
-        }).collect(Collectors.toList()));
+    /**
+     * Kênh SSE đẩy đơn có sẵn cho shipper (thay cho poll /available)
+     * Sự kiện: snapshot (danh sách ban đầu), order-available, order-taken, ping
+     * GET: http://localhost:8080/api/shipper/orders/available/stream?shipperId=1&lat=..&lng=..&radiusKm=5
+     */
+    @GetMapping(value = "/available/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailableOrders(
+            @RequestParam Integer shipperId,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lng,
+            @RequestParam(required = false) Double radiusKm) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
+        return availableOrderFeedService.subscribe(shipperId, lat, lng, radiusKm);
     }
 
     /**
@@ -100,6 +110,7 @@ public class ShipperOrderController {
      */
     @GetMapping("/my-orders")
     public ResponseEntity<List<Map<String, Object>>> getMyOrders(@RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         if (shipperRepository.findById(shipperId).orElse(null) == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -172,13 +183,11 @@ public class ShipperOrderController {
             map.put("completedAt", order.getCompletedAt());
             map.put("note", order.getNote());
             map.put("estimatedDeliveryTimeMinutes",
-                    order.getEstimatedDeliveryTimeMinutes() != null ? order.getEstimatedDeliveryTimeMinutes() : 2);
+                    order.resolveEstimatedDeliveryMinutes());
 
             // Tính toán quá hạn
             if (order.getShippedAt() != null) {
-                Integer estimatedMinutes = order.getEstimatedDeliveryTimeMinutes() != null
-                        ? order.getEstimatedDeliveryTimeMinutes()
-                        : 2;
+                int estimatedMinutes = order.resolveEstimatedDeliveryMinutes();
                 java.time.LocalDateTime estimatedCompletionTime = order.getShippedAt().plusMinutes(estimatedMinutes);
                 boolean isOverdue = false;
                 if ("SHIPPING".equals(order.getStatus())) {
@@ -224,8 +233,9 @@ public class ShipperOrderController {
                 Shipper orderShipper = shipperRepository.findById(order.getShipper().getAccountId()).orElse(null);
                 if (orderShipper != null) {
                     // Validate và sửa tọa độ nếu không hợp lệ
-                    Double shipperLat = orderShipper.getCurrentLat();
-                    Double shipperLong = orderShipper.getCurrentLong();
+                    ShipperLocationService.Position position = shipperLocationService.resolve(orderShipper);
+                    Double shipperLat = position != null ? position.lat() : null;
+                    Double shipperLong = position != null ? position.lng() : null;
                     
                     boolean isValidLocation = shipperLat != null && shipperLong != null
                             && shipperLat >= 8.0 && shipperLat <= 23.0
@@ -259,41 +269,57 @@ public class ShipperOrderController {
      */
     @PostMapping("/{orderId}/accept")
     public ResponseEntity<?> acceptOrder(@PathVariable Integer orderId, @RequestParam Integer shipperId) {
-        Order order = orderRepository.findById(orderId).orElse(null);
-        if (order == null) {
-            return ResponseEntity.badRequest().body("Đơn hàng không tồn tại");
-        }
-
-        if (order.getShipper() != null) {
-            return ResponseEntity.badRequest().body("Đơn hàng đã được nhận bởi shipper khác");
-        }
-
-        if (!order.getStatus().equals("PREPARING")) {
-            return ResponseEntity.badRequest()
-                    .body("Đơn hàng chưa được Owner duyệt. Chỉ có thể nhận đơn ở trạng thái PREPARING");
-        }
-
-        Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
-        if (shipper == null) {
-            return ResponseEntity.badRequest().body("Shipper không tồn tại");
-        }
-
-        if (!shipper.getStatus().equals("ONLINE")) {
-            return ResponseEntity.badRequest().body("Shipper phải ở trạng thái ONLINE để nhận đơn");
-        }
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
+        OrderClaimService.ClaimResult result = orderClaimService.claim(orderId, shipperId);
+        return switch (result) {
+            case CLAIMED -> ResponseEntity.ok(result.getMessage());
+            // Shipper khác đã nhận trước -> 409 để client tải lại danh sách
+            case ALREADY_TAKEN -> ResponseEntity.status(HttpStatus.CONFLICT).body(result.getMessage());
+            default -> ResponseEntity.badRequest().body(result.getMessage());
+        };
+    }
 
-        order.setShipper(shipper);
-        order.setStatus("SHIPPING");
-        // Set thời gian shipper nhận đơn (chưa bắt đầu giao)
-        order.setShippedAt(java.time.LocalDateTime.now());
-        // deliveryStartedAt sẽ được set khi shipper bắt đầu giao hàng
-        orderRepository.save(order);
+    /**
+     * Lời mời nhận đơn đang chờ của shipper (điều phối tự động), 204 nếu không có
+     * GET: http://localhost:8080/api/shipper/orders/offer?shipperId=...
+     */
+    @GetMapping("/offer")
+    public ResponseEntity<?> getOffer(@RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
+        DispatchService.Offer offer = dispatchService.getOffer(shipperId);
+        if (offer == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(dispatchService.toView(offer));
+    }
 
-        // Cập nhật shipper status thành BUSY
-        shipper.setStatus("BUSY");
-        shipperRepository.save(shipper);
+    /**
+     * Shipper chấp nhận lời mời nhận đơn
+     * POST: http://localhost:8080/api/shipper/orders/{orderId}/offer/accept?shipperId=...
+     */
+    @PostMapping("/{orderId}/offer/accept")
+    public ResponseEntity<?> acceptOffer(@PathVariable Integer orderId, @RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
+        OrderClaimService.ClaimResult result = dispatchService.acceptOffer(orderId, shipperId);
+        return switch (result) {
+            case CLAIMED -> ResponseEntity.ok(result.getMessage());
+            case ALREADY_TAKEN, OFFER_NOT_FOUND -> ResponseEntity.status(HttpStatus.CONFLICT).body(result.getMessage());
+            default -> ResponseEntity.badRequest().body(result.getMessage());
+        };
+    }
 
-        return ResponseEntity.ok("Nhận đơn hàng thành công!");
+    /**
+     * Shipper từ chối lời mời nhận đơn (đơn được mời shipper khác)
+     * POST: http://localhost:8080/api/shipper/orders/{orderId}/offer/decline?shipperId=...
+     */
+    @PostMapping("/{orderId}/offer/decline")
+    public ResponseEntity<?> declineOffer(@PathVariable Integer orderId, @RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
+        if (!dispatchService.declineOffer(orderId, shipperId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(OrderClaimService.ClaimResult.OFFER_NOT_FOUND.getMessage());
+        }
+        return ResponseEntity.ok("Đã từ chối đơn hàng");
     }
 
     /**
@@ -303,6 +329,7 @@ public class ShipperOrderController {
     @PostMapping("/{orderId}/start-delivery")
     @Transactional
     public ResponseEntity<?> startDelivery(@PathVariable Integer orderId, @RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null) {
             return ResponseEntity.badRequest().body("Đơn hàng không tồn tại");
@@ -350,12 +377,21 @@ public class ShipperOrderController {
             order.setCompletedAt(java.time.LocalDateTime.now());
         }
 
+        String oldStatus = order.getStatus();
         order.setStatus(status);
 
         orderRepository.save(order);
+        if ("PREPARING".equals(oldStatus)) {
+            eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.taken(order.getId()));
+        }
+        dailyStatsService.orderChanged(order, oldStatus);
+        if (status.equals("COMPLETED") && !"COMPLETED".equals(oldStatus)) {
+            etaService.recordCompleted(order);
+        }
 
         // Nếu đơn hàng hoàn thành hoặc hủy, cập nhật shipper status về ONLINE
         if (status.equals("COMPLETED") || status.equals("CANCELLED")) {
+            overdueOrderService.forget(orderId);
             if (order.getShipper() != null) {
                 Shipper shipper = order.getShipper();
                 shipper.setStatus("ONLINE");
@@ -375,6 +411,7 @@ public class ShipperOrderController {
             @PathVariable Integer orderId,
             @RequestParam Integer shipperId,
             @RequestBody Map<String, Object> updates) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null) {
             return ResponseEntity.badRequest().body("Đơn hàng không tồn tại");
@@ -416,6 +453,7 @@ public class ShipperOrderController {
     public ResponseEntity<?> deleteOrder(
             @PathVariable Integer orderId,
             @RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null) {
             return ResponseEntity.badRequest().body("Đơn hàng không tồn tại");
@@ -433,6 +471,7 @@ public class ShipperOrderController {
 
         // Xóa đơn hàng (cascade sẽ tự động xóa OrderItem)
         orderRepository.delete(order);
+        dailyStatsService.orderChanged(order, order.getStatus());
 
         return ResponseEntity.ok("Xóa đơn hàng thành công!");
     }
@@ -445,6 +484,7 @@ public class ShipperOrderController {
     public ResponseEntity<?> getOrderDetail(
             @PathVariable Integer orderId,
             @RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null) {
             return ResponseEntity.badRequest().body("Đơn hàng không tồn tại");
@@ -473,13 +513,11 @@ public class ShipperOrderController {
         result.put("shippedAt", order.getShippedAt());
         result.put("completedAt", order.getCompletedAt());
         result.put("estimatedDeliveryTimeMinutes",
-                order.getEstimatedDeliveryTimeMinutes() != null ? order.getEstimatedDeliveryTimeMinutes() : 2);
+                order.resolveEstimatedDeliveryMinutes());
 
         // Tính toán xem đơn hàng có quá hạn không
         if (order.getShippedAt() != null) {
-            Integer estimatedMinutes = order.getEstimatedDeliveryTimeMinutes() != null
-                    ? order.getEstimatedDeliveryTimeMinutes()
-                    : 2;
+            int estimatedMinutes = order.resolveEstimatedDeliveryMinutes();
             java.time.LocalDateTime estimatedCompletionTime = order.getShippedAt().plusMinutes(estimatedMinutes);
 
             boolean isOverdue = false;
@@ -576,6 +614,7 @@ public class ShipperOrderController {
             @PathVariable Integer orderId,
             @RequestParam Integer shipperId,
             @RequestBody Map<String, Object> request) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         try {
             // Kiểm tra đơn hàng
             Order order = orderRepository.findById(orderId).orElse(null);
@@ -618,6 +657,13 @@ public class ShipperOrderController {
 
             feedbackRepository.save(feedback);
 
+            // Feedback mới do shipper tạo (chưa có rating quán) vẫn được tính vào tổng số review
+            if (existingFeedbackOpt.isEmpty()) {
+                restaurantRatingService.onFeedbackSaved(
+                        feedback.getRestaurant() != null ? feedback.getRestaurant().getId() : null,
+                        null, feedback.getRating(), true);
+            }
+
             return ResponseEntity.ok("Đánh giá đơn hàng thành công!");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Lỗi khi đánh giá: " + e.getMessage());
@@ -632,6 +678,7 @@ public class ShipperOrderController {
     public ResponseEntity<?> getShipperFeedback(
             @PathVariable Integer orderId,
             @RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         try {
             Order order = orderRepository.findById(orderId).orElse(null);
             if (order == null) {
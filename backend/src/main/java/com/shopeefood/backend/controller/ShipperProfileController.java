@@ -2,8 +2,11 @@ package com.shopeefood.backend.controller;
 
 import com.shopeefood.backend.entity.*;
 import com.shopeefood.backend.repository.*;
-import com.shopeefood.backend.service.CloudinaryService;
+import com.shopeefood.backend.service.ImageUploadService;
+import com.shopeefood.backend.service.ShipperLocationService;
+import com.shopeefood.backend.service.PrincipalCache;
 import com.shopeefood.backend.dto.ChangePasswordRequest;
+import com.shopeefood.backend.security.RequestPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -29,11 +32,17 @@ public class ShipperProfileController {
     private AccountRepository accountRepository;
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private ImageUploadService imageUploadService;
+
+    @Autowired
+    private ShipperLocationService shipperLocationService;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -43,6 +52,7 @@ public class ShipperProfileController {
      */
     @GetMapping("/profile")
     public ResponseEntity<Map<String, Object>> getProfile(@RequestParam Integer shipperId) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
         if (shipper == null) {
             return ResponseEntity.notFound().build();
@@ -53,8 +63,9 @@ public class ShipperProfileController {
         result.put("fullName", shipper.getFullName());
         result.put("licensePlate", shipper.getLicensePlate());
         result.put("vehicleType", shipper.getVehicleType());
-        result.put("currentLat", shipper.getCurrentLat());
-        result.put("currentLong", shipper.getCurrentLong());
+        ShipperLocationService.Position position = shipperLocationService.resolve(shipper);
+        result.put("currentLat", position != null ? position.lat() : null);
+        result.put("currentLong", position != null ? position.lng() : null);
         result.put("status", shipper.getStatus());
         result.put("avatar", shipper.getAvatar());
         result.put("licenseImage", shipper.getLicenseImage());
@@ -75,6 +86,7 @@ public class ShipperProfileController {
     public ResponseEntity<?> updateProfile(
             @RequestParam Integer shipperId,
             @RequestBody Map<String, Object> updates) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
         if (shipper == null) {
             return ResponseEntity.badRequest().body("Shipper không tồn tại");
@@ -93,11 +105,9 @@ public class ShipperProfileController {
         if (updates.containsKey("avatar")) {
             shipper.setAvatar((String) updates.get("avatar"));
         }
-        if (updates.containsKey("currentLat")) {
-            shipper.setCurrentLat(((Number) updates.get("currentLat")).doubleValue());
-        }
-        if (updates.containsKey("currentLong")) {
-            shipper.setCurrentLong(((Number) updates.get("currentLong")).doubleValue());
+        // Vị trí đi qua ShipperLocationService (ghi DB theo lô), không ghi cùng entity
+        if (updates.get("currentLat") instanceof Number lat && updates.get("currentLong") instanceof Number lng) {
+            shipperLocationService.update(shipperId, lat.doubleValue(), lng.doubleValue());
         }
 
         // Cập nhật thông tin Account (email, phone)
@@ -112,6 +122,7 @@ public class ShipperProfileController {
                         return ResponseEntity.badRequest().body("Email đã được sử dụng bởi tài khoản khác");
                     }
                     account.setEmail(newEmail);
+                    principalCache.invalidate(account.getId());
                 }
             }
 
@@ -132,10 +143,10 @@ public class ShipperProfileController {
      * POST: http://localhost:8080/api/shipper/profile/avatar
      */
     @PostMapping("/profile/avatar")
-    @Transactional
     public ResponseEntity<?> uploadAvatar(
             @RequestParam Integer shipperId,
             @RequestParam("file") MultipartFile file) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         try {
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest().body("Vui lòng chọn ảnh!");
@@ -146,8 +157,8 @@ public class ShipperProfileController {
                 return ResponseEntity.badRequest().body("Shipper không tồn tại");
             }
 
-            // Upload ảnh lên Cloudinary
-            String imageUrl = cloudinaryService.uploadImage(file);
+            // Upload ảnh (chờ lưu xong lên storage, không giữ transaction trong lúc chờ)
+            String imageUrl = imageUploadService.uploadImage(file);
 
             // Lưu URL ảnh vào database
             shipper.setAvatar(imageUrl);
@@ -167,10 +178,10 @@ public class ShipperProfileController {
      * POST: http://localhost:8080/api/shipper/profile/license-image
      */
     @PostMapping("/profile/license-image")
-    @Transactional
     public ResponseEntity<?> uploadLicenseImage(
             @RequestParam Integer shipperId,
             @RequestParam("file") MultipartFile file) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         try {
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest().body("Vui lòng chọn ảnh!");
@@ -181,8 +192,8 @@ public class ShipperProfileController {
                 return ResponseEntity.badRequest().body("Shipper không tồn tại");
             }
 
-            // Upload ảnh lên Cloudinary
-            String imageUrl = cloudinaryService.uploadImage(file);
+            // Upload ảnh (chờ lưu xong lên storage, không giữ transaction trong lúc chờ)
+            String imageUrl = imageUploadService.uploadImage(file);
 
             // Lưu URL ảnh vào database
             shipper.setLicenseImage(imageUrl);
@@ -204,6 +215,7 @@ public class ShipperProfileController {
     @PutMapping("/change-password")
     @Transactional
     public ResponseEntity<?> changePassword(@RequestBody ChangePasswordRequest request) {
+        request.setAccountId(RequestPrincipal.resolveActorId(request.getAccountId()));
         try {
             // Kiểm tra dữ liệu
             if (request.getAccountId() == null) {
@@ -250,6 +262,7 @@ public class ShipperProfileController {
     public ResponseEntity<?> updateStatus(
             @RequestParam Integer shipperId,
             @RequestParam String status) {
+        shipperId = RequestPrincipal.resolveActorId(shipperId);
         Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
 
         // Nếu chưa có Shipper, tự động tạo mới
@@ -332,8 +345,9 @@ public class ShipperProfileController {
             response.put("fullName", shipper.getFullName());
             response.put("licensePlate", shipper.getLicensePlate());
             response.put("vehicleType", shipper.getVehicleType());
-            response.put("currentLat", shipper.getCurrentLat());
-            response.put("currentLong", shipper.getCurrentLong());
+            ShipperLocationService.Position position = shipperLocationService.resolve(shipper);
+            response.put("currentLat", position != null ? position.lat() : null);
+            response.put("currentLong", position != null ? position.lng() : null);
             response.put("avatar", shipper.getAvatar());
 
             // Lấy SĐT an toàn từ Account
@@ -0,0 +1,106 @@
+package com.shopeefood.backend.dispatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Ghép đơn chờ shipper với shipper rảnh theo lô.
+ * 1. Dựng SpatialGrid trên vị trí shipper, mỗi đơn lấy k shipper gần nhất trong bán kính làm ứng viên
+ * 2. Gom mọi cặp (đơn, shipper) thành 1 danh sách chi phí (khoảng cách), sắp xếp tăng dần
+ * 3. Tham lam: duyệt từ cặp rẻ nhất, nhận cặp nếu cả đơn và shipper đều chưa được ghép
+ * 4. Đơn chưa ghép được (mọi ứng viên đã bị đơn khác lấy) tìm lại ứng viên trong các shipper còn lại
+ * Đơn truyền vào theo thứ tự ưu tiên (đơn chờ lâu trước): cùng khoảng cách thì đơn đứng trước được ghép trước.
+ * Không phụ thuộc Spring để chạy được trong scripts/DispatchSimulator.java.
+ */
+public final class DispatchPlanner {
+
+    // Số lượt tìm lại ứng viên cho các đơn chưa ghép được
+    private static final int MAX_ROUNDS = 3;
+
+    /**
+     * Đơn hoặc shipper cần ghép.
+     */
+    public record Point(int id, double lat, double lng) {
+    }
+
+    /**
+     * Kết quả ghép: đơn orderId mời shipper shipperId, cách distanceKm.
+     */
+    public record Assignment(int orderId, int shipperId, double distanceKm) {
+    }
+
+    private record Edge(int order, int shipper, double distanceKm) {
+    }
+
+    private DispatchPlanner() {
+    }
+
+    /**
+     * excluded(orderId, shipperId) = true: không mời lại (shipper đã từ chối / để hết hạn lời mời đơn này).
+     */
+    public static List<Assignment> plan(List<Point> orders, List<Point> shippers, int candidatesPerOrder,
+            double maxKm, double cellKm, BiPredicate<Integer, Integer> excluded) {
+        List<Assignment> result = new ArrayList<>();
+        if (orders.isEmpty() || shippers.isEmpty()) {
+            return result;
+        }
+
+        double[] lats = new double[shippers.size()];
+        double[] lngs = new double[shippers.size()];
+        for (int i = 0; i < shippers.size(); i++) {
+            lats[i] = shippers.get(i).lat();
+            lngs[i] = shippers.get(i).lng();
+        }
+        SpatialGrid grid = new SpatialGrid(lats, lngs, cellKm);
+
+        boolean[] shipperTaken = new boolean[shippers.size()];
+        boolean[] orderDone = new boolean[orders.size()];
+        List<Integer> pending = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            pending.add(i);
+        }
+
+        for (int round = 0; round < MAX_ROUNDS && !pending.isEmpty(); round++) {
+            List<Edge> edges = new ArrayList<>(pending.size() * candidatesPerOrder);
+            List<Integer> withCandidates = new ArrayList<>();
+            for (int o : pending) {
+                Point order = orders.get(o);
+                List<SpatialGrid.Neighbor> candidates = grid.nearest(order.lat(), order.lng(),
+                        candidatesPerOrder, maxKm,
+                        s -> !shipperTaken[s] && !excluded.test(order.id(), shippers.get(s).id()));
+                for (SpatialGrid.Neighbor candidate : candidates) {
+                    edges.add(new Edge(o, candidate.index(), candidate.distanceKm()));
+                }
+                if (!candidates.isEmpty()) {
+                    withCandidates.add(o);
+                }
+            }
+            if (edges.isEmpty()) {
+                break;
+            }
+            // Sort ổn định: cùng khoảng cách thì đơn ưu tiên hơn (index nhỏ) đứng trước
+            edges.sort(Comparator.comparingDouble(Edge::distanceKm).thenComparingInt(Edge::order));
+
+            int assigned = 0;
+            for (Edge edge : edges) {
+                if (orderDone[edge.order()] || shipperTaken[edge.shipper()]) {
+                    continue;
+                }
+                orderDone[edge.order()] = true;
+                shipperTaken[edge.shipper()] = true;
+                result.add(new Assignment(orders.get(edge.order()).id(), shippers.get(edge.shipper()).id(),
+                        edge.distanceKm()));
+                assigned++;
+            }
+            if (assigned == 0) {
+                break;
+            }
+            // Đơn không có ứng viên nào trong bán kính thì lượt sau cũng không có
+            pending = withCandidates;
+            pending.removeIf(o -> orderDone[o]);
+        }
+        return result;
+    }
+}
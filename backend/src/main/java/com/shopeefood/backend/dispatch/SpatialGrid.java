@@ -0,0 +1,137 @@
+package com.shopeefood.backend.dispatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * Chỉ mục không gian dạng lưới đều cho 1 tập điểm cố định (vị trí shipper tại thời điểm điều phối).
+ * Tìm k điểm gần nhất bằng cách quét các vòng ô quanh điểm cần tìm, dừng khi vòng tiếp theo
+ * chắc chắn xa hơn điểm thứ k đã tìm được (hoặc xa hơn bán kính tối đa).
+ * Khoảng cách tính theo phép chiếu phẳng quanh vĩ độ trung bình (sai số không đáng kể ở phạm vi
+ * vài km trong 1 thành phố) thay cho Haversine để tránh hàm lượng giác trong vòng lặp nóng.
+ * Không thread-safe, dựng lại mỗi lượt điều phối.
+ */
+public class SpatialGrid {
+
+    private static final double KM_PER_DEGREE = 111.32;
+    // Hệ số an toàn cho việc ô theo kinh độ hẹp dần khi xa xích đạo
+    private static final double RING_SAFETY = 0.9;
+
+    /**
+     * 1 kết quả: index của điểm trong danh sách ban đầu và khoảng cách (km).
+     */
+    public record Neighbor(int index, double distanceKm) {
+    }
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final double cellKm;
+    private final double cellLatDeg;
+    private final double cellLngDeg;
+    // cos(vĩ độ trung bình): quy đổi độ kinh -> km
+    private final double lngScale;
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+
+    /**
+     * lats[i], lngs[i]: tọa độ điểm i. cellKm: cạnh ô lưới (nên xấp xỉ bán kính tìm kiếm thường gặp).
+     */
+    public SpatialGrid(double[] lats, double[] lngs, double cellKm) {
+        if (lats.length != lngs.length) {
+            throw new IllegalArgumentException("lats và lngs phải cùng độ dài");
+        }
+        this.lats = lats;
+        this.lngs = lngs;
+        this.cellKm = cellKm;
+
+        double meanLat = 0;
+        for (double lat : lats) {
+            meanLat += lat;
+        }
+        meanLat = lats.length > 0 ? meanLat / lats.length : 0;
+        this.lngScale = Math.max(Math.cos(Math.toRadians(meanLat)), 0.01);
+        this.cellLatDeg = cellKm / KM_PER_DEGREE;
+        this.cellLngDeg = cellKm / (KM_PER_DEGREE * lngScale);
+
+        for (int i = 0; i < lats.length; i++) {
+            cells.computeIfAbsent(key(row(lats[i]), col(lngs[i])), k -> new ArrayList<>()).add(i);
+        }
+    }
+
+    public int size() {
+        return lats.length;
+    }
+
+    /**
+     * Tối đa k điểm gần (lat, lng) nhất trong bán kính maxKm mà accept(index) = true,
+     * sắp xếp theo khoảng cách tăng dần.
+     */
+    public List<Neighbor> nearest(double lat, double lng, int k, double maxKm, IntPredicate accept) {
+        // Max-heap giữ k điểm tốt nhất
+        PriorityQueue<Neighbor> best = new PriorityQueue<>(
+                Comparator.comparingDouble(Neighbor::distanceKm).reversed());
+        int centerRow = row(lat);
+        int centerCol = col(lng);
+        int maxRing = (int) Math.ceil(maxKm / (cellKm * RING_SAFETY)) + 1;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Mọi điểm ở vòng này trở ra cách ít nhất (ring - 1) ô
+            double ringMinKm = Math.max(0, ring - 1) * cellKm * RING_SAFETY;
+            if (ringMinKm > maxKm || (best.size() == k && ringMinKm > best.peek().distanceKm())) {
+                break;
+            }
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                // Hàng giữa chỉ lấy 2 ô biên của vòng
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int c = centerCol - ring; c <= centerCol + ring; c += step) {
+                    List<Integer> members = cells.get(key(r, c));
+                    if (members == null) {
+                        continue;
+                    }
+                    for (int index : members) {
+                        if (!accept.test(index)) {
+                            continue;
+                        }
+                        double d = distanceKm(lat, lng, lats[index], lngs[index]);
+                        if (d > maxKm) {
+                            continue;
+                        }
+                        if (best.size() < k) {
+                            best.add(new Neighbor(index, d));
+                        } else if (d < best.peek().distanceKm()) {
+                            best.poll();
+                            best.add(new Neighbor(index, d));
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Neighbor::distanceKm));
+        return result;
+    }
+
+    private double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = lat2 - lat1;
+        double dLng = (lng2 - lng1) * lngScale;
+        return KM_PER_DEGREE * Math.sqrt(dLat * dLat + dLng * dLng);
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellLatDeg);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor(lng / cellLngDeg);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
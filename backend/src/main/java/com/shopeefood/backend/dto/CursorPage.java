@@ -0,0 +1,30 @@
+package com.shopeefood.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 1 trang của danh sách phân trang keyset.
+ * Lấy trang tiếp theo: gửi lại nextCursor (tham số cursor). hasMore = false -> đã hết, nextCursor = null.
+ * total: tổng số dòng, chỉ có khi danh sách hỗ trợ và client yêu cầu (không có thì bỏ khỏi JSON).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+    private boolean hasMore;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long total;
+
+    public CursorPage(List<T> items, String nextCursor, boolean hasMore) {
+        this(items, nextCursor, hasMore, null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.shopeefood.backend.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Lô vị trí GPS shipper gửi lên (app gom vài fix rồi gửi 1 lần).
+ */
+@Data
+public class LocationFixBatchRequest {
+    private List<Fix> fixes;
+
+    @Data
+    public static class Fix {
+        private Double lat;
+        private Double lng;
+        private Long recordedAt; // Thời điểm thiết bị ghi nhận (epoch millis), null -> lúc server nhận
+    }
+}
@@ -0,0 +1,15 @@
+package com.shopeefood.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MapClusterDTO {
+    private String type;         // "RESTAURANT" hoặc "SHIPPER"
+    private Double latitude;     // Tâm cụm (trung bình tọa độ các điểm trong ô)
+    private Double longitude;
+    private Long count;          // Số điểm trong cụm
+}
@@ -0,0 +1,25 @@
+package com.shopeefood.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Dữ liệu bản đồ admin cho 1 khung nhìn.
+ * - clustered = true: chỉ có clusters (zoom xa hoặc quá nhiều điểm)
+ * - full = true: markers là toàn bộ điểm trong khung, client thay thế hết
+ * - full = false: chỉ các shipper đổi vị trí sau version client gửi lên; client cập nhật markers
+ *   và xóa các shipper trong removedShipperIds (đang hiển thị ở snapshot trước, đã ra khỏi khung nhìn
+ *   hoặc mất vị trí)
+ */
+@Data
+public class MapViewportResponse {
+    private long version;        // Gửi lại ở lần gọi sau (tham số since)
+    private Long snapshot;       // Gửi lại ở lần gọi sau (tham số snapshot), null khi gom cụm
+    private boolean clustered;
+    private boolean full;
+    private List<MapClusterDTO> clusters = new ArrayList<>();
+    private List<MapLocationDTO> markers = new ArrayList<>();
+    private List<Integer> removedShipperIds = new ArrayList<>();
+}
@@ -1,5 +1,6 @@
 package com.shopeefood.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 import jakarta.persistence.Column;
@@ -11,6 +12,7 @@ import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 import lombok.Data;
 
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 @Data
 @Entity
 @Table(name = "accounts")
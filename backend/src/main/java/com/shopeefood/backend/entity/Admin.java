@@ -14,7 +14,7 @@ public class Admin {
     @Column(name = "full_name", nullable = false)
     private String fullName;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @MapsId
     @JoinColumn(name = "account_id")
     private Account account;
@@ -1,5 +1,6 @@
 package com.shopeefood.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode; // Thêm cái này để tránh lỗi Lombok với List
@@ -8,6 +9,7 @@ import lombok.ToString;
 import java.util.ArrayList; // Nhớ import
 import java.util.List;
 
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 @Data
 @Entity
 @Table(name = "categories")
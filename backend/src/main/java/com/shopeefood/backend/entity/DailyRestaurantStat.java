@@ -0,0 +1,61 @@
+package com.shopeefood.backend.entity;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Bảng tổng hợp doanh thu theo quán theo ngày (ngày = ngày tạo đơn, giống các dashboard cũ).
+ * Số liệu theo món nằm ở bảng daily_product_stats (chỉ đọc / ghi bằng native query).
+ * Dashboard admin / owner chỉ đọc 2 bảng này thay vì SUM trên toàn bộ orders.
+ */
+@Data
+@Entity
+@Table(name = "daily_restaurant_stats")
+@IdClass(DailyRestaurantStat.Key.class)
+public class DailyRestaurantStat {
+
+    @Id
+    @Column(name = "restaurant_id")
+    private Integer restaurantId;
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    // Tổng total_amount các đơn COMPLETED (doanh thu toàn sàn - dashboard admin)
+    @Column(nullable = false)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(name = "completed_orders", nullable = false)
+    private Long completedOrders = 0L;
+
+    // Doanh thu thuần của quán: subtotal - owner_refund_amount, đơn COMPLETED + REFUNDED (dashboard owner)
+    @Column(name = "net_revenue", nullable = false)
+    private BigDecimal netRevenue = BigDecimal.ZERO;
+
+    // Số đơn COMPLETED + REFUNDED
+    @Column(name = "settled_orders", nullable = false)
+    private Long settledOrders = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Integer restaurantId;
+        private LocalDate statDate;
+    }
+}
@@ -0,0 +1,51 @@
+package com.shopeefood.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Ảnh đã upload, khóa theo SHA-256 nội dung: upload lại cùng ảnh thì dùng lại URL cũ.
+ */
+@Data
+@Entity
+@Table(name = "image_assets")
+public class ImageAsset {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
+    @Column(nullable = false, length = 1024)
+    private String url;
+
+    @Column(nullable = false, length = 16)
+    private String format;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    private Integer width;
+
+    private Integer height;
+
+    // Định dạng + chiều rộng các bản thu nhỏ đã lưu, vd "jpg" và "320,800" (rỗng nếu ảnh nhỏ hơn mọi bản)
+    @Column(name = "variant_format", length = 16)
+    private String variantFormat;
+
+    @Column(name = "variant_widths", length = 64)
+    private String variantWidths;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,56 @@
+package com.shopeefood.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Email chờ gửi (outbox). Ghi cùng transaction với nghiệp vụ, MailOutboxDispatcher gửi sau.
+ */
+@Data
+@Entity
+@Table(name = "mail_outbox")
+public class MailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    // Xóa (thay bằng MailOutboxDispatcher.REDACTED_BODY) khi đã gửi, hoặc khi FAILED nếu sensitive
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String body;
+
+    // Nội dung chứa thông tin đăng nhập (mật khẩu mới...): không giữ lại kể cả khi gửi lỗi hẳn
+    @Column(nullable = false)
+    private boolean sensitive;
+
+    @Column(nullable = false, length = 16)
+    private String status; // PENDING, SENT, FAILED
+
+    private Integer attempts;
+
+    // Chưa tới mốc này thì chưa gửi (thử lại có giãn cách / đang có instance khác gửi)
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+}
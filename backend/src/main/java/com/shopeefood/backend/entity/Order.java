@@ -1,5 +1,6 @@
 package com.shopeefood.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -14,16 +15,66 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import lombok.Data;
 
+// Quan hệ lazy trỏ tới entity này là proxy Hibernate: bỏ các field nội bộ của proxy khi trả JSON
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 @Data
 @Entity
 @Table(name = "orders")
+// Mọi quan hệ to-one đều lazy; mỗi màn hình đọc đơn khai báo sẵn những gì cần load cùng đơn (1 query).
+// Account.customerProfile là phía ngược của @OneToOne nên Hibernate luôn nạp ngay: mọi Account có trong graph
+// phải kéo theo customerProfile, nếu không mỗi khách / shipper khác nhau tốn thêm 1 câu SELECT.
+@NamedEntityGraph(name = Order.GRAPH_OWNER_BOARD, attributeNodes = {
+        @NamedAttributeNode("restaurant"),
+        @NamedAttributeNode(value = "customer", subgraph = "customer"),
+        @NamedAttributeNode(value = "shipper", subgraph = "shipper"),
+        @NamedAttributeNode(value = "orderItems", subgraph = "items")
+}, subgraphs = {
+        @NamedSubgraph(name = "customer", attributeNodes = @NamedAttributeNode("customerProfile")),
+        @NamedSubgraph(name = "shipper", attributeNodes = @NamedAttributeNode(value = "account", subgraph = "shipperAccount")),
+        @NamedSubgraph(name = "shipperAccount", attributeNodes = @NamedAttributeNode("customerProfile")),
+        @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product"))
+})
+@NamedEntityGraph(name = Order.GRAPH_SHIPPER_LIST, attributeNodes = {
+        @NamedAttributeNode("restaurant"),
+        @NamedAttributeNode(value = "customer", subgraph = "customer")
+}, subgraphs = {
+        @NamedSubgraph(name = "customer", attributeNodes = @NamedAttributeNode("customerProfile"))
+})
+@NamedEntityGraph(name = Order.GRAPH_ADMIN_LIST, attributeNodes = {
+        @NamedAttributeNode("restaurant"),
+        @NamedAttributeNode(value = "customer", subgraph = "customer"),
+        @NamedAttributeNode(value = "shipper", subgraph = "shipper")
+}, subgraphs = {
+        @NamedSubgraph(name = "customer", attributeNodes = @NamedAttributeNode("customerProfile")),
+        @NamedSubgraph(name = "shipper", attributeNodes = @NamedAttributeNode(value = "account", subgraph = "shipperAccount")),
+        @NamedSubgraph(name = "shipperAccount", attributeNodes = @NamedAttributeNode("customerProfile"))
+})
+@NamedEntityGraph(name = Order.GRAPH_CART_VIEW, attributeNodes = {
+        @NamedAttributeNode("restaurant")
+})
 public class Order {
+    // Màn đơn của chủ quán: quán, khách (+ hồ sơ), shipper (+ tài khoản), món
+    public static final String GRAPH_OWNER_BOARD = "Order.ownerBoard";
+    // Danh sách / bản đồ đơn của shipper: quán, khách
+    public static final String GRAPH_SHIPPER_LIST = "Order.shipperList";
+    // Danh sách đơn của admin: quán, khách, shipper (+ tài khoản); món load theo lô
+    public static final String GRAPH_ADMIN_LIST = "Order.adminList";
+    // Giỏ hàng: quán (món đọc riêng qua OrderItemRepository.findCartItemsByOrderIds)
+    public static final String GRAPH_CART_VIEW = "Order.cartView";
+
+    // Thời gian giao dự kiến cho đơn chưa có ETA (đơn tạo trước khi có EtaService)
+    public static final int FALLBACK_DELIVERY_MINUTES = 30;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -31,11 +82,11 @@ public class Order {
     @Column(name = "order_number", length = 50, unique = true)
     private String orderNumber;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id")
     private Account customer;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "restaurant_id")
     private Restaurant restaurant;
 
@@ -87,7 +138,11 @@ public class Order {
     private LocalDateTime completedAt;
 
     @Column(name = "estimated_delivery_time_minutes")
-    private Integer estimatedDeliveryTimeMinutes = 2; // Mặc định 2 phút (để test - có thể đổi lại 30 phút sau)
+    private Integer estimatedDeliveryTimeMinutes; // Tính lúc shipper nhận đơn (EtaService)
+
+    // Hạn giao hàng = shippedAt + estimatedDeliveryTimeMinutes (có index để tìm đơn quá hạn)
+    @Column(name = "due_at")
+    private LocalDateTime dueAt;
     // ----------------------------------
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
@@ -105,12 +160,33 @@ public class Order {
             status = "PENDING";
         if (paymentMethod == null)
             paymentMethod = "PAYOS";
+        syncDueAt();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        syncDueAt();
+    }
+
+    // Tính lại hạn giao mỗi khi shippedAt / thời gian dự kiến thay đổi
+    private void syncDueAt() {
+        if (shippedAt == null) {
+            dueAt = null;
+            return;
+        }
+        dueAt = shippedAt.plusMinutes(resolveEstimatedDeliveryMinutes());
+    }
+
+    // Thời gian giao dự kiến; đơn cũ chưa có ETA dùng FALLBACK_DELIVERY_MINUTES
+    public int resolveEstimatedDeliveryMinutes() {
+        return estimatedDeliveryTimeMinutes != null ? estimatedDeliveryTimeMinutes : FALLBACK_DELIVERY_MINUTES;
     }
 
-    // Helper tạo order number
-    public static String buildOrderNumber(Integer id) {
+    // Helper tạo order number từ sequence order_number_seq (OrderRepository.nextOrderNumberValue)
+    // Không cắt theo % 10000 nên không trùng khi > 10000 đơn
+    public static String buildOrderNumber(long sequenceValue) {
         String date = LocalDateTime.now().format(DateTimeFormatter.BASIC_ISO_DATE);
-        String sequence = String.format("%04d", id % 10000);
+        String sequence = String.format("%04d", sequenceValue);
         return "FO" + date + sequence; // FO202512050001
     }
 }
\ No newline at end of file
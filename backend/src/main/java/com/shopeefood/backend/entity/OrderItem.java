@@ -1,6 +1,7 @@
 package com.shopeefood.backend.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.shopeefood.backend.util.OptionFingerprint;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.math.BigDecimal;
@@ -10,18 +11,21 @@ import java.util.List;
 @Entity
 @Table(name = "order_items")
 public class OrderItem {
+    // Dùng sequence (thay cho IDENTITY) để Hibernate gom INSERT nhiều dòng thành batch.
+    // allocationSize phải bằng INCREMENT BY của sequence (scripts/checkout_batch_insert.sql)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_id_seq", allocationSize = 50)
     private Integer id;
 
     // Liên kết ngược về đơn hàng cha
     @JsonIgnore
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id")
     private Order order;
 
     // Món ăn gì
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
@@ -30,6 +34,11 @@ public class OrderItem {
     // Giá tại thời điểm đặt (đề phòng sau này quán tăng giá)
     private BigDecimal price;
 
+    // Fingerprint tập option đã chọn (OptionFingerprint): giỏ trong bộ nhớ gộp dòng theo
+    // (product_id, option_fingerprint) mà không cần so order_item_options
+    @Column(name = "option_fingerprint", length = OptionFingerprint.LENGTH)
+    private String optionFingerprint;
+
     // ==== MỚI: danh sách options của dòng này ====
     @OneToMany(
             mappedBy = "orderItem",
@@ -37,4 +46,13 @@ public class OrderItem {
             orphanRemoval = true
     )
     private List<OrderItemOption> options;
+
+    @PrePersist
+    protected void onCreate() {
+        if (optionFingerprint == null) {
+            optionFingerprint = OptionFingerprint.of(options == null
+                    ? List.of()
+                    : options.stream().map(o -> o.getProductDetail().getId()).toList());
+        }
+    }
 }
\ No newline at end of file
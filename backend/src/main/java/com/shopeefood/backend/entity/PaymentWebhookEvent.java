@@ -0,0 +1,55 @@
+package com.shopeefood.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Callback thanh toán đã xác thực chữ ký, chờ xử lý (inbox).
+ * (gateway, transactionCode) là duy nhất: cổng gửi lại cùng 1 callback chỉ tạo 1 dòng.
+ */
+@Data
+@Entity
+@Table(name = "payment_webhook_inbox")
+public class PaymentWebhookEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String gateway; // PAYOS, VNPAY, CLIENT
+
+    @Column(name = "transaction_code", nullable = false, length = 64)
+    private String transactionCode;
+
+    @Column(name = "order_id", nullable = false)
+    private Integer orderId;
+
+    private Long amount;
+
+    private Boolean success;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false, length = 16)
+    private String status; // PENDING, DONE, FAILED
+
+    private Integer attempts;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "received_at")
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
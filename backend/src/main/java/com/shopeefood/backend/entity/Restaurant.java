@@ -2,10 +2,14 @@ package com.shopeefood.backend.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.shopeefood.backend.util.GeoUtils;
 import java.time.LocalDateTime;
 import java.util.List;
 
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 @Data
 @Entity
 @Table(name = "restaurants")
@@ -21,6 +25,12 @@ public class Restaurant {
     private Double latitude;
     private Double longitude;
 
+    // Geohash của (latitude, longitude), luôn được đồng bộ qua setter
+    // -> dùng để lọc nhanh quán gần nhất bằng index thay vì tính acos() từng dòng
+    @Column(name = "geohash", length = 12)
+    @JsonIgnore
+    private String geohash;
+
     @Column(name = "cover_image", columnDefinition = "TEXT")
     private String coverImage;
 
@@ -34,7 +44,7 @@ public class Restaurant {
     @JsonManagedReference
     private List<Product> products;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     private Owner owner;
 
@@ -52,4 +62,20 @@ public class Restaurant {
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+        this.geohash = GeoUtils.encodeGeohash(this.latitude, this.longitude);
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+        this.geohash = GeoUtils.encodeGeohash(this.latitude, this.longitude);
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void syncGeohash() {
+        this.geohash = GeoUtils.encodeGeohash(this.latitude, this.longitude);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.shopeefood.backend.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Bảng tổng hợp rating của từng quán (cập nhật cộng dồn mỗi khi có Feedback).
+ * Landing page và sort theo rating chỉ đọc bảng này thay vì AVG/COUNT trên feedbacks.
+ */
+@Data
+@Entity
+@Table(name = "restaurant_rating_stats")
+public class RestaurantRatingStat {
+    @Id
+    @Column(name = "restaurant_id")
+    private Integer restaurantId;
+
+    // Tổng điểm rating (chỉ tính feedback có rating)
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    // Số feedback có rating
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount = 0L;
+
+    // Tổng số feedback của quán (giống countByRestaurantId)
+    @Column(name = "review_count", nullable = false)
+    private Long reviewCount = 0L;
+
+    // = rating_sum / rating_count, lưu sẵn để ORDER BY dùng được index
+    @Column(name = "average_rating", precision = 6, scale = 4)
+    private BigDecimal averageRating;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,11 +1,13 @@
 package com.shopeefood.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.math.BigDecimal;
 import lombok.ToString;
 import lombok.EqualsAndHashCode;
 
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 @Data
 @Entity
 @Table(name = "shippers")
@@ -23,10 +25,12 @@ public class Shipper {
     @Column(name = "vehicle_type")
     private String vehicleType;
 
-    @Column(name = "current_lat")
+    // Vị trí chỉ được ghi qua ShipperLocationService (bulk UPDATE định kỳ), không ghi khi save cả entity
+    // để việc đổi status / profile không đè lên vị trí mới hơn
+    @Column(name = "current_lat", updatable = false)
     private Double currentLat;
 
-    @Column(name = "current_long")
+    @Column(name = "current_long", updatable = false)
     private Double currentLong;
 
     // Trạng thái: OFFLINE, ONLINE, BUSY
@@ -38,7 +42,7 @@ public class Shipper {
     @Column(name = "license_image")
     private String licenseImage; // URL ảnh giấy phép lái xe
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @MapsId
     @JoinColumn(name = "account_id")
     @ToString.Exclude
@@ -0,0 +1,146 @@
+package com.shopeefood.backend.eta;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mô hình dự đoán thời gian giao hàng (phút) từ lúc shipper nhận đơn:
+ *   ETA = thời gian lấy hàng (nhận đơn -> bắt đầu giao) + khoảng cách quán -> khách / tốc độ
+ * - Thời gian lấy hàng: trung bình theo giờ trong ngày
+ * - Tốc độ: tốc độ riêng của shipper x hệ số tắc đường của khung giờ
+ *   (tốc độ trung bình của giờ đó / tốc độ trung bình chung)
+ * Mỗi thống kê là trung bình trượt cập nhật từng mẫu (O(1)), shipper / khung giờ ít mẫu được
+ * kéo về giá trị chung để không dao động theo 1-2 đơn đầu tiên.
+ * Khoảng cách là đường chim bay, tốc độ học được đã bao gồm hệ số đường vòng.
+ * Không phụ thuộc Spring để chạy được trong scripts/EtaBacktest.java.
+ */
+public class EtaModel {
+
+    // Mẫu ngoài khoảng này coi là nhiễu (quên bấm hoàn thành, bấm nhầm...)
+    private static final double MIN_SPEED_KM_PER_MIN = 0.05; // 3 km/h
+    private static final double MAX_SPEED_KM_PER_MIN = 1.5; // 90 km/h
+    private static final double MIN_LEG_MINUTES = 0.5;
+    private static final double MAX_MINUTES = 180;
+    // Quãng quá ngắn cho tốc độ vô nghĩa (giao trong cùng tòa nhà)
+    private static final double MIN_SPEED_SAMPLE_KM = 0.2;
+
+    /**
+     * 1 chuyến đã giao xong. deliveryStartedAt có thể null (khi đó chỉ học thời gian lấy hàng không được).
+     */
+    public record Trip(Integer shipperId, double distanceKm, LocalDateTime shippedAt,
+            LocalDateTime deliveryStartedAt, LocalDateTime completedAt) {
+    }
+
+    /**
+     * Trung bình trượt: n mẫu đầu là trung bình cộng, sau đó mỗi mẫu mới nặng 1/window.
+     */
+    static final class RunningMean {
+        private final int window;
+        private long count;
+        private double mean;
+
+        RunningMean(int window) {
+            this.window = window;
+        }
+
+        synchronized void add(double value) {
+            count++;
+            mean += (value - mean) / Math.min(count, window);
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        /**
+         * Trung bình kéo về prior với trọng số priorWeight mẫu (ít mẫu -> gần prior).
+         */
+        synchronized double shrunk(double prior, double priorWeight) {
+            double n = Math.min(count, window);
+            return n == 0 ? prior : (n * mean + priorWeight * prior) / (n + priorWeight);
+        }
+    }
+
+    private final double defaultSpeedKmPerMin;
+    private final double defaultPickupMinutes;
+    private final int window;
+    private final double priorWeight;
+
+    private final RunningMean speed;
+    private final RunningMean pickup;
+    private final RunningMean[] speedByHour = new RunningMean[24];
+    private final RunningMean[] pickupByHour = new RunningMean[24];
+    private final Map<Integer, RunningMean> speedByShipper = new ConcurrentHashMap<>();
+
+    /**
+     * window: số mẫu gần nhất có ảnh hưởng; priorWeight: số mẫu "ảo" của giá trị chung khi trộn.
+     */
+    public EtaModel(double defaultSpeedKmPerMin, double defaultPickupMinutes, int window, double priorWeight) {
+        this.defaultSpeedKmPerMin = defaultSpeedKmPerMin;
+        this.defaultPickupMinutes = defaultPickupMinutes;
+        this.window = window;
+        this.priorWeight = priorWeight;
+        this.speed = new RunningMean(window);
+        this.pickup = new RunningMean(window);
+        for (int h = 0; h < 24; h++) {
+            speedByHour[h] = new RunningMean(window);
+            pickupByHour[h] = new RunningMean(window);
+        }
+    }
+
+    /**
+     * Học từ 1 chuyến đã giao. Trả về false nếu chuyến không dùng được (thiếu mốc thời gian / nhiễu).
+     */
+    public boolean record(Trip trip) {
+        if (trip.shippedAt() == null || trip.completedAt() == null || trip.deliveryStartedAt() == null) {
+            return false;
+        }
+        double pickupMinutes = minutesBetween(trip.shippedAt(), trip.deliveryStartedAt());
+        double legMinutes = minutesBetween(trip.deliveryStartedAt(), trip.completedAt());
+        if (pickupMinutes < 0 || pickupMinutes > MAX_MINUTES
+                || legMinutes < MIN_LEG_MINUTES || legMinutes > MAX_MINUTES) {
+            return false;
+        }
+
+        pickup.add(pickupMinutes);
+        pickupByHour[trip.shippedAt().getHour()].add(pickupMinutes);
+
+        if (trip.distanceKm() >= MIN_SPEED_SAMPLE_KM) {
+            double kmPerMin = trip.distanceKm() / legMinutes;
+            if (kmPerMin >= MIN_SPEED_KM_PER_MIN && kmPerMin <= MAX_SPEED_KM_PER_MIN) {
+                speed.add(kmPerMin);
+                speedByHour[trip.deliveryStartedAt().getHour()].add(kmPerMin);
+                if (trip.shipperId() != null) {
+                    speedByShipper.computeIfAbsent(trip.shipperId(), id -> new RunningMean(window)).add(kmPerMin);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Số phút dự kiến từ lúc nhận đơn tới lúc giao xong (chưa cộng thời gian dự phòng).
+     * shipperId null hoặc shipper mới -> dùng tốc độ chung.
+     */
+    public double estimateMinutes(Integer shipperId, double distanceKm, int hourOfDay) {
+        double globalPickup = pickup.shrunk(defaultPickupMinutes, priorWeight);
+        double pickupMinutes = pickupByHour[hourOfDay].shrunk(globalPickup, priorWeight);
+
+        double globalSpeed = speed.shrunk(defaultSpeedKmPerMin, priorWeight);
+        double congestion = speedByHour[hourOfDay].shrunk(globalSpeed, priorWeight) / globalSpeed;
+        RunningMean shipperStat = shipperId != null ? speedByShipper.get(shipperId) : null;
+        double shipperSpeed = shipperStat != null ? shipperStat.shrunk(globalSpeed, priorWeight) : globalSpeed;
+
+        return pickupMinutes + distanceKm / (shipperSpeed * congestion);
+    }
+
+    public long sampleCount() {
+        return pickup.count();
+    }
+
+    private static double minutesBetween(LocalDateTime from, LocalDateTime to) {
+        return Duration.between(from, to).toMillis() / 60_000.0;
+    }
+}
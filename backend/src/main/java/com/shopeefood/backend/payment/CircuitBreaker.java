@@ -0,0 +1,76 @@
+package com.shopeefood.backend.payment;
+
+/**
+ * Circuit breaker đơn giản cho lời gọi ra cổng thanh toán.
+ * - CLOSED: gọi bình thường, đếm số lỗi liên tiếp
+ * - Lỗi liên tiếp >= failureThreshold -> OPEN: từ chối ngay (không chờ timeout) trong openMillis
+ * - Hết openMillis -> HALF_OPEN: cho 1 lời gọi thử, thành công thì CLOSED, lỗi thì OPEN lại
+ * Thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * true nếu được phép gọi. Mỗi lần được phép phải báo lại bằng onSuccess() hoặc onFailure().
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.err.println("Circuit breaker " + name + ": đóng lại (dịch vụ đã hoạt động)");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            System.err.println("Circuit breaker " + name + ": mở sau " + consecutiveFailures + " lỗi liên tiếp");
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,16 @@
+package com.shopeefood.backend.payment;
+
+/**
+ * Cổng thanh toán không phản hồi / quá tải / đang bị circuit breaker chặn.
+ * Khác với lỗi nghiệp vụ (cổng trả về mã lỗi): lỗi này nên thử lại sau hoặc đổi phương thức thanh toán.
+ */
+public class PaymentGatewayUnavailableException extends RuntimeException {
+
+    public PaymentGatewayUnavailableException(String message) {
+        super(message);
+    }
+
+    public PaymentGatewayUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
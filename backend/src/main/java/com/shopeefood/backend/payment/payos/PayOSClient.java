@@ -0,0 +1,135 @@
+package com.shopeefood.backend.payment.payos;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.payment.CircuitBreaker;
+import com.shopeefood.backend.payment.PaymentGatewayUnavailableException;
+
+/**
+ * Client HTTP dùng chung cho API merchant của PayOS (tạo 1 lần trong PayOSConfig).
+ * - 1 HttpClient cho cả ứng dụng: tái sử dụng kết nối TCP/TLS giữa các lần tạo link
+ * - Timeout kết nối + timeout chờ phản hồi, không có lời gọi nào treo vô hạn
+ * - Giới hạn số lời gọi đồng thời (bulkhead): PayOS chậm thì request thứ maxConcurrent + 1 bị từ chối
+ *   sau acquireTimeout thay vì xếp hàng chiếm hết thread của Tomcat
+ * - Circuit breaker: PayOS lỗi liên tục thì từ chối ngay, không chờ timeout cho từng đơn
+ * Lỗi mạng / timeout / 5xx / 429 / quá tải -> PaymentGatewayUnavailableException (tính là lỗi cho breaker).
+ * PayOS trả mã lỗi nghiệp vụ (code != "00") -> RuntimeException (dịch vụ vẫn khỏe).
+ * Không phụ thuộc Spring để thử được với server giả: scripts/PayOSStubServer.java, kiểm tra trong PayOSClientTest.
+ */
+public class PayOSClient {
+
+    private static final String PAYMENT_REQUESTS_PATH = "/v2/payment-requests";
+    private static final String UNAVAILABLE_MESSAGE =
+            "Cổng thanh toán PayOS đang bận, vui lòng thử lại sau hoặc chọn phương thức thanh toán khác";
+
+    private final String baseUrl;
+    private final String clientId;
+    private final String apiKey;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+    private final CircuitBreaker circuitBreaker;
+    private final HttpClient httpClient;
+
+    public PayOSClient(String baseUrl, String clientId, String apiKey, ObjectMapper objectMapper,
+            Duration connectTimeout, Duration readTimeout, int maxConcurrent, Duration acquireTimeout,
+            CircuitBreaker circuitBreaker) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.clientId = clientId;
+        this.apiKey = apiKey;
+        this.objectMapper = objectMapper;
+        this.readTimeout = readTimeout;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.permits = new Semaphore(maxConcurrent);
+        this.circuitBreaker = circuitBreaker;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Tạo yêu cầu thanh toán (body đã ký). Trả về node "data" trong phản hồi của PayOS.
+     */
+    public JsonNode createPaymentRequest(JsonNode body) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayUnavailableException(UNAVAILABLE_MESSAGE, e);
+        }
+        // Quá tải phía mình: không tính là PayOS lỗi
+        if (!acquired) {
+            throw new PaymentGatewayUnavailableException(UNAVAILABLE_MESSAGE);
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            permits.release();
+            throw new PaymentGatewayUnavailableException(UNAVAILABLE_MESSAGE);
+        }
+
+        // Mỗi lần được breaker cho phép phải báo đúng 1 lần onSuccess()/onFailure() (kể cả lỗi bất ngờ),
+        // nếu không lượt thử HALF_OPEN bị giữ mãi và breaker không bao giờ đóng lại
+        HttpResponse<String> response = null;
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + PAYMENT_REQUESTS_PATH))
+                    .timeout(readTimeout)
+                    .header("Content-Type", "application/json")
+                    .header("x-client-id", clientId)
+                    .header("x-api-key", apiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            HttpResponse<String> sent = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (sent.statusCode() >= 500 || sent.statusCode() == 429) {
+                throw new PaymentGatewayUnavailableException(UNAVAILABLE_MESSAGE);
+            }
+            response = sent;
+        } catch (IOException e) {
+            // Gồm cả HttpTimeoutException (quá readTimeout) và lỗi kết nối
+            throw new PaymentGatewayUnavailableException(UNAVAILABLE_MESSAGE, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayUnavailableException(UNAVAILABLE_MESSAGE, e);
+        } finally {
+            if (response != null) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure();
+            }
+            permits.release();
+        }
+        return parseData(response.body());
+    }
+
+    private JsonNode parseData(String responseBody) {
+        JsonNode resNode;
+        try {
+            resNode = objectMapper.readTree(responseBody);
+        } catch (IOException e) {
+            throw new RuntimeException("PayOS error: phản hồi không hợp lệ", e);
+        }
+        if (!"00".equals(resNode.path("code").asText())) {
+            throw new RuntimeException("PayOS error: " + resNode.path("desc").asText());
+        }
+        return resNode.get("data");
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -13,6 +13,8 @@ import com.shopeefood.backend.entity.OrderItem;
 import com.shopeefood.backend.entity.OrderItemOption;
 import com.shopeefood.backend.entity.ProductDetail;
 import com.shopeefood.backend.repository.OrderItemRepository;
+import com.shopeefood.backend.service.CartStore;
+import com.shopeefood.backend.service.PaymentInboxService;
 
 
 import java.math.BigDecimal;
@@ -26,6 +28,7 @@ public class VnpayService {
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final TransactionRepository transactionRepository;
+    private final CartStore cartStore;
 
     @Value("${vnpay.tmn-code}")
     private String tmnCode;
@@ -48,6 +51,8 @@ public class VnpayService {
      */
     @Transactional
     public String createPaymentUrl(Integer orderId, String clientIp) {
+        // Giỏ hàng còn thay đổi chưa ghi -> ghi xuống DB trước khi kiểm tra món / tổng tiền
+        cartStore.flushForCheckout(orderId);
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
@@ -109,25 +114,25 @@ public class VnpayService {
     }
 
     /**
-     * Verify VNPay params + update order/transaction.
+     * Verify VNPay params (no DB work). The order/transaction update runs later
+     * through PaymentInboxService; event is null when the params are not valid.
      * Called by FE (order-success page) in DEV MODE.
      */
-    @Transactional
-    public ConfirmResult confirmReturn(Map<String, String> vnpParams) {
+    public VerifiedReturn verifyReturn(Map<String, String> vnpParams) {
         if (vnpParams == null || vnpParams.isEmpty()) {
-            return new ConfirmResult(false, null, "Empty params");
+            return new VerifiedReturn(new ConfirmResult(false, null, "Empty params"), null);
         }
 
         String receivedHash = vnpParams.get("vnp_SecureHash");
         if (receivedHash == null || receivedHash.isBlank()) {
-            return new ConfirmResult(false, null, "Missing vnp_SecureHash");
+            return new VerifiedReturn(new ConfirmResult(false, null, "Missing vnp_SecureHash"), null);
         }
 
         String dataToSign = VnpayUtils.buildDataToSign(vnpParams);
         String expected = VnpayUtils.hmacSHA512(hashSecret, dataToSign);
 
         if (!expected.equalsIgnoreCase(receivedHash)) {
-            return new ConfirmResult(false, null, "Invalid signature");
+            return new VerifiedReturn(new ConfirmResult(false, null, "Invalid signature"), null);
         }
 
         String respCode = vnpParams.get("vnp_ResponseCode");
@@ -135,9 +140,23 @@ public class VnpayService {
         Integer orderId = extractOrderIdFromTxnRef(txnRef);
 
         if (orderId == null) {
-            return new ConfirmResult(false, null, "Cannot extract orderId from vnp_TxnRef");
+            return new VerifiedReturn(
+                    new ConfirmResult(false, null, "Cannot extract orderId from vnp_TxnRef"), null);
         }
 
+        boolean success = "00".equals(respCode);
+        PaymentInboxService.InboxEvent event = new PaymentInboxService.InboxEvent(
+                PaymentInboxService.GATEWAY_VNPAY, txnRef, orderId, null, success,
+                new TreeMap<>(vnpParams).toString());
+        return new VerifiedReturn(
+                new ConfirmResult(true, orderId, success ? "SUCCESS" : ("FAILED:" + respCode)), event);
+    }
+
+    /**
+     * Update order/transaction from a verified VNPay return (called once per txnRef by the inbox worker).
+     */
+    @Transactional
+    public void applyReturn(Integer orderId, String txnRef, boolean success, String payload) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
@@ -147,9 +166,7 @@ public class VnpayService {
         txn.setOrder(order);
         txn.setAmount(order.getTotalAmount());
         txn.setTransactionCode(txnRef);
-        txn.setGatewayResponse(new TreeMap<>(vnpParams).toString());
-
-        boolean success = "00".equals(respCode);
+        txn.setGatewayResponse(payload);
         txn.setStatus(success ? "SUCCESS" : "FAILED");
         transactionRepository.save(txn);
 
@@ -159,8 +176,6 @@ public class VnpayService {
             order.setStatus("PAID");
         }
         orderRepository.save(order);
-
-        return new ConfirmResult(true, orderId, success ? "SUCCESS" : ("FAILED:" + respCode));
     }
 
     private Integer extractOrderIdFromTxnRef(String txnRef) {
@@ -175,6 +190,8 @@ public class VnpayService {
 
     public record ConfirmResult(boolean verified, Integer orderId, String message) {}
 
+    public record VerifiedReturn(ConfirmResult result, PaymentInboxService.InboxEvent event) {}
+
     private void validateOrderBeforeVnpay(Order order) {
         // Chỉ cho thanh toán khi chưa PAID
         if ("PAID".equalsIgnoreCase(order.getStatus())) {
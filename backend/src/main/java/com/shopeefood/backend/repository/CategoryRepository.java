@@ -1,6 +1,7 @@
 package com.shopeefood.backend.repository;
 
 import com.shopeefood.backend.entity.Category;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -27,4 +28,9 @@ public interface CategoryRepository extends JpaRepository<Category, Integer> {
             "WHERE LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
             "OR LOWER(a.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Category> searchByKeyword(@Param("keyword") String keyword);
-}
\ No newline at end of file
+
+    // Lấy danh mục kèm thuộc tính (dùng khi dựng chỉ mục tìm kiếm)
+    @EntityGraph(attributePaths = { "attributes" })
+    @Query("SELECT c FROM Category c")
+    List<Category> findAllWithAttributes();
+}
@@ -0,0 +1,109 @@
+package com.shopeefood.backend.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.shopeefood.backend.entity.DailyRestaurantStat;
+
+/**
+ * Bảng tổng hợp doanh thu theo ngày: daily_restaurant_stats (theo quán) và
+ * daily_product_stats (theo món). Ngày thống kê = ngày tạo đơn.
+ * Tính lại theo khoảng ngày [fromDate, toDate], restaurantId = null -> mọi quán.
+ */
+@Repository
+public interface DailyStatsRepository extends JpaRepository<DailyRestaurantStat, DailyRestaurantStat.Key> {
+
+        // ===== GHI: tính lại 1 khoảng ngày từ orders =====
+
+        // Xóa trước để các ngày không còn đơn (đơn bị xóa / đổi trạng thái) không giữ số cũ
+        @Modifying
+        @Query(value = "DELETE FROM daily_restaurant_stats " +
+                        "WHERE stat_date BETWEEN :fromDate AND :toDate " +
+                        "AND (:restaurantId IS NULL OR restaurant_id = :restaurantId)", nativeQuery = true)
+        int deleteRestaurantStats(@Param("restaurantId") Integer restaurantId,
+                        @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+        /**
+         * revenue / completed_orders: đơn COMPLETED (dashboard admin).
+         * net_revenue / settled_orders: đơn COMPLETED + REFUNDED, trừ tiền quán hoàn (dashboard owner).
+         * Tiền hoàn được cộng theo từng đơn trước khi trừ để đơn có nhiều khiếu nại không bị nhân subtotal.
+         */
+        @Modifying
+        @Query(value = "INSERT INTO daily_restaurant_stats " +
+                        "(restaurant_id, stat_date, revenue, completed_orders, net_revenue, settled_orders, updated_at) " +
+                        "SELECT o.restaurant_id, CAST(o.created_at AS DATE), " +
+                        "       COALESCE(SUM(o.total_amount) FILTER (WHERE o.status = 'COMPLETED'), 0), " +
+                        "       COUNT(*) FILTER (WHERE o.status = 'COMPLETED'), " +
+                        "       COALESCE(SUM(COALESCE(o.subtotal, 0) - COALESCE(ref.amount, 0)), 0), " +
+                        "       COUNT(*), now() " +
+                        "FROM orders o " +
+                        "LEFT JOIN LATERAL (SELECT SUM(i.owner_refund_amount) AS amount " +
+                        "                   FROM issues i WHERE i.order_id = o.id) ref ON TRUE " +
+                        "WHERE o.status IN ('COMPLETED', 'REFUNDED') AND o.restaurant_id IS NOT NULL " +
+                        "AND o.created_at >= :fromDate AND o.created_at < CAST(:toDate AS DATE) + 1 " +
+                        "AND (:restaurantId IS NULL OR o.restaurant_id = :restaurantId) " +
+                        "GROUP BY o.restaurant_id, CAST(o.created_at AS DATE) " +
+                        "ON CONFLICT (restaurant_id, stat_date) DO UPDATE SET " +
+                        "   revenue = EXCLUDED.revenue, " +
+                        "   completed_orders = EXCLUDED.completed_orders, " +
+                        "   net_revenue = EXCLUDED.net_revenue, " +
+                        "   settled_orders = EXCLUDED.settled_orders, " +
+                        "   updated_at = now()", nativeQuery = true)
+        int insertRestaurantStats(@Param("restaurantId") Integer restaurantId,
+                        @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+        @Modifying
+        @Query(value = "DELETE FROM daily_product_stats " +
+                        "WHERE stat_date BETWEEN :fromDate AND :toDate " +
+                        "AND (:restaurantId IS NULL OR restaurant_id = :restaurantId)", nativeQuery = true)
+        int deleteProductStats(@Param("restaurantId") Integer restaurantId,
+                        @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+        @Modifying
+        @Query(value = "INSERT INTO daily_product_stats " +
+                        "(restaurant_id, stat_date, product_id, quantity, revenue) " +
+                        "SELECT o.restaurant_id, CAST(o.created_at AS DATE), oi.product_id, " +
+                        "       SUM(oi.quantity), SUM(oi.price * oi.quantity) " +
+                        "FROM order_items oi " +
+                        "JOIN orders o ON oi.order_id = o.id AND oi.product_id IS NOT NULL " +
+                        "WHERE o.status IN ('COMPLETED', 'REFUNDED') AND o.restaurant_id IS NOT NULL " +
+                        "AND o.created_at >= :fromDate AND o.created_at < CAST(:toDate AS DATE) + 1 " +
+                        "AND (:restaurantId IS NULL OR o.restaurant_id = :restaurantId) " +
+                        "GROUP BY o.restaurant_id, CAST(o.created_at AS DATE), oi.product_id " +
+                        "ON CONFLICT (restaurant_id, stat_date, product_id) DO UPDATE SET " +
+                        "   quantity = EXCLUDED.quantity, " +
+                        "   revenue = EXCLUDED.revenue", nativeQuery = true)
+        int insertProductStats(@Param("restaurantId") Integer restaurantId,
+                        @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+        // Mốc bắt đầu khi dựng lại toàn bộ (null nếu chưa có đơn nào hoàn tất)
+        @Query("SELECT MIN(o.createdAt) FROM Order o WHERE o.status IN ('COMPLETED', 'REFUNDED')")
+        LocalDateTime findFirstSettledOrderTime();
+
+        // ===== ĐỌC: dashboard admin =====
+
+        @Query(value = "SELECT COALESCE(SUM(revenue), 0) FROM daily_restaurant_stats", nativeQuery = true)
+        BigDecimal sumRevenue();
+
+        /**
+         * Doanh thu (đơn COMPLETED) theo ngày trong khoảng, restaurantId = null -> toàn sàn.
+         * Trả về List<Object[]>: [0] ngày, [1] tổng tiền.
+         */
+        @Query(value = "SELECT s.stat_date as label, SUM(s.revenue) as value " +
+                        "FROM daily_restaurant_stats s " +
+                        "WHERE s.stat_date BETWEEN :fromDate AND :toDate " +
+                        "AND (:restaurantId IS NULL OR s.restaurant_id = :restaurantId) " +
+                        "GROUP BY s.stat_date " +
+                        "ORDER BY s.stat_date ASC", nativeQuery = true)
+        List<Object[]> getRevenueByDay(@Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate,
+                        @Param("restaurantId") Integer restaurantId);
+}
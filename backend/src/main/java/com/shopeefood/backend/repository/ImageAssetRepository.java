@@ -0,0 +1,42 @@
+package com.shopeefood.backend.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.shopeefood.backend.entity.ImageAsset;
+
+@Repository
+public interface ImageAssetRepository extends JpaRepository<ImageAsset, String> {
+
+    /**
+     * Ghi nhận ảnh đã lưu. 2 instance cùng upload 1 ảnh -> dòng sau bị bỏ qua.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO image_assets " +
+            "(content_hash, storage_key, url, format, content_type, size_bytes, width, height, " +
+            "variant_format, variant_widths, created_at) " +
+            "VALUES (:hash, :key, :url, :format, :contentType, :sizeBytes, :width, :height, " +
+            ":variantFormat, :variantWidths, now()) " +
+            "ON CONFLICT (content_hash) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash,
+            @Param("key") String key,
+            @Param("url") String url,
+            @Param("format") String format,
+            @Param("contentType") String contentType,
+            @Param("sizeBytes") Long sizeBytes,
+            @Param("width") Integer width,
+            @Param("height") Integer height,
+            @Param("variantFormat") String variantFormat,
+            @Param("variantWidths") String variantWidths);
+
+    /**
+     * Ảnh theo URL đã lưu (gắn bản thu nhỏ vào thực đơn), dùng index idx_image_assets_url.
+     */
+    List<ImageAsset> findByUrlIn(Collection<String> urls);
+}
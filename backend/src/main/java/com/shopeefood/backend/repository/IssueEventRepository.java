@@ -2,6 +2,7 @@ package com.shopeefood.backend.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -11,4 +12,9 @@ import com.shopeefood.backend.entity.IssueEvent;
 public interface IssueEventRepository extends JpaRepository<IssueEvent, Integer> {
     // Phải là public để Service có thể truy cập (Sửa lỗi "is not visible")
     List<IssueEvent> findByIssueIdOrderByCreatedAtAsc(Integer issueId);
+
+    // Trang sự kiện mới nhất / cũ hơn beforeId của 1 khiếu nại (index (issue_id, id))
+    List<IssueEvent> findByIssueIdOrderByIdDesc(Integer issueId, Pageable pageable);
+
+    List<IssueEvent> findByIssueIdAndIdLessThanOrderByIdDesc(Integer issueId, Integer beforeId, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.shopeefood.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.shopeefood.backend.entity.MailOutbox;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    /**
+     * id các email đến hạn gửi, cũ trước (dùng index một phần WHERE status = 'PENDING').
+     * SKIP LOCKED: nhiều instance cùng quét thì mỗi instance lấy 1 phần khác nhau, không chờ nhau.
+     * Phải gọi trong transaction, khóa giữ tới khi leaseUntil được ghi xong.
+     */
+    @Query(value = "SELECT id FROM mail_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Giữ chỗ các email vừa lấy tới leaseUntil: instance chết giữa chừng thì hết hạn sẽ được gửi lại.
+     */
+    @Modifying
+    @Query("UPDATE MailOutbox m SET m.nextAttemptAt = :leaseUntil WHERE m.id IN :ids")
+    int lease(@Param("ids") List<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Xóa email đã gửi / gửi lỗi hẳn tạo trước mốc before (email PENDING không bị xóa).
+     */
+    @Modifying
+    @Query("DELETE FROM MailOutbox m WHERE m.status IN ('SENT', 'FAILED') AND m.createdAt < :before")
+    int deleteFinishedBefore(@Param("before") LocalDateTime before);
+}
@@ -3,9 +3,13 @@ package com.shopeefood.backend.repository;
 import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.entity.OrderItem;
 import com.shopeefood.backend.entity.Product;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,5 +22,12 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Integer> {
     // Lấy toàn bộ item của 1 order
     List<OrderItem> findByOrder(Order order);
 
-    List<OrderItem> findAllByOrderAndProduct(Order order, Product product);
+    // Item của nhiều order (ghi giỏ hàng theo lô)
+    List<OrderItem> findByOrderIdIn(Collection<Integer> orderIds);
+
+    // Load giỏ vào bộ nhớ: item + món + options trong 1 query
+    @EntityGraph(attributePaths = { "product", "options", "options.productDetail",
+            "options.productDetail.attribute" })
+    @Query("SELECT DISTINCT oi FROM OrderItem oi WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<OrderItem> findCartItemsByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
 }
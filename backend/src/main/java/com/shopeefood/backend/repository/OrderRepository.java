@@ -1,6 +1,5 @@
 package com.shopeefood.backend.repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -8,8 +7,10 @@ import java.util.Optional;
 import com.shopeefood.backend.dto.TopCustomerDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,13 +25,6 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
         // Lấy lịch sử đơn hàng của khách (loại CART và CART_DELETED)
         List<Order> findByCustomerIdAndStatusNotIn(Integer customerId, List<String> statuses);
 
-        /**
-         * 1. Tính TỔNG DOANH THU toàn hệ thống.
-         * Chỉ tính những đơn đã hoàn thành (COMPLETED).
-         */
-        @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE o.status = 'COMPLETED'")
-        BigDecimal sumTotalRevenue();
-
         /**
          * 2. Đếm SỐ ĐƠN HÀNG trong một khoảng thời gian.
          * Dùng để đếm đơn hôm nay (truyền vào StartOfToday và EndOfToday).
@@ -38,18 +32,6 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
         @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt BETWEEN :start AND :end")
         Long countOrdersByDateRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-        /**
-         * 3. Lấy dữ liệu biểu đồ doanh thu 7 ngày gần nhất.
-         * Sử dụng NATIVE QUERY để dùng hàm DATE() và GROUP BY của MySQL dễ dàng hơn.
-         * Trả về List<Object[]> gồm: [0] là Ngày (Date), [1] là Tổng tiền (Decimal).
-         */
-        @Query(value = "SELECT CAST(created_at AS DATE) as label, SUM(total_amount) as value " +
-                        "FROM orders " +
-                        "WHERE status = 'COMPLETED' AND created_at >= :startDate " +
-                        "GROUP BY CAST(created_at AS DATE) " +
-                        "ORDER BY CAST(created_at AS DATE) ASC", nativeQuery = true)
-        List<Object[]> getRevenueLast7DaysRaw(@Param("startDate") LocalDateTime startDate);
-
         // Tham số startDate và endDate là LocalDateTime
         @Query("SELECT o FROM Order o WHERE " +
                         "(:status IS NULL OR o.status = :status) AND " +
@@ -65,6 +47,7 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
         Optional<Order> findFirstByCustomerIdAndStatus(Integer customerId, String status);
 
         // Tìm đơn hàng "CART" theo khách + nhà hàng (nếu sau này cần)
+        @EntityGraph(Order.GRAPH_CART_VIEW)
         Optional<Order> findFirstByCustomerIdAndRestaurantIdAndStatus(
                         Integer customerId,
                         Integer restaurantId,
@@ -101,13 +84,9 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
                         @Param("statusList") List<String> statusList,
                         Pageable pageable);
 
-        // Tìm OrderDetail bằng Id
-        @Query("SELECT DISTINCT o FROM Order o " +
-                        "LEFT JOIN FETCH o.orderItems oi " +
-                        "LEFT JOIN FETCH o.customer c " +
-                        "LEFT JOIN FETCH c.customerProfile cp " + // FETCH thêm Profile của Customer
-                        "LEFT JOIN FETCH o.restaurant r " +
-                        "WHERE o.id IN :orderIds")
+        // Tìm OrderDetail bằng Id (màn đơn của chủ quán)
+        @EntityGraph(Order.GRAPH_OWNER_BOARD)
+        @Query("SELECT o FROM Order o WHERE o.id IN :orderIds")
         List<Order> findOrdersWithDetailsByIds(@Param("orderIds") List<Integer> orderIds);
 
         @Query("SELECT COUNT(o) FROM Order o WHERE o.restaurant.id = :restaurantId " +
@@ -115,7 +94,7 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
         long countActiveOrdersByRestaurant(Integer restaurantId);
 
         // Lấy đơn hàng của khách hàng kèm orderItems và các quan hệ
-        @Query("SELECT DISTINCT o FROM Order o " +
+        @Query("SELECT o FROM Order o " +
                         "LEFT JOIN FETCH o.orderItems oi " +
                         "LEFT JOIN FETCH oi.product " +
                         "LEFT JOIN FETCH o.restaurant " +
@@ -131,21 +110,19 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
          * Chỉ lấy đơn đã được Owner duyệt (status = PREPARING) và chưa có shipper
          * Flow: Customer đặt (PENDING) → Owner duyệt (PREPARING) → Shipper nhận
          * (SHIPPING)
-         * Tối ưu với JOIN FETCH để tránh N+1 problem
+         * Quán + khách load cùng câu query (Order.GRAPH_SHIPPER_LIST)
          */
-        @Query("SELECT DISTINCT o FROM Order o " +
-                        "LEFT JOIN FETCH o.restaurant r " +
-                        "LEFT JOIN FETCH o.customer c " +
+        @EntityGraph(Order.GRAPH_SHIPPER_LIST)
+        @Query("SELECT o FROM Order o " +
                         "WHERE o.status = 'PREPARING' AND o.shipper IS NULL " +
                         "ORDER BY o.createdAt DESC")
         List<Order> findAvailableOrders();
 
         /**
-         * Tìm đơn hàng của shipper - Tối ưu với JOIN FETCH để tránh N+1 problem
+         * Tìm đơn hàng của shipper - quán + khách load cùng câu query (Order.GRAPH_SHIPPER_LIST)
          */
-        @Query("SELECT DISTINCT o FROM Order o " +
-                        "LEFT JOIN FETCH o.restaurant r " +
-                        "LEFT JOIN FETCH o.customer c " +
+        @EntityGraph(Order.GRAPH_SHIPPER_LIST)
+        @Query("SELECT o FROM Order o " +
                         "WHERE o.shipper.accountId = :shipperId " +
                         "ORDER BY o.createdAt DESC")
         List<Order> findOrdersByShipperId(@Param("shipperId") Integer shipperId);
@@ -159,46 +136,10 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
                         "WHERE o.id = :orderId")
         Optional<Order> findByIdWithDetails(@Param("orderId") Integer orderId);
 
-        /**
-         * Query lấy doanh thu theo bộ lọc động (Native Query)
-         * COALESCE(?3, NULL) dùng để xử lý logic: Nếu tham số restaurantId là NULL thì
-         * bỏ qua điều kiện đó.
-         */
-        @Query(value = "SELECT CAST(o.created_at AS DATE) as label, SUM(o.total_amount) as value " +
-                        "FROM orders o " +
-                        "WHERE o.status = 'COMPLETED' " +
-                        "AND o.created_at >= :startDate AND o.created_at <= :endDate " +
-                        "AND (:restaurantId IS NULL OR o.restaurant_id = :restaurantId) " +
-                        "GROUP BY CAST(o.created_at AS DATE) " +
-                        "ORDER BY CAST(o.created_at AS DATE) ASC", nativeQuery = true)
-        List<Object[]> getRevenueByFilter(
-                        @Param("startDate") LocalDateTime startDate,
-                        @Param("endDate") LocalDateTime endDate,
-                        @Param("restaurantId") Integer restaurantId);
-
-    @Query("SELECT DISTINCT o FROM Order o " +
-            "LEFT JOIN FETCH o.customer acc " +          // acc là Account
-            "LEFT JOIN Customer cust ON cust.accountId = acc.id " + // Join bảng Customer để lấy FullName
-            "LEFT JOIN FETCH o.restaurant r " +
-            "LEFT JOIN FETCH o.shipper s " +
-            "LEFT JOIN FETCH s.account " +
-            "LEFT JOIN FETCH o.orderItems oi " +
-            "WHERE o.status IN :statuses " +
-            "AND (CAST(:startDate AS timestamp) IS NULL OR o.createdAt >= :startDate) " +
-            "AND (CAST(:endDate AS timestamp) IS NULL OR o.createdAt <= :endDate) " +
-            "AND (:searchKey IS NULL OR (" +
-            "   LOWER(o.orderNumber) LIKE :searchKey OR " +      // Tìm theo Mã đơn
-            "   LOWER(cust.fullName) LIKE :searchKey OR " +      // Tìm theo Tên khách
-            "   LOWER(acc.phone) LIKE :searchKey OR " +          // Tìm theo SĐT khách
-            "   LOWER(r.name) LIKE :searchKey OR " +             // Tìm theo Tên quán
-            "   LOWER(r.phone) LIKE :searchKey " +               // Tìm theo SĐT quán
-            ")) " +
-            "ORDER BY o.createdAt DESC")
-    List<Order> findOrdersWithDetails(
-            @Param("searchKey") String searchKey, // <--- THÊM THAM SỐ NÀY
-            @Param("statuses") List<String> statuses,
-            @Param("startDate") LocalDateTime startDate,
-            @Param("endDate") LocalDateTime endDate);
+    // 1 trang danh sách đơn của admin (AdminOrderService.getOrderPage), món load theo lô
+    @EntityGraph(Order.GRAPH_ADMIN_LIST)
+    @Query("SELECT o FROM Order o WHERE o.id IN :orderIds")
+    List<Order> findAdminOrdersByIds(@Param("orderIds") List<Integer> orderIds);
 
         @Query("SELECT o FROM Order o WHERE o.customer.id = :customerId " +
                         "AND o.status = 'COMPLETED' " +
@@ -222,4 +163,77 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
             "GROUP BY c.fullName, a.phone " +
             "ORDER BY SUM(o.totalAmount) DESC")
     List<TopCustomerDTO> findTop3Spenders(Pageable pageable);
+
+    /**
+     * Lấy số tiếp theo cho mã đơn (order_number) từ sequence trong DB,
+     * để gán mã ngay khi tạo đơn thay vì save 2 lần (save lấy id rồi UPDATE mã đơn).
+     */
+    @Query(value = "SELECT nextval('order_number_seq')", nativeQuery = true)
+    long nextOrderNumberValue();
+
+    /**
+     * Shipper nhận đơn bằng 1 câu UPDATE có điều kiện (an toàn khi nhiều shipper bấm cùng lúc,
+     * kể cả chạy nhiều instance): chỉ thành công nếu đơn còn PREPARING và chưa có shipper.
+     * RETURNING luôn tọa độ để tính ETA mà không cần đọc lại đơn, rỗng nếu đơn đã bị nhận / không còn PREPARING.
+     * Trả về List<Object[]> (0 hoặc 1 dòng): [0] vĩ độ quán, [1] kinh độ quán, [2] vĩ độ giao, [3] kinh độ giao
+     * (tọa độ giao lấy từ đơn, thiếu thì lấy từ Customer).
+     */
+    @Query(value = "UPDATE orders o SET shipper_id = :shipperId, status = 'SHIPPING', shipped_at = :now " +
+            "WHERE o.id = :orderId AND o.shipper_id IS NULL AND o.status = 'PREPARING' " +
+            "RETURNING (SELECT r.latitude FROM restaurants r WHERE r.id = o.restaurant_id), " +
+            "(SELECT r.longitude FROM restaurants r WHERE r.id = o.restaurant_id), " +
+            "CASE WHEN o.shipping_lat IS NULL OR o.shipping_long IS NULL " +
+            "THEN (SELECT c.latitude FROM customers c WHERE c.account_id = o.customer_id) ELSE o.shipping_lat END, " +
+            "CASE WHEN o.shipping_lat IS NULL OR o.shipping_long IS NULL " +
+            "THEN (SELECT c.longitude FROM customers c WHERE c.account_id = o.customer_id) ELSE o.shipping_long END",
+            nativeQuery = true)
+    List<Object[]> claimForShipper(@Param("orderId") Integer orderId,
+            @Param("shipperId") Integer shipperId,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Ghi thời gian giao dự kiến + hạn giao cho đơn vừa được claimForShipper nhận (cùng transaction).
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE orders SET estimated_delivery_time_minutes = :etaMinutes, " +
+            "due_at = CAST(:now AS timestamp) + make_interval(mins => :etaMinutes) " +
+            "WHERE id = :orderId", nativeQuery = true)
+    int setDeliveryEstimate(@Param("orderId") Integer orderId,
+            @Param("now") LocalDateTime now,
+            @Param("etaMinutes") int etaMinutes);
+
+    /**
+     * Lịch sử giao hàng để học ETA (EtaService), cũ trước.
+     * Trả về List<Object[]>: [0] shipperId, [1] vĩ độ quán, [2] kinh độ quán, [3] vĩ độ giao, [4] kinh độ giao,
+     * [5] shippedAt, [6] deliveryStartedAt, [7] completedAt.
+     */
+    @Query("SELECT s.accountId, r.latitude, r.longitude, o.shippingLat, o.shippingLong, " +
+            "o.shippedAt, o.deliveryStartedAt, o.completedAt " +
+            "FROM Order o JOIN o.shipper s JOIN o.restaurant r " +
+            "WHERE o.status = 'COMPLETED' AND o.shippedAt IS NOT NULL AND o.deliveryStartedAt IS NOT NULL " +
+            "AND o.completedAt >= :from AND o.completedAt < :before " +
+            "ORDER BY o.completedAt")
+    List<Object[]> findDeliveryHistory(@Param("from") LocalDateTime from, @Param("before") LocalDateTime before);
+
+    /**
+     * Điều phối tự động: đơn PREPARING chưa có shipper kèm tọa độ quán, đơn chờ lâu trước.
+     * Trả về List<Object[]>: [0] id đơn, [1] vĩ độ quán, [2] kinh độ quán.
+     */
+    @Query(value = "SELECT o.id, r.latitude, r.longitude FROM orders o " +
+            "JOIN restaurants r ON r.id = o.restaurant_id " +
+            "WHERE o.status = 'PREPARING' AND o.shipper_id IS NULL " +
+            "AND r.latitude IS NOT NULL AND r.longitude IS NOT NULL " +
+            "ORDER BY o.created_at", nativeQuery = true)
+    List<Object[]> findOpenOrderLocations();
+
+    /**
+     * Đơn đang giao có hạn giao <= until (dùng index một phần trên due_at WHERE status = 'SHIPPING').
+     * Chỉ trả về các đơn sắp / đã quá hạn, không quét toàn bảng orders.
+     */
+    @Query("SELECT o FROM Order o " +
+            "LEFT JOIN FETCH o.restaurant " +
+            "LEFT JOIN FETCH o.shipper " +
+            "WHERE o.status = 'SHIPPING' AND o.dueAt <= :until " +
+            "ORDER BY o.dueAt")
+    List<Order> findShippingDueBefore(@Param("until") LocalDateTime until);
 }
@@ -1,6 +1,6 @@
 package com.shopeefood.backend.repository;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -9,61 +9,55 @@ import com.shopeefood.backend.entity.Order;
 
 public interface OwnerDashboardRepository extends JpaRepository<Order, Integer> {
 
+    // Các số liệu doanh thu đọc từ bảng tổng hợp theo ngày (daily_restaurant_stats / daily_product_stats)
+    // thay vì gom orders + issues mỗi lần mở dashboard. Xem DailyStatsService.
+
     // 1. Doanh thu theo ngày (Net Revenue = Subtotal - ownerRefundAmount)
     // Bao gồm cả COMPLETED và REFUNDED
-    @Query(value = "SELECT DATE(o.created_at) as date, " +
-           "SUM(o.subtotal - COALESCE(i.owner_refund_amount, 0)) as revenue " +
-           "FROM orders o " +
-           "JOIN restaurants r ON o.restaurant_id = r.id " +
-           "LEFT JOIN issues i ON o.id = i.order_id " +
+    @Query(value = "SELECT s.stat_date as date, SUM(s.net_revenue) as revenue " +
+           "FROM daily_restaurant_stats s " +
+           "JOIN restaurants r ON s.restaurant_id = r.id " +
            "WHERE r.owner_id = :ownerId " +
-           "AND (:resId IS NULL OR o.restaurant_id = :resId) " +
-           "AND o.status IN ('COMPLETED', 'REFUNDED') " +
-           "AND o.created_at BETWEEN :start AND :end " +
-           "GROUP BY DATE(o.created_at) ORDER BY date", nativeQuery = true)
+           "AND (:resId IS NULL OR s.restaurant_id = :resId) " +
+           "AND s.stat_date BETWEEN :start AND :end " +
+           "GROUP BY s.stat_date ORDER BY date", nativeQuery = true)
     List<Object[]> getRevenueByDate(@Param("ownerId") Integer ownerId, @Param("resId") Integer resId, 
-                                   @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+                                   @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     // 2. So sánh chi nhánh: Đếm đơn và tính doanh thu thuần
-    @Query(value = "SELECT r.name, COUNT(o.id) as orderCount, " +
-           "SUM(COALESCE(o.subtotal, 0) - COALESCE(i.owner_refund_amount, 0)) as revenue " +
+    @Query(value = "SELECT r.name, COALESCE(SUM(s.settled_orders), 0) as orderCount, " +
+           "SUM(s.net_revenue) as revenue " +
            "FROM restaurants r " +
-           "LEFT JOIN orders o ON r.id = o.restaurant_id " +
-           "AND o.status IN ('COMPLETED', 'REFUNDED') " +
-           "AND o.created_at BETWEEN :start AND :end " +
-           "LEFT JOIN issues i ON o.id = i.order_id " +
+           "LEFT JOIN daily_restaurant_stats s ON r.id = s.restaurant_id " +
+           "AND s.stat_date BETWEEN :start AND :end " +
            "WHERE r.owner_id = :ownerId " +
            "GROUP BY r.id, r.name", nativeQuery = true)
     List<Object[]> getBranchComparison(@Param("ownerId") Integer ownerId, 
-                                      @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+                                      @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     // 3. Top sản phẩm: Dựa trên các đơn COMPLETED/REFUNDED
-    @Query(value = "SELECT p.name, SUM(oi.quantity), SUM(oi.price * oi.quantity) " +
-           "FROM order_items oi " +
-           "JOIN orders o ON oi.order_id = o.id " +
-           "JOIN products p ON oi.product_id = p.id " +
-           "JOIN restaurants r ON o.restaurant_id = r.id " +
+    @Query(value = "SELECT p.name, SUM(ps.quantity), SUM(ps.revenue) " +
+           "FROM daily_product_stats ps " +
+           "JOIN products p ON ps.product_id = p.id " +
+           "JOIN restaurants r ON ps.restaurant_id = r.id " +
            "WHERE r.owner_id = :ownerId " +
-           "AND (:resId IS NULL OR o.restaurant_id = :resId) " +
-           "AND o.status IN ('COMPLETED', 'REFUNDED') " +
-           "AND o.created_at BETWEEN :start AND :end " +
-           "GROUP BY p.id, p.name ORDER BY SUM(oi.quantity) DESC LIMIT 5", nativeQuery = true)
+           "AND (:resId IS NULL OR ps.restaurant_id = :resId) " +
+           "AND ps.stat_date BETWEEN :start AND :end " +
+           "GROUP BY p.id, p.name ORDER BY SUM(ps.quantity) DESC LIMIT 5", nativeQuery = true)
     List<Object[]> getTopProducts(@Param("ownerId") Integer ownerId, @Param("resId") Integer resId, 
-                                 @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+                                 @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     // 4. Summary để tính tăng trưởng (Tổng doanh thu thuần và tổng đơn)
     @Query(value = "SELECT " +
-           "SUM(o.subtotal - COALESCE(i.owner_refund_amount, 0)), " +
-           "COUNT(o.id) " +
-           "FROM orders o " +
-           "JOIN restaurants r ON o.restaurant_id = r.id " +
-           "LEFT JOIN issues i ON o.id = i.order_id " +
+           "SUM(s.net_revenue), " +
+           "SUM(s.settled_orders) " +
+           "FROM daily_restaurant_stats s " +
+           "JOIN restaurants r ON s.restaurant_id = r.id " +
            "WHERE r.owner_id = :ownerId " +
-           "AND (:resId IS NULL OR o.restaurant_id = :resId) " +
-           "AND o.status IN ('COMPLETED', 'REFUNDED') " +
-           "AND o.created_at BETWEEN :start AND :end", nativeQuery = true)
+           "AND (:resId IS NULL OR s.restaurant_id = :resId) " +
+           "AND s.stat_date BETWEEN :start AND :end", nativeQuery = true)
     List<Object[]> getSummaryForGrowth(@Param("ownerId") Integer ownerId, @Param("resId") Integer resId, 
-                                      @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+                                      @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     // Giữ nguyên các hàm đếm sản phẩm và rating
     @Query(value = "SELECT COUNT(p.id) FROM products p JOIN restaurants r ON p.restaurant_id = r.id " +
@@ -0,0 +1,53 @@
+package com.shopeefood.backend.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.shopeefood.backend.entity.PaymentWebhookEvent;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface PaymentWebhookInboxRepository extends JpaRepository<PaymentWebhookEvent, Long> {
+
+    /**
+     * Ghi callback vào inbox. Trả về 0 nếu (gateway, transaction_code) đã có và đang PENDING / DONE
+     * (cổng gửi lại) -> không làm gì thêm. Dòng cũ đã FAILED thì nhận lại như callback mới
+     * (PENDING, đếm lại số lần thử) để client / cổng gửi lại vẫn xử lý được.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_webhook_inbox " +
+            "(gateway, transaction_code, order_id, amount, success, payload, status, attempts, received_at) " +
+            "VALUES (:gateway, :transactionCode, :orderId, :amount, :success, :payload, 'PENDING', 0, now()) " +
+            "ON CONFLICT (gateway, transaction_code) DO UPDATE SET " +
+            "order_id = EXCLUDED.order_id, amount = EXCLUDED.amount, success = EXCLUDED.success, " +
+            "payload = EXCLUDED.payload, status = 'PENDING', attempts = 0, last_error = NULL, " +
+            "received_at = now(), processed_at = NULL " +
+            "WHERE payment_webhook_inbox.status = 'FAILED'", nativeQuery = true)
+    int insertIfAbsent(@Param("gateway") String gateway,
+            @Param("transactionCode") String transactionCode,
+            @Param("orderId") Integer orderId,
+            @Param("amount") Long amount,
+            @Param("success") Boolean success,
+            @Param("payload") String payload);
+
+    /**
+     * Các callback chờ xử lý, cũ trước (dùng index một phần WHERE status = 'PENDING').
+     * Trả về List<Object[]>: [0] id, [1] order_id.
+     */
+    @Query(value = "SELECT id, order_id FROM payment_webhook_inbox WHERE status = 'PENDING' " +
+            "ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Object[]> findPending(@Param("limit") int limit);
+
+    // Khóa dòng khi xử lý: nhiều instance cùng lấy 1 callback thì chỉ 1 instance xử lý
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM PaymentWebhookEvent e WHERE e.id = :id")
+    Optional<PaymentWebhookEvent> findForUpdate(@Param("id") Long id);
+}
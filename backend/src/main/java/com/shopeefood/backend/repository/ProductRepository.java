@@ -1,6 +1,7 @@
 package com.shopeefood.backend.repository;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -43,11 +44,25 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
 
         // Thêm 2 hàm mới
         // Dùng cho màn CHỌN MÓN & CHỈNH SỬA MÓN
-        @EntityGraph(attributePaths = { "details", "details.attribute" })
+        @EntityGraph(attributePaths = { "category", "details", "details.attribute" })
         @Query("SELECT p FROM Product p WHERE p.restaurant.id = :restaurantId")
         List<Product> findByRestaurantIdWithDetails(@Param("restaurantId") Integer restaurantId);
 
-        @EntityGraph(attributePaths = { "details", "details.attribute" })
+        @EntityGraph(attributePaths = { "category", "details", "details.attribute" })
         @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId")
         List<Product> findByCategoryIdWithDetails(@Param("categoryId") Integer categoryId);
-}
\ No newline at end of file
+
+        // Thêm món vào giỏ: món + options trong 1 query
+        @EntityGraph(attributePaths = { "restaurant", "details", "details.attribute" })
+        @Query("SELECT p FROM Product p WHERE p.id = :id")
+        Optional<Product> findByIdWithDetails(@Param("id") Integer id);
+
+        // Dùng cho chỉ mục tìm kiếm: lấy menu của nhiều quán trong 1 query
+        @EntityGraph(attributePaths = { "category", "details" })
+        @Query("SELECT p FROM Product p WHERE p.restaurant.id IN :restaurantIds")
+        List<Product> findByRestaurantIdInWithDetails(@Param("restaurantIds") List<Integer> restaurantIds);
+
+        // Các quán có món thuộc danh mục (đổi tên danh mục -> cập nhật lại chỉ mục các quán này)
+        @Query("SELECT DISTINCT p.restaurant.id FROM Product p WHERE p.category.id = :categoryId")
+        List<Integer> findRestaurantIdsByCategoryId(@Param("categoryId") Integer categoryId);
+}
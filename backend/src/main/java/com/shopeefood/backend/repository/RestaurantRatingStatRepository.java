@@ -0,0 +1,66 @@
+package com.shopeefood.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.shopeefood.backend.entity.RestaurantRatingStat;
+
+@Repository
+public interface RestaurantRatingStatRepository extends JpaRepository<RestaurantRatingStat, Integer> {
+
+        List<RestaurantRatingStat> findByRestaurantIdIn(List<Integer> restaurantIds);
+
+        /**
+         * Cộng dồn (UPSERT) tổng điểm / số lượng rating cho 1 quán trong 1 câu lệnh.
+         * Chạy trong cùng transaction với việc lưu Feedback, không cần đọc trước.
+         */
+        @Modifying
+        @Query(value = "INSERT INTO restaurant_rating_stats " +
+                        "(restaurant_id, rating_sum, rating_count, review_count, average_rating, updated_at) " +
+                        "VALUES (:restaurantId, :sumDelta, :countDelta, :reviewDelta, " +
+                        "        CASE WHEN :countDelta > 0 THEN CAST(:sumDelta AS NUMERIC) / :countDelta END, now()) " +
+                        "ON CONFLICT (restaurant_id) DO UPDATE SET " +
+                        "   rating_sum = restaurant_rating_stats.rating_sum + EXCLUDED.rating_sum, " +
+                        "   rating_count = restaurant_rating_stats.rating_count + EXCLUDED.rating_count, " +
+                        "   review_count = restaurant_rating_stats.review_count + EXCLUDED.review_count, " +
+                        "   average_rating = CASE " +
+                        "       WHEN restaurant_rating_stats.rating_count + EXCLUDED.rating_count > 0 " +
+                        "       THEN CAST(restaurant_rating_stats.rating_sum + EXCLUDED.rating_sum AS NUMERIC) " +
+                        "            / (restaurant_rating_stats.rating_count + EXCLUDED.rating_count) " +
+                        "   END, " +
+                        "   updated_at = now()", nativeQuery = true)
+        int applyDelta(@Param("restaurantId") Integer restaurantId,
+                        @Param("sumDelta") long sumDelta,
+                        @Param("countDelta") long countDelta,
+                        @Param("reviewDelta") long reviewDelta);
+
+        /**
+         * Job đối soát: tính lại toàn bộ từ bảng feedbacks.
+         */
+        @Modifying
+        @Query(value = "INSERT INTO restaurant_rating_stats " +
+                        "(restaurant_id, rating_sum, rating_count, review_count, average_rating, updated_at) " +
+                        "SELECT f.restaurant_id, COALESCE(SUM(f.rating), 0), COUNT(f.rating), COUNT(f.id), " +
+                        "       AVG(f.rating), now() " +
+                        "FROM feedbacks f " +
+                        "GROUP BY f.restaurant_id " +
+                        "ON CONFLICT (restaurant_id) DO UPDATE SET " +
+                        "   rating_sum = EXCLUDED.rating_sum, " +
+                        "   rating_count = EXCLUDED.rating_count, " +
+                        "   review_count = EXCLUDED.review_count, " +
+                        "   average_rating = EXCLUDED.average_rating, " +
+                        "   updated_at = now()", nativeQuery = true)
+        int rebuildFromFeedbacks();
+
+        // Xóa dòng tổng hợp của các quán không còn feedback nào
+        @Modifying
+        @Query(value = "DELETE FROM restaurant_rating_stats s " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM feedbacks f WHERE f.restaurant_id = s.restaurant_id)",
+                        nativeQuery = true)
+        int deleteOrphans();
+}
@@ -1,6 +1,7 @@
 package com.shopeefood.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +17,17 @@ import com.shopeefood.backend.entity.Restaurant.RestaurantStatus;
 
 @Repository
 public interface RestaurantRepository extends JpaRepository<Restaurant, Integer> {
+        // Điều kiện keyword dùng chung: tên quán, tên món, tên danh mục, tên option
+        String KEYWORD_FILTER = "AND (:keyword IS NULL OR :keyword = '' OR " +
+                        "    LOWER(r.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "    EXISTS (SELECT 1 FROM products p LEFT JOIN categories c ON p.category_id = c.id " +
+                        "            WHERE p.restaurant_id = r.id AND (" +
+                        "                LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "                LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')))) OR " +
+                        "    EXISTS (SELECT 1 FROM products p2 JOIN product_details d ON p2.id = d.product_id " +
+                        "            WHERE p2.restaurant_id = r.id " +
+                        "            AND LOWER(d.value) LIKE LOWER(CONCAT('%', :keyword, '%')))) ";
+
         List<Restaurant> findByOwnerId(Integer ownerId);
 
         // Logic: Tìm quán ăn NẾU:
@@ -120,49 +132,113 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Integer>
         /**
          * TÌM KIẾM NÂNG CAO (NATIVE QUERY):
          * 1. Tìm theo keyword (Tên quán, Món, Danh mục, Option)
-         * 2. Tính khoảng cách (Distance) từ User đến Quán
-         * 3. Sắp xếp (Sort) theo: Mới nhất, Gần nhất, Rating cao nhất
+         * 2. Sắp xếp (Sort) theo: Mới nhất, Rating cao nhất (đọc từ restaurant_rating_stats)
+         * Keyword được kiểm tra bằng EXISTS nên khi không có keyword sẽ không JOIN
+         * sang products/categories/product_details (không quét toàn bộ menu).
+         * Sắp xếp theo khoảng cách được xử lý riêng ở findNearbyCandidates (geohash).
          */
-        @Query(value = "SELECT r.* " + // <--- BỎ TỪ KHÓA DISTINCT Ở ĐÂY
+        @Query(value = "SELECT r.* " +
                         "FROM restaurants r " +
-                        "LEFT JOIN products p ON r.id = p.restaurant_id " +
-                        "LEFT JOIN categories c ON p.category_id = c.id " +
-                        "LEFT JOIN product_details d ON p.id = d.product_id " +
+                        "LEFT JOIN restaurant_rating_stats s ON s.restaurant_id = r.id " +
                         "WHERE r.status = :status " +
-                        "AND (:keyword IS NULL OR :keyword = '' OR " +
-                        "    LOWER(r.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-                        "    LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-                        "    LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-                        "    LOWER(d.value) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
-
-                        "GROUP BY r.id " + // <--- THÊM DÒNG NÀY (Gom nhóm theo ID quán để loại bỏ trùng lặp)
-
+                        KEYWORD_FILTER +
                         "ORDER BY " +
-                        "   CASE WHEN :sortBy = 'rating' THEN (SELECT COALESCE(AVG(f.rating), 0) FROM feedbacks f WHERE f.restaurant_id = r.id) END DESC, "
-                        +
-                        "   CASE WHEN :sortBy = 'distance' THEN (6371 * acos(cos(radians(:userLat)) * cos(radians(r.latitude)) * cos(radians(r.longitude) - radians(:userLng)) + sin(radians(:userLat)) * sin(radians(r.latitude)))) END ASC, "
-                        +
+                        "   CASE WHEN :sortBy = 'rating' THEN COALESCE(s.average_rating, 0) END DESC, " +
                         "   r.created_at DESC ",
-
-                        // Count query vẫn giữ DISTINCT r.id vì nó chỉ đếm số lượng, không order by
-                        countQuery = "SELECT COUNT(DISTINCT r.id) FROM restaurants r " +
-                                        "LEFT JOIN products p ON r.id = p.restaurant_id " +
-                                        "LEFT JOIN categories c ON p.category_id = c.id " +
-                                        "LEFT JOIN product_details d ON p.id = d.product_id " +
+                        countQuery = "SELECT COUNT(r.id) FROM restaurants r " +
                                         "WHERE r.status = :status " +
-                                        "AND (:keyword IS NULL OR :keyword = '' OR " +
-                                        "    LOWER(r.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-                                        "    LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-                                        "    LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-                                        "    LOWER(d.value) LIKE LOWER(CONCAT('%', :keyword, '%'))) ", nativeQuery = true)
+                                        KEYWORD_FILTER, nativeQuery = true)
         Page<Restaurant> searchRestaurantsAdvanced(
                         @Param("keyword") String keyword,
                         @Param("status") String status,
-                        @Param("userLat") Double userLat,
-                        @Param("userLng") Double userLng,
                         @Param("sortBy") String sortBy,
                         Pageable pageable);
 
+        /**
+         * Lấy các quán ứng viên quanh 1 điểm:
+         * - Bounding box trên (latitude, longitude) để cắt nhanh theo vùng
+         * - 9 ô geohash (ô chứa điểm + 8 ô lân cận) dùng index (status, geohash)
+         * Khoảng cách chính xác được tính ở Service trên tập ứng viên nhỏ này.
+         * Truyền cell = '%' để bỏ qua điều kiện geohash.
+         */
+        @Query(value = "SELECT r.* FROM restaurants r " +
+                        "WHERE r.status = :status " +
+                        "AND r.latitude BETWEEN :minLat AND :maxLat " +
+                        "AND r.longitude BETWEEN :minLng AND :maxLng " +
+                        "AND (r.geohash LIKE :cell0 OR r.geohash LIKE :cell1 OR r.geohash LIKE :cell2 " +
+                        "     OR r.geohash LIKE :cell3 OR r.geohash LIKE :cell4 OR r.geohash LIKE :cell5 " +
+                        "     OR r.geohash LIKE :cell6 OR r.geohash LIKE :cell7 OR r.geohash LIKE :cell8) " +
+                        KEYWORD_FILTER, nativeQuery = true)
+        List<Restaurant> findNearbyCandidates(
+                        @Param("keyword") String keyword,
+                        @Param("status") String status,
+                        @Param("minLat") Double minLat,
+                        @Param("maxLat") Double maxLat,
+                        @Param("minLng") Double minLng,
+                        @Param("maxLng") Double maxLng,
+                        @Param("cell0") String cell0,
+                        @Param("cell1") String cell1,
+                        @Param("cell2") String cell2,
+                        @Param("cell3") String cell3,
+                        @Param("cell4") String cell4,
+                        @Param("cell5") String cell5,
+                        @Param("cell6") String cell6,
+                        @Param("cell7") String cell7,
+                        @Param("cell8") String cell8);
+
+        // Đếm số quán có tọa độ khớp keyword (dùng cho phân trang khi sắp xếp theo khoảng cách)
+        @Query(value = "SELECT COUNT(r.id) FROM restaurants r " +
+                        "WHERE r.status = :status " +
+                        "AND r.latitude IS NOT NULL AND r.longitude IS NOT NULL " +
+                        KEYWORD_FILTER, nativeQuery = true)
+        long countLocatedByKeyword(@Param("keyword") String keyword, @Param("status") String status);
+
+        // Đếm số quán có tọa độ trong tập id (kết quả tìm trong chỉ mục) khi sắp xếp theo khoảng cách
+        @Query(value = "SELECT COUNT(r.id) FROM restaurants r " +
+                        "WHERE r.id IN (:ids) AND r.status = :status " +
+                        "AND r.latitude IS NOT NULL AND r.longitude IS NOT NULL", nativeQuery = true)
+        long countLocatedByIdIn(@Param("ids") Collection<Integer> ids, @Param("status") String status);
+
+        /**
+         * Bản đồ admin (zoom xa): gom quán ACTIVE / CLOSE trong khung nhìn theo ô lưới cellDeg độ.
+         * Trả về List<Object[]>: [0] số quán, [1] vĩ độ trung bình, [2] kinh độ trung bình.
+         */
+        @Query(value = "SELECT COUNT(*), AVG(r.latitude), AVG(r.longitude) FROM restaurants r " +
+                        "WHERE r.status IN ('ACTIVE', 'CLOSE') " +
+                        "AND r.latitude BETWEEN :minLat AND :maxLat " +
+                        "AND r.longitude BETWEEN :minLng AND :maxLng " +
+                        "GROUP BY FLOOR(r.latitude / :cellDeg), FLOOR(r.longitude / :cellDeg)", nativeQuery = true)
+        List<Object[]> clusterMapRestaurants(
+                        @Param("minLat") double minLat,
+                        @Param("maxLat") double maxLat,
+                        @Param("minLng") double minLng,
+                        @Param("maxLng") double maxLng,
+                        @Param("cellDeg") double cellDeg);
+
+        /**
+         * Bản đồ admin (zoom gần): quán ACTIVE / CLOSE trong khung nhìn, chỉ các cột cần hiển thị.
+         * Trả về List<Object[]>: id, name, latitude, longitude, status, address, cover_image, phone.
+         */
+        @Query(value = "SELECT r.id, r.name, r.latitude, r.longitude, r.status, r.address, r.cover_image, r.phone " +
+                        "FROM restaurants r " +
+                        "WHERE r.status IN ('ACTIVE', 'CLOSE') " +
+                        "AND r.latitude BETWEEN :minLat AND :maxLat " +
+                        "AND r.longitude BETWEEN :minLng AND :maxLng " +
+                        "LIMIT :limit", nativeQuery = true)
+        List<Object[]> findMapRestaurants(
+                        @Param("minLat") double minLat,
+                        @Param("maxLat") double maxLat,
+                        @Param("minLng") double minLng,
+                        @Param("maxLng") double maxLng,
+                        @Param("limit") int limit);
+
+        // Các quán có tọa độ nhưng chưa có geohash (dữ liệu cũ trước khi thêm cột)
+        List<Restaurant> findByGeohashIsNullAndLatitudeIsNotNullAndLongitudeIsNotNull();
+
+        // Toàn bộ ID quán (dựng chỉ mục tìm kiếm theo từng lô)
+        @Query("SELECT r.id FROM Restaurant r ORDER BY r.id")
+        List<Integer> findAllIds();
+
         @Query("SELECT DISTINCT r.owner.accountId FROM Restaurant r WHERE r.owner IS NOT NULL")
         List<Integer> findDistinctOwnerAccountIds();
 }
\ No newline at end of file
@@ -4,11 +4,13 @@ import com.shopeefood.backend.dto.ShipperPerformanceDTO;
 import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.entity.Shipper;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,6 +22,67 @@ public interface ShipperRepository extends JpaRepository<Shipper, Integer> {
     @Query("SELECT COUNT(s) FROM Shipper s WHERE s.status = 'ONLINE'")
     Long countOnlineShippers();
 
+    /**
+     * Chuyển shipper ONLINE -> BUSY có điều kiện (1 shipper không nhận được 2 đơn cùng lúc).
+     * Trả về 0 nếu shipper không ở trạng thái ONLINE.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE shippers SET status = 'BUSY' WHERE account_id = :shipperId AND status = 'ONLINE'",
+            nativeQuery = true)
+    int markBusyIfOnline(@Param("shipperId") Integer shipperId);
+
+    /**
+     * Ghi vị trí mới nhất của nhiều shipper trong 1 câu lệnh (3 mảng cùng độ dài, cùng thứ tự).
+     */
+    @Modifying
+    @Query(value = "UPDATE shippers s SET current_lat = v.lat, current_long = v.lng " +
+            "FROM unnest(CAST(:ids AS INTEGER[]), CAST(:lats AS DOUBLE PRECISION[]), " +
+            "            CAST(:lngs AS DOUBLE PRECISION[])) AS v(id, lat, lng) " +
+            "WHERE s.account_id = v.id", nativeQuery = true)
+    int bulkUpdateLocations(@Param("ids") Integer[] ids,
+            @Param("lats") Double[] lats,
+            @Param("lngs") Double[] lngs);
+
+    /**
+     * Bản đồ admin (zoom xa): gom shipper trong khung nhìn theo ô lưới cellDeg độ.
+     * Trả về List<Object[]>: [0] số shipper, [1] vĩ độ trung bình, [2] kinh độ trung bình.
+     */
+    @Query(value = "SELECT COUNT(*), AVG(current_lat), AVG(current_long) FROM shippers " +
+            "WHERE current_lat BETWEEN :minLat AND :maxLat " +
+            "AND current_long BETWEEN :minLng AND :maxLng " +
+            "GROUP BY FLOOR(current_lat / :cellDeg), FLOOR(current_long / :cellDeg)", nativeQuery = true)
+    List<Object[]> clusterMapShippers(@Param("minLat") double minLat,
+            @Param("maxLat") double maxLat,
+            @Param("minLng") double minLng,
+            @Param("maxLng") double maxLng,
+            @Param("cellDeg") double cellDeg);
+
+    // ID shipper có vị trí (đã lưu DB) trong khung nhìn
+    @Query(value = "SELECT account_id FROM shippers " +
+            "WHERE current_lat BETWEEN :minLat AND :maxLat " +
+            "AND current_long BETWEEN :minLng AND :maxLng " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Integer> findIdsInBox(@Param("minLat") double minLat,
+            @Param("maxLat") double maxLat,
+            @Param("minLng") double minLng,
+            @Param("maxLng") double maxLng,
+            @Param("limit") int limit);
+
+    /**
+     * Điều phối tự động: shipper ONLINE kèm vị trí đã lưu DB (có thể null).
+     * Trả về List<Object[]>: [0] account_id, [1] vĩ độ, [2] kinh độ.
+     */
+    @Query(value = "SELECT account_id, current_lat, current_long FROM shippers WHERE status = 'ONLINE'",
+            nativeQuery = true)
+    List<Object[]> findOnlineShipperLocations();
+
+    // Lấy shipper kèm Account trong 1 query (tránh lazy load từng shipper)
+    @Query("SELECT s FROM Shipper s LEFT JOIN FETCH s.account")
+    List<Shipper> findAllWithAccount();
+
+    @Query("SELECT s FROM Shipper s LEFT JOIN FETCH s.account WHERE s.accountId IN :ids")
+    List<Shipper> findWithAccountByIdIn(@Param("ids") Collection<Integer> ids);
+
     /**
      * Query phức tạp để lấy thống kê:
      * 1. Join Shipper với Account để lấy thông tin cá nhân.
@@ -73,7 +136,7 @@ public interface ShipperRepository extends JpaRepository<Shipper, Integer> {
     );
 
     // ... (Giữ nguyên hàm findShipperHistoryOrders)
-    @Query("SELECT DISTINCT o FROM Order o " +
+    @Query("SELECT o FROM Order o " +
             "JOIN FETCH o.restaurant r " +
             "JOIN FETCH o.customer c_acc " +
             "LEFT JOIN FETCH o.orderItems oi " +
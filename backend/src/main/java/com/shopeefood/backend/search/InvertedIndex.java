@@ -0,0 +1,279 @@
+package com.shopeefood.backend.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục đảo ngược trong bộ nhớ: từ (đã bỏ dấu) -> danh sách document + trọng số.
+ * Hỗ trợ khớp chính xác, khớp tiền tố ("ph" -> "pho") và gõ sai 1-2 ký tự
+ * ("bnh" -> "banh"). Điểm = tổng theo từng từ của (độ khớp * trọng số field * idf).
+ * Gõ sai: chỉ tính khoảng cách sửa với các term có độ dài gần bằng và chung đủ bigram với từ tìm kiếm
+ * (chỉ mục bigram -> term), không quét cả bộ từ vựng.
+ * Document phải khớp TẤT CẢ các từ trong câu tìm kiếm.
+ */
+public class InvertedIndex {
+
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.8;
+    private static final double FUZZY = 0.5;
+
+    // Từ ngắn hơn không sửa lỗi chính tả (tránh khớp bừa)
+    private static final int FUZZY_MIN_LENGTH = 4;
+    private static final int MAX_QUERY_TOKENS = 8;
+
+    // term -> (docId -> trọng số lớn nhất của term trong doc)
+    private final NavigableMap<String, Map<Integer, Double>> postings = new TreeMap<>();
+    // bigram (có đánh dấu đầu / cuối từ: "^b", "ba", ..., "h$") -> các term chứa bigram đó
+    private final Map<String, Set<String>> gramTerms = new HashMap<>();
+    // docId -> các term của doc (để xóa / cập nhật)
+    private final Map<Integer, Map<String, Double>> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Một kết quả tìm kiếm.
+     */
+    public record Hit(Integer docId, double score) {
+    }
+
+    /**
+     * Nội dung của 1 document: nhiều đoạn text, mỗi đoạn có trọng số riêng
+     * (tên quán quan trọng hơn tên option...).
+     */
+    public static class Document {
+        private final Map<String, Double> terms = new HashMap<>();
+
+        public Document add(String text, double weight) {
+            for (String token : TextNormalizer.tokenize(text)) {
+                terms.merge(token, weight, Math::max);
+            }
+            return this;
+        }
+
+        public Document addAll(Collection<String> texts, double weight) {
+            for (String text : texts) {
+                add(text, weight);
+            }
+            return this;
+        }
+    }
+
+    public void put(Integer docId, Document document) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(docId);
+            if (document.terms.isEmpty()) {
+                return;
+            }
+            documents.put(docId, document.terms);
+            document.terms.forEach((term, weight) -> postings
+                    .computeIfAbsent(term, t -> {
+                        for (String gram : grams(t)) {
+                            gramTerms.computeIfAbsent(gram, g -> new HashSet<>()).add(t);
+                        }
+                        return new HashMap<>();
+                    })
+                    .put(docId, weight));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer docId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tìm kiếm, trả về kết quả đã sắp xếp theo điểm giảm dần.
+     */
+    public List<Hit> search(String query) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        if (tokens.size() > MAX_QUERY_TOKENS) {
+            tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = null;
+            for (String token : tokens) {
+                Map<Integer, Double> tokenScores = scoreToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    // AND: chỉ giữ doc khớp mọi từ
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    for (Map.Entry<Integer, Double> e : scores.entrySet()) {
+                        e.setValue(e.getValue() + tokenScores.get(e.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(scores.size());
+            scores.forEach((docId, score) -> hits.add(new Hit(docId, score)));
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::docId));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Điểm của từng doc cho 1 từ trong câu tìm kiếm (lấy term khớp tốt nhất)
+    private Map<Integer, Double> scoreToken(String token) {
+        Map<Integer, Double> result = new HashMap<>();
+
+        // Khớp chính xác + tiền tố: các term nằm trong khoảng [token, token + MAX_VALUE)
+        for (Map.Entry<String, Map<Integer, Double>> entry : postings
+                .subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            double quality = entry.getKey().equals(token) ? EXACT : PREFIX;
+            accumulate(result, entry.getValue(), quality);
+        }
+
+        // Sai chính tả: chỉ xét khi không có term nào khớp chính xác
+        if (token.length() >= FUZZY_MIN_LENGTH && !postings.containsKey(token)) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            for (String term : fuzzyCandidates(token, maxEdits)) {
+                if (term.startsWith(token)) {
+                    continue;
+                }
+                if (withinEditDistance(token, term, maxEdits)) {
+                    accumulate(result, postings.get(term), FUZZY);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Term có thể nằm trong maxEdits lần sửa: độ dài lệch <= maxEdits và chung ít nhất
+     * (số bigram của token - 3 * maxEdits) bigram (1 lần sửa / đảo chữ làm mất tối đa 3 bigram).
+     */
+    private Set<String> fuzzyCandidates(String token, int maxEdits) {
+        Set<String> tokenGrams = grams(token);
+        int minShared = Math.max(1, tokenGrams.size() - 3 * maxEdits);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : tokenGrams) {
+            Set<String> terms = gramTerms.get(gram);
+            if (terms == null) {
+                continue;
+            }
+            for (String term : terms) {
+                if (Math.abs(term.length() - token.length()) <= maxEdits) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        Set<String> candidates = new HashSet<>();
+        shared.forEach((term, count) -> {
+            if (count >= minShared) {
+                candidates.add(term);
+            }
+        });
+        return candidates;
+    }
+
+    // Bigram của term, thêm ^ / $ để ký tự đầu / cuối cũng nằm trong 2 bigram
+    static Set<String> grams(String term) {
+        String padded = "^" + term + "$";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 2 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private void accumulate(Map<Integer, Double> result, Map<Integer, Double> docs, double quality) {
+        // Từ càng hiếm (ít doc chứa) thì càng có giá trị
+        double idf = Math.log(1.0 + (double) Math.max(documents.size(), 1) / docs.size());
+        for (Map.Entry<Integer, Double> doc : docs.entrySet()) {
+            double score = quality * doc.getValue() * idf;
+            result.merge(doc.getKey(), score, Math::max);
+        }
+    }
+
+    private void removeUnlocked(Integer docId) {
+        Map<String, Double> terms = documents.remove(docId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Integer, Double> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(docId);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                    for (String gram : grams(term)) {
+                        Set<String> gramSet = gramTerms.get(gram);
+                        if (gramSet != null && gramSet.remove(term) && gramSet.isEmpty()) {
+                            gramTerms.remove(gram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Khoảng cách sửa (Damerau-Levenshtein, đảo 2 ký tự liền nhau tính 1 lần sửa)
+     * có giới hạn: dừng sớm khi chắc chắn vượt maxEdits.
+     */
+    static boolean withinEditDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return false;
+        }
+        int[] prevPrev = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    curr[j] = Math.min(curr[j], prevPrev[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > maxEdits) {
+                return false;
+            }
+            int[] tmp = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[b.length()] <= maxEdits;
+    }
+}
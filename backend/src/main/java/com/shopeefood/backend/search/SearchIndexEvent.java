@@ -0,0 +1,20 @@
+package com.shopeefood.backend.search;
+
+/**
+ * Sự kiện báo dữ liệu tìm kiếm thay đổi (quán / danh mục).
+ * Được publish trong transaction ghi dữ liệu, index cập nhật sau khi commit.
+ */
+public record SearchIndexEvent(Target target, Integer id) {
+
+    public enum Target {
+        RESTAURANT, CATEGORY
+    }
+
+    public static SearchIndexEvent restaurant(Integer restaurantId) {
+        return new SearchIndexEvent(Target.RESTAURANT, restaurantId);
+    }
+
+    public static SearchIndexEvent category(Integer categoryId) {
+        return new SearchIndexEvent(Target.CATEGORY, categoryId);
+    }
+}
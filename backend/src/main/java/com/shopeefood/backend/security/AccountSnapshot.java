@@ -0,0 +1,15 @@
+package com.shopeefood.backend.security;
+
+import com.shopeefood.backend.entity.Account;
+
+/**
+ * Bản sao chỉ đọc các thông tin tài khoản hay dùng để kiểm tra quyền (PrincipalCache giữ vài chục giây).
+ * Không phải entity: không dùng để lưu / gắn quan hệ JPA.
+ */
+public record AccountSnapshot(Integer id, String username, String email, String role, boolean active) {
+
+    public static AccountSnapshot of(Account account) {
+        return new AccountSnapshot(account.getId(), account.getUsername(), account.getEmail(), account.getRole(),
+                !Boolean.FALSE.equals(account.getIsActive()));
+    }
+}
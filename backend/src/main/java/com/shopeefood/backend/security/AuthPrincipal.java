@@ -0,0 +1,8 @@
+package com.shopeefood.backend.security;
+
+/**
+ * Người gọi API, lấy từ token đã xác thực (không query DB).
+ * role: CUSTOMER / SHIPPER / OWNER / ADMIN (chữ hoa, không có tiền tố ROLE_).
+ */
+public record AuthPrincipal(Integer accountId, String role) {
+}
@@ -0,0 +1,11 @@
+package com.shopeefood.backend.security;
+
+/**
+ * Token sai chữ ký / sai định dạng / hết hạn.
+ */
+public class InvalidTokenException extends RuntimeException {
+
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,40 @@
+package com.shopeefood.backend.security;
+
+import java.util.Optional;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Người gọi của request hiện tại (đã được TokenAuthenticationFilter xác thực).
+ * Các API cũ nhận accountId / actorId từ client: có token thì id đó phải là chính người gọi.
+ */
+public final class RequestPrincipal {
+
+    private RequestPrincipal() {
+    }
+
+    public static Optional<AuthPrincipal> current() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthPrincipal principal) {
+            return Optional.of(principal);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * id tài khoản thực hiện thao tác: có token -> id trong token (client gửi id khác -> SecurityException),
+     * chưa có token (client cũ, khi auth.token.required=false) -> id client gửi lên.
+     */
+    public static Integer resolveActorId(Integer requestedId) {
+        Optional<AuthPrincipal> principal = current();
+        if (principal.isEmpty()) {
+            return requestedId;
+        }
+        Integer tokenId = principal.get().accountId();
+        if (requestedId != null && !requestedId.equals(tokenId)) {
+            throw new SecurityException("Không được thao tác thay tài khoản khác");
+        }
+        return tokenId;
+    }
+}
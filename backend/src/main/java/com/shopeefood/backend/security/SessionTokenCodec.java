@@ -0,0 +1,131 @@
+package com.shopeefood.backend.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Locale;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Tạo / kiểm tra token đăng nhập dạng JWT ký HMAC-SHA256 (HS256):
+ *   base64url(header).base64url({"sub": accountId, "role": ..., "iat": ..., "exp": ...}).base64url(chữ ký)
+ * Token tự chứa đủ thông tin (stateless): kiểm tra chỉ cần khóa bí mật, không query DB, không lưu phiên.
+ * Không phụ thuộc Spring (tạo 1 lần trong SecurityConfig).
+ */
+public class SessionTokenCodec {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final String HEADER = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+    // Lệch đồng hồ cho phép giữa các máy chủ
+    private static final long CLOCK_SKEW_SECONDS = 30;
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    public SessionTokenCodec(byte[] secret, Duration ttl, ObjectMapper objectMapper, Clock clock) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("Khóa ký token phải dài tối thiểu 32 byte");
+        }
+        this.key = new SecretKeySpec(secret, HMAC);
+        this.ttl = ttl;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Token mới cho tài khoản, hết hạn sau ttl.
+     */
+    public String issue(Integer accountId, String role) {
+        long now = clock.instant().getEpochSecond();
+        ObjectNode claims = objectMapper.createObjectNode();
+        claims.put("sub", accountId);
+        claims.put("role", normalizeRole(role));
+        claims.put("iat", now);
+        claims.put("exp", now + ttl.getSeconds());
+        String payload;
+        try {
+            payload = Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(claims));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        String signingInput = HEADER + "." + payload;
+        return signingInput + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(signingInput));
+    }
+
+    /**
+     * Kiểm tra chữ ký + hạn dùng, trả về người gọi. Sai -> InvalidTokenException.
+     */
+    public AuthPrincipal verify(String token) {
+        if (token == null) {
+            throw new InvalidTokenException("Thiếu token");
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first || last == token.length() - 1) {
+            throw new InvalidTokenException("Token không hợp lệ");
+        }
+        if (!HEADER.equals(token.substring(0, first))) {
+            throw new InvalidTokenException("Token không hợp lệ");
+        }
+
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(last + 1));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTokenException("Token không hợp lệ");
+        }
+        // So sánh thời gian hằng để không lộ chữ ký qua thời gian phản hồi
+        if (!MessageDigest.isEqual(sign(token.substring(0, last)), signature)) {
+            throw new InvalidTokenException("Token không hợp lệ");
+        }
+
+        JsonNode claims;
+        try {
+            claims = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(first + 1, last)));
+        } catch (Exception e) {
+            throw new InvalidTokenException("Token không hợp lệ");
+        }
+        long exp = claims.path("exp").asLong(0);
+        if (Instant.ofEpochSecond(exp + CLOCK_SKEW_SECONDS).isBefore(clock.instant())) {
+            throw new InvalidTokenException("Phiên đăng nhập đã hết hạn, vui lòng đăng nhập lại");
+        }
+        if (!claims.path("sub").canConvertToInt()) {
+            throw new InvalidTokenException("Token không hợp lệ");
+        }
+        return new AuthPrincipal(claims.path("sub").asInt(), claims.path("role").asText(""));
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    private byte[] sign(String input) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(input.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String normalizeRole(String role) {
+        if (role == null) {
+            return "";
+        }
+        return role.trim().toUpperCase(Locale.ROOT).replace("ROLE_", "");
+    }
+}
@@ -0,0 +1,96 @@
+package com.shopeefood.backend.security;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.shopeefood.backend.service.PrincipalCache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Đọc token đăng nhập (header "Authorization: Bearer ..."; riêng các kênh SSE trong SSE_PATHS nhận thêm
+ * ?access_token=... vì EventSource của trình duyệt không gửi được header), kiểm tra chữ ký bằng SessionTokenCodec,
+ * tra tài khoản qua PrincipalCache rồi gắn AuthPrincipal vào SecurityContext với quyền ROLE_<role hiện tại>.
+ * - Không có token: đi tiếp như khách (SecurityConfig quyết định endpoint nào bắt buộc đăng nhập)
+ * - Token sai / hết hạn / tài khoản không còn: trả 401 ngay
+ * - Tài khoản bị vô hiệu hóa: trả 403 cho mọi endpoint (token cũ không dùng tiếp được)
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+    private static final String QUERY_PARAM = "access_token";
+    // Token trên URL dễ lọt vào log / lịch sử trình duyệt: chỉ nhận ở các kênh SSE
+    private static final Set<String> SSE_PATHS = Set.of("/api/shipper/orders/available/stream");
+
+    private final SessionTokenCodec tokenCodec;
+    private final PrincipalCache principalCache;
+
+    public TokenAuthenticationFilter(SessionTokenCodec tokenCodec, PrincipalCache principalCache) {
+        this.tokenCodec = tokenCodec;
+        this.principalCache = principalCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = resolveToken(request);
+        if (token != null) {
+            AuthPrincipal principal;
+            try {
+                principal = tokenCodec.verify(token);
+            } catch (InvalidTokenException e) {
+                reject(response, HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+                return;
+            }
+            Optional<AccountSnapshot> account = principalCache.get(principal.accountId());
+            if (account.isEmpty()) {
+                reject(response, HttpServletResponse.SC_UNAUTHORIZED, "Tài khoản không tồn tại");
+                return;
+            }
+            if (!account.get().active()) {
+                reject(response, HttpServletResponse.SC_FORBIDDEN, "Tài khoản đã bị vô hiệu hóa");
+                return;
+            }
+            // Quyền theo role hiện tại của tài khoản (đổi role có hiệu lực không cần đăng nhập lại)
+            principal = new AuthPrincipal(principal.accountId(), SessionTokenCodec.normalizeRole(account.get().role()));
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    principal, null, List.of(new SimpleGrantedAuthority("ROLE_" + principal.role())));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+        SecurityContextHolder.clearContext();
+        response.setStatus(status);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    private static String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            String token = header.substring(BEARER.length()).trim();
+            return token.isEmpty() ? null : token;
+        }
+        if ("GET".equals(request.getMethod())
+                && SSE_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()))) {
+            String token = request.getParameter(QUERY_PARAM);
+            return token == null || token.isBlank() ? null : token.trim();
+        }
+        return null;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,6 +12,7 @@ import com.shopeefood.backend.dto.CategoryDTO;
 import com.shopeefood.backend.entity.Category; // Thêm Transactional
 import com.shopeefood.backend.entity.CategoryAttribute; // Nhớ import
 import com.shopeefood.backend.repository.CategoryRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
 
 @Service
 public class AdminCategoryService {
@@ -18,13 +20,27 @@ public class AdminCategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private RestaurantSearchService restaurantSearchService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     // 1. Lấy tất cả (Giữ nguyên, Homepage dùng cái này vẫn OK nhờ @JsonIgnore ở
     // Entity con)
     public List<Category> getAllCategories(String keyword) {
         if (keyword != null && !keyword.trim().isEmpty()) {
-            return categoryRepository.searchByKeyword(keyword.trim());
+            // Chỉ mục chưa dựng xong -> tìm bằng SQL như cũ
+            if (!restaurantSearchService.isReady()) {
+                return referenceDataCache.searchCategories(keyword.trim());
+            }
+            // Giữ thứ tự theo độ liên quan
+            return referenceDataCache.getCategories(restaurantSearchService.searchCategories(keyword.trim()));
         }
-        return categoryRepository.findAll();
+        return referenceDataCache.getCategories();
     }
 
     // Hàm validate chung (Private)
@@ -38,6 +54,9 @@ public class AdminCategoryService {
         }
     }
 
+    // Thêm / sửa / xóa đều publish SearchIndexEvent.category: chỉ mục tìm kiếm và ReferenceDataCache
+    // cập nhật sau khi commit
+
     // 2. Tạo mới danh mục (CÓ SỬA ĐỔI)
     @Transactional
     public Category createCategory(CategoryDTO dto) {
@@ -63,7 +82,9 @@ public class AdminCategoryService {
             }
         }
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(SearchIndexEvent.category(saved.getId()));
+        return saved;
     }
 
     // 3. Cập nhật danh mục (CÓ SỬA ĐỔI)
@@ -112,7 +133,9 @@ public class AdminCategoryService {
             currentAttrs.clear();
         }
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(SearchIndexEvent.category(saved.getId()));
+        return saved;
     }
 
     // 4. Xóa danh mục (Giữ nguyên)
@@ -121,5 +144,6 @@ public class AdminCategoryService {
             throw new RuntimeException("Không tìm thấy danh mục để xóa");
         }
         categoryRepository.deleteById(id);
+        eventPublisher.publishEvent(SearchIndexEvent.category(id));
     }
 }
\ No newline at end of file
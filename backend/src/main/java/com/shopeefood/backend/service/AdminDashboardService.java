@@ -6,6 +6,7 @@ import com.shopeefood.backend.dto.ChartDataDTO;
 import com.shopeefood.backend.dto.RevenueAnalysisDTO;
 import com.shopeefood.backend.dto.TopCustomerDTO;
 import com.shopeefood.backend.entity.Restaurant;
+import com.shopeefood.backend.repository.DailyStatsRepository;
 import com.shopeefood.backend.repository.OrderRepository;
 import com.shopeefood.backend.repository.RestaurantRepository;
 import com.shopeefood.backend.repository.ShipperRepository;
@@ -27,13 +28,14 @@ import java.util.stream.Collectors;
 public class AdminDashboardService {
 
     @Autowired private OrderRepository orderRepository;
+    @Autowired private DailyStatsRepository dailyStatsRepository;
     @Autowired private RestaurantRepository restaurantRepository;
     @Autowired private ShipperRepository shipperRepository;
 
     // 1. Lấy số liệu tổng quan (Stats Cards)
     public AdminDashboardStatsDTO getDashboardStats() {
-        // Doanh thu toàn sàn (chỉ tính đơn COMPLETED)
-        BigDecimal totalRevenue = orderRepository.sumTotalRevenue();
+        // Doanh thu toàn sàn (chỉ tính đơn COMPLETED) - cộng từ bảng tổng hợp theo ngày
+        BigDecimal totalRevenue = dailyStatsRepository.sumRevenue();
         if (totalRevenue == null) totalRevenue = BigDecimal.ZERO;
 
         // Số đơn hôm nay
@@ -52,11 +54,11 @@ public class AdminDashboardService {
 
     // 2. Lấy dữ liệu biểu đồ doanh thu 7 ngày gần nhất
     public List<ChartDataDTO> getRevenueChartData() {
-        // Lấy mốc thời gian 7 ngày trước
-        LocalDateTime sevenDaysAgo = LocalDateTime.now().minusDays(7);
+        // 7 ngày gần nhất (tính cả hôm nay)
+        LocalDate today = LocalDate.now();
 
-        // Gọi Repo lấy dữ liệu thô (List Object[])
-        List<Object[]> rawData = orderRepository.getRevenueLast7DaysRaw(sevenDaysAgo);
+        // Gọi Repo lấy dữ liệu thô (List Object[]) từ bảng tổng hợp
+        List<Object[]> rawData = dailyStatsRepository.getRevenueByDay(today.minusDays(6), today, null);
 
         // Chuyển List Object[] thành Map để dễ tra cứu. Key = Ngày (String), Value = Tiền
         Map<String, BigDecimal> dataMap = rawData.stream().collect(Collectors.toMap(
@@ -69,7 +71,7 @@ public class AdminDashboardService {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
         for (int i = 6; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
+            LocalDate date = today.minusDays(i);
             String key = date.format(formatter);
 
             // Nếu ngày đó có doanh thu thì lấy, không thì gán 0
@@ -88,12 +90,8 @@ public class AdminDashboardService {
             fromDate = toDate.minusDays(6); // 7 ngày (tính cả hôm nay)
         }
 
-        // Chuyển sang LocalDateTime để query DB
-        LocalDateTime startDateTime = fromDate.atStartOfDay();
-        LocalDateTime endDateTime = toDate.atTime(LocalTime.MAX);
-
-        // 2. Gọi Repo lấy dữ liệu thô
-        List<Object[]> rawData = orderRepository.getRevenueByFilter(startDateTime, endDateTime, restaurantId);
+        // 2. Gọi Repo lấy dữ liệu thô (bảng tổng hợp lưu theo ngày, không cần đổi sang LocalDateTime)
+        List<Object[]> rawData = dailyStatsRepository.getRevenueByDay(fromDate, toDate, restaurantId);
 
         // 3. Convert List Object[] sang Map<String, BigDecimal> để dễ xử lý
         Map<String, BigDecimal> dataMap = rawData.stream().collect(Collectors.toMap(
@@ -1,16 +1,27 @@
 package com.shopeefood.backend.service;
 
+import com.shopeefood.backend.dto.MapClusterDTO;
 import com.shopeefood.backend.dto.MapLocationDTO;
+import com.shopeefood.backend.dto.MapViewportResponse;
 import com.shopeefood.backend.entity.Restaurant;
 import com.shopeefood.backend.entity.Shipper;
 import com.shopeefood.backend.repository.RestaurantRepository;
 import com.shopeefood.backend.repository.ShipperRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AdminMapService {
@@ -21,6 +32,218 @@ public class AdminMapService {
     @Autowired
     private ShipperRepository shipperRepository;
 
+    @Autowired
+    private ShipperLocationService shipperLocationService;
+
+    // Zoom >= markerZoom thì trả từng điểm, nhỏ hơn thì gom cụm
+    @Value("${admin.map.marker-zoom:14}")
+    private int markerZoom;
+
+    // Số điểm tối đa trả về ở chế độ từng điểm, nhiều hơn thì gom cụm
+    @Value("${admin.map.max-markers:2000}")
+    private int maxMarkers;
+
+    // Số snapshot (tập shipper client đang hiển thị) giữ lại, bỏ bản lâu không dùng
+    @Value("${admin.map.max-snapshots:500}")
+    private int maxSnapshots;
+
+    // Mỗi tile 256px chia thành 4x4 ô gom cụm (~64px một cụm)
+    private static final int CLUSTER_CELLS_PER_TILE = 4;
+
+    // Version lần cuối có quán thay đổi (client có version cũ hơn phải tải lại toàn bộ)
+    private volatile long restaurantVersion = 0L;
+
+    // snapshot id -> shipper đang hiển thị sau response đó (thứ tự truy cập, đầu là bản lâu nhất không dùng)
+    private final LinkedHashMap<Long, Set<Integer>> snapshots = new LinkedHashMap<>(64, 0.75f, true);
+    private final AtomicLong snapshotSeq = new AtomicLong();
+
+    /**
+     * Dữ liệu bản đồ admin cho khung nhìn [minLat, maxLat] x [minLng, maxLng] ở mức zoom.
+     * since: version nhận được ở lần gọi trước (null / 0 -> lấy toàn bộ).
+     * snapshot: snapshot nhận được ở lần gọi trước, chỉ báo xóa các shipper client đang hiển thị
+     * (không tìm thấy -> lấy toàn bộ).
+     * Chỉ đọc các quán / shipper trong khung, không quét toàn bộ bảng.
+     */
+    @Transactional(readOnly = true)
+    public MapViewportResponse getViewport(double minLat, double maxLat, double minLng, double maxLng,
+            int zoom, Long since, Long snapshot) {
+        if (minLat > maxLat || minLng > maxLng) {
+            throw new IllegalArgumentException("Khung nhìn không hợp lệ");
+        }
+        minLat = Math.max(minLat, -90);
+        maxLat = Math.min(maxLat, 90);
+        minLng = Math.max(minLng, -180);
+        maxLng = Math.min(maxLng, 180);
+        zoom = Math.max(0, Math.min(zoom, 22));
+
+        // Đọc version trước khi lấy dữ liệu: thay đổi xảy ra trong lúc đọc sẽ có ở lần gọi sau
+        long version = shipperLocationService.currentVersion();
+        MapViewportResponse response = new MapViewportResponse();
+        response.setVersion(version);
+
+        if (zoom < markerZoom) {
+            fillClusters(response, minLat, maxLat, minLng, maxLng, zoom);
+            return response;
+        }
+
+        // Client chưa có dữ liệu, version lạ (server khởi động lại) hoặc quán đã đổi -> trả toàn bộ
+        boolean full = since == null || since <= 0 || since > version || restaurantVersion > since;
+        Set<Integer> shown = full ? null : shownShippers(snapshot);
+        if (shown != null) {
+            fillShipperDelta(response, since, shown, minLat, maxLat, minLng, maxLng);
+            return response;
+        }
+
+        List<Object[]> restaurantRows = restaurantRepository.findMapRestaurants(
+                minLat, maxLat, minLng, maxLng, maxMarkers + 1);
+        Set<Integer> shipperIds = new HashSet<>(shipperRepository.findIdsInBox(
+                minLat, maxLat, minLng, maxLng, maxMarkers + 1));
+        shipperIds.addAll(shipperLocationService.positionsIn(minLat, maxLat, minLng, maxLng).keySet());
+        if (restaurantRows.size() + shipperIds.size() > maxMarkers) {
+            fillClusters(response, minLat, maxLat, minLng, maxLng, zoom);
+            return response;
+        }
+
+        response.setFull(true);
+        for (Object[] row : restaurantRows) {
+            response.getMarkers().add(toRestaurantMarker(row));
+        }
+        addShipperMarkers(response, shipperIds, minLat, maxLat, minLng, maxLng);
+        remember(response, new HashSet<>());
+        return response;
+    }
+
+    /**
+     * Quán thay đổi (tạo / duyệt / sửa thông tin) -> client đang xem bản đồ tải lại toàn bộ ở lần gọi sau.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRestaurantChanged(SearchIndexEvent event) {
+        if (event != null && event.target() == SearchIndexEvent.Target.RESTAURANT) {
+            restaurantVersion = shipperLocationService.nextVersion();
+        }
+    }
+
+    private void fillClusters(MapViewportResponse response, double minLat, double maxLat,
+            double minLng, double maxLng, int zoom) {
+        double cellDeg = 360.0 / (1L << zoom) / CLUSTER_CELLS_PER_TILE;
+        response.setClustered(true);
+        response.setFull(true);
+        for (Object[] row : restaurantRepository.clusterMapRestaurants(minLat, maxLat, minLng, maxLng, cellDeg)) {
+            response.getClusters().add(toCluster("RESTAURANT", row));
+        }
+        for (Object[] row : shipperRepository.clusterMapShippers(minLat, maxLat, minLng, maxLng, cellDeg)) {
+            response.getClusters().add(toCluster("SHIPPER", row));
+        }
+    }
+
+    // Shipper đổi vị trí sau since: trong khung -> cập nhật, ra ngoài khung -> chỉ báo xóa nếu client đang hiển thị
+    private void fillShipperDelta(MapViewportResponse response, long since, Set<Integer> shown,
+            double minLat, double maxLat, double minLng, double maxLng) {
+        Set<Integer> inside = new HashSet<>();
+        for (Map.Entry<Integer, ShipperLocationService.Position> entry
+                : shipperLocationService.changedSince(since).entrySet()) {
+            ShipperLocationService.Position p = entry.getValue();
+            if (p.lat() >= minLat && p.lat() <= maxLat && p.lng() >= minLng && p.lng() <= maxLng) {
+                inside.add(entry.getKey());
+            } else if (shown.contains(entry.getKey())) {
+                response.getRemovedShipperIds().add(entry.getKey());
+            }
+        }
+        addShipperMarkers(response, inside, minLat, maxLat, minLng, maxLng);
+        response.getRemovedShipperIds().retainAll(shown);
+        Set<Integer> next = new HashSet<>(shown);
+        response.getRemovedShipperIds().forEach(next::remove);
+        remember(response, next);
+    }
+
+    private Set<Integer> shownShippers(Long snapshot) {
+        if (snapshot == null) {
+            return null;
+        }
+        synchronized (snapshots) {
+            return snapshots.get(snapshot);
+        }
+    }
+
+    // Lưu tập shipper client sẽ hiển thị sau response này, id mới cho mỗi response
+    // (response bị mất thì client gửi lại snapshot cũ vẫn còn đúng)
+    private void remember(MapViewportResponse response, Set<Integer> shown) {
+        for (MapLocationDTO marker : response.getMarkers()) {
+            if ("SHIPPER".equals(marker.getType())) {
+                shown.add(marker.getId());
+            }
+        }
+        long id = snapshotSeq.incrementAndGet();
+        synchronized (snapshots) {
+            snapshots.put(id, Set.copyOf(shown));
+            Iterator<Long> eldest = snapshots.keySet().iterator();
+            while (snapshots.size() > maxSnapshots && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        response.setSnapshot(id);
+    }
+
+    // Load thông tin shipper (kèm Account) trong 1 query, vị trí lấy bản mới nhất trong bộ nhớ
+    private void addShipperMarkers(MapViewportResponse response, Set<Integer> shipperIds,
+            double minLat, double maxLat, double minLng, double maxLng) {
+        if (shipperIds.isEmpty()) {
+            return;
+        }
+        for (Shipper s : shipperRepository.findWithAccountByIdIn(shipperIds)) {
+            ShipperLocationService.Position position = shipperLocationService.resolve(s);
+            if (position == null || position.lat() < minLat || position.lat() > maxLat
+                    || position.lng() < minLng || position.lng() > maxLng) {
+                // Vị trí trong DB còn nằm trong khung nhưng shipper đã đi ra ngoài
+                response.getRemovedShipperIds().add(s.getAccountId());
+                continue;
+            }
+            response.getMarkers().add(toShipperMarker(s, position));
+        }
+    }
+
+    private MapClusterDTO toCluster(String type, Object[] row) {
+        return new MapClusterDTO(type,
+                ((Number) row[1]).doubleValue(),
+                ((Number) row[2]).doubleValue(),
+                ((Number) row[0]).longValue());
+    }
+
+    // row: id, name, latitude, longitude, status, address, cover_image, phone
+    private MapLocationDTO toRestaurantMarker(Object[] row) {
+        return new MapLocationDTO(
+                ((Number) row[0]).intValue(),
+                (String) row[1],
+                "RESTAURANT",
+                ((Number) row[2]).doubleValue(),
+                ((Number) row[3]).doubleValue(),
+                row[4] != null ? row[4].toString() : "UNKNOWN",
+                (String) row[5],
+                (String) row[6],
+                row[7] != null ? (String) row[7] : "");
+    }
+
+    private MapLocationDTO toShipperMarker(Shipper s, ShipperLocationService.Position position) {
+        String status = "ONLINE";
+        if (s.getAccount() != null && !Boolean.TRUE.equals(s.getAccount().getIsActive())) {
+            status = "BLOCKED";
+        }
+        String phoneStr = (s.getAccount() != null) ? s.getAccount().getPhone() : "";
+        String vehicleInfo = (s.getVehicleType() != null ? s.getVehicleType() : "Xe máy")
+                + " - " + (s.getLicensePlate() != null ? s.getLicensePlate() : "N/A");
+        return new MapLocationDTO(
+                s.getAccountId(),
+                s.getFullName(),
+                "SHIPPER",
+                position.lat(),
+                position.lng(),
+                status,
+                vehicleInfo,
+                null,
+                phoneStr);
+    }
+
     @Transactional(readOnly = true)
     public List<MapLocationDTO> getAllLocations() {
         List<MapLocationDTO> locations = new ArrayList<>();
@@ -55,30 +278,11 @@ public class AdminMapService {
             }
         }
 
-        // 2. LẤY DANH SÁCH SHIPPER (Giữ nguyên)
-        List<Shipper> shippers = shipperRepository.findAll();
-        for (Shipper s : shippers) {
-            if (s.getCurrentLat() != null && s.getCurrentLong() != null) {
-                String status = "ONLINE";
-                if (s.getAccount() != null && !Boolean.TRUE.equals(s.getAccount().getIsActive())) {
-                    status = "BLOCKED";
-                }
-
-                String phoneStr = (s.getAccount() != null) ? s.getAccount().getPhone() : "";
-                String vehicleInfo = (s.getVehicleType() != null ? s.getVehicleType() : "Xe máy")
-                        + " - " + (s.getLicensePlate() != null ? s.getLicensePlate() : "N/A");
-
-                locations.add(new MapLocationDTO(
-                        s.getAccountId(),
-                        s.getFullName(),
-                        "SHIPPER",
-                        s.getCurrentLat(),
-                        s.getCurrentLong(),
-                        status,
-                        vehicleInfo,
-                        null,
-                        phoneStr
-                ));
+        // 2. LẤY DANH SÁCH SHIPPER (kèm Account trong 1 query)
+        for (Shipper s : shipperRepository.findAllWithAccount()) {
+            ShipperLocationService.Position position = shipperLocationService.resolve(s);
+            if (position != null) {
+                locations.add(toShipperMarker(s, position));
             }
         }
 
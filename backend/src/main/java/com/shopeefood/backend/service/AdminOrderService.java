@@ -1,5 +1,6 @@
 package com.shopeefood.backend.service;
 
+import com.shopeefood.backend.dto.CursorPage;
 import com.shopeefood.backend.dto.OrderDTO;
 import com.shopeefood.backend.dto.OrderItemDTO;
 import com.shopeefood.backend.entity.Account;
@@ -9,17 +10,39 @@ import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.repository.CustomerRepository; // Import mới
 import com.shopeefood.backend.repository.FeedbackRepository;
 import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,39 +56,272 @@ public class AdminOrderService {
     private CustomerRepository customerRepository;
     @Autowired
     private FeedbackRepository feedbackRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private OverdueOrderService overdueOrderService;
+    @Autowired
+    private DailyStatsService dailyStatsService;
+    @Autowired
+    private EtaService etaService;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Số dòng JDBC lấy về mỗi lần khi xuất CSV (con trỏ phía DB, heap không tăng theo số đơn)
+    @Value("${admin.order-export.fetch-size:500}")
+    private int exportFetchSize;
+
+    // Mỗi lượt xuất giữ 1 connection tới khi client tải xong (pool Hikari chỉ 5): giới hạn số lượt chạy cùng lúc
+    @Value("${admin.order-export.max-concurrent:2}")
+    private int exportMaxConcurrent;
+
+    // Thời gian tối đa của mỗi lần chạy câu query / lấy 1 lô (giây), 0 = không giới hạn
+    @Value("${admin.order-export.query-timeout-seconds:60}")
+    private int exportQueryTimeoutSeconds;
+
+    private Semaphore exportPermits;
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Ô CSV bắt đầu bằng các ký tự này bị Excel / Sheets hiểu là công thức
+    private static final String CSV_FORMULA_PREFIXES = "=+-@\t\r";
 
     private static final List<String> VIEWABLE_STATUSES = Arrays.asList(
             "PENDING", "PREPARING", "SHIPPING", "COMPLETED", "CANCELLED", "REFUNDED"
     );
 
-    // Hàm lấy danh sách đơn hàng (Sửa lại dùng Specification)
-    @Transactional(readOnly = true)
-    public List<OrderDTO> getOrders(String keyword, String status, LocalDate startDate, LocalDate endDate) {
+    @PostConstruct
+    void init() {
+        exportPermits = new Semaphore(Math.max(1, exportMaxConcurrent));
+    }
 
-        // 1. Xử lý ngày tháng
+    /**
+     * Danh sách đơn cho admin phân trang keyset trên (createdAt, id), mới nhất trước.
+     * Mỗi trang chỉ load limit đơn (tối đa MAX_PAGE_SIZE) + món, khách, shipper, đánh giá của các đơn đó.
+     * cursor: nextCursor của trang trước, rỗng -> trang đầu.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<OrderDTO> getOrderPage(String keyword, String status, LocalDate startDate, LocalDate endDate,
+                                             String cursor, Integer limit) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int size = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
         LocalDateTime startDateTime = (startDate != null) ? startDate.atStartOfDay() : null;
         LocalDateTime endDateTime = (endDate != null) ? endDate.atTime(LocalTime.MAX) : null;
-        // Xử lý keyword: nếu có thì thêm % để tìm kiếm gần đúng
-        String searchKey = (keyword != null && !keyword.trim().isEmpty())
+        String searchKey = toSearchKey(keyword);
+        List<String> targetStatuses = toStatuses(status);
+
+        Specification<Order> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(targetStatuses.size() == 1
+                    ? cb.equal(root.get("status"), targetStatuses.get(0))
+                    : root.get("status").in(targetStatuses));
+            Path<LocalDateTime> createdAt = root.get("createdAt");
+            if (startDateTime != null) {
+                predicates.add(cb.greaterThanOrEqualTo(createdAt, startDateTime));
+            }
+            if (endDateTime != null) {
+                predicates.add(cb.lessThanOrEqualTo(createdAt, endDateTime));
+            }
+            if (searchKey != null) {
+                // Cùng các cột tìm kiếm như findOrdersWithDetails
+                var acc = root.join("customer", JoinType.LEFT);
+                var cust = root.join("customerName", JoinType.LEFT);
+                var r = root.join("restaurant", JoinType.LEFT);
+                predicates.add(cb.or(
+                        cb.like(cb.lower(root.get("orderNumber")), searchKey),
+                        cb.like(cb.lower(cust.get("fullName")), searchKey),
+                        cb.like(cb.lower(acc.get("phone")), searchKey),
+                        cb.like(cb.lower(r.get("name")), searchKey),
+                        cb.like(cb.lower(r.get("phone")), searchKey)));
+            }
+            if (after != null) {
+                // (createdAt, id) < (after.at, after.id); vế <= giúp DB giới hạn đoạn index cần đọc
+                predicates.add(cb.lessThanOrEqualTo(createdAt, after.at()));
+                predicates.add(cb.or(
+                        cb.lessThan(createdAt, after.at()),
+                        cb.lessThan(root.get("id"), (int) after.id())));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không (không cần COUNT)
+        List<Order> rows = orderRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")))
+                .limit(size + 1)
+                .all());
+        boolean hasMore = rows.size() > size;
+        List<Order> pageRows = hasMore ? rows.subList(0, size) : rows;
+        if (pageRows.isEmpty()) {
+            return new CursorPage<>(List.of(), null, false);
+        }
+
+        List<Integer> orderIds = pageRows.stream().map(Order::getId).collect(Collectors.toList());
+        Map<Integer, Order> byId = orderRepository.findAdminOrdersByIds(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, o -> o));
+        List<OrderDTO> items = toDtos(orderIds.stream().map(byId::get).collect(Collectors.toList()));
+
+        String next = null;
+        if (hasMore) {
+            Order last = pageRows.get(pageRows.size() - 1);
+            next = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(items, next, hasMore);
+    }
+
+    /**
+     * Xuất CSV đơn hàng (cùng bộ lọc với danh sách) ghi thẳng ra out từng dòng.
+     * Đọc bằng JDBC con trỏ 1 chiều (forward-only, fetch size admin.order-export.fetch-size) trong transaction
+     * chỉ đọc: PostgreSQL chỉ trả theo lô khi tắt autocommit, heap giữ tối đa 1 lô dù xuất cả tháng.
+     * Mỗi đơn 1 dòng, món gộp vào 1 cột "tên x số lượng; ...".
+     * Tối đa admin.order-export.max-concurrent lượt chạy cùng lúc, quá thì báo 503 trước khi mở target
+     * (response chưa có header file); mỗi lần chạy query / lấy lô bị cắt sau admin.order-export.query-timeout-seconds.
+     */
+    public void exportCsv(String keyword, String status, LocalDate startDate, LocalDate endDate, ExportTarget target)
+            throws IOException {
+        if (!exportPermits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Đang có quá nhiều lượt xuất CSV, vui lòng thử lại sau ít phút");
+        }
+        try {
+            writeCsv(keyword, status, startDate, endDate, target.open());
+        } finally {
+            exportPermits.release();
+        }
+    }
+
+    /**
+     * Nơi ghi file CSV, chỉ được mở khi đã nhận lượt xuất (controller đặt header tải file ở đây).
+     */
+    @FunctionalInterface
+    public interface ExportTarget {
+        OutputStream open() throws IOException;
+    }
+
+    private void writeCsv(String keyword, String status, LocalDate startDate, LocalDate endDate, OutputStream out) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT o.id, o.order_number, o.created_at, o.status, r.name AS restaurant_name, " +
+                "COALESCE(c.full_name, a.username) AS customer_name, a.phone AS customer_phone, " +
+                "s.full_name AS shipper_name, o.payment_method, o.subtotal, o.shipping_fee, o.total_amount, " +
+                "o.shipping_address, o.completed_at, " +
+                "(SELECT string_agg(p.name || ' x' || oi.quantity, '; ' ORDER BY oi.id) " +
+                "   FROM order_items oi JOIN products p ON p.id = oi.product_id WHERE oi.order_id = o.id) AS items " +
+                "FROM orders o " +
+                "LEFT JOIN restaurants r ON r.id = o.restaurant_id " +
+                "LEFT JOIN accounts a ON a.id = o.customer_id " +
+                "LEFT JOIN customers c ON c.account_id = o.customer_id " +
+                "LEFT JOIN shippers s ON s.account_id = o.shipper_id " +
+                "WHERE o.status IN (");
+        List<String> targetStatuses = toStatuses(status);
+        sql.append(String.join(", ", Collections.nCopies(targetStatuses.size(), "?"))).append(")");
+        params.addAll(targetStatuses);
+        if (startDate != null) {
+            sql.append(" AND o.created_at >= ?");
+            params.add(Timestamp.valueOf(startDate.atStartOfDay()));
+        }
+        if (endDate != null) {
+            sql.append(" AND o.created_at <= ?");
+            params.add(Timestamp.valueOf(endDate.atTime(LocalTime.MAX)));
+        }
+        String searchKey = toSearchKey(keyword);
+        if (searchKey != null) {
+            sql.append(" AND (LOWER(o.order_number) LIKE ? OR LOWER(c.full_name) LIKE ? OR LOWER(a.phone) LIKE ?" +
+                    " OR LOWER(r.name) LIKE ? OR LOWER(r.phone) LIKE ?)");
+            params.addAll(Collections.nCopies(5, searchKey));
+        }
+        sql.append(" ORDER BY o.created_at DESC, o.id DESC");
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.setFetchSize(exportFetchSize);
+        jdbc.setQueryTimeout(exportQueryTimeoutSeconds);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            writer.write('\uFEFF'); // BOM để Excel đọc đúng tiếng Việt
+            writeCsvRow(writer, "Mã đơn", "Ngày tạo", "Trạng thái", "Quán", "Khách hàng", "SĐT khách", "Shipper",
+                    "Thanh toán", "Tạm tính", "Phí ship", "Tổng tiền", "Địa chỉ giao", "Hoàn thành lúc", "Món");
+            tx.executeWithoutResult(txStatus -> jdbc.query(sql.toString(), rs -> {
+                try {
+                    writeCsvRow(writer,
+                            rs.getString("order_number") != null ? rs.getString("order_number") : "#" + rs.getInt("id"),
+                            formatTimestamp(rs.getTimestamp("created_at")),
+                            rs.getString("status"),
+                            rs.getString("restaurant_name"),
+                            rs.getString("customer_name"),
+                            rs.getString("customer_phone"),
+                            rs.getString("shipper_name"),
+                            rs.getString("payment_method"),
+                            formatAmount(rs.getBigDecimal("subtotal")),
+                            formatAmount(rs.getBigDecimal("shipping_fee")),
+                            formatAmount(rs.getBigDecimal("total_amount")),
+                            rs.getString("shipping_address"),
+                            formatTimestamp(rs.getTimestamp("completed_at")),
+                            rs.getString("items"));
+                } catch (IOException e) {
+                    // Client ngắt tải giữa chừng -> dừng đọc DB
+                    throw new UncheckedIOException(e);
+                }
+            }, params.toArray()));
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toSearchKey(String keyword) {
+        return (keyword != null && !keyword.trim().isEmpty())
                 ? "%" + keyword.trim().toLowerCase() + "%"
                 : null;
+    }
 
-        // 2. Xử lý logic trạng thái
-        List<String> targetStatuses;
+    private static List<String> toStatuses(String status) {
         if (status == null || "ALL".equalsIgnoreCase(status)) {
             // Nếu là ALL, chỉ lấy danh sách cho phép (loại bỏ CART, REJECTED...)
-            targetStatuses = VIEWABLE_STATUSES;
-        } else {
-            // Nếu chọn cụ thể, chỉ lấy trạng thái đó
-            targetStatuses = Collections.singletonList(status);
+            return VIEWABLE_STATUSES;
+        }
+        // Nếu chọn cụ thể, chỉ lấy trạng thái đó
+        return Collections.singletonList(status);
+    }
+
+    private static void writeCsvRow(Writer writer, String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvCell(values[i]));
+            }
         }
+        writer.write("\r\n");
+    }
 
-        // 3. Gọi Query với danh sách trạng thái
-        List<Order> orders = orderRepository.findOrdersWithDetails(searchKey, targetStatuses, startDateTime, endDateTime);
+    // 1 ô CSV: thêm ' trước ô có dạng công thức (tên quán, địa chỉ... do người dùng nhập), bọc "" khi cần
+    static String csvCell(String value) {
+        if (!value.isEmpty() && CSV_FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
 
-        // --- Các phần xử lý Feedback, Customer Name, Map DTO giữ nguyên như cũ ---
+    private static String formatTimestamp(Timestamp value) {
+        return value != null ? value.toLocalDateTime().withNano(0).toString().replace('T', ' ') : null;
+    }
+
+    private static String formatAmount(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
 
-        // (Giữ nguyên code phần lấy Feedback và Customer Name map...)
+    // Map đơn -> DTO: tên khách, shipper, món, đánh giá (khách + đánh giá load 1 query cho cả danh sách)
+    private List<OrderDTO> toDtos(List<Order> orders) {
         List<Integer> completedOrderIds = orders.stream()
                 .filter(o -> "COMPLETED".equals(o.getStatus()))
                 .map(Order::getId)
@@ -163,6 +419,8 @@ public class AdminOrderService {
         // Mốc 3: Bắt đầu giao (Shipper nhận chuyến)
         if ("SHIPPING".equals(newStatus) && !"SHIPPING".equals(oldStatus)) {
             order.setShippedAt(now);
+            order.setEstimatedDeliveryTimeMinutes(etaService.estimateMinutes(order,
+                    order.getShipper() != null ? order.getShipper().getAccountId() : null));
         }
         // Mốc 4: Hoàn thành hoặc Hủy
         if (("COMPLETED".equals(newStatus) || "CANCELLED".equals(newStatus))
@@ -174,6 +432,18 @@ public class AdminOrderService {
         order.setStatus(newStatus);
         Order savedOrder = orderRepository.save(order);
 
+        if ("SHIPPING".equals(oldStatus) && !"SHIPPING".equals(newStatus)) {
+            overdueOrderService.forget(savedOrder.getId());
+        }
+
+        // Cập nhật kênh đơn có sẵn của shipper
+        if ("PREPARING".equals(newStatus) && !"PREPARING".equals(oldStatus)) {
+            eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.available(savedOrder.getId()));
+        } else if ("PREPARING".equals(oldStatus) && !"PREPARING".equals(newStatus)) {
+            eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.taken(savedOrder.getId()));
+        }
+        dailyStatsService.orderChanged(savedOrder, oldStatus);
+
         // Khi trả về DTO sau update, cũng cần điền tên khách hàng
         OrderDTO dto = new OrderDTO(savedOrder);
         if (savedOrder.getCustomer() != null) {
@@ -9,7 +9,9 @@ import com.shopeefood.backend.repository.AccountRepository;
 import com.shopeefood.backend.repository.OrderRepository;
 import com.shopeefood.backend.repository.ProductRepository;
 import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,6 +19,9 @@ import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,11 +30,19 @@ public class AdminRestaurantService {
     @Autowired
     private RestaurantRepository restaurantRepository;
     @Autowired
+    private PrincipalCache principalCache;
+    @Autowired
     private OrderRepository orderRepository; // <--- Inject thêm cái này
     @Autowired
     private ProductRepository productRepository;
     @Autowired
     private AccountRepository accountRepository;
+    @Autowired
+    private RestaurantSearchService restaurantSearchService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private EmailService emailService;
 
 
     // 1. Lấy danh sách quán đang chờ duyệt (PENDING)
@@ -77,6 +90,7 @@ public class AdminRestaurantService {
         }
 
         restaurantRepository.save(restaurant);
+        eventPublisher.publishEvent(SearchIndexEvent.restaurant(restaurant.getId()));
         // Nếu duyệt, cập nhật role của chủ quán thành "OWNER" (nếu chưa phải)
         if (isApproved && restaurant.getOwner() != null && restaurant.getOwner().getAccount() != null) {
             Account acc = restaurant.getOwner().getAccount();
@@ -84,9 +98,16 @@ public class AdminRestaurantService {
             if (!"OWNER".equals(role)) {
                 acc.setRole("OWNER");
                 accountRepository.save(acc);
+                principalCache.invalidate(acc.getId());
             }
         }
 
+        // Báo kết quả duyệt cho chủ quán (gửi nền sau khi commit)
+        if (restaurant.getOwner() != null && restaurant.getOwner().getAccount() != null
+                && restaurant.getOwner().getAccount().getEmail() != null) {
+            emailService.sendRestaurantReviewEmail(restaurant.getOwner().getAccount().getEmail(),
+                    restaurant.getName(), isApproved, reason);
+        }
     }
 
 
@@ -130,6 +151,7 @@ public class AdminRestaurantService {
         }
 
         restaurantRepository.save(restaurant);
+        eventPublisher.publishEvent(SearchIndexEvent.restaurant(restaurant.getId()));
     }
 
     @Transactional(readOnly = true)
@@ -153,8 +175,16 @@ public class AdminRestaurantService {
         // 2. Xử lý keyword null
         String searchKey = (keyword == null) ? "" : keyword.trim();
 
-        // 3. Gọi Repository
-        List<Restaurant> restaurants = restaurantRepository.findByStatusesAndKeyword(statuses, searchKey);
+        // 3. Có keyword và chỉ mục đã sẵn sàng -> tìm trong chỉ mục (bỏ dấu, gõ sai vẫn ra)
+        List<Restaurant> restaurants;
+        if (!searchKey.isEmpty() && restaurantSearchService.isReady()) {
+            List<Integer> ids = restaurantSearchService.searchManagedRestaurants(searchKey, statuses);
+            Map<Integer, Restaurant> byId = restaurantRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Restaurant::getId, Function.identity()));
+            restaurants = ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        } else {
+            restaurants = restaurantRepository.findByStatusesAndKeyword(statuses, searchKey);
+        }
 
         return restaurants.stream().map(RestaurantDTO::new).collect(Collectors.toList());
     }
@@ -26,6 +26,8 @@ public class AdminShipperService {
     @Autowired
     private ShipperRepository shipperRepository;
     @Autowired
+    private PrincipalCache principalCache;
+    @Autowired
     private AccountRepository accountRepository;
     @Autowired
     private FeedbackRepository feedbackRepository;
@@ -63,6 +65,7 @@ public class AdminShipperService {
         account.setIsActive(!account.getIsActive());
 
         accountRepository.save(account);
+        principalCache.invalidate(account.getId());
     }
 
     @Transactional(readOnly = true)
@@ -10,9 +10,13 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.security.SecureRandom;
+
 @Service
 public class AuthService {
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     @Autowired
     private AccountRepository accountRepository;
 
@@ -22,6 +26,9 @@ public class AuthService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private EmailService emailService;
+
     @Transactional
     public void registerCustomer(RegisterRequest request) {
         if (accountRepository.findByUsername(request.getUsername()).isPresent()) {
@@ -50,4 +57,32 @@ public class AuthService {
 
         customerRepository.save(newCustomer);
     }
-}
\ No newline at end of file
+
+    /**
+     * Quên mật khẩu: đổi mật khẩu và ghi email thông báo trong cùng 1 transaction
+     * (email được gửi nền, request không chờ SMTP).
+     */
+    @Transactional
+    public void resetPassword(String email) {
+        Account account = accountRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Email không tồn tại trong hệ thống"));
+
+        // Mật khẩu ngẫu nhiên (6 chữ số đầu của currentTimeMillis gần như cố định, đoán được)
+        String newPassword = randomPassword();
+
+        account.setPassword(passwordEncoder.encode(newPassword));
+        accountRepository.save(account);
+
+        emailService.sendNewPasswordEmail(account.getEmail(), newPassword);
+    }
+
+    // 10 ký tự chữ + số, bỏ các ký tự dễ nhầm (0/O, 1/l/I)
+    private static String randomPassword() {
+        String alphabet = "ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz23456789";
+        StringBuilder password = new StringBuilder(10);
+        for (int i = 0; i < 10; i++) {
+            password.append(alphabet.charAt(RANDOM.nextInt(alphabet.length())));
+        }
+        return password.toString();
+    }
+}
@@ -0,0 +1,288 @@
+package com.shopeefood.backend.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.shopeefood.backend.entity.Customer;
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.entity.Shipper;
+import com.shopeefood.backend.repository.CustomerRepository;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ShipperRepository;
+import com.shopeefood.backend.util.GeoUtils;
+
+/**
+ * Kênh đẩy (SSE) danh sách đơn có sẵn cho shipper, thay cho việc poll
+ * GET /api/shipper/orders/available.
+ * - Khi kết nối: gửi snapshot các đơn PREPARING chưa có shipper trong bán kính
+ * - Owner duyệt đơn (PREPARING): gửi "order-available" tới shipper ở gần quán
+ * - Shipper nhận đơn / đơn bị hủy: gửi "order-taken" để client xóa khỏi danh sách
+ * - Điều phối tự động (DispatchService): gửi "order-offer" / "order-offer-cancelled" cho đúng 1 shipper
+ * Sự kiện được đẩy sau khi transaction commit, chạy ở thread riêng.
+ */
+@Service
+public class AvailableOrderFeedService {
+
+    public static final String EVENT_SNAPSHOT = "snapshot";
+    public static final String EVENT_AVAILABLE = "order-available";
+    public static final String EVENT_TAKEN = "order-taken";
+    public static final String EVENT_OFFER = "order-offer";
+    public static final String EVENT_OFFER_CANCELLED = "order-offer-cancelled";
+    private static final String EVENT_PING = "ping";
+
+    // Client EventSource tự kết nối lại khi hết hạn
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ShipperRepository shipperRepository;
+
+    @Value("${shipper.feed.radius-km:5}")
+    private double defaultRadiusKm;
+
+    /**
+     * Sự kiện thay đổi danh sách đơn có sẵn.
+     * available = true: đơn vừa sẵn sàng cho shipper; false: đơn đã bị nhận / hủy.
+     */
+    public record OrderFeedEvent(Integer orderId, boolean available) {
+
+        public static OrderFeedEvent available(Integer orderId) {
+            return new OrderFeedEvent(orderId, true);
+        }
+
+        public static OrderFeedEvent taken(Integer orderId) {
+            return new OrderFeedEvent(orderId, false);
+        }
+    }
+
+    // Mỗi shipper giữ 1 kết nối, vị trí dùng để lọc đơn theo khoảng cách
+    private static class Subscriber {
+        final SseEmitter emitter;
+        volatile Double lat;
+        volatile Double lng;
+        final double radiusKm;
+
+        Subscriber(SseEmitter emitter, Double lat, Double lng, double radiusKm) {
+            this.emitter = emitter;
+            this.lat = lat;
+            this.lng = lng;
+            this.radiusKm = radiusKm;
+        }
+    }
+
+    private final Map<Integer, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    // Tăng mỗi khi danh sách đơn có sẵn thay đổi (dùng làm ETag cho API poll cũ).
+    // Tăng 2 lần, đồng bộ trên thread ghi đơn (không chờ luồng @Async đẩy SSE):
+    // - Trước commit: poll chạy sau đó luôn nhận version mới (controller đọc version trước khi query)
+    // - Sau commit: ETag của poll chen giữa 2 mốc (version mới + danh sách cũ) bị vô hiệu
+    private final AtomicLong version = new AtomicLong();
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Đăng ký nhận đơn. lat/lng null -> lấy vị trí đã lưu của shipper.
+     */
+    @Transactional(readOnly = true)
+    public SseEmitter subscribe(Integer shipperId, Double lat, Double lng, Double radiusKm) {
+        if (lat == null || lng == null) {
+            Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
+            if (shipper != null) {
+                lat = shipper.getCurrentLat();
+                lng = shipper.getCurrentLong();
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter, lat, lng,
+                radiusKm != null && radiusKm > 0 ? radiusKm : defaultRadiusKm);
+
+        Subscriber previous = subscribers.put(shipperId, subscriber);
+        if (previous != null) {
+            previous.emitter.complete();
+        }
+        emitter.onCompletion(() -> subscribers.remove(shipperId, subscriber));
+        emitter.onTimeout(() -> subscribers.remove(shipperId, subscriber));
+        emitter.onError(e -> subscribers.remove(shipperId, subscriber));
+
+        List<Map<String, Object>> snapshot = getAvailableOrders().stream()
+                .filter(view -> isNearby(subscriber, view))
+                .collect(Collectors.toList());
+        send(shipperId, subscriber, EVENT_SNAPSHOT, snapshot);
+        return emitter;
+    }
+
+    /**
+     * Cập nhật vị trí shipper đang kết nối (lọc các đơn tiếp theo theo vị trí mới).
+     */
+    public void updatePosition(Integer shipperId, Double lat, Double lng) {
+        Subscriber subscriber = subscribers.get(shipperId);
+        if (subscriber != null && lat != null && lng != null) {
+            subscriber.lat = lat;
+            subscriber.lng = lng;
+        }
+    }
+
+    /**
+     * Gửi 1 sự kiện cho riêng 1 shipper. Trả về false nếu shipper không có kết nối đang mở.
+     */
+    public boolean sendToShipper(Integer shipperId, String eventName, Object data) {
+        Subscriber subscriber = subscribers.get(shipperId);
+        if (subscriber == null) {
+            return false;
+        }
+        return send(shipperId, subscriber, eventName, data);
+    }
+
+    /**
+     * Danh sách đơn có sẵn (PREPARING, chưa có shipper) dạng map trả cho client.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAvailableOrders() {
+        List<Order> orders = orderRepository.findAvailableOrders();
+
+        // Load tất cả Customer một lần để tránh N+1 problem
+        List<Integer> customerIds = orders.stream()
+                .filter(o -> o.getCustomer() != null)
+                .map(o -> o.getCustomer().getId())
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Integer, Customer> customerMap = customerRepository.findAllById(customerIds).stream()
+                .collect(Collectors.toMap(Customer::getAccountId, c -> c));
+
+        return orders.stream().map(order -> toView(order, customerMap)).collect(Collectors.toList());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void bumpVersionBeforeCommit(OrderFeedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void bumpVersionAfterCommit(OrderFeedEvent event) {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Đẩy thay đổi tới shipper sau khi transaction ghi đơn commit thành công.
+     */
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onOrderFeedEvent(OrderFeedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        if (!event.available()) {
+            Map<String, Object> payload = Map.of("id", event.orderId());
+            subscribers.forEach((shipperId, subscriber) -> send(shipperId, subscriber, EVENT_TAKEN, payload));
+            return;
+        }
+
+        Order order = orderRepository.findById(event.orderId()).orElse(null);
+        // Đơn có thể đã bị nhận ngay sau khi duyệt
+        if (order == null || !"PREPARING".equals(order.getStatus()) || order.getShipper() != null) {
+            return;
+        }
+        Map<Integer, Customer> customerMap = new HashMap<>();
+        if (order.getCustomer() != null) {
+            customerRepository.findById(order.getCustomer().getId())
+                    .ifPresent(c -> customerMap.put(c.getAccountId(), c));
+        }
+        Map<String, Object> view = toView(order, customerMap);
+        subscribers.forEach((shipperId, subscriber) -> {
+            if (isNearby(subscriber, view)) {
+                send(shipperId, subscriber, EVENT_AVAILABLE, view);
+            }
+        });
+    }
+
+    /**
+     * Gửi ping định kỳ để giữ kết nối qua proxy và dọn các kết nối đã chết.
+     */
+    @Scheduled(fixedDelayString = "${shipper.feed.heartbeat-ms:25000}")
+    public void heartbeat() {
+        subscribers.forEach((shipperId, subscriber) -> send(shipperId, subscriber, EVENT_PING, ""));
+    }
+
+    private boolean send(Integer shipperId, Subscriber subscriber, String eventName, Object data) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().name(eventName).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client đã ngắt kết nối
+            subscribers.remove(shipperId, subscriber);
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    // Đơn thiếu tọa độ quán hoặc shipper chưa có vị trí -> vẫn gửi (giống API cũ)
+    private boolean isNearby(Subscriber subscriber, Map<String, Object> view) {
+        Double restaurantLat = (Double) view.get("restaurantLat");
+        Double restaurantLng = (Double) view.get("restaurantLong");
+        if (subscriber.lat == null || subscriber.lng == null || restaurantLat == null || restaurantLng == null) {
+            return true;
+        }
+        return GeoUtils.distanceKm(subscriber.lat, subscriber.lng, restaurantLat, restaurantLng)
+                <= subscriber.radiusKm;
+    }
+
+    private Map<String, Object> toView(Order order, Map<Integer, Customer> customerMap) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", order.getId());
+        map.put("restaurantName", order.getRestaurant() != null ? order.getRestaurant().getName() : "N/A");
+        map.put("shippingAddress", order.getShippingAddress());
+        map.put("totalAmount", order.getTotalAmount());
+        map.put("paymentMethod", order.getPaymentMethod());
+        map.put("createdAt", order.getCreatedAt());
+        map.put("note", order.getNote());
+
+        // Tọa độ giao hàng: ưu tiên từ đơn hàng, nếu không có thì lấy từ Customer
+        // (chỉ đọc, không ghi ngược vào đơn trong request GET)
+        Double shippingLat = order.getShippingLat();
+        Double shippingLong = order.getShippingLong();
+        if ((shippingLat == null || shippingLong == null) && order.getCustomer() != null) {
+            Customer customer = customerMap.get(order.getCustomer().getId());
+            if (customer != null && customer.getLatitude() != null && customer.getLongitude() != null) {
+                shippingLat = customer.getLatitude();
+                shippingLong = customer.getLongitude();
+            }
+        }
+        map.put("shippingLat", shippingLat);
+        map.put("shippingLong", shippingLong);
+
+        if (order.getRestaurant() != null) {
+            map.put("restaurantLat", order.getRestaurant().getLatitude());
+            map.put("restaurantLong", order.getRestaurant().getLongitude());
+        } else {
+            map.put("restaurantLat", null);
+            map.put("restaurantLong", null);
+        }
+        return map;
+    }
+}
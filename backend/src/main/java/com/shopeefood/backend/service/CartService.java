@@ -7,21 +7,29 @@ import com.shopeefood.backend.dto.CartResponse;
 import com.shopeefood.backend.dto.UpdateCartItemRequest;
 import com.shopeefood.backend.entity.*;
 import com.shopeefood.backend.repository.*;
+import com.shopeefood.backend.security.AccountSnapshot;
+import com.shopeefood.backend.service.CartStore.CachedCart;
+import com.shopeefood.backend.service.CartStore.CartKey;
+import com.shopeefood.backend.service.CartStore.CartLine;
+import com.shopeefood.backend.util.OptionFingerprint;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Giỏ hàng (Order status = CART). Các thao tác sửa giỏ chạy trên bản trong bộ nhớ (CartStore),
+ * ghi xuống DB sau theo lô. Chỉ tạo giỏ mới, xóa giỏ và thanh toán mới ghi DB ngay.
+ */
 @Service
 public class CartService {
 
-    private static final String CART_STATUS = "CART";
-    private static final BigDecimal DEFAULT_SHIPPING_FEE = BigDecimal.valueOf(15000);
+    static final String CART_STATUS = "CART";
+    static final BigDecimal DEFAULT_SHIPPING_FEE = BigDecimal.valueOf(15000);
 
     @Autowired
     private AccountRepository accountRepository;
@@ -45,49 +53,17 @@ public class CartService {
     private ProductDetailRepository productDetailRepository;
 
     @Autowired
-    private OrderItemOptionRepository orderItemOptionRepository;
+    private CartStore cartStore;
 
     @Autowired
-    private OwnerRepository ownerRepository;
+    private PrincipalCache principalCache;
 
     // ----------------- ADD TO CART -----------------
-    @Transactional
     public CartResponse addToCart(AddToCartRequest request) {
         Integer accountId = request.getAccountId();
         Integer restaurantId = request.getRestaurantId();
 
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new RuntimeException("Account not found"));
-
-        // Chỉ CUSTOMER hoặc OWNER mới được phép đặt món
-        String role = account.getRole();
-        boolean canOrder = role != null && (role.equalsIgnoreCase("CUSTOMER") || role.equalsIgnoreCase("OWNER"));
-        if (!canOrder) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "ACCOUNT_ROLE_NOT_ALLOWED_TO_ORDER");
-        }
-
-        // Bảng customers dùng account_id làm PK. Với OWNER có thể chưa có dòng customer -> tạo "shadow" record
-        Customer customer = customerRepository.findById(accountId)
-                .orElseGet(() -> {
-                    Customer c = new Customer();
-                    c.setAccount(account);
-                    // fullName không bắt buộc, set tạm để tránh null quá nhiều
-                    c.setFullName(account.getUsername());
-                    return customerRepository.save(c);
-                });
-
-        // Bắt buộc phải có địa chỉ giao hàng
-        if (customer.getAddress() == null || customer.getAddress().trim().isEmpty()) {
-            throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST,
-                    "CUSTOMER_ADDRESS_REQUIRED"
-            );
-        }
-
-        Restaurant restaurant = restaurantRepository.findById(restaurantId)
-                .orElseThrow(() -> new RuntimeException("Restaurant not found"));
-
-        Product product = productRepository.findById(request.getProductId())
+        Product product = productRepository.findByIdWithDetails(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
         // Product phải thuộc đúng restaurant
@@ -105,114 +81,55 @@ public class CartService {
                 ? request.getQuantity()
                 : 1;
 
-        // ==== Load các ProductDetail (options) từ detailIds ====
-        List<ProductDetail> selectedDetails = loadAndValidateSelectedDetails(product, request.getDetailIds());
+        // ==== Lấy các ProductDetail (options) từ detailIds ====
+        List<ProductDetail> selectedDetails = selectDetails(product, request.getDetailIds());
 
         BigDecimal finalUnitPrice = calculateFinalUnitPrice(product, selectedDetails);
-
-        // ==== Tìm hoặc tạo giỏ hàng của NHÀ HÀNG HIỆN TẠI (status = CART) ====
-        Order order = orderRepository
-                .findFirstByCustomerIdAndRestaurantIdAndStatus(accountId, restaurantId, CART_STATUS)
-                .orElseGet(() -> {
-                    Order o = new Order();
-                    o.setCustomer(account);
-                    o.setRestaurant(restaurant);
-                    o.setStatus(CART_STATUS);
-                    o.setShippingAddress(customer.getAddress());
-                    o.setPaymentMethod("PAYOS");
-                    o.setShippingFee(DEFAULT_SHIPPING_FEE);
-                    o.setSubtotal(BigDecimal.ZERO);
-                    o.setTotalAmount(DEFAULT_SHIPPING_FEE);
-                    o = orderRepository.save(o);
-                    o.setOrderNumber(Order.buildOrderNumber(o.getId()));
-                    return orderRepository.save(o);
-                });
-
-        // ==== TÌM XEM ĐÃ CÓ DÒNG NÀO CÙNG PRODUCT + CÙNG COMBO OPTIONS CHƯA ====
-        OrderItem item = findItemWithSameOptions(order, product, selectedDetails);
-
-        if (item == null) {
-            // ---- Chưa có => tạo dòng mới ----
-            item = new OrderItem();
-            item.setOrder(order);
-            item.setProduct(product);
-            item.setQuantity(quantity);
-            item.setPrice(finalUnitPrice);
-
-            // Tạo list options cho item này
-            if (!selectedDetails.isEmpty()) {
-                List<OrderItemOption> options = new java.util.ArrayList<>();
-                for (ProductDetail d : selectedDetails) {
-                    OrderItemOption opt = new OrderItemOption();
-                    opt.setOrderItem(item);
-                    opt.setProductDetail(d);
-                    options.add(opt);
-                }
-                item.setOptions(options);
+        List<CartItemOptionDTO> options = selectedDetails.stream()
+                .map(CartStore::toOptionDto)
+                .collect(Collectors.toList());
+        String fingerprint = OptionFingerprint.of(
+                selectedDetails.stream().map(ProductDetail::getId).collect(Collectors.toList()));
+
+        // ==== Giỏ của NHÀ HÀNG HIỆN TẠI: bộ nhớ -> DB -> tạo mới ====
+        CartKey key = new CartKey(accountId, restaurantId);
+        return cartStore.mutate(key, () -> createCart(accountId, restaurantId), cart -> {
+            // ==== TÌM XEM ĐÃ CÓ DÒNG NÀO CÙNG PRODUCT + CÙNG COMBO OPTIONS CHƯA ====
+            CartLine line = findLineWithSameOptions(cart, product.getId(), fingerprint);
+
+            if (line == null) {
+                // ---- Chưa có => tạo dòng mới ----
+                cart.lines.add(cartStore.newLine(product, finalUnitPrice, quantity, options));
+            } else {
+                // ---- Đã có cùng combo options => cộng dồn quantity ----
+                line.quantity += quantity;
+                // Giá unit giữ theo finalUnitPrice hiện tại
+                line.unitPrice = finalUnitPrice;
             }
+            cart.changed();
 
-            orderItemRepository.save(item);
-        } else {
-            // ---- Đã có cùng combo options => cộng dồn quantity ----
-            item.setQuantity(item.getQuantity() + quantity);
-            // Giá unit giữ theo finalUnitPrice hiện tại
-            item.setPrice(finalUnitPrice);
-            orderItemRepository.save(item);
-        }
-
-        recalcTotals(order);
-
-        return mapToCartResponse(loadOrder(order.getId()));
+            return mapToCartResponse(cart);
+        });
     }
 
     // ----------------- GET CART -----------------
-    @Transactional(readOnly = true)
     public CartResponse getCart(Integer accountId, Integer restaurantId) {
-
-        Optional<Order> optCart =
-                orderRepository.findFirstByCustomerIdAndRestaurantIdAndStatus(
-                        accountId, restaurantId, CART_STATUS
-                );
-
-        if (optCart.isEmpty()) {
-            CartResponse res = new CartResponse();
-            res.setOrderId(null);
-            res.setStatus(null);
-
-            res.setRestaurantId(restaurantId);
-            res.setRestaurantName(null);
-            res.setRestaurantAddress(null);
-
-            res.setShippingAddress(null);
-
-            res.setItems(List.of());
-            res.setSubtotal(BigDecimal.ZERO);
-            res.setShippingFee(BigDecimal.ZERO);
-            res.setTotal(BigDecimal.ZERO);
-
+        CartResponse res = cartStore.read(new CartKey(accountId, restaurantId),
+                cart -> cart != null ? mapToCartResponse(cart) : null);
+        if (res != null) {
             return res;
         }
 
-        Order order = optCart.get();
-
-        // Đồng bộ địa chỉ
-        try {
-            Customer customer = customerRepository.findById(accountId).orElse(null);
-            if (customer != null) {
-                String address = customer.getAddress();
-                if (address != null && !address.trim().isEmpty()) {
-                    String currentShipping = order.getShippingAddress();
-                    if (currentShipping == null || !currentShipping.equals(address)) {
-                        order.setShippingAddress(address);
-                        orderRepository.save(order);
-                    }
-                }
-            }
-        } catch (Exception ignored) {
-            // Nếu có lỗi khi sync địa chỉ thì vẫn trả về giỏ hàng bình thường
-        }
+        res = emptyCart(BigDecimal.ZERO);
+        res.setRestaurantId(restaurantId);
+        return res;
+    }
 
-        return mapToCartResponse(optCart.get());
+    /**
+     * Khách đổi địa chỉ trong hồ sơ -> cập nhật địa chỉ giao của các giỏ đang mở.
+     */
+    public void syncShippingAddress(Integer accountId, String address) {
+        cartStore.updateShippingAddress(accountId, address);
     }
 
 
@@ -222,170 +139,107 @@ public class CartService {
      * - Nếu có nhiều OrderItem cùng productId (khác combo options) => báo lỗi,
      *   buộc FE dùng API theo itemId.
      */
-    @Transactional
     public CartResponse updateItem(UpdateCartItemRequest request) {
 
         Integer accountId = request.getAccountId();
         Integer restaurantId = request.getRestaurantId();
 
-        Order order = (restaurantId != null)
-                ? orderRepository
-                .findFirstByCustomerIdAndRestaurantIdAndStatus(accountId, restaurantId, CART_STATUS)
-                .orElseThrow(() -> new RuntimeException("Cart not found"))
-                : orderRepository
-                .findFirstByCustomerIdAndStatus(accountId, CART_STATUS)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        CartKey key = resolveKey(accountId, restaurantId);
 
         if (request.getQuantity() == null || request.getQuantity() <= 0) {
-            return removeItem(accountId, restaurantId, request.getProductId()); // đổi sang hàm mới
+            return removeItem(accountId, key.restaurantId(), request.getProductId()); // đổi sang hàm mới
         }
 
-        List<OrderItem> items = orderItemRepository.findAllByOrderAndProduct(order, product);
-
-        if (items.isEmpty()) {
-            throw new RuntimeException("Cart item not found");
-        }
-        if (items.size() > 1) {
-            throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST,
-                    "MULTIPLE_ITEMS_FOR_PRODUCT_USE_ITEM_ID"
-            );
-        }
-
-        OrderItem item = items.get(0);
-        item.setQuantity(request.getQuantity());
-        orderItemRepository.save(item);
-
-        recalcTotals(order);
-
-        return mapToCartResponse(loadOrder(order.getId()));
+        return cartStore.mutate(key, null, cart -> {
+            CartLine line = singleLineOfProduct(cart, request.getProductId());
+            line.quantity = request.getQuantity();
+            cart.changed();
+            return mapToCartResponse(cart);
+        });
     }
 
     // ----------------- REMOVE ITEM (THEO productId - CŨ, GIỜ HẠN CHẾ) -----------------
-    @Transactional
     public CartResponse removeItem(Integer accountId, Integer productId) {
-
-        Order order = orderRepository
-                .findFirstByCustomerIdAndStatus(accountId, CART_STATUS)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        List<OrderItem> items = orderItemRepository.findAllByOrderAndProduct(order, product);
-
-        if (items.isEmpty()) {
-            throw new RuntimeException("Cart item not found");
-        }
-        if (items.size() > 1) {
-            throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST,
-                    "MULTIPLE_ITEMS_FOR_PRODUCT_USE_ITEM_ID"
-            );
-        }
-
-        OrderItem item = items.get(0);
-        orderItemRepository.delete(item);
-
-        List<OrderItem> remain = orderItemRepository.findByOrder(order);
-
-        if (remain.isEmpty()) {
-            // Không còn món nào -> có thể xoá cả order hoặc giữ lại tuỳ design
-            orderRepository.delete(order);
-
-            CartResponse res = new CartResponse();
-            res.setItems(List.of());
-            res.setSubtotal(BigDecimal.ZERO);
-            res.setShippingFee(DEFAULT_SHIPPING_FEE);
-            res.setTotal(DEFAULT_SHIPPING_FEE);
-            return res;
-        }
-
-        recalcTotals(order);
-
-        return mapToCartResponse(loadOrder(order.getId()));
+        return removeItem(accountId, null, productId);
     }
 
-    @Transactional
     public CartResponse removeItem(Integer accountId, Integer restaurantId, Integer productId) {
 
-        Order order = (restaurantId != null)
-                ? orderRepository
-                .findFirstByCustomerIdAndRestaurantIdAndStatus(accountId, restaurantId, CART_STATUS)
-                .orElseThrow(() -> new RuntimeException("Cart not found"))
-                : orderRepository
-                .findFirstByCustomerIdAndStatus(accountId, CART_STATUS)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        List<OrderItem> items = orderItemRepository.findAllByOrderAndProduct(order, product);
-
-        if (items.isEmpty()) {
-            throw new RuntimeException("Cart item not found");
-        }
-        if (items.size() > 1) {
-            throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST,
-                    "MULTIPLE_ITEMS_FOR_PRODUCT_USE_ITEM_ID"
-            );
-        }
+        CartKey key = resolveKey(accountId, restaurantId);
 
-        OrderItem item = items.get(0);
-        orderItemRepository.delete(item);
-
-        List<OrderItem> remain = orderItemRepository.findByOrder(order);
-
-        if (remain.isEmpty()) {
-            orderRepository.delete(order);
-            CartResponse res = new CartResponse();
-            res.setItems(List.of());
-            res.setSubtotal(BigDecimal.ZERO);
-            res.setShippingFee(DEFAULT_SHIPPING_FEE);
-            res.setTotal(DEFAULT_SHIPPING_FEE);
+        CartResponse res = cartStore.mutate(key, null, cart -> {
+            CartLine line = singleLineOfProduct(cart, productId);
+            cart.lines.remove(line);
+            cart.changed();
+            return cart.lines.isEmpty() ? null : mapToCartResponse(cart);
+        });
+        if (res != null) {
             return res;
         }
 
-        recalcTotals(order);
-        return mapToCartResponse(loadOrder(order.getId()));
+        // Không còn món nào -> xoá cả order (ghi ngay, không chờ write-behind)
+        boolean deleted = cartStore.close(key, cart -> cart.lines.isEmpty(), snapshot -> {
+            if (snapshot != null) {
+                deleteCartOrder(snapshot.orderId());
+            }
+        });
+        if (!deleted) {
+            // Vừa có món được thêm lại vào giỏ
+            return getCart(accountId, key.restaurantId());
+        }
+        return emptyCart(DEFAULT_SHIPPING_FEE);
     }
 
     // ----------------- UPDATE ITEM QUANTITY (THEO itemId MỚI) -----------------
-    @Transactional
     public CartResponse updateItemQuantity(Integer accountId, Integer itemId, Integer newQuantity) {
         if (newQuantity == null || newQuantity < 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "INVALID_QUANTITY");
         }
 
-        OrderItem item = orderItemRepository.findById(itemId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "ITEM_NOT_FOUND"));
+        CartKey key = cartStore.findKeyByItem(accountId, itemId);
+        if (key == null) {
+            // Giỏ chưa có trong bộ nhớ -> tìm giỏ chứa item trong DB
+            OrderItem item = orderItemRepository.findById(itemId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "ITEM_NOT_FOUND"));
 
-        Order order = item.getOrder();
+            Order order = item.getOrder();
 
-        // Đảm bảo item thuộc về customer này
-        if (!order.getCustomer().getId().equals(accountId)) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "ITEM_NOT_OF_ACCOUNT");
+            // Đảm bảo item thuộc về customer này
+            if (!order.getCustomer().getId().equals(accountId)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "ITEM_NOT_OF_ACCOUNT");
+            }
+            key = new CartKey(accountId, order.getRestaurant().getId());
         }
 
-        if (newQuantity == 0) {
-            orderItemRepository.delete(item);
-        } else {
-            item.setQuantity(newQuantity);
-            orderItemRepository.save(item);
-        }
+        return cartStore.mutate(key, null, cart -> {
+            CartLine line = cart == null ? null : cart.lines.stream()
+                    .filter(l -> l.matches(itemId))
+                    .findFirst()
+                    .orElse(null);
+            if (line == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ITEM_NOT_FOUND");
+            }
 
-        recalcTotals(order);
-        return mapToCartResponse(loadOrder(order.getId()));
+            if (newQuantity == 0) {
+                cart.lines.remove(line);
+            } else {
+                line.quantity = newQuantity;
+            }
+            cart.changed();
+            return mapToCartResponse(cart);
+        });
     }
 
 
     // ----------------- CLEAR CART -----------------
-    @Transactional
     public void clearCart(Integer accountId, Integer restaurantId) {
+        // Bỏ giỏ khỏi bộ nhớ (kể cả thay đổi chưa ghi) rồi đánh dấu CART_DELETED trong DB
+        cartStore.close(new CartKey(accountId, restaurantId), null,
+                snapshot -> markCartDeleted(accountId, restaurantId));
+    }
+
+    // Chạy trong transaction của CartStore.close
+    private void markCartDeleted(Integer accountId, Integer restaurantId) {
         Optional<Order> opt = orderRepository
                 .findFirstByCustomerIdAndRestaurantIdAndStatus(
                         accountId, restaurantId, CART_STATUS
@@ -415,85 +269,144 @@ public class CartService {
         orderRepository.save(order);
     }
 
+    // Chạy trong transaction của CartStore.close
+    private void deleteCartOrder(Integer orderId) {
+        orderRepository.findById(orderId)
+                .filter(order -> CART_STATUS.equals(order.getStatus()))
+                .ifPresent(order -> {
+                    orderItemRepository.deleteAll(orderItemRepository.findByOrder(order));
+                    orderRepository.delete(order);
+                });
+    }
+
 
     // ----------------- HELPER -----------------
-    private void recalcTotals(Order order) {
 
-        List<OrderItem> items = orderItemRepository.findByOrder(order);
+    /**
+     * Tạo giỏ mới (ghi Order xuống DB ngay để có orderId trả cho client).
+     */
+    private Order createCart(Integer accountId, Integer restaurantId) {
+        AccountSnapshot account = principalCache.get(accountId)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
 
-        BigDecimal subtotal = items.stream()
-                .map(i -> i.getPrice().multiply(BigDecimal.valueOf(i.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Chỉ CUSTOMER hoặc OWNER mới được phép đặt món
+        String role = account.role();
+        boolean canOrder = role != null && (role.equalsIgnoreCase("CUSTOMER") || role.equalsIgnoreCase("OWNER"));
+        if (!canOrder) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "ACCOUNT_ROLE_NOT_ALLOWED_TO_ORDER");
+        }
 
-        order.setSubtotal(subtotal);
-        order.setShippingFee(order.getShippingFee() != null ? order.getShippingFee() : DEFAULT_SHIPPING_FEE);
-        order.setTotalAmount(subtotal.add(order.getShippingFee()));
+        // Bảng customers dùng account_id làm PK. Với OWNER có thể chưa có dòng customer -> tạo "shadow" record
+        Customer customer = customerRepository.findById(accountId)
+                .orElseGet(() -> {
+                    Customer c = new Customer();
+                    c.setAccount(accountRepository.getReferenceById(accountId));
+                    // fullName không bắt buộc, set tạm để tránh null quá nhiều
+                    c.setFullName(account.username());
+                    return customerRepository.save(c);
+                });
 
-        orderRepository.save(order);
+        // Bắt buộc phải có địa chỉ giao hàng
+        if (customer.getAddress() == null || customer.getAddress().trim().isEmpty()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "CUSTOMER_ADDRESS_REQUIRED"
+            );
+        }
+
+        Restaurant restaurant = restaurantRepository.findById(restaurantId)
+                .orElseThrow(() -> new RuntimeException("Restaurant not found"));
+
+        Order o = new Order();
+        o.setCustomer(accountRepository.getReferenceById(accountId));
+        o.setRestaurant(restaurant);
+        o.setStatus(CART_STATUS);
+        o.setShippingAddress(customer.getAddress());
+        o.setPaymentMethod("PAYOS");
+        o.setShippingFee(DEFAULT_SHIPPING_FEE);
+        o.setSubtotal(BigDecimal.ZERO);
+        o.setTotalAmount(DEFAULT_SHIPPING_FEE);
+        o.setOrderNumber(Order.buildOrderNumber(orderRepository.nextOrderNumberValue()));
+        return orderRepository.save(o);
     }
 
-    private Order loadOrder(Integer id) {
-        return orderRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Order not found"));
+    // restaurantId null (API cũ) -> lấy giỏ CART bất kỳ của khách
+    private CartKey resolveKey(Integer accountId, Integer restaurantId) {
+        if (restaurantId != null) {
+            return new CartKey(accountId, restaurantId);
+        }
+        Order order = orderRepository
+                .findFirstByCustomerIdAndStatus(accountId, CART_STATUS)
+                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        return new CartKey(accountId, order.getRestaurant().getId());
     }
 
-    private CartResponse mapToCartResponse(Order order) {
+    private CartLine singleLineOfProduct(CachedCart cart, Integer productId) {
+        if (cart == null) {
+            throw new RuntimeException("Cart not found");
+        }
 
-        CartResponse res = new CartResponse();
-        res.setOrderId(order.getId());
-        res.setStatus(order.getStatus());
-
-        if (order.getRestaurant() != null) {
-            Restaurant r = order.getRestaurant();
-            res.setRestaurantId(r.getId());
-            res.setRestaurantName(r.getName());
-            res.setRestaurantAddress(r.getAddress());
+        List<CartLine> lines = cart.lines.stream()
+                .filter(l -> l.productId.equals(productId))
+                .collect(Collectors.toList());
+
+        if (lines.isEmpty()) {
+            throw new RuntimeException("Cart item not found");
         }
+        if (lines.size() > 1) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "MULTIPLE_ITEMS_FOR_PRODUCT_USE_ITEM_ID"
+            );
+        }
+        return lines.get(0);
+    }
 
-        res.setShippingAddress(order.getShippingAddress());
+    private CartResponse emptyCart(BigDecimal shippingFee) {
+        CartResponse res = new CartResponse();
+        res.setOrderId(null);
+        res.setStatus(null);
+        res.setItems(List.of());
+        res.setSubtotal(BigDecimal.ZERO);
+        res.setShippingFee(shippingFee);
+        res.setTotal(shippingFee);
+        return res;
+    }
 
-        List<OrderItem> items = orderItemRepository.findByOrder(order);
+    // Gọi khi đang giữ khóa của cart (trong CartStore.mutate / read)
+    private CartResponse mapToCartResponse(CachedCart cart) {
+
+        CartResponse res = new CartResponse();
+        res.setOrderId(cart.orderId);
+        res.setStatus(CART_STATUS);
+
+        res.setRestaurantId(cart.key.restaurantId());
+        res.setRestaurantName(cart.restaurantName);
+        res.setRestaurantAddress(cart.restaurantAddress);
+
+        res.setShippingAddress(cart.shippingAddress);
 
         res.setItems(
-                items.stream().map(oi -> {
+                cart.lines.stream().map(line -> {
                     CartItemResponse dto = new CartItemResponse();
-                    dto.setItemId(oi.getId());                         // <=== MỚI
-                    dto.setProductId(oi.getProduct().getId());
-                    dto.setProductName(oi.getProduct().getName());
-                    dto.setProductImage(oi.getProduct().getImage());
-                    dto.setUnitPrice(oi.getPrice());
-                    dto.setQuantity(oi.getQuantity());
+                    dto.setItemId(line.clientId());
+                    dto.setProductId(line.productId);
+                    dto.setProductName(line.productName);
+                    dto.setProductImage(line.productImage);
+                    dto.setUnitPrice(line.unitPrice);
+                    dto.setQuantity(line.quantity);
                     dto.setLineTotal(
-                            oi.getPrice().multiply(BigDecimal.valueOf(oi.getQuantity()))
+                            line.unitPrice.multiply(BigDecimal.valueOf(line.quantity))
                     );
-
-                    // ==== MAP OPTIONS RA DTO ====
-                    if (oi.getOptions() != null && !oi.getOptions().isEmpty()) {
-                        List<CartItemOptionDTO> optDtos = oi.getOptions().stream().map(opt -> {
-                            CartItemOptionDTO od = new CartItemOptionDTO();
-                            ProductDetail d = opt.getProductDetail();
-                            od.setDetailId(d.getId());
-                            if (d.getAttribute() != null) {
-                                od.setAttributeName(d.getAttribute().getName());
-                            }
-                            od.setValue(d.getValue());
-                            od.setPriceAdjustment(
-                                    d.getPriceAdjustment() != null ? d.getPriceAdjustment() : BigDecimal.ZERO
-                            );
-                            return od;
-                        }).collect(Collectors.toList());
-                        dto.setOptions(optDtos);
-                    } else {
-                        dto.setOptions(List.of());
-                    }
-
+                    dto.setOptions(line.options);
                     return dto;
                 }).collect(Collectors.toList())
         );
 
-        res.setSubtotal(order.getSubtotal());
-        res.setShippingFee(order.getShippingFee());
-        res.setTotal(order.getTotalAmount());
+        BigDecimal subtotal = cart.subtotal();
+        res.setSubtotal(subtotal);
+        res.setShippingFee(cart.shippingFee);
+        res.setTotal(subtotal.add(cart.shippingFee));
 
         return res;
     }
@@ -518,36 +431,44 @@ public class CartService {
     }
 
     /**
-     * Tìm OrderItem trong order có cùng product + cùng tập detailIds (options).
+     * Tìm dòng trong giỏ có cùng product + cùng fingerprint tập options (OptionFingerprint).
      * Nếu không có -> return null.
      */
-    private OrderItem findItemWithSameOptions(Order order,
-                                              Product product,
-                                              List<ProductDetail> selectedDetails) {
-
-        List<OrderItem> items = orderItemRepository.findAllByOrderAndProduct(order, product);
-
-        Set<Integer> selectedIds = (selectedDetails == null || selectedDetails.isEmpty())
-                ? java.util.Collections.emptySet()
-                : selectedDetails.stream()
-                .map(ProductDetail::getId)
-                .collect(java.util.stream.Collectors.toSet());
-
-        for (OrderItem item : items) {
-            List<OrderItemOption> opts = item.getOptions();
-            Set<Integer> optIds = (opts == null || opts.isEmpty())
-                    ? java.util.Collections.emptySet()
-                    : opts.stream()
-                    .map(o -> o.getProductDetail().getId())
-                    .collect(java.util.stream.Collectors.toSet());
-
-            if (optIds.equals(selectedIds)) {
-                return item;
+    private CartLine findLineWithSameOptions(CachedCart cart, Integer productId, String fingerprint) {
+        for (CartLine line : cart.lines) {
+            if (line.productId.equals(productId) && line.fingerprint.equals(fingerprint)) {
+                return line;
             }
         }
         return null;
     }
 
+    /**
+     * Lấy options được chọn từ danh sách details đã load cùng product (không query thêm).
+     * Có id lạ / trùng -> kiểm tra lại qua DB để trả đúng mã lỗi.
+     */
+    private List<ProductDetail> selectDetails(Product product, List<Integer> detailIds) {
+        if (detailIds == null || detailIds.isEmpty()) return Collections.emptyList();
+
+        Map<Integer, ProductDetail> own = product.getDetails() == null
+                ? Map.of()
+                : product.getDetails().stream().collect(Collectors.toMap(ProductDetail::getId, d -> d));
+
+        if (new HashSet<>(detailIds).size() != detailIds.size() || !own.keySet().containsAll(detailIds)) {
+            return loadAndValidateSelectedDetails(product, detailIds);
+        }
+
+        List<ProductDetail> details = new ArrayList<>();
+        for (Integer id : detailIds) {
+            ProductDetail d = own.get(id);
+            if (Boolean.TRUE.equals(d.getIsDeleted())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "PRODUCT_DETAIL_DELETED");
+            }
+            details.add(d);
+        }
+        return details;
+    }
+
     private List<ProductDetail> loadAndValidateSelectedDetails(Product product, List<Integer> detailIds) {
         if (detailIds == null || detailIds.isEmpty()) return java.util.Collections.emptyList();
 
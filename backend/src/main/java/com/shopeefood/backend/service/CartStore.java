@@ -0,0 +1,681 @@
+package com.shopeefood.backend.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.dto.CartItemOptionDTO;
+import com.shopeefood.backend.entity.Customer;
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.entity.OrderItem;
+import com.shopeefood.backend.entity.OrderItemOption;
+import com.shopeefood.backend.entity.Product;
+import com.shopeefood.backend.entity.ProductDetail;
+import com.shopeefood.backend.repository.CustomerRepository;
+import com.shopeefood.backend.repository.OrderItemRepository;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ProductDetailRepository;
+import com.shopeefood.backend.repository.ProductRepository;
+import com.shopeefood.backend.util.OptionFingerprint;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Giữ các giỏ hàng đang dùng (Order status = CART) trong bộ nhớ theo (accountId, restaurantId).
+ * - Thêm / sửa / xóa món chỉ sửa bản trong bộ nhớ rồi trả về ngay
+ * - Giỏ có thay đổi được ghi xuống DB theo lô (write-behind) bởi job định kỳ,
+ *   nhiều lần sửa liên tiếp của 1 giỏ chỉ sinh 1 lần ghi
+ * - Trước khi thanh toán (flushForCheckout) giỏ được ghi đồng bộ rồi bỏ khỏi bộ nhớ,
+ *   luồng thanh toán luôn đọc dữ liệu đầy đủ từ DB
+ * - Giới hạn số giỏ trong bộ nhớ (LRU), chỉ bỏ những giỏ đã ghi xong
+ * Bộ nhớ đệm không chia sẻ giữa các instance -> chỉ đúng khi chạy 1 instance backend.
+ */
+@Service
+public class CartStore {
+
+    private static final int LOAD_LOCK_STRIPES = 64;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductDetailRepository productDetailRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cart.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${cart.write-behind.batch-size:100}")
+    private int batchSize;
+
+    public record CartKey(Integer accountId, Integer restaurantId) {
+    }
+
+    /**
+     * 1 dòng món trong giỏ. itemId = null: dòng chưa được ghi xuống DB,
+     * client nhận tempId (số âm) và vẫn dùng được id này cho các API theo itemId.
+     */
+    static class CartLine {
+        Integer itemId;
+        final int tempId;
+        final Integer productId;
+        final String productName;
+        final String productImage;
+        BigDecimal unitPrice;
+        int quantity;
+        final List<CartItemOptionDTO> options;
+        // Cùng productId + fingerprint -> cùng combo options (gộp dòng khi thêm món)
+        final String fingerprint;
+
+        CartLine(Integer itemId, int tempId, Integer productId, String productName, String productImage,
+                BigDecimal unitPrice, int quantity, List<CartItemOptionDTO> options) {
+            this.itemId = itemId;
+            this.tempId = tempId;
+            this.productId = productId;
+            this.productName = productName;
+            this.productImage = productImage;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+            this.options = options;
+            this.fingerprint = OptionFingerprint.of(detailIds());
+        }
+
+        Integer clientId() {
+            return itemId != null ? itemId : tempId;
+        }
+
+        boolean matches(Integer id) {
+            return id != null && (id.equals(itemId) || id == tempId);
+        }
+
+        Set<Integer> detailIds() {
+            return options.stream().map(CartItemOptionDTO::getDetailId).collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * Trạng thái 1 giỏ trong bộ nhớ. Mọi thao tác đọc / sửa phải synchronized trên object này.
+     */
+    static class CachedCart {
+        final CartKey key;
+        final Integer orderId;
+        final String restaurantName;
+        final String restaurantAddress;
+        final BigDecimal shippingFee;
+        String shippingAddress;
+        final List<CartLine> lines = new ArrayList<>();
+
+        // Tăng mỗi lần sửa, so với version đã ghi để biết còn thay đổi chưa ghi hay không
+        long version;
+        boolean dirty;
+        volatile boolean evicted;
+
+        // Không cho 2 lần ghi cùng 1 giỏ chạy song song (job write-behind và thanh toán)
+        final ReentrantLock writeLock = new ReentrantLock();
+
+        CachedCart(CartKey key, Order order) {
+            this.key = key;
+            this.orderId = order.getId();
+            this.restaurantName = order.getRestaurant() != null ? order.getRestaurant().getName() : null;
+            this.restaurantAddress = order.getRestaurant() != null ? order.getRestaurant().getAddress() : null;
+            this.shippingFee = order.getShippingFee() != null
+                    ? order.getShippingFee()
+                    : CartService.DEFAULT_SHIPPING_FEE;
+            this.shippingAddress = order.getShippingAddress();
+        }
+
+        void changed() {
+            version++;
+            dirty = true;
+        }
+
+        BigDecimal subtotal() {
+            return lines.stream()
+                    .map(l -> l.unitPrice.multiply(BigDecimal.valueOf(l.quantity)))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+
+    record LineSnapshot(CartLine line, Integer itemId, Integer productId, int quantity, BigDecimal unitPrice,
+            Set<Integer> detailIds, String fingerprint) {
+    }
+
+    record CartSnapshot(CachedCart cart, long version, Integer orderId, boolean dirty, String shippingAddress,
+            BigDecimal subtotal, List<LineSnapshot> lines) {
+    }
+
+    // Kết quả 1 lần ghi: id các dòng vừa INSERT, các giỏ không còn ở trạng thái CART trong DB
+    private static class WriteResult {
+        final Map<LineSnapshot, OrderItem> created = new IdentityHashMap<>();
+        final Set<CachedCart> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    // LRU theo thứ tự truy cập; giỏ còn thay đổi chưa ghi không bị bỏ (trim() dọn sau khi ghi)
+    private final Map<CartKey, CachedCart> carts = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CartKey, CachedCart> eldest) {
+            return size() > maxEntries && tryEvict(eldest.getValue());
+        }
+    };
+
+    private final Map<Integer, CartKey> keysByOrderId = new ConcurrentHashMap<>();
+    private final Set<CartKey> dirtyKeys = ConcurrentHashMap.newKeySet();
+
+    // Khóa theo key khi load / tạo / đóng giỏ (tránh tạo 2 giỏ CART cho cùng 1 key)
+    private final Object[] loadLocks = new Object[LOAD_LOCK_STRIPES];
+
+    private final AtomicInteger tempIds = new AtomicInteger();
+
+    public CartStore() {
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Sửa giỏ trong bộ nhớ. Giỏ chưa có trong bộ nhớ -> load từ DB;
+     * không có trong DB và creator != null -> tạo mới (creator ghi Order xuống DB).
+     * action nhận null nếu không có giỏ. action gọi cart.changed() để đánh dấu cần ghi.
+     */
+    public <R> R mutate(CartKey key, Supplier<Order> creator, Function<CachedCart, R> action) {
+        while (true) {
+            CachedCart cart = getOrLoad(key, creator);
+            if (cart == null) {
+                return action.apply(null);
+            }
+            synchronized (cart) {
+                // Giỏ vừa bị bỏ khỏi bộ nhớ -> lấy lại bản mới
+                if (cart.evicted) {
+                    continue;
+                }
+                long before = cart.version;
+                R result = action.apply(cart);
+                if (cart.version != before) {
+                    dirtyKeys.add(key);
+                }
+                return result;
+            }
+        }
+    }
+
+    public <R> R read(CartKey key, Function<CachedCart, R> action) {
+        return mutate(key, null, action);
+    }
+
+    /**
+     * Tìm giỏ (đang trong bộ nhớ) của account chứa dòng itemId (id thật hoặc id tạm).
+     */
+    public CartKey findKeyByItem(Integer accountId, Integer itemId) {
+        for (CachedCart cart : cachedCartsOf(accountId)) {
+            synchronized (cart) {
+                if (!cart.evicted && cart.lines.stream().anyMatch(l -> l.matches(itemId))) {
+                    return cart.key;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cập nhật địa chỉ giao hàng cho các giỏ đang trong bộ nhớ của account
+     * (giỏ chưa load sẽ lấy địa chỉ mới khi load).
+     */
+    public void updateShippingAddress(Integer accountId, String address) {
+        if (address == null || address.trim().isEmpty()) {
+            return;
+        }
+        for (CachedCart cached : cachedCartsOf(accountId)) {
+            mutate(cached.key, null, cart -> {
+                if (cart != null && !address.equals(cart.shippingAddress)) {
+                    cart.shippingAddress = address;
+                    cart.changed();
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Bỏ giỏ khỏi bộ nhớ rồi chạy writer (trong transaction riêng) với trạng thái cuối cùng của giỏ.
+     * - onlyIf trả về false: giữ nguyên giỏ, không chạy writer, trả về false
+     * - Giỏ không có trong bộ nhớ: writer nhận null
+     * Request khác cho cùng giỏ phải chờ tới khi writer commit rồi mới load lại từ DB.
+     */
+    public boolean close(CartKey key, Predicate<CachedCart> onlyIf, Consumer<CartSnapshot> writer) {
+        synchronized (loadLock(key)) {
+            CachedCart cart = cached(key);
+            if (cart == null) {
+                newWriteTx().executeWithoutResult(status -> writer.accept(null));
+                return true;
+            }
+
+            cart.writeLock.lock();
+            try {
+                CartSnapshot snapshot;
+                synchronized (cart) {
+                    if (onlyIf != null && !onlyIf.test(cart)) {
+                        return false;
+                    }
+                    snapshot = snapshot(cart);
+                    cart.evicted = true;
+                }
+                drop(cart);
+
+                try {
+                    newWriteTx().executeWithoutResult(status -> writer.accept(snapshot));
+                } catch (RuntimeException e) {
+                    // Ghi lỗi -> trả giỏ về bộ nhớ để không mất thay đổi
+                    synchronized (cart) {
+                        cart.evicted = false;
+                    }
+                    cache(cart);
+                    throw e;
+                }
+                return true;
+            } finally {
+                cart.writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gọi trước khi thanh toán đơn orderId: ghi ngay các thay đổi chưa ghi của giỏ
+     * và bỏ giỏ khỏi bộ nhớ (sau bước này DB là nguồn dữ liệu duy nhất của đơn).
+     */
+    public void flushForCheckout(Integer orderId) {
+        CartKey key = orderId != null ? keysByOrderId.get(orderId) : null;
+        if (key == null) {
+            return;
+        }
+        close(key, null, snapshot -> {
+            if (snapshot != null && snapshot.dirty()) {
+                write(List.of(snapshot));
+            }
+        });
+    }
+
+    /**
+     * Ghi các giỏ có thay đổi xuống DB, mỗi lô batchSize giỏ trong 1 transaction.
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-ms:1000}")
+    public void flushDirty() {
+        List<CachedCart> batch = new ArrayList<>();
+        for (CartKey key : new ArrayList<>(dirtyKeys)) {
+            dirtyKeys.remove(key);
+            CachedCart cart;
+            synchronized (carts) {
+                cart = carts.get(key);
+            }
+            if (cart == null) {
+                continue;
+            }
+            // Đang được ghi bởi luồng thanh toán / xóa giỏ
+            if (!cart.writeLock.tryLock()) {
+                dirtyKeys.add(key);
+                continue;
+            }
+            batch.add(cart);
+            if (batch.size() >= batchSize) {
+                flushBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushBatch(batch);
+        }
+        trim();
+    }
+
+    // Tắt ứng dụng bình thường -> ghi nốt các giỏ chưa ghi
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushDirty();
+    }
+
+    CartLine newLine(Product product, BigDecimal unitPrice, int quantity, List<CartItemOptionDTO> options) {
+        return new CartLine(null, tempIds.decrementAndGet(), product.getId(), product.getName(),
+                product.getImage(), unitPrice, quantity, options);
+    }
+
+    static CartItemOptionDTO toOptionDto(ProductDetail d) {
+        CartItemOptionDTO od = new CartItemOptionDTO();
+        od.setDetailId(d.getId());
+        if (d.getAttribute() != null) {
+            od.setAttributeName(d.getAttribute().getName());
+        }
+        od.setValue(d.getValue());
+        od.setPriceAdjustment(d.getPriceAdjustment() != null ? d.getPriceAdjustment() : BigDecimal.ZERO);
+        return od;
+    }
+
+    // ----------------- LOAD / CACHE -----------------
+
+    private CachedCart getOrLoad(CartKey key, Supplier<Order> creator) {
+        CachedCart cart = cached(key);
+        if (cart != null) {
+            return cart;
+        }
+        synchronized (loadLock(key)) {
+            cart = cached(key);
+            if (cart != null) {
+                return cart;
+            }
+            cart = load(key);
+            if (cart == null && creator != null) {
+                cart = new CachedCart(key, creator.get());
+            }
+            if (cart != null) {
+                cache(cart);
+            }
+            return cart;
+        }
+    }
+
+    private CachedCart cached(CartKey key) {
+        synchronized (carts) {
+            CachedCart cart = carts.get(key);
+            if (cart != null && cart.evicted) {
+                carts.remove(key, cart);
+                return null;
+            }
+            return cart;
+        }
+    }
+
+    private void cache(CachedCart cart) {
+        synchronized (carts) {
+            carts.put(cart.key, cart);
+        }
+        keysByOrderId.put(cart.orderId, cart.key);
+        if (cart.dirty) {
+            dirtyKeys.add(cart.key);
+        }
+    }
+
+    private void drop(CachedCart cart) {
+        synchronized (carts) {
+            carts.remove(cart.key, cart);
+        }
+        keysByOrderId.remove(cart.orderId, cart.key);
+    }
+
+    private List<CachedCart> cachedCartsOf(Integer accountId) {
+        synchronized (carts) {
+            return carts.values().stream()
+                    .filter(c -> c.key.accountId().equals(accountId))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Object loadLock(CartKey key) {
+        return loadLocks[Math.floorMod(key.hashCode(), loadLocks.length)];
+    }
+
+    private CachedCart load(CartKey key) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return tx.execute(status -> {
+            Order order = orderRepository
+                    .findFirstByCustomerIdAndRestaurantIdAndStatus(key.accountId(), key.restaurantId(),
+                            CartService.CART_STATUS)
+                    .orElse(null);
+            if (order == null) {
+                return null;
+            }
+
+            CachedCart cart = new CachedCart(key, order);
+            for (OrderItem item : orderItemRepository.findCartItemsByOrderIds(List.of(order.getId()))) {
+                List<CartItemOptionDTO> options = item.getOptions() == null
+                        ? List.of()
+                        : item.getOptions().stream()
+                                .map(opt -> toOptionDto(opt.getProductDetail()))
+                                .collect(Collectors.toList());
+                cart.lines.add(new CartLine(item.getId(), tempIds.decrementAndGet(), item.getProduct().getId(),
+                        item.getProduct().getName(), item.getProduct().getImage(), item.getPrice(),
+                        item.getQuantity(), options));
+            }
+
+            // Đồng bộ địa chỉ giao hàng theo hồ sơ khách (trước đây làm ở mỗi lần GET giỏ)
+            String address = customerRepository.findById(key.accountId())
+                    .map(Customer::getAddress)
+                    .orElse(null);
+            if (address != null && !address.trim().isEmpty() && !address.equals(cart.shippingAddress)) {
+                cart.shippingAddress = address;
+                cart.changed();
+            }
+            return cart;
+        });
+    }
+
+    // Gọi khi đang giữ khóa của map carts
+    private boolean tryEvict(CachedCart cart) {
+        synchronized (cart) {
+            if (cart.dirty) {
+                return false;
+            }
+            cart.evicted = true;
+        }
+        keysByOrderId.remove(cart.orderId, cart.key);
+        return true;
+    }
+
+    private void trim() {
+        synchronized (carts) {
+            Iterator<CachedCart> it = carts.values().iterator();
+            while (carts.size() > maxEntries && it.hasNext()) {
+                if (tryEvict(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    // ----------------- WRITE-BEHIND -----------------
+
+    private void flushBatch(List<CachedCart> batch) {
+        try {
+            List<CartSnapshot> snapshots = new ArrayList<>();
+            for (CachedCart cart : batch) {
+                synchronized (cart) {
+                    if (!cart.evicted && cart.dirty) {
+                        snapshots.add(snapshot(cart));
+                    }
+                }
+            }
+            if (!writeAndApply(snapshots) && snapshots.size() > 1) {
+                // Lỗi cả lô -> ghi lại từng giỏ để 1 giỏ lỗi không chặn các giỏ khác
+                for (CartSnapshot snapshot : snapshots) {
+                    writeAndApply(List.of(snapshot));
+                }
+            }
+        } finally {
+            for (CachedCart cart : batch) {
+                cart.writeLock.unlock();
+            }
+        }
+    }
+
+    private boolean writeAndApply(List<CartSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        WriteResult result;
+        try {
+            result = newWriteTx().execute(status -> write(snapshots));
+        } catch (RuntimeException e) {
+            System.err.println("Không ghi được giỏ hàng xuống DB, thử lại lần sau: " + e.getMessage());
+            for (CartSnapshot snapshot : snapshots) {
+                dirtyKeys.add(snapshot.cart().key);
+            }
+            return false;
+        }
+
+        for (CartSnapshot snapshot : snapshots) {
+            CachedCart cart = snapshot.cart();
+            if (result.stale.contains(cart)) {
+                // Đơn đã được thanh toán / xóa ở nơi khác -> bỏ bản trong bộ nhớ
+                synchronized (cart) {
+                    cart.evicted = true;
+                }
+                drop(cart);
+                continue;
+            }
+            synchronized (cart) {
+                for (LineSnapshot line : snapshot.lines()) {
+                    OrderItem created = result.created.get(line);
+                    if (created != null && line.line().itemId == null) {
+                        line.line().itemId = created.getId();
+                    }
+                }
+                if (cart.version == snapshot.version()) {
+                    cart.dirty = false;
+                } else {
+                    // Có thay đổi mới trong lúc đang ghi
+                    dirtyKeys.add(cart.key);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Phải gọi khi đang giữ khóa của cart
+    private CartSnapshot snapshot(CachedCart cart) {
+        List<LineSnapshot> lines = cart.lines.stream()
+                .map(l -> new LineSnapshot(l, l.itemId, l.productId, l.quantity, l.unitPrice, l.detailIds(),
+                        l.fingerprint))
+                .collect(Collectors.toList());
+        return new CartSnapshot(cart, cart.version, cart.orderId, cart.dirty, cart.shippingAddress,
+                cart.subtotal(), lines);
+    }
+
+    /**
+     * Đồng bộ các giỏ xuống DB: UPDATE dòng đã có, INSERT dòng mới (batch), DELETE dòng đã bỏ,
+     * cập nhật tổng tiền của Order. Phải gọi trong transaction.
+     */
+    private WriteResult write(List<CartSnapshot> snapshots) {
+        WriteResult result = new WriteResult();
+
+        Set<Integer> orderIds = snapshots.stream()
+                .map(CartSnapshot::orderId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Integer, Order> orders = orderRepository.findAllById(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, o -> o));
+        Map<Integer, Map<Integer, OrderItem>> itemsByOrder = new HashMap<>();
+        for (OrderItem item : orderItemRepository.findByOrderIdIn(orderIds)) {
+            itemsByOrder.computeIfAbsent(item.getOrder().getId(), id -> new HashMap<>()).put(item.getId(), item);
+        }
+
+        List<OrderItem> toInsert = new ArrayList<>();
+        List<OrderItem> toDelete = new ArrayList<>();
+        for (CartSnapshot snapshot : snapshots) {
+            Order order = orders.get(snapshot.orderId());
+            if (order == null || !CartService.CART_STATUS.equals(order.getStatus())) {
+                result.stale.add(snapshot.cart());
+                continue;
+            }
+
+            Map<Integer, OrderItem> existing = itemsByOrder.getOrDefault(order.getId(), new HashMap<>());
+            Map<LineSnapshot, OrderItem> matched = new IdentityHashMap<>();
+            for (LineSnapshot line : snapshot.lines()) {
+                OrderItem item = line.itemId() != null ? existing.remove(line.itemId()) : null;
+                if (item != null) {
+                    matched.put(line, item);
+                }
+            }
+
+            // Dòng mới: dùng lại dòng DB chưa được nhận có cùng (product, fingerprint) thay vì INSERT trùng
+            // (vd. lần ghi trước đã commit nhưng id chưa kịp gán), so sánh không cần load options
+            Map<String, OrderItem> unclaimed = new HashMap<>();
+            for (OrderItem item : existing.values()) {
+                if (item.getOptionFingerprint() != null && item.getProduct() != null) {
+                    unclaimed.putIfAbsent(item.getProduct().getId() + ":" + item.getOptionFingerprint(), item);
+                }
+            }
+            for (LineSnapshot line : snapshot.lines()) {
+                OrderItem item = matched.get(line);
+                if (item == null) {
+                    item = unclaimed.remove(line.productId() + ":" + line.fingerprint());
+                    if (item != null) {
+                        existing.remove(item.getId());
+                    } else {
+                        item = newOrderItem(order, line);
+                        toInsert.add(item);
+                    }
+                    result.created.put(line, item);
+                }
+                item.setQuantity(line.quantity());
+                item.setPrice(line.unitPrice());
+            }
+            toDelete.addAll(existing.values());
+
+            BigDecimal shippingFee = snapshot.cart().shippingFee;
+            order.setShippingAddress(snapshot.shippingAddress());
+            order.setShippingFee(shippingFee);
+            order.setSubtotal(snapshot.subtotal());
+            order.setTotalAmount(snapshot.subtotal().add(shippingFee));
+        }
+
+        orderItemRepository.deleteAll(toDelete);
+        orderItemRepository.saveAll(toInsert);
+        return result;
+    }
+
+    private OrderItem newOrderItem(Order order, LineSnapshot line) {
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(productRepository.getReferenceById(line.productId()));
+        item.setOptionFingerprint(line.fingerprint());
+        if (!line.detailIds().isEmpty()) {
+            List<OrderItemOption> options = new ArrayList<>();
+            for (Integer detailId : line.detailIds()) {
+                OrderItemOption opt = new OrderItemOption();
+                opt.setOrderItem(item);
+                opt.setProductDetail(productDetailRepository.getReferenceById(detailId));
+                options.add(opt);
+            }
+            item.setOptions(options);
+        }
+        return item;
+    }
+
+    private TransactionTemplate newWriteTx() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+}
@@ -0,0 +1,132 @@
+package com.shopeefood.backend.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.shopeefood.backend.dto.OrderItemRequest;
+import com.shopeefood.backend.dto.OrderRequest;
+import com.shopeefood.backend.entity.Account;
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.entity.OrderItem;
+import com.shopeefood.backend.entity.Product;
+import com.shopeefood.backend.entity.Restaurant;
+import com.shopeefood.backend.repository.CustomerRepository;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ProductRepository;
+
+/**
+ * Tạo đơn hàng (POST /api/orders/create) với số câu SQL cố định:
+ * - 1 query lấy tất cả món trong đơn (thay vì findById 2 lần cho mỗi món)
+ * - Giá tính bằng BigDecimal
+ * - Mã đơn lấy từ sequence order_number_seq -> chỉ INSERT đơn 1 lần, không UPDATE lại
+ * - OrderItem dùng id từ sequence nên các dòng được INSERT theo batch (hibernate.jdbc.batch_size)
+ */
+@Service
+public class CheckoutService {
+
+    private static final BigDecimal SHIPPING_FEE = BigDecimal.valueOf(15000); // Phí ship cứng
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Transactional // Nếu lưu món lỗi -> Hủy cả đơn hàng (Rollback)
+    public Order createOrder(OrderRequest request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Đơn hàng chưa có món nào");
+        }
+
+        if (request.getAccountId() == null || request.getRestaurantId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Thiếu tài khoản hoặc nhà hàng");
+        }
+        // Dòng món không có productId -> 400 (findAllById không nhận id null)
+        for (OrderItemRequest itemReq : request.getItems()) {
+            if (itemReq == null || itemReq.getProductId() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Món trong đơn không hợp lệ");
+            }
+        }
+
+        // 1. Lấy tất cả món trong 1 query
+        List<Integer> productIds = request.getItems().stream()
+                .map(OrderItemRequest::getProductId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Integer, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // 2. Lưu Đơn hàng (Order)
+        Order order = new Order();
+        // Set ID cho User và Restaurant (Làm tắt: chỉ set ID để Hibernate tự hiểu)
+        Account user = new Account();
+        user.setId(request.getAccountId());
+        order.setCustomer(user);
+
+        Restaurant res = new Restaurant();
+        res.setId(request.getRestaurantId());
+        order.setRestaurant(res);
+
+        order.setShippingAddress(request.getAddress());
+
+        // Lấy tọa độ từ Customer entity nếu có (để hiển thị trên bản đồ)
+        customerRepository.findById(request.getAccountId()).ifPresent(customer -> {
+            if (customer.getLatitude() != null && customer.getLongitude() != null) {
+                order.setShippingLat(customer.getLatitude());
+                order.setShippingLong(customer.getLongitude());
+            }
+        });
+
+        // 3. Chi tiết món + tổng tiền (BigDecimal)
+        BigDecimal subtotal = BigDecimal.ZERO;
+        List<OrderItem> items = new ArrayList<>(request.getItems().size());
+        for (OrderItemRequest itemReq : request.getItems()) {
+            Product p = products.get(itemReq.getProductId());
+            if (p == null || p.getPrice() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Món không tồn tại: " + itemReq.getProductId());
+            }
+            if (itemReq.getQuantity() == null || itemReq.getQuantity() <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Số lượng không hợp lệ cho món: " + p.getName());
+            }
+
+            BigDecimal unitPrice = BigDecimal.valueOf(p.getPrice());
+            subtotal = subtotal.add(unitPrice.multiply(BigDecimal.valueOf(itemReq.getQuantity())));
+
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(p);
+            item.setQuantity(itemReq.getQuantity());
+            item.setPrice(unitPrice);
+            items.add(item);
+        }
+
+        order.setOrderItems(items);
+        order.setSubtotal(subtotal);
+        order.setShippingFee(SHIPPING_FEE);
+        order.setTotalAmount(subtotal.add(SHIPPING_FEE));
+        order.setStatus("PENDING");
+        order.setCreatedAt(LocalDateTime.now());
+        order.setOrderNumber(Order.buildOrderNumber(orderRepository.nextOrderNumberValue()));
+
+        // Cascade ALL: INSERT đơn + các dòng món (theo batch) trong 1 lần flush
+        return orderRepository.save(order);
+    }
+}
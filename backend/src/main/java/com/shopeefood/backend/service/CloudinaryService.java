@@ -1,27 +0,0 @@
-package com.shopeefood.backend.service;
-
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import java.io.IOException;
-import java.util.Map;
-
-@Service
-public class CloudinaryService {
-
-    @Autowired
-    private Cloudinary cloudinary;
-
-    public String uploadImage(MultipartFile file) throws IOException {
-        // Upload file lên Cloudinary
-        // file.getBytes() chuyển nội dung file thành mảng byte để upload trực tiếp
-        Map uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.asMap(
-                "resource_type", "auto"));
-
-        // Lấy về URL ảnh sau khi upload thành công
-        return uploadResult.get("secure_url").toString();
-    }
-}
\ No newline at end of file
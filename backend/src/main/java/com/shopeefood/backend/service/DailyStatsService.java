@@ -0,0 +1,131 @@
+package com.shopeefood.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.repository.DailyStatsRepository;
+
+/**
+ * Quản lý bảng tổng hợp doanh thu theo ngày (daily_restaurant_stats, daily_product_stats)
+ * mà dashboard admin / owner đọc thay cho việc gom toàn bộ orders.
+ * - Đơn vào / ra trạng thái COMPLETED, REFUNDED hoặc đổi tiền hoàn: tính lại đúng 1 ô (quán, ngày)
+ *   sau khi transaction commit
+ * - Job đối soát hằng đêm tính lại N ngày gần nhất (đơn sửa trực tiếp trong DB, sự kiện bị lỡ)
+ * - Bảng còn trống khi khởi động: dựng lại toàn bộ ở background, từng tháng một
+ */
+@Service
+public class DailyStatsService {
+
+    private static final Set<String> SETTLED_STATUSES = Set.of("COMPLETED", "REFUNDED");
+
+    @Autowired
+    private DailyStatsRepository dailyStatsRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${stats.daily.reconcile-days:35}")
+    private int reconcileDays;
+
+    /**
+     * Ô tổng hợp cần tính lại: 1 quán trong 1 ngày (ngày tạo đơn).
+     */
+    public record DailyStatsEvent(Integer restaurantId, LocalDate day) {
+    }
+
+    /**
+     * Gọi sau khi đổi trạng thái đơn (oldStatus: trạng thái trước khi đổi), xóa đơn hoặc đổi tiền quán hoàn
+     * (truyền oldStatus = trạng thái hiện tại). Đơn không liên quan doanh thu thì bỏ qua.
+     */
+    public void orderChanged(Order order, String oldStatus) {
+        if (order == null || order.getRestaurant() == null || order.getCreatedAt() == null) {
+            return;
+        }
+        if (!SETTLED_STATUSES.contains(order.getStatus()) && !SETTLED_STATUSES.contains(oldStatus)) {
+            return;
+        }
+        eventPublisher.publishEvent(new DailyStatsEvent(order.getRestaurant().getId(),
+                order.getCreatedAt().toLocalDate()));
+    }
+
+    /**
+     * Tính lại ô (quán, ngày) sau khi transaction ghi đơn commit, chạy ở thread riêng
+     * để không kéo dài request của shipper / chủ quán.
+     */
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onDailyStatsEvent(DailyStatsEvent event) {
+        if (event == null || event.restaurantId() == null || event.day() == null) {
+            return;
+        }
+        refreshRange(event.restaurantId(), event.day(), event.day());
+    }
+
+    /**
+     * Job đối soát: tính lại reconcileDays ngày gần nhất cho mọi quán.
+     */
+    @Scheduled(cron = "${stats.daily.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        LocalDate today = LocalDate.now();
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> refreshRange(null, today.minusDays(reconcileDays - 1L), today));
+    }
+
+    /**
+     * Dựng lại toàn bộ khi bảng tổng hợp còn trống (lần đầu deploy mà chưa chạy script backfill).
+     * Mỗi tháng 1 transaction để không khóa / quét cả bảng orders trong 1 lần.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            Long existing = tx.execute(status -> dailyStatsRepository.count());
+            if (existing != null && existing > 0) {
+                return;
+            }
+            LocalDateTime first = tx.execute(status -> dailyStatsRepository.findFirstSettledOrderTime());
+            if (first == null) {
+                return;
+            }
+            LocalDate today = LocalDate.now();
+            LocalDate from = first.toLocalDate().withDayOfMonth(1);
+            while (!from.isAfter(today)) {
+                LocalDate chunkStart = from;
+                LocalDate chunkEnd = from.plusMonths(1).minusDays(1);
+                tx.executeWithoutResult(status -> refreshRange(null, chunkStart, chunkEnd));
+                from = from.plusMonths(1);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Không dựng được bảng tổng hợp doanh thu theo ngày: " + e.getMessage());
+        }
+    }
+
+    // Phải gọi trong transaction. restaurantId = null -> mọi quán
+    private void refreshRange(Integer restaurantId, LocalDate fromDate, LocalDate toDate) {
+        dailyStatsRepository.deleteRestaurantStats(restaurantId, fromDate, toDate);
+        dailyStatsRepository.insertRestaurantStats(restaurantId, fromDate, toDate);
+        dailyStatsRepository.deleteProductStats(restaurantId, fromDate, toDate);
+        dailyStatsRepository.insertProductStats(restaurantId, fromDate, toDate);
+    }
+}
@@ -0,0 +1,338 @@
+package com.shopeefood.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.shopeefood.backend.dispatch.DispatchPlanner;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ShipperRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Điều phối tự động: ghép đơn PREPARING chưa có shipper với shipper ONLINE gần quán nhất.
+ * - Chạy định kỳ (dispatch.interval-ms) và ngay khi có đơn mới sẵn sàng (OrderFeedEvent)
+ * - Mỗi lượt ghép cả lô bằng DispatchPlanner (lưới không gian + tham lam theo khoảng cách)
+ * - Mỗi đơn chỉ mời 1 shipper tại 1 thời điểm, mỗi shipper chỉ giữ 1 lời mời; lời mời hết hạn
+ *   sau dispatch.offer-timeout-seconds, shipper đã từ chối / để hết hạn không được mời lại đơn đó
+ * - Shipper chấp nhận -> nhận đơn qua OrderClaimService (vẫn an toàn khi shipper khác nhận tay cùng lúc)
+ * Trạng thái lời mời giữ trong bộ nhớ (1 instance), khởi động lại thì các đơn được mời lại từ đầu.
+ * Metric: dispatch.plan, dispatch.offers{result}, dispatch.offers.open
+ */
+@Service
+public class DispatchService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ShipperRepository shipperRepository;
+
+    @Autowired
+    private ShipperLocationService shipperLocationService;
+
+    @Autowired
+    private AvailableOrderFeedService availableOrderFeedService;
+
+    @Autowired
+    private OrderClaimService orderClaimService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Cùng executor với các lượt chạy @Async (onOrderFeedEvent)
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Value("${dispatch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dispatch.offer-timeout-seconds:20}")
+    private int offerTimeoutSeconds;
+
+    @Value("${dispatch.max-radius-km:5}")
+    private double maxRadiusKm;
+
+    @Value("${dispatch.candidates-per-order:5}")
+    private int candidatesPerOrder;
+
+    @Value("${dispatch.grid-cell-km:0.5}")
+    private double gridCellKm;
+
+    /**
+     * Lời mời nhận đơn đang chờ shipper trả lời. expiresAt: epoch millis.
+     */
+    public record Offer(Integer orderId, Integer shipperId, double distanceKm, long expiresAt) {
+    }
+
+    private final Map<Integer, Offer> offersByOrder = new ConcurrentHashMap<>();
+    private final Map<Integer, Offer> offersByShipper = new ConcurrentHashMap<>();
+    // orderId -> các shipper đã từ chối / để hết hạn lời mời của đơn này
+    private final Map<Integer, Set<Integer>> refused = new ConcurrentHashMap<>();
+
+    // Chỉ 1 lượt điều phối chạy tại 1 thời điểm; yêu cầu đến trong lúc đang chạy được gộp thành 1 lượt chạy lại
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final AtomicBoolean rerun = new AtomicBoolean();
+    // Đã có 1 lượt chạy nền đang chờ executor (requestRun gộp các yêu cầu liên tiếp)
+    private final AtomicBoolean runQueued = new AtomicBoolean();
+
+    private Timer planTimer;
+    private Counter sentOffers;
+    private Counter acceptedOffers;
+    private Counter declinedOffers;
+    private Counter expiredOffers;
+    private Counter failedOffers;
+
+    @PostConstruct
+    void registerMetrics() {
+        planTimer = meterRegistry.timer("dispatch.plan");
+        sentOffers = meterRegistry.counter("dispatch.offers", "result", "sent");
+        acceptedOffers = meterRegistry.counter("dispatch.offers", "result", "accepted");
+        declinedOffers = meterRegistry.counter("dispatch.offers", "result", "declined");
+        expiredOffers = meterRegistry.counter("dispatch.offers", "result", "expired");
+        failedOffers = meterRegistry.counter("dispatch.offers", "result", "failed");
+        Gauge.builder("dispatch.offers.open", offersByOrder, Map::size)
+                .description("Số lời mời nhận đơn đang chờ shipper trả lời")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.interval-ms:3000}")
+    public void scheduledRun() {
+        run();
+    }
+
+    /**
+     * Đơn mới sẵn sàng -> điều phối ngay; đơn đã bị nhận / hủy -> thu hồi lời mời đang treo.
+     */
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderFeedEvent(AvailableOrderFeedService.OrderFeedEvent event) {
+        if (event.available()) {
+            run();
+        } else {
+            withdraw(event.orderId());
+        }
+    }
+
+    /**
+     * Chạy 1 lượt điều phối (bỏ qua nếu đang có lượt khác chạy, lượt đó sẽ chạy lại 1 lần nữa).
+     */
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        rerun.set(true);
+        while (rerun.get() && runLock.tryLock()) {
+            try {
+                rerun.set(false);
+                dispatchOnce();
+            } catch (RuntimeException e) {
+                System.err.println("Lỗi điều phối đơn tự động: " + e.getMessage());
+            } finally {
+                runLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Chạy 1 lượt điều phối trên luồng nền, không chờ (dùng cho request của shipper).
+     */
+    public void requestRun() {
+        if (!enabled || !runQueued.compareAndSet(false, true)) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            runQueued.set(false);
+            run();
+        });
+    }
+
+    /**
+     * Lời mời đang chờ của shipper (null nếu không có hoặc đã hết hạn).
+     */
+    public Offer getOffer(Integer shipperId) {
+        Offer offer = shipperId != null ? offersByShipper.get(shipperId) : null;
+        return offer != null && offer.expiresAt() > System.currentTimeMillis() ? offer : null;
+    }
+
+    /**
+     * Shipper chấp nhận lời mời -> nhận đơn. Nhận không được thì đơn quay lại hàng chờ điều phối.
+     */
+    public OrderClaimService.ClaimResult acceptOffer(Integer orderId, Integer shipperId) {
+        Offer offer = offersByOrder.get(orderId);
+        if (offer == null || !offer.shipperId().equals(shipperId)
+                || offer.expiresAt() <= System.currentTimeMillis()
+                || !removeOffer(offer)) {
+            return OrderClaimService.ClaimResult.OFFER_NOT_FOUND;
+        }
+
+        OrderClaimService.ClaimResult result = orderClaimService.claim(orderId, shipperId);
+        if (result == OrderClaimService.ClaimResult.CLAIMED) {
+            acceptedOffers.increment();
+            refused.remove(orderId);
+        } else {
+            failedOffers.increment();
+            markRefused(orderId, shipperId);
+        }
+        return result;
+    }
+
+    /**
+     * Shipper từ chối lời mời -> mời shipper khác ngay.
+     */
+    public boolean declineOffer(Integer orderId, Integer shipperId) {
+        Offer offer = offersByOrder.get(orderId);
+        if (offer == null || !offer.shipperId().equals(shipperId) || !removeOffer(offer)) {
+            return false;
+        }
+        declinedOffers.increment();
+        markRefused(orderId, shipperId);
+        requestRun();
+        return true;
+    }
+
+    private void dispatchOnce() {
+        long now = System.currentTimeMillis();
+        expireOffers(now);
+
+        List<Object[]> orderRows = orderRepository.findOpenOrderLocations();
+        Set<Integer> openOrderIds = new HashSet<>();
+        List<DispatchPlanner.Point> orders = new ArrayList<>();
+        for (Object[] row : orderRows) {
+            Integer orderId = ((Number) row[0]).intValue();
+            openOrderIds.add(orderId);
+            if (!offersByOrder.containsKey(orderId)) {
+                orders.add(new DispatchPlanner.Point(orderId,
+                        ((Number) row[1]).doubleValue(), ((Number) row[2]).doubleValue()));
+            }
+        }
+        // Đơn đã bị nhận tay / hủy mà không có sự kiện đi kèm
+        for (Offer offer : new ArrayList<>(offersByOrder.values())) {
+            if (!openOrderIds.contains(offer.orderId())) {
+                cancelOffer(offer);
+            }
+        }
+        refused.keySet().retainAll(openOrderIds);
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> onlineIds = new HashSet<>();
+        List<DispatchPlanner.Point> shippers = new ArrayList<>();
+        for (Object[] row : shipperRepository.findOnlineShipperLocations()) {
+            Integer shipperId = ((Number) row[0]).intValue();
+            onlineIds.add(shipperId);
+            if (offersByShipper.containsKey(shipperId)) {
+                continue;
+            }
+            // Vị trí trong bộ nhớ mới hơn giá trị đã ghi DB
+            ShipperLocationService.Position position = shipperLocationService.getPosition(shipperId);
+            if (position != null) {
+                shippers.add(new DispatchPlanner.Point(shipperId, position.lat(), position.lng()));
+            } else if (row[1] != null && row[2] != null) {
+                shippers.add(new DispatchPlanner.Point(shipperId,
+                        ((Number) row[1]).doubleValue(), ((Number) row[2]).doubleValue()));
+            }
+        }
+        // Shipper đang giữ lời mời nhưng đã nhận đơn khác / offline -> trả đơn về hàng chờ (lượt sau)
+        for (Offer offer : new ArrayList<>(offersByShipper.values())) {
+            if (!onlineIds.contains(offer.shipperId())) {
+                cancelOffer(offer);
+            }
+        }
+        if (shippers.isEmpty()) {
+            return;
+        }
+
+        List<DispatchPlanner.Assignment> assignments = planTimer.record(() -> DispatchPlanner.plan(
+                orders, shippers, candidatesPerOrder, maxRadiusKm, gridCellKm,
+                (orderId, shipperId) -> refused.getOrDefault(orderId, Collections.emptySet())
+                        .contains(shipperId)));
+
+        long expiresAt = System.currentTimeMillis() + offerTimeoutSeconds * 1000L;
+        for (DispatchPlanner.Assignment assignment : assignments) {
+            Offer offer = new Offer(assignment.orderId(), assignment.shipperId(),
+                    assignment.distanceKm(), expiresAt);
+            if (offersByShipper.putIfAbsent(offer.shipperId(), offer) != null) {
+                continue;
+            }
+            if (offersByOrder.putIfAbsent(offer.orderId(), offer) != null) {
+                offersByShipper.remove(offer.shipperId(), offer);
+                continue;
+            }
+            sentOffers.increment();
+            // Shipper không mở kết nối SSE vẫn thấy lời mời qua GET /api/shipper/orders/offer
+            availableOrderFeedService.sendToShipper(offer.shipperId(),
+                    AvailableOrderFeedService.EVENT_OFFER, toView(offer));
+        }
+    }
+
+    private void expireOffers(long now) {
+        for (Offer offer : new ArrayList<>(offersByOrder.values())) {
+            if (offer.expiresAt() <= now && removeOffer(offer)) {
+                expiredOffers.increment();
+                markRefused(offer.orderId(), offer.shipperId());
+                availableOrderFeedService.sendToShipper(offer.shipperId(),
+                        AvailableOrderFeedService.EVENT_OFFER_CANCELLED, Map.of("orderId", offer.orderId()));
+            }
+        }
+    }
+
+    private void withdraw(Integer orderId) {
+        Offer offer = offersByOrder.get(orderId);
+        if (offer != null) {
+            cancelOffer(offer);
+        }
+        refused.remove(orderId);
+    }
+
+    private void cancelOffer(Offer offer) {
+        if (removeOffer(offer)) {
+            availableOrderFeedService.sendToShipper(offer.shipperId(),
+                    AvailableOrderFeedService.EVENT_OFFER_CANCELLED, Map.of("orderId", offer.orderId()));
+        }
+    }
+
+    // Chỉ 1 luồng (chấp nhận / từ chối / hết hạn / thu hồi) gỡ được 1 lời mời
+    private boolean removeOffer(Offer offer) {
+        if (!offersByOrder.remove(offer.orderId(), offer)) {
+            return false;
+        }
+        offersByShipper.remove(offer.shipperId(), offer);
+        return true;
+    }
+
+    private void markRefused(Integer orderId, Integer shipperId) {
+        refused.computeIfAbsent(orderId, id -> ConcurrentHashMap.newKeySet()).add(shipperId);
+    }
+
+    public Map<String, Object> toView(Offer offer) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("orderId", offer.orderId());
+        map.put("distanceKm", Math.round(offer.distanceKm() * 100) / 100.0);
+        map.put("expiresAt", offer.expiresAt());
+        return map;
+    }
+}
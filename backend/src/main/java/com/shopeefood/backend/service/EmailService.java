@@ -1,29 +1,93 @@
 package com.shopeefood.backend.service;
 
+import java.time.LocalDateTime;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shopeefood.backend.entity.MailOutbox;
+import com.shopeefood.backend.repository.MailOutboxRepository;
 
+/**
+ * Soạn email thông báo và ghi vào mail_outbox trong transaction của nơi gọi
+ * (nghiệp vụ rollback thì email cũng không được gửi). Không kết nối SMTP ở đây:
+ * MailOutboxDispatcher gửi nền sau khi transaction commit.
+ */
 @Service
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    /**
+     * Phát sau khi ghi 1 email vào outbox, để dispatcher gửi ngay khi commit thay vì chờ lượt quét.
+     */
+    public record MailQueuedEvent(Long mailId) {
+    }
+
+    @Transactional
+    public MailOutbox enqueue(String toEmail, String subject, String text) {
+        return enqueue(toEmail, subject, text, false);
+    }
 
+    /**
+     * sensitive = true: nội dung có thông tin đăng nhập, dispatcher xóa nội dung cả khi gửi lỗi hẳn (FAILED).
+     */
+    @Transactional
+    public MailOutbox enqueue(String toEmail, String subject, String text, boolean sensitive) {
+        if (toEmail == null || toEmail.trim().isEmpty()) {
+            throw new IllegalArgumentException("Thiếu địa chỉ email người nhận");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        MailOutbox mail = new MailOutbox();
+        mail.setRecipient(toEmail.trim());
+        mail.setSubject(subject);
+        mail.setBody(text);
+        mail.setSensitive(sensitive);
+        mail.setStatus("PENDING");
+        mail.setAttempts(0);
+        mail.setNextAttemptAt(now);
+        mail.setCreatedAt(now);
+        MailOutbox saved = mailOutboxRepository.save(mail);
+        eventPublisher.publishEvent(new MailQueuedEvent(saved.getId()));
+        return saved;
+    }
+
+    @Transactional
     public void sendNewPasswordEmail(String toEmail, String newPassword) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(toEmail);
-        message.setSubject("Food Order - Cấp lại mật khẩu");
-        message.setText("Xin chào,\n\nMật khẩu mới của bạn là: " + newPassword
-                + "\n\nVui lòng đăng nhập và đổi lại mật khẩu ngay.");
-
-        mailSender.send(message);
-        System.out.println("Đã gửi mail thành công đến: " + toEmail);
+        enqueue(toEmail, "Food Order - Cấp lại mật khẩu",
+                "Xin chào,\n\nMật khẩu mới của bạn là: " + newPassword
+                        + "\n\nVui lòng đăng nhập và đổi lại mật khẩu ngay.", true);
+    }
+
+    @Transactional
+    public void sendRestaurantReviewEmail(String toEmail, String restaurantName, boolean approved, String reason) {
+        if (approved) {
+            enqueue(toEmail, "Food Order - Quán \"" + restaurantName + "\" đã được duyệt",
+                    "Xin chào,\n\nQuán \"" + restaurantName + "\" của bạn đã được duyệt và đang hiển thị trên ứng dụng."
+                            + "\n\nChúc bạn kinh doanh thuận lợi!");
+        } else {
+            enqueue(toEmail, "Food Order - Quán \"" + restaurantName + "\" chưa được duyệt",
+                    "Xin chào,\n\nQuán \"" + restaurantName + "\" của bạn chưa được duyệt.\nLý do: " + reason
+                            + "\n\nVui lòng cập nhật thông tin và gửi lại yêu cầu.");
+        }
+    }
+
+    @Transactional
+    public void sendIssueStatusEmail(String toEmail, String issueCode, String title, String oldStatus,
+            String newStatus, String reason) {
+        StringBuilder text = new StringBuilder("Xin chào,\n\nKhiếu nại ")
+                .append(issueCode).append(" (").append(title).append(") đã chuyển trạng thái: ")
+                .append(oldStatus).append(" -> ").append(newStatus).append('.');
+        if (reason != null && !reason.trim().isEmpty()) {
+            text.append("\nGhi chú: ").append(reason.trim());
+        }
+        text.append("\n\nVui lòng đăng nhập để xem chi tiết.");
+        enqueue(toEmail, "Food Order - Cập nhật khiếu nại " + issueCode, text.toString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+package com.shopeefood.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shopeefood.backend.entity.Customer;
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.eta.EtaModel;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.util.GeoUtils;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Thời gian giao dự kiến (estimatedDeliveryTimeMinutes) tính lúc shipper nhận đơn, thay cho mặc định 2 phút.
+ * - Khởi động: học lại từ lịch sử giao hàng eta.history-days ngày gần nhất
+ * - Mỗi đơn shipper giao xong: cập nhật thống kê ngay (trong bộ nhớ)
+ * - Tra cứu không query DB: chỉ đọc vài trung bình trượt trong EtaModel
+ * Hạn giao = ETA x (1 + eta.buffer-ratio) để đơn chỉ bị tính quá hạn khi chậm hơn hẳn bình thường.
+ * Độ chính xác kiểm tra bằng scripts/EtaBacktest.java.
+ */
+@Service
+public class EtaService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Value("${eta.default-speed-kmh:18}")
+    private double defaultSpeedKmh;
+
+    @Value("${eta.default-pickup-minutes:10}")
+    private double defaultPickupMinutes;
+
+    // Dùng khi đơn thiếu tọa độ quán / khách
+    @Value("${eta.default-distance-km:3}")
+    private double defaultDistanceKm;
+
+    @Value("${eta.buffer-ratio:0.2}")
+    private double bufferRatio;
+
+    @Value("${eta.min-minutes:10}")
+    private int minMinutes;
+
+    @Value("${eta.max-minutes:120}")
+    private int maxMinutes;
+
+    @Value("${eta.history-days:90}")
+    private int historyDays;
+
+    @Value("${eta.window:200}")
+    private int window;
+
+    private EtaModel model;
+    // Đơn hoàn thành sau mốc này được học trực tiếp, trước mốc này học khi khởi động
+    private LocalDateTime startedAt;
+
+    @PostConstruct
+    void init() {
+        model = new EtaModel(defaultSpeedKmh / 60.0, defaultPickupMinutes, window, 5);
+        startedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Học lại từ lịch sử (chạy nền, trong lúc đó ETA dùng giá trị mặc định).
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadHistory() {
+        try {
+            List<Object[]> rows = orderRepository.findDeliveryHistory(startedAt.minusDays(historyDays), startedAt);
+            for (Object[] row : rows) {
+                double distanceKm = distanceKm((Double) row[1], (Double) row[2], (Double) row[3], (Double) row[4]);
+                if (distanceKm < 0) {
+                    continue;
+                }
+                model.record(new EtaModel.Trip((Integer) row[0], distanceKm,
+                        (LocalDateTime) row[5], (LocalDateTime) row[6], (LocalDateTime) row[7]));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Không tải được lịch sử giao hàng cho ETA, dùng giá trị mặc định: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Số phút giao dự kiến (đã cộng dự phòng) nếu shipperId nhận đơn này ngay bây giờ.
+     */
+    public int estimateMinutes(Order order, Integer shipperId) {
+        return estimateMinutes(order != null ? deliveryDistanceKm(order) : -1, shipperId);
+    }
+
+    /**
+     * Như trên nhưng nhận thẳng tọa độ quán / điểm giao (dùng khi nhận đơn, không cần nạp Order).
+     */
+    public int estimateMinutes(Double restaurantLat, Double restaurantLng, Double deliveryLat, Double deliveryLng,
+            Integer shipperId) {
+        return estimateMinutes(distanceKm(restaurantLat, restaurantLng, deliveryLat, deliveryLng), shipperId);
+    }
+
+    private int estimateMinutes(double distanceKm, Integer shipperId) {
+        if (distanceKm < 0) {
+            distanceKm = defaultDistanceKm;
+        }
+        double minutes = model.estimateMinutes(shipperId, distanceKm, LocalDateTime.now().getHour());
+        long promised = (long) Math.ceil(minutes * (1 + bufferRatio));
+        return (int) Math.max(minMinutes, Math.min(maxMinutes, promised));
+    }
+
+    /**
+     * Học từ đơn shipper vừa giao xong.
+     */
+    public void recordCompleted(Order order) {
+        if (order == null || order.getShipper() == null) {
+            return;
+        }
+        double distanceKm = deliveryDistanceKm(order);
+        if (distanceKm < 0) {
+            return;
+        }
+        model.record(new EtaModel.Trip(order.getShipper().getAccountId(), distanceKm,
+                order.getShippedAt(), order.getDeliveryStartedAt(), order.getCompletedAt()));
+    }
+
+    // Khoảng cách quán -> điểm giao (km), -1 nếu thiếu tọa độ
+    private double deliveryDistanceKm(Order order) {
+        if (order.getRestaurant() == null) {
+            return -1;
+        }
+        Double lat = order.getShippingLat();
+        Double lng = order.getShippingLong();
+        // Tọa độ giao hàng: ưu tiên từ đơn hàng, nếu không có thì lấy từ Customer
+        if ((lat == null || lng == null) && order.getCustomerName() != null) {
+            Customer customer = order.getCustomerName();
+            lat = customer.getLatitude();
+            lng = customer.getLongitude();
+        }
+        return distanceKm(order.getRestaurant().getLatitude(), order.getRestaurant().getLongitude(), lat, lng);
+    }
+
+    private static double distanceKm(Double lat1, Double lng1, Double lat2, Double lng2) {
+        if (lat1 == null || lng1 == null || lat2 == null || lng2 == null) {
+            return -1;
+        }
+        return GeoUtils.distanceKm(lat1, lng1, lat2, lng2);
+    }
+}
@@ -0,0 +1,234 @@
+package com.shopeefood.backend.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.shopeefood.backend.entity.ImageAsset;
+import com.shopeefood.backend.repository.ImageAssetRepository;
+import com.shopeefood.backend.storage.ImageStorage;
+import com.shopeefood.backend.storage.ImageStorageUnavailableException;
+import com.shopeefood.backend.storage.ImageUploadPipeline;
+import com.shopeefood.backend.storage.ImageUploadPipeline.PendingUpload;
+import com.shopeefood.backend.storage.ImageUploadPipeline.StoredImage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Upload ảnh (món ăn, avatar / giấy phép shipper, /api/upload/image) thay cho gọi Cloudinary trực tiếp.
+ * - File multipart được chuyển (transferTo) sang thư mục upload.image.staging-dir, không qua heap
+ * - Cùng nội dung (SHA-256) chỉ lưu 1 lần, bảng image_assets giữ URL đã lưu
+ * - Bản thu nhỏ (upload.image.variant-widths) tạo tại máy chủ rồi lưu cùng bản gốc, thực đơn trả kèm URL
+ *   các bản thu nhỏ (findVariantUrls) để giao diện dùng ảnh nhỏ cho danh sách món
+ * - Lưu lên storage (ImageStorageConfig: Cloudinary hoặc thư mục local) chạy trên upload.image.workers luồng,
+ *   hàng đợi tối đa upload.image.queue-capacity ảnh: số lời gọi storage đồng thời có giới hạn
+ * uploadImage chỉ trả URL khi ảnh đã nằm trên storage (chờ tối đa upload.image.store-timeout-seconds),
+ * nên URL lưu vào DB luôn mở được. Hàng đợi đầy / quá hạn / storage lỗi -> ImageStorageUnavailableException (503).
+ * Gọi ngoài transaction: chờ storage không giữ kết nối DB.
+ * Metric: upload.image{result}, upload.image.queue
+ */
+@Service
+public class ImageUploadService {
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ImageAssetRepository imageAssetRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${upload.image.workers:4}")
+    private int workers;
+
+    @Value("${upload.image.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${upload.image.variant-widths:320,800}")
+    private int[] variantWidths;
+
+    @Value("${upload.image.store-timeout-seconds:30}")
+    private long storeTimeoutSeconds;
+
+    // Trống -> thư mục tạm của hệ thống
+    @Value("${upload.image.staging-dir:}")
+    private String stagingDirPath;
+
+    private ThreadPoolExecutor executor;
+    private ImageUploadPipeline pipeline;
+    private Path stagingDir;
+
+    private Counter storedCounter;
+    private Counter duplicateCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void init() throws IOException {
+        stagingDir = stagingDirPath == null || stagingDirPath.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "shopeefood-uploads")
+                : Paths.get(stagingDirPath);
+        Files.createDirectories(stagingDir);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread thread = new Thread(r, "image-upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        pipeline = new ImageUploadPipeline(imageStorage, executor, new ImageIndex(), variantWidths);
+
+        storedCounter = meterRegistry.counter("upload.image", "result", "stored");
+        duplicateCounter = meterRegistry.counter("upload.image", "result", "duplicate");
+        failedCounter = meterRegistry.counter("upload.image", "result", "failed");
+        rejectedCounter = meterRegistry.counter("upload.image", "result", "rejected");
+        meterRegistry.gauge("upload.image.queue", executor, e -> e.getQueue().size() + e.getActiveCount());
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Cho các ảnh đang upload chạy nốt
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Nhận ảnh, trả về ngay khi đã ghi file tạm + băm (done hoàn thành khi ảnh đã lưu xong).
+     * Nội dung không phải ảnh -> IllegalArgumentException, quá nhiều ảnh đang chờ -> ImageStorageUnavailableException.
+     */
+    public PendingUpload upload(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Vui lòng chọn ảnh!");
+        }
+        Path staged = Files.createTempFile(stagingDir, "upload-", ".tmp");
+        try {
+            // Part đã nằm trên đĩa (file-size-threshold=0): chuyển / chép file, không đọc vào heap
+            file.transferTo(staged);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+
+        PendingUpload pending;
+        try {
+            pending = pipeline.submit(staged);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new ImageStorageUnavailableException("Hệ thống đang bận xử lý ảnh, vui lòng thử lại sau", e);
+        }
+
+        if (pending.duplicate()) {
+            duplicateCounter.increment();
+        } else {
+            pending.done().whenComplete((image, error) -> {
+                if (error != null) {
+                    failedCounter.increment();
+                    System.err.println("Upload ảnh " + pending.hash() + " thất bại: " + error.getMessage());
+                } else {
+                    storedCounter.increment();
+                }
+            });
+        }
+        return pending;
+    }
+
+    /**
+     * Lưu ảnh và trả về URL để lưu vào DB, chỉ sau khi ảnh đã nằm trên storage.
+     * Quá upload.image.store-timeout-seconds thì báo thử lại; ảnh vẫn lưu tiếp ở nền,
+     * gửi lại cùng ảnh sẽ chờ chung lần lưu đó (cùng mã băm) thay vì upload lần 2.
+     */
+    public String uploadImage(MultipartFile file) throws IOException {
+        PendingUpload pending = upload(file);
+        try {
+            return pending.done().get(storeTimeoutSeconds, TimeUnit.SECONDS).url();
+        } catch (TimeoutException e) {
+            throw new ImageStorageUnavailableException("Lưu ảnh đang chậm, vui lòng thử lại sau", e);
+        } catch (ExecutionException e) {
+            throw new ImageStorageUnavailableException("Không lưu được ảnh, vui lòng thử lại sau", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImageStorageUnavailableException("Không lưu được ảnh, vui lòng thử lại sau", e);
+        }
+    }
+
+    /**
+     * URL ảnh -> (chiều rộng -> URL bản thu nhỏ), chỉ gồm ảnh upload qua hệ thống và có bản thu nhỏ.
+     */
+    public Map<String, Map<Integer, String>> findVariantUrls(Collection<String> imageUrls) {
+        Map<String, Map<Integer, String>> result = new HashMap<>();
+        if (imageUrls.isEmpty()) {
+            return result;
+        }
+        for (ImageAsset asset : imageAssetRepository.findByUrlIn(imageUrls)) {
+            Map<Integer, String> variants = pipeline.variantUrls(toStoredImage(asset));
+            if (!variants.isEmpty()) {
+                result.put(asset.getUrl(), variants);
+            }
+        }
+        return result;
+    }
+
+    private static StoredImage toStoredImage(ImageAsset asset) {
+        return new StoredImage(asset.getContentHash(), asset.getStorageKey(), asset.getUrl(), asset.getFormat(),
+                asset.getContentType(), asset.getSizeBytes() != null ? asset.getSizeBytes() : 0, asset.getWidth(),
+                asset.getHeight(), asset.getVariantFormat(), parseWidths(asset.getVariantWidths()));
+    }
+
+    private static List<Integer> parseWidths(String widths) {
+        List<Integer> result = new ArrayList<>();
+        if (widths == null || widths.isBlank()) {
+            return result;
+        }
+        for (String width : widths.split(",")) {
+            result.add(Integer.parseInt(width.trim()));
+        }
+        return result;
+    }
+
+    // Index ảnh đã lưu trên bảng image_assets
+    private class ImageIndex implements ImageUploadPipeline.ImageIndex {
+
+        @Override
+        public StoredImage find(String hash) {
+            return imageAssetRepository.findById(hash).map(ImageUploadService::toStoredImage).orElse(null);
+        }
+
+        @Override
+        public void record(StoredImage image) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    imageAssetRepository.insertIfAbsent(image.hash(), image.key(), image.url(), image.format(),
+                            image.contentType(), image.sizeBytes(), image.width(), image.height(),
+                            image.variantFormat(), image.variantWidths().stream().map(String::valueOf)
+                                    .collect(Collectors.joining(","))));
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.shopeefood.backend.service;
 
 import com.shopeefood.backend.dto.*;
-import com.shopeefood.backend.entity.Account;
 import com.shopeefood.backend.entity.Issue;
 import com.shopeefood.backend.entity.IssueEvent;
 import com.shopeefood.backend.entity.Order;
@@ -9,7 +8,15 @@ import com.shopeefood.backend.entity.Owner;
 import com.shopeefood.backend.entity.Restaurant;
 import com.shopeefood.backend.entity.Shipper;
 import com.shopeefood.backend.repository.*;
+import com.shopeefood.backend.security.AccountSnapshot;
+import com.shopeefood.backend.util.KeysetCursor;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,15 +33,70 @@ public class IssueService {
     private final IssueRepository issueRepository;
     private final IssueEventRepository issueEventRepository;
     private final OrderRepository orderRepository;
-    private final AccountRepository accountRepository;
+    private final PrincipalCache principalCache;
+    private final DailyStatsService dailyStatsService;
+    private final EmailService emailService;
+
+    private static final int DEFAULT_ISSUE_PAGE_SIZE = 20;
+    private static final int DEFAULT_EVENT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    // GET /api/issues (không phân trang) trả về tối đa từng này khiếu nại
+    private static final int LEGACY_LIST_LIMIT = 500;
 
     // ----------------------------
     // Helpers
     // ----------------------------
-    private Account getAccount(Integer accountId) {
-        if (accountId == null) throw new IllegalArgumentException("actorId is required");
-        return accountRepository.findById(accountId)
-                .orElseThrow(() -> new IllegalArgumentException("Actor not found: " + accountId));
+    // Người thao tác: lấy từ token nếu có (accountId client gửi phải khớp), tra qua PrincipalCache
+    private AccountSnapshot getAccount(Integer accountId) {
+        return principalCache.requireActor(accountId);
+    }
+
+    // Xem chi tiết: người liên quan tới đơn, hoặc (khiếu nại không gắn đơn) ADMIN / người tạo
+    private Order ensureReadAccess(AccountSnapshot account, Issue issue) {
+        if (issue.getOrderId() != null) {
+            Order order = orderRepository.findById(issue.getOrderId())
+                    .orElseThrow(() -> new IllegalArgumentException("Order not found: " + issue.getOrderId()));
+            ensureAccess(account, issue, order);
+            return order;
+        }
+        String role = normalizeRole(account.role());
+        if (!"ADMIN".equals(role) && !account.id().equals(issue.getCreatedById())) {
+            throw new SecurityException("No access to this issue");
+        }
+        return null;
+    }
+
+    // 1 trang sự kiện (mới nhất trước khi đọc từ DB), đảo lại thành thứ tự thời gian
+    private CursorPage<IssueEvent> eventPage(Integer issueId, Integer beforeId, int size) {
+        Pageable page = PageRequest.of(0, size + 1);
+        List<IssueEvent> rows = beforeId == null
+                ? issueEventRepository.findByIssueIdOrderByIdDesc(issueId, page)
+                : issueEventRepository.findByIssueIdAndIdLessThanOrderByIdDesc(issueId, beforeId, page);
+        boolean hasMore = rows.size() > size;
+        List<IssueEvent> items = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        Collections.reverse(items);
+        String next = hasMore ? String.valueOf(items.get(0).getId()) : null;
+        return new CursorPage<>(items, next, hasMore);
+    }
+
+    private static int clampLimit(Integer limit, int defaultSize) {
+        if (limit == null || limit <= 0) return defaultSize;
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private static String upperOrNull(String value) {
+        if (value == null || value.trim().isEmpty()) return null;
+        return value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // Báo cho người tạo khiếu nại khi người khác đổi trạng thái (email gửi nền sau khi commit)
+    private void notifyStatusChange(Issue issue, AccountSnapshot actor, String oldStatus, String newStatus, String reason) {
+        if (Objects.equals(oldStatus, newStatus) || actor.id().equals(issue.getCreatedById())) return;
+        principalCache.get(issue.getCreatedById())
+                .map(AccountSnapshot::email)
+                .filter(email -> email != null && !email.isBlank())
+                .ifPresent(email -> emailService.sendIssueStatusEmail(email, issue.getCode(), issue.getTitle(),
+                        oldStatus, newStatus, reason));
     }
 
     private static String normalizeRole(String role) {
@@ -92,13 +154,13 @@ public class IssueService {
         return "ISS-" + ymd + "-" + String.format("%06d", id);
     }
 
-    private IssueEvent event(Integer issueId, Account account, String eventType,
+    private IssueEvent event(Integer issueId, AccountSnapshot account, String eventType,
                              String content, String oldValue, String newValue,
                              BigDecimal amount, String attachmentUrl) {
         IssueEvent e = new IssueEvent();
         e.setIssueId(issueId);
-        e.setAccountId(account.getId());
-        e.setAccountRole(normalizeRole(account.getRole()));
+        e.setAccountId(account.id());
+        e.setAccountRole(normalizeRole(account.role()));
         e.setEventType(eventType);
         e.setContent(content);
         e.setOldValue(oldValue);
@@ -108,9 +170,9 @@ public class IssueService {
         return e;
     }
 
-    private void ensureCreatePermission(Account account, Order order) {
-        String role = normalizeRole(account.getRole());
-        Integer accountId = account.getId();
+    private void ensureCreatePermission(AccountSnapshot account, Order order) {
+        String role = normalizeRole(account.role());
+        Integer accountId = account.id();
 
         if ("ADMIN".equals(role)) return;
 
@@ -149,9 +211,9 @@ public class IssueService {
         throw new SecurityException("Invalid role");
     }
 
-    private void ensureAccess(Account account, Issue issue, Order order) {
-        String role = normalizeRole(account.getRole());
-        Integer actorId = account.getId();
+    private void ensureAccess(AccountSnapshot account, Issue issue, Order order) {
+        String role = normalizeRole(account.role());
+        Integer actorId = account.id();
 
         if ("ADMIN".equals(role)) return;
 
@@ -173,9 +235,9 @@ public class IssueService {
         throw new SecurityException("No access to this issue");
     }
 
-    private void ensureAccessNoOrder(Account account, Issue issue) {
-        String role = normalizeRole(account.getRole());
-        Integer actorId = account.getId();
+    private void ensureAccessNoOrder(AccountSnapshot account, Issue issue) {
+        String role = normalizeRole(account.role());
+        Integer actorId = account.id();
 
         if ("ADMIN".equals(role)) return;
 
@@ -196,7 +258,7 @@ public class IssueService {
         }
         validateOtherFields(req);
 
-        Account account = getAccount(req.getAccountId());
+        AccountSnapshot account = getAccount(req.getAccountId());
 
         String category = req.getCategory().trim().toUpperCase(Locale.ROOT);
         String targetType = req.getTargetType().trim().toUpperCase(Locale.ROOT);
@@ -225,7 +287,7 @@ public class IssueService {
                 throw new IllegalArgumentException("orderId is required");
             }
             // không có order: chỉ cho CUSTOMER/ADMIN tạo (tránh shipper/owner spam system)
-            String role = normalizeRole(account.getRole());
+            String role = normalizeRole(account.role());
             if (!"CUSTOMER".equals(role) && !"ADMIN".equals(role)) {
                 throw new SecurityException("Only CUSTOMER/ADMIN can create SYSTEM/OTHER issue without order");
             }
@@ -235,8 +297,8 @@ public class IssueService {
         issue.setCode("TMP-" + System.nanoTime());
         issue.setOrderId(order != null ? order.getId() : null);
 
-        issue.setCreatedById(account.getId());
-        issue.setCreatedByRole(normalizeRole(account.getRole()));
+        issue.setCreatedById(account.id());
+        issue.setCreatedByRole(normalizeRole(account.role()));
 
         issue.setTargetType(targetType);
         issue.setTargetId(req.getTargetId());
@@ -337,24 +399,13 @@ public class IssueService {
 
     @Transactional(readOnly = true)
     public Map<String, Object> getIssueDetail(Integer issueId, Integer accountId) {
-        Account account = getAccount(accountId);
+        AccountSnapshot account = getAccount(accountId);
         Issue issue = issueRepository.findById(issueId)
                 .orElseThrow(() -> new IllegalArgumentException("Issue not found: " + issueId));
+        Order order = ensureReadAccess(account, issue);
 
-        Order order = null;
-        if (issue.getOrderId() != null) {
-            order = orderRepository.findById(issue.getOrderId())
-                    .orElseThrow(() -> new IllegalArgumentException("Order not found: " + issue.getOrderId()));
-            ensureAccess(account, issue, order);
-        } else {
-            // không có order => chỉ ADMIN hoặc người tạo xem
-            String role = normalizeRole(account.getRole());
-            if (!"ADMIN".equals(role) && !account.getId().equals(issue.getCreatedById())) {
-                throw new SecurityException("No access to this issue");
-            }
-        }
-
-        List<IssueEvent> events = issueEventRepository.findByIssueIdOrderByCreatedAtAsc(issueId);
+        // Chỉ trang sự kiện mới nhất, trang cũ hơn lấy qua listEvents(before = eventsCursor)
+        CursorPage<IssueEvent> events = eventPage(issueId, null, DEFAULT_EVENT_PAGE_SIZE);
 
         Map<String, Object> orderSummary = null;
         if (order != null) {
@@ -372,31 +423,123 @@ public class IssueService {
 
         Map<String, Object> res = new HashMap<>();
         res.put("issue", issue);
-        res.put("events", events);
+        res.put("events", events.getItems());
+        res.put("eventsCursor", events.getNextCursor());
+        res.put("hasMoreEvents", events.isHasMore());
         res.put("orderSummary", orderSummary);
         return res;
     }
 
+    /**
+     * Dòng thời gian của khiếu nại theo trang, cũ dần về trước: before = nextCursor của trang trước
+     * (null -> trang mới nhất). Mỗi trang trả về theo thứ tự thời gian tăng dần để hiển thị luôn.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<IssueEvent> listEvents(Integer issueId, Integer accountId, String before, Integer limit) {
+        AccountSnapshot account = getAccount(accountId);
+        Issue issue = issueRepository.findById(issueId)
+                .orElseThrow(() -> new IllegalArgumentException("Issue not found: " + issueId));
+        ensureReadAccess(account, issue);
+
+        Integer beforeId = null;
+        if (before != null && !before.isBlank()) {
+            try {
+                beforeId = Integer.valueOf(before.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("cursor không hợp lệ");
+            }
+        }
+        return eventPage(issueId, beforeId, clampLimit(limit, DEFAULT_EVENT_PAGE_SIZE));
+    }
+
+    /**
+     * Danh sách khiếu nại theo trang (keyset trên (createdAt, id), mới nhất trước) + lọc tại DB.
+     * scope:
+     * - MY: khiếu nại actor tạo
+     * - ASSIGNED: được giao cho actor (OWNER / ADMIN)
+     * - ALL: tất cả (ADMIN)
+     * status / category / targetType: null -> không lọc. cursor: nextCursor của trang trước.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Issue> listPage(Integer actorId, String scope, String status, String category,
+            String targetType, String cursor, Integer limit) {
+        return findPage(actorId, scope, status, category, targetType, cursor,
+                clampLimit(limit, DEFAULT_ISSUE_PAGE_SIZE));
+    }
+
+    /**
+     * Danh sách cũ (không phân trang), các màn hình đã chuyển sang listPage: chỉ trả về
+     * LEGACY_LIST_LIMIT khiếu nại mới nhất thay vì đọc cả bảng. hasMore = true nghĩa là danh sách bị cắt.
+     */
+    @Deprecated
     @Transactional(readOnly = true)
-    public List<Issue> list(Integer actorId, String scope) {
-        Account actor = getAccount(actorId);
-        String role = normalizeRole(actor.getRole());
+    public CursorPage<Issue> list(Integer actorId, String scope) {
+        return findPage(actorId, scope, null, null, null, null, LEGACY_LIST_LIMIT);
+    }
+
+    // size đã được giới hạn bởi người gọi
+    private CursorPage<Issue> findPage(Integer actorId, String scope, String status, String category,
+            String targetType, String cursor, int size) {
+        AccountSnapshot actor = getAccount(actorId);
+        String role = normalizeRole(actor.role());
         String s = (scope == null ? "MY" : scope.trim().toUpperCase(Locale.ROOT));
+        KeysetCursor after = KeysetCursor.decode(cursor);
 
-        return switch (s) {
+        String scopeField;
+        switch (s) {
             case "ASSIGNED" -> {
-                if ("OWNER".equals(role)) yield issueRepository.findByAssignedOwnerIdOrderByCreatedAtDesc(actorId);
-                if ("ADMIN".equals(role)) yield issueRepository.findByAssignedAdminIdOrderByCreatedAtDesc(actorId);
-                yield List.of();
+                if ("OWNER".equals(role)) scopeField = "assignedOwnerId";
+                else if ("ADMIN".equals(role)) scopeField = "assignedAdminId";
+                else return new CursorPage<>(List.of(), null, false);
             }
             case "ALL" -> {
                 if (!"ADMIN".equals(role)) throw new SecurityException("ADMIN only");
-                yield issueRepository.findAll().stream()
-                        .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                        .toList();
+                scopeField = null;
+            }
+            default -> scopeField = "createdById";
+        }
+        String statusFilter = upperOrNull(status);
+        String categoryFilter = upperOrNull(category);
+        String targetTypeFilter = upperOrNull(targetType);
+
+        Specification<Issue> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (scopeField != null) {
+                predicates.add(cb.equal(root.get(scopeField), actorId));
+            }
+            if (statusFilter != null) {
+                predicates.add(cb.equal(root.get("status"), statusFilter));
             }
-            default -> issueRepository.findByCreatedByIdOrderByCreatedAtDesc(actorId);
+            if (categoryFilter != null) {
+                predicates.add(cb.equal(root.get("category"), categoryFilter));
+            }
+            if (targetTypeFilter != null) {
+                predicates.add(cb.equal(root.get("targetType"), targetTypeFilter));
+            }
+            if (after != null) {
+                // (createdAt, id) < (after.at, after.id); vế <= giúp DB giới hạn đoạn index cần đọc
+                Path<LocalDateTime> createdAt = root.get("createdAt");
+                predicates.add(cb.lessThanOrEqualTo(createdAt, after.at()));
+                predicates.add(cb.or(
+                        cb.lessThan(createdAt, after.at()),
+                        cb.lessThan(root.get("id"), (int) after.id())));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
         };
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không (không cần COUNT)
+        List<Issue> rows = issueRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")))
+                .limit(size + 1)
+                .all());
+        boolean hasMore = rows.size() > size;
+        List<Issue> items = hasMore ? rows.subList(0, size) : rows;
+        String next = null;
+        if (hasMore) {
+            Issue last = items.get(items.size() - 1);
+            next = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(new ArrayList<>(items), next, hasMore);
     }
 
     @Transactional
@@ -405,7 +548,7 @@ public class IssueService {
             throw new IllegalArgumentException("content is required");
         }
 
-        Account account = getAccount(req.getAccountId());
+        AccountSnapshot account = getAccount(req.getAccountId());
         Issue issue = issueRepository.findById(issueId)
                 .orElseThrow(() -> new IllegalArgumentException("Issue not found: " + issueId));
 
@@ -427,7 +570,7 @@ public class IssueService {
             throw new IllegalArgumentException("attachmentUrl is required");
         }
 
-        Account actor = getAccount(req.getAccountId());
+        AccountSnapshot actor = getAccount(req.getAccountId());
         Issue issue = issueRepository.findById(issueId)
                 .orElseThrow(() -> new IllegalArgumentException("Issue not found: " + issueId));
 
@@ -455,8 +598,8 @@ public class IssueService {
             throw new IllegalArgumentException("status is required");
         }
 
-        Account account = getAccount(req.getAccountId());
-        String role = normalizeRole(account.getRole());
+        AccountSnapshot account = getAccount(req.getAccountId());
+        String role = normalizeRole(account.role());
 
         Issue issue = issueRepository.findById(issueId)
                 .orElseThrow(() -> new IllegalArgumentException("Issue not found: " + issueId));
@@ -490,13 +633,14 @@ public class IssueService {
 
         Issue saved = issueRepository.save(issue);
         issueEventRepository.save(event(issueId, account, "STATUS_CHANGE", req.getReason(), oldStatus, newStatus, null, null));
+        notifyStatusChange(saved, account, oldStatus, newStatus, req.getReason());
         return saved;
     }
 
     @Transactional
     public Issue ownerRefund(Integer issueId, IssueDecisionRequest req) {
-        Account account = getAccount(req.getAccountId());
-        String role = normalizeRole(account.getRole());
+        AccountSnapshot account = getAccount(req.getAccountId());
+        String role = normalizeRole(account.role());
         if (!"OWNER".equals(role)) throw new SecurityException("Only OWNER can approve/refuse owner refund");
 
         Issue issue = issueRepository.findById(issueId)
@@ -505,7 +649,7 @@ public class IssueService {
                 .orElseThrow(() -> new IllegalArgumentException("Order not found: " + issue.getOrderId()));
 
         Integer ownerId = ownerAccountId(order.getRestaurant());
-        if (ownerId == null || !account.getId().equals(ownerId)) {
+        if (ownerId == null || !account.id().equals(ownerId)) {
             throw new SecurityException("Not your restaurant order");
         }
 
@@ -528,6 +672,8 @@ public class IssueService {
         String old = issue.getOwnerRefundStatus();
         issue.setOwnerRefundStatus(decision);
         Issue saved = issueRepository.save(issue);
+        // Tiền quán hoàn đổi -> doanh thu thuần của ngày tạo đơn đổi
+        dailyStatsService.orderChanged(order, order.getStatus());
 
         issueEventRepository.save(event(issueId, account, "OWNER_REFUND", req.getNote(), old, decision, amount, null));
         return saved;
@@ -535,8 +681,8 @@ public class IssueService {
 
     @Transactional
     public Issue adminCredit(Integer issueId, IssueDecisionRequest req) {
-        Account account = getAccount(req.getAccountId());
-        String role = normalizeRole(account.getRole());
+        AccountSnapshot account = getAccount(req.getAccountId());
+        String role = normalizeRole(account.role());
         if (!"ADMIN".equals(role)) throw new SecurityException("Only ADMIN can approve/refuse admin credit");
 
         Issue issue = issueRepository.findById(issueId)
@@ -558,6 +704,7 @@ public class IssueService {
             issue.setAdminCreditAmount(null);
         }
 
+        String oldStatus = issue.getStatus();
         issue.setStatus("CLOSED");
         issue.setResolvedAt(LocalDateTime.now());
         issue.setResolvedReason(req.getNote());
@@ -567,6 +714,7 @@ public class IssueService {
         Issue saved = issueRepository.save(issue);
 
         issueEventRepository.save(event(issueId, account, "ADMIN_CREDIT", req.getNote(), old, decision, amount, null));
+        notifyStatusChange(saved, account, oldStatus, "CLOSED", req.getNote());
         return saved;
     }
 
@@ -574,11 +722,12 @@ public class IssueService {
     public Issue replyAction(Integer issueId, IssueReplyActionRequest req) {
         if (req == null) throw new IllegalArgumentException("request body is required");
 
-        Account account = getAccount(req.getAccountId());
-        String role = normalizeRole(account.getRole());
+        AccountSnapshot account = getAccount(req.getAccountId());
+        String role = normalizeRole(account.role());
 
         Issue issue = issueRepository.findById(issueId)
                 .orElseThrow(() -> new IllegalArgumentException("Issue not found: " + issueId));
+        String statusBefore = issue.getStatus();
 
         // Load order nếu có (SYSTEM/OTHER có thể null)
         Order order = null;
@@ -643,7 +792,7 @@ public class IssueService {
             if (order == null) throw new IllegalArgumentException("Order is required for owner refund");
 
             Integer ownerId = ownerAccountId(order.getRestaurant());
-            if (ownerId == null || !account.getId().equals(ownerId)) {
+            if (ownerId == null || !account.id().equals(ownerId)) {
                 throw new SecurityException("Not your restaurant order");
             }
 
@@ -666,6 +815,7 @@ public class IssueService {
             String old = issue.getOwnerRefundStatus();
             issue.setOwnerRefundStatus(decision);
 
+            dailyStatsService.orderChanged(order, order.getStatus());
             events.add(event(issueId, account, "OWNER_REFUND", null, old, decision, amount, null));
         }
 
@@ -703,6 +853,7 @@ public class IssueService {
         // WRITE DB ở cuối: nếu bất kỳ lỗi nào ở trên xảy ra → throw RuntimeException → rollback hết
         Issue saved = issueRepository.save(issue);
         issueEventRepository.saveAll(events);
+        notifyStatusChange(saved, account, statusBefore, saved.getStatus(), req.getStatusReason());
 
         return saved;
     }
@@ -0,0 +1,306 @@
+package com.shopeefood.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.entity.MailOutbox;
+import com.shopeefood.backend.repository.MailOutboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Gửi nền các email trong mail_outbox (EmailService chỉ ghi dòng PENDING).
+ * - Kích hoạt: ngay sau khi transaction ghi email commit, và quét định kỳ mail.outbox.poll-ms
+ * - Mỗi lượt lấy tối đa mail.outbox.batch-size email đến hạn (FOR UPDATE SKIP LOCKED + giữ chỗ),
+ *   rồi gửi cả lô qua 1 phiên SMTP (1 lần kết nối / đăng nhập). Không giữ transaction DB trong lúc chờ SMTP.
+ *   Thời gian giữ chỗ = max(mail.outbox.lease-seconds, lô chậm nhất theo timeout SMTP) để lô chưa gửi xong
+ *   không bị instance khác lấy lại và gửi trùng
+ * - Lỗi: thử lại sau backoff-base-seconds x 2^(lần thử - 1) (tối đa backoff-max-seconds),
+ *   quá mail.outbox.max-attempts lần -> FAILED, lỗi cuối lưu ở last_error
+ * - Gửi xong (SENT) thì xóa nội dung email, email sensitive (mật khẩu mới) xóa cả khi FAILED;
+ *   email SENT / FAILED cũ hơn mail.outbox.retention-days ngày bị xóa hẳn mỗi đêm
+ * Gửi chạy trên 1 luồng riêng nên SMTP chậm / treo không ảnh hưởng request API và các job định kỳ khác.
+ * Thử với SMTP giả: scripts/SmtpStubServer.java, thử lại / backoff / FAILED kiểm tra trong MailOutboxDispatcherTest.
+ * Metric: mail.outbox.sent{result}, mail.outbox.batch (thời gian gửi 1 lô)
+ */
+@Service
+public class MailOutboxDispatcher {
+
+    static final long LEASE_MARGIN_SECONDS = 30;
+
+    // Nội dung thay thế sau khi gửi (cột body NOT NULL)
+    static final String REDACTED_BODY = "[đã xóa sau khi gửi]";
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${mail.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.backoff-base-seconds:30}")
+    private long backoffBaseSeconds;
+
+    @Value("${mail.outbox.backoff-max-seconds:3600}")
+    private long backoffMaxSeconds;
+
+    // Giá trị tối thiểu, init() nâng lên nếu ngắn hơn thời gian gửi 1 lô khi SMTP chậm tới mức timeout
+    @Value("${mail.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${mail.outbox.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${spring.mail.properties.mail.smtp.connectiontimeout:0}")
+    private long smtpConnectTimeoutMs;
+
+    @Value("${spring.mail.properties.mail.smtp.timeout:0}")
+    private long smtpReadTimeoutMs;
+
+    @Value("${spring.mail.properties.mail.smtp.writetimeout:0}")
+    private long smtpWriteTimeoutMs;
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "mail-outbox-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Đã có 1 lượt gửi đang chờ trong hàng đợi (gộp các lần kích hoạt liên tiếp)
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    private Counter sentOk;
+    private Counter sentRetry;
+    private Counter sentFailed;
+    private Timer batchTimer;
+
+    @PostConstruct
+    void init() {
+        sentOk = meterRegistry.counter("mail.outbox.sent", "result", "sent");
+        sentRetry = meterRegistry.counter("mail.outbox.sent", "result", "retry");
+        sentFailed = meterRegistry.counter("mail.outbox.sent", "result", "failed");
+        batchTimer = meterRegistry.timer("mail.outbox.batch");
+
+        long configured = leaseSeconds;
+        leaseSeconds = leaseSeconds(configured, batchSize, smtpConnectTimeoutMs, smtpReadTimeoutMs, smtpWriteTimeoutMs);
+        if (leaseSeconds != configured) {
+            System.err.println("mail.outbox.lease-seconds=" + configured + " ngắn hơn thời gian gửi 1 lô "
+                    + batchSize + " email khi SMTP chậm, dùng " + leaseSeconds + " giây");
+        }
+    }
+
+    /**
+     * Thời gian giữ chỗ 1 lô: lô chậm nhất là kết nối + mỗi email chờ tới timeout ghi và đọc,
+     * cộng LEASE_MARGIN_SECONDS để kịp ghi kết quả. Timeout SMTP = 0 (không giới hạn) thì giữ giá trị cấu hình.
+     */
+    static long leaseSeconds(long configured, int batchSize, long connectTimeoutMs, long readTimeoutMs,
+            long writeTimeoutMs) {
+        if (readTimeoutMs <= 0 || writeTimeoutMs <= 0) {
+            return configured;
+        }
+        long worstBatchMs = Math.max(0, connectTimeoutMs) + (long) batchSize * (readTimeoutMs + writeTimeoutMs);
+        long derived = (worstBatchMs + 999) / 1000 + LEASE_MARGIN_SECONDS;
+        return Math.max(configured, derived);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Email mới đã commit: gửi luôn, không chờ lượt quét.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMailQueued(EmailService.MailQueuedEvent event) {
+        trigger();
+    }
+
+    /**
+     * Quét định kỳ: email đến hạn thử lại, email giữ chỗ quá hạn (instance gửi bị tắt giữa chừng).
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-ms:5000}")
+    public void poll() {
+        trigger();
+    }
+
+    /**
+     * Xóa email SENT / FAILED quá mail.outbox.retention-days ngày (outbox không phải nơi lưu lịch sử).
+     */
+    @Scheduled(cron = "${mail.outbox.purge-cron:0 45 3 * * *}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int deleted = new TransactionTemplate(transactionManager).execute(status ->
+                    mailOutboxRepository.deleteFinishedBefore(LocalDateTime.now().minusDays(retentionDays)));
+            if (deleted > 0) {
+                System.err.println("Đã xóa " + deleted + " email cũ khỏi mail_outbox");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Lỗi dọn mail outbox: " + e.getMessage());
+        }
+    }
+
+    private void trigger() {
+        if (!enabled || !queued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sender.execute(() -> {
+                queued.set(false);
+                drain();
+            });
+        } catch (RejectedExecutionException e) {
+            // Đang tắt ứng dụng: email vẫn PENDING, lần khởi động sau sẽ gửi
+            queued.set(false);
+        }
+    }
+
+    // Gửi liên tục tới khi hết email đến hạn
+    private void drain() {
+        try {
+            while (sendBatch() >= batchSize) {
+                // lô đầy -> có thể còn email đến hạn
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Lỗi gửi mail outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lấy 1 lô email đến hạn, gửi qua 1 phiên SMTP và ghi kết quả. Trả về số email đã lấy.
+     */
+    int sendBatch() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<MailOutbox> batch = tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = mailOutboxRepository.lockDue(now, batchSize);
+            if (ids.isEmpty()) {
+                return List.<MailOutbox>of();
+            }
+            mailOutboxRepository.lease(ids, now.plusSeconds(leaseSeconds));
+            return mailOutboxRepository.findAllById(ids);
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<SimpleMailMessage, MailOutbox> byMessage = new IdentityHashMap<>();
+        for (MailOutbox mail : batch) {
+            byMessage.put(toMessage(mail), mail);
+        }
+        Map<MailOutbox, String> errors = new IdentityHashMap<>();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // JavaMailSenderImpl mở 1 kết nối cho cả lô, lỗi từng email nằm trong getFailedMessages()
+            mailSender.send(byMessage.keySet().toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                batch.forEach(mail -> errors.put(mail, String.valueOf(e.getMessage())));
+            }
+            failed.forEach((message, error) -> {
+                MailOutbox mail = byMessage.get(message);
+                if (mail != null) {
+                    errors.put(mail, String.valueOf(error.getMessage()));
+                }
+            });
+        } catch (MailException e) {
+            // Không kết nối / đăng nhập được SMTP: cả lô lỗi
+            batch.forEach(mail -> errors.put(mail, String.valueOf(e.getMessage())));
+        } finally {
+            sample.stop(batchTimer);
+        }
+
+        tx.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<MailOutbox> updated = new ArrayList<>(batch.size());
+            for (MailOutbox mail : batch) {
+                String error = errors.get(mail);
+                int attempts = (mail.getAttempts() != null ? mail.getAttempts() : 0) + 1;
+                mail.setAttempts(attempts);
+                if (error == null) {
+                    mail.setStatus("SENT");
+                    mail.setSentAt(now);
+                    mail.setLastError(null);
+                    mail.setBody(REDACTED_BODY);
+                    sentOk.increment();
+                } else if (attempts >= maxAttempts) {
+                    mail.setStatus("FAILED");
+                    mail.setLastError(error);
+                    if (mail.isSensitive()) {
+                        mail.setBody(REDACTED_BODY);
+                    }
+                    sentFailed.increment();
+                    System.err.println("Email #" + mail.getId() + " tới " + mail.getRecipient() + " lỗi "
+                            + attempts + " lần, bỏ qua: " + error);
+                } else {
+                    mail.setNextAttemptAt(now.plusSeconds(backoffSeconds(attempts)));
+                    mail.setLastError(error);
+                    sentRetry.increment();
+                }
+                updated.add(mail);
+            }
+            mailOutboxRepository.saveAll(updated);
+        });
+        return batch.size();
+    }
+
+    // base x 2^(attempts - 1), cộng ngẫu nhiên tới 10% để các email lỗi cùng lúc không thử lại cùng lúc
+    private long backoffSeconds(int attempts) {
+        long delay = backoffBaseSeconds << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, backoffMaxSeconds);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 10 + 1);
+    }
+
+    private SimpleMailMessage toMessage(MailOutbox mail) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(fromEmail);
+        message.setTo(mail.getRecipient());
+        message.setSubject(mail.getSubject());
+        message.setText(mail.getBody());
+        return message;
+    }
+}
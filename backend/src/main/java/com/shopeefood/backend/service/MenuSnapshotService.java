@@ -0,0 +1,264 @@
+package com.shopeefood.backend.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shopeefood.backend.entity.Product;
+import com.shopeefood.backend.repository.ProductRepository;
+import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Thực đơn của quán (GET /api/products?restaurantId=) dạng JSON dựng sẵn:
+ * - Mỗi quán 1 bản JSON bất biến (byte[]) + ETag = mã băm nội dung, client gửi If-None-Match nhận 304
+ * - Dựng 1 lần trong transaction chỉ đọc (món + lựa chọn + danh mục), các request sau chỉ ghi byte ra response
+ *   thay vì load entity + Jackson đi qua các quan hệ lazy mỗi lần
+ * - Giữ tối đa menu.snapshot.max-entries quán / menu.snapshot.max-bytes byte, bỏ quán lâu không xem (LRU)
+ * - Món có ảnh upload qua ImageUploadService kèm "imageVariants" (chiều rộng -> URL bản thu nhỏ)
+ * Món thay đổi (ProductService / OwnerProductService publish SearchIndexEvent.restaurant) -> sau khi commit
+ * bỏ bản cũ, quán đang có trong cache được dựng lại nền. Danh mục thay đổi -> bỏ tất cả.
+ * Quán không tồn tại -> 404, không lưu gì vào cache.
+ * Metric: menu.snapshot{result}, menu.snapshot.bytes
+ */
+@Service
+public class MenuSnapshotService {
+
+    /**
+     * JSON thực đơn + ETag (đã có dấu nháy kép).
+     */
+    public record MenuSnapshot(byte[] json, String etag) {
+    }
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ImageUploadService imageUploadService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${menu.snapshot.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${menu.snapshot.max-bytes:33554432}")
+    private long maxBytes;
+
+    // Thứ tự truy cập: phần tử đầu là quán lâu nhất không được xem
+    private final LinkedHashMap<Integer, MenuSnapshot> snapshots = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    // Quán đang dựng: các request cùng lúc chờ chung 1 lần dựng
+    private final Map<Integer, CompletableFuture<MenuSnapshot>> building = new ConcurrentHashMap<>();
+    // Tăng mỗi lần bỏ cache của 1 quán: bản dựng quán đó bắt đầu trước đó không được lưu lại
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+    // Tăng khi danh mục đổi (bỏ cache mọi quán)
+    private final AtomicLong categoryGeneration = new AtomicLong();
+    private ExecutorService rebuilder;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    void init() {
+        rebuilder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "menu-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        hitCounter = meterRegistry.counter("menu.snapshot", "result", "hit");
+        missCounter = meterRegistry.counter("menu.snapshot", "result", "miss");
+        meterRegistry.gauge("menu.snapshot.bytes", this, MenuSnapshotService::getTotalBytes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    public MenuSnapshot getMenu(Integer restaurantId) {
+        synchronized (snapshots) {
+            MenuSnapshot cached = snapshots.get(restaurantId);
+            if (cached != null) {
+                hitCounter.increment();
+                return cached;
+            }
+        }
+        missCounter.increment();
+        return buildShared(restaurantId);
+    }
+
+    /**
+     * Món / quán thay đổi: bỏ bản cũ sau khi commit, dựng lại nền nếu quán đang được xem.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSearchIndexEvent(SearchIndexEvent event) {
+        if (event == null) {
+            return;
+        }
+        if (event.target() == SearchIndexEvent.Target.CATEGORY) {
+            categoryGeneration.incrementAndGet();
+            // Danh mục (kèm thuộc tính) nằm trong JSON của mọi món
+            synchronized (snapshots) {
+                snapshots.clear();
+                totalBytes = 0;
+            }
+            return;
+        }
+        generations.computeIfAbsent(event.id(), id -> new AtomicLong()).incrementAndGet();
+        boolean wasCached;
+        synchronized (snapshots) {
+            MenuSnapshot removed = snapshots.remove(event.id());
+            wasCached = removed != null;
+            if (wasCached) {
+                totalBytes -= removed.json().length;
+            }
+        }
+        if (wasCached) {
+            rebuilder.execute(() -> {
+                try {
+                    buildShared(event.id());
+                } catch (RuntimeException e) {
+                    System.err.println("Không dựng lại được thực đơn quán " + event.id() + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    public long getTotalBytes() {
+        synchronized (snapshots) {
+            return totalBytes;
+        }
+    }
+
+    private MenuSnapshot buildShared(Integer restaurantId) {
+        CompletableFuture<MenuSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<MenuSnapshot> running = building.putIfAbsent(restaurantId, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            long startCategoryGeneration = categoryGeneration.get();
+            long startGeneration = generationOf(restaurantId);
+            MenuSnapshot snapshot = build(restaurantId);
+            if (categoryGeneration.get() == startCategoryGeneration && generationOf(restaurantId) == startGeneration) {
+                store(restaurantId, snapshot);
+            }
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            building.remove(restaurantId, mine);
+        }
+    }
+
+    private long generationOf(Integer restaurantId) {
+        AtomicLong counter = generations.get(restaurantId);
+        return counter == null ? 0 : counter.get();
+    }
+
+    // Serialize trong transaction để Jackson đọc được các quan hệ lazy (danh mục, thuộc tính)
+    private MenuSnapshot build(Integer restaurantId) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        byte[] json = tx.execute(status -> {
+            List<Product> products = productRepository.findByRestaurantIdWithDetails(restaurantId);
+            // Thực đơn rỗng: phân biệt quán chưa có món với id không tồn tại (không cache id rác)
+            if (products.isEmpty() && !restaurantRepository.existsById(restaurantId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy nhà hàng");
+            }
+            Set<String> imageUrls = new HashSet<>();
+            for (Product product : products) {
+                if (product.getImage() != null) {
+                    imageUrls.add(product.getImage());
+                }
+            }
+            Map<String, Map<Integer, String>> variants = imageUploadService.findVariantUrls(imageUrls);
+            try {
+                ArrayNode menu = objectMapper.valueToTree(products);
+                for (JsonNode item : menu) {
+                    Map<Integer, String> urls = variants.get(item.path("image").asText(null));
+                    if (urls != null) {
+                        ((ObjectNode) item).set("imageVariants", objectMapper.valueToTree(urls));
+                    }
+                }
+                return objectMapper.writeValueAsBytes(menu);
+            } catch (Exception e) {
+                throw new RuntimeException("Không tạo được JSON thực đơn: " + e.getMessage(), e);
+            }
+        });
+        return new MenuSnapshot(json, etag(json));
+    }
+
+    private void store(Integer restaurantId, MenuSnapshot snapshot) {
+        if (snapshot.json().length > maxBytes) {
+            return;
+        }
+        synchronized (snapshots) {
+            MenuSnapshot previous = snapshots.put(restaurantId, snapshot);
+            if (previous != null) {
+                totalBytes -= previous.json().length;
+            }
+            totalBytes += snapshot.json().length;
+            Iterator<MenuSnapshot> eldest = snapshots.values().iterator();
+            while ((snapshots.size() > maxEntries || totalBytes > maxBytes) && eldest.hasNext()) {
+                totalBytes -= eldest.next().json().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.shopeefood.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.entity.Shipper;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ShipperRepository;
+
+/**
+ * Shipper nhận đơn (claim) không bị tranh chấp.
+ * Thay vì đọc đơn -> kiểm tra -> save (2 shipper có thể cùng nhận 1 đơn),
+ * việc nhận đơn dùng UPDATE có điều kiện trong DB nên đúng cả khi chạy nhiều instance:
+ * 1. shippers: ONLINE -> BUSY (chỉ khi đang ONLINE)
+ * 2. orders: gán shipper + SHIPPING (chỉ khi còn PREPARING và chưa có shipper), trả về tọa độ để tính ETA
+ * 3. ghi thời gian giao dự kiến + hạn giao cho đơn vừa nhận
+ * Bước nào không cập nhật được dòng nào thì rollback cả transaction.
+ */
+@Service
+public class OrderClaimService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ShipperRepository shipperRepository;
+
+    @Autowired
+    private EtaService etaService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    public enum ClaimResult {
+        CLAIMED("Nhận đơn hàng thành công!"),
+        ORDER_NOT_FOUND("Đơn hàng không tồn tại"),
+        ALREADY_TAKEN("Đơn hàng đã được nhận bởi shipper khác"),
+        NOT_READY("Đơn hàng chưa được Owner duyệt. Chỉ có thể nhận đơn ở trạng thái PREPARING"),
+        SHIPPER_NOT_FOUND("Shipper không tồn tại"),
+        SHIPPER_NOT_ONLINE("Shipper phải ở trạng thái ONLINE để nhận đơn"),
+        OFFER_NOT_FOUND("Lời mời nhận đơn không tồn tại hoặc đã hết hạn");
+
+        private final String message;
+
+        ClaimResult(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    @Transactional
+    public ClaimResult claim(Integer orderId, Integer shipperId) {
+        // 1. Giữ shipper trước (ONLINE -> BUSY)
+        if (shipperRepository.markBusyIfOnline(shipperId) == 0) {
+            Shipper shipper = shipperRepository.findById(shipperId).orElse(null);
+            ClaimResult shipperResult = shipper == null ? ClaimResult.SHIPPER_NOT_FOUND
+                    : ClaimResult.SHIPPER_NOT_ONLINE;
+            // Ưu tiên báo lỗi của đơn hàng giống thứ tự kiểm tra cũ
+            ClaimResult orderResult = describeUnclaimable(orderId);
+            return orderResult != null ? orderResult : shipperResult;
+        }
+
+        // 2. Nhận đơn: chỉ 1 transaction cập nhật được dòng này
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> claimed = orderRepository.claimForShipper(orderId, shipperId, now);
+        if (claimed.isEmpty()) {
+            // Trả shipper về ONLINE
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            ClaimResult orderResult = describeUnclaimable(orderId);
+            return orderResult != null ? orderResult : ClaimResult.ALREADY_TAKEN;
+        }
+
+        // 3. ETA từ tọa độ UPDATE trả về (chỉ shipper thắng mới tính, không đọc lại đơn)
+        Object[] row = claimed.get(0);
+        int etaMinutes = etaService.estimateMinutes(toDouble(row[0]), toDouble(row[1]),
+                toDouble(row[2]), toDouble(row[3]), shipperId);
+        orderRepository.setDeliveryEstimate(orderId, now, etaMinutes);
+
+        eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.taken(orderId));
+        return ClaimResult.CLAIMED;
+    }
+
+    private static Double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : null;
+    }
+
+    // Lý do đơn không nhận được (null nếu đơn vẫn có thể nhận)
+    private ClaimResult describeUnclaimable(Integer orderId) {
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order == null) {
+            return ClaimResult.ORDER_NOT_FOUND;
+        }
+        if (order.getShipper() != null) {
+            return ClaimResult.ALREADY_TAKEN;
+        }
+        if (!"PREPARING".equals(order.getStatus())) {
+            return ClaimResult.NOT_READY;
+        }
+        return null;
+    }
+}
@@ -1,33 +1,53 @@
 package com.shopeefood.backend.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.shopeefood.backend.dto.CursorPage;
 import com.shopeefood.backend.dto.OrderDTO;
 import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.repository.CustomerRepository;
 import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.util.KeysetCursor;
+
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 
 @Service
 @Transactional(readOnly = true)
 public class OrderService {
 
+    private static final List<String> OWNER_BOARD_STATUSES = List.of(
+            "PENDING", "PAID", "PREPARING", "SHIPPING", "COMPLETED", "CANCELLED", "REFUNDED");
+    private static final int DEFAULT_OWNER_PAGE_SIZE = 10;
+    private static final int MAX_OWNER_PAGE_SIZE = 100;
+
     @Autowired
     private OrderRepository orderRepository;
     @Autowired
     private CustomerRepository customerRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private OverdueOrderService overdueOrderService;
+    @Autowired
+    private DailyStatsService dailyStatsService;
 
     public Page<OrderDTO> getOrdersForOwner(Integer ownerId, Integer restaurantId, String status,
             int page, int size, String search,
@@ -37,7 +57,7 @@ public class OrderService {
         // 1. Chuẩn hóa bộ lọc status
         List<String> allowedStatuses = (status != null && !status.isBlank() && !status.equals("ALL"))
                 ? List.of(status)
-                : List.of("PENDING", "PAID", "PREPARING", "SHIPPING", "COMPLETED", "CANCELLED", "REFUNDED");
+                : OWNER_BOARD_STATUSES;
 
         String searchPattern = (search != null && !search.trim().isEmpty())
                 ? "%" + search.trim().toLowerCase() + "%"
@@ -70,35 +90,118 @@ public class OrderService {
                 .collect(Collectors.toMap(Order::getId, Function.identity()));
 
         List<OrderDTO> dtos = orderIds.stream()
-                .map(id -> {
-                    Order order = orderMap.get(id);
-                    OrderDTO dto = new OrderDTO(order);
-
-                    if (order.getCustomer() != null) {
-                        dto.setCustomerPhone(order.getCustomer().getPhone());
-
-                        // Sửa lỗi getFullName(): Truy cập qua CustomerProfile
-                        if (order.getCustomer().getCustomerProfile() != null) {
-                            dto.setCustomerName(order.getCustomer().getCustomerProfile().getFullName());
-                        } else {
-                            dto.setCustomerName(order.getCustomer().getUsername()); // Fallback
-                        }
-                    }
-                    return dto;
-                })
+                .map(id -> toOwnerOrderDto(orderMap.get(id)))
                 .collect(Collectors.toList());
 
         return new PageImpl<>(dtos, pageable, ordersPage.getTotalElements());
     }
 
+    /**
+     * Đơn hàng cho Owner phân trang keyset trên (createdAt, id), mới nhất trước (thay cho OFFSET ở getOrdersForOwner).
+     * Mỗi trang: 1 query lấy size + 1 đơn từ vị trí cursor (index (restaurant_id, status, created_at, id),
+     * xem scripts/add_owner_order_keyset_indexes.sql) + 1 query chi tiết theo Order.GRAPH_OWNER_BOARD,
+     * trang thứ 500 tốn như trang đầu.
+     * includeTotal = true: đếm tổng số đơn khớp bộ lọc, chỉ ở trang đầu (cursor rỗng); trang sau total = null.
+     */
+    public CursorPage<OrderDTO> getOrderPageForOwner(Integer ownerId, Integer restaurantId, String status,
+            String search, LocalDateTime from, LocalDateTime to, String cursor, Integer limit, boolean includeTotal) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int size = (limit == null || limit <= 0) ? DEFAULT_OWNER_PAGE_SIZE : Math.min(limit, MAX_OWNER_PAGE_SIZE);
+        String statusFilter = (status != null && !status.isBlank() && !status.equals("ALL")) ? status : null;
+        String searchPattern = (search != null && !search.trim().isEmpty())
+                ? "%" + search.trim().toLowerCase() + "%"
+                : null;
+
+        Specification<Order> filter = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("restaurant").get("owner").get("id"), ownerId));
+            if (restaurantId != null) {
+                predicates.add(cb.equal(root.get("restaurant").get("id"), restaurantId));
+            }
+            predicates.add(statusFilter != null
+                    ? cb.equal(root.get("status"), statusFilter)
+                    : root.get("status").in(OWNER_BOARD_STATUSES));
+            if (searchPattern != null) {
+                Path<String> fullName = root.join("customer", JoinType.LEFT)
+                        .join("customerProfile", JoinType.LEFT).get("fullName");
+                predicates.add(cb.or(
+                        cb.like(cb.lower(root.get("orderNumber")), searchPattern),
+                        cb.like(cb.lower(fullName), searchPattern),
+                        cb.like(cb.lower(root.get("note")), searchPattern)));
+            }
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), from));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), to));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+        Specification<Order> page = after == null ? filter : filter.and((root, query, cb) -> {
+            // (createdAt, id) < (after.at, after.id); vế <= giúp DB giới hạn đoạn index cần đọc
+            Path<LocalDateTime> createdAt = root.get("createdAt");
+            return cb.and(
+                    cb.lessThanOrEqualTo(createdAt, after.at()),
+                    cb.or(cb.lessThan(createdAt, after.at()), cb.lessThan(root.get("id"), (int) after.id())));
+        });
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không (không cần COUNT)
+        List<Order> rows = orderRepository.findBy(page, q -> q
+                .sortBy(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")))
+                .limit(size + 1)
+                .all());
+        boolean hasMore = rows.size() > size;
+        List<Order> pageRows = hasMore ? rows.subList(0, size) : rows;
+        Long total = includeTotal && after == null ? orderRepository.count(filter) : null;
+        if (pageRows.isEmpty()) {
+            return new CursorPage<>(List.of(), null, false, total);
+        }
+
+        List<Integer> orderIds = pageRows.stream().map(Order::getId).collect(Collectors.toList());
+        Map<Integer, Order> orderMap = orderRepository.findOrdersWithDetailsByIds(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<OrderDTO> dtos = orderIds.stream()
+                .map(id -> toOwnerOrderDto(orderMap.get(id)))
+                .collect(Collectors.toList());
+
+        String next = null;
+        if (hasMore) {
+            Order last = pageRows.get(pageRows.size() - 1);
+            next = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(dtos, next, hasMore, total);
+    }
+
+    private OrderDTO toOwnerOrderDto(Order order) {
+        OrderDTO dto = new OrderDTO(order);
+        if (order.getCustomer() != null) {
+            dto.setCustomerPhone(order.getCustomer().getPhone());
+
+            // Sửa lỗi getFullName(): Truy cập qua CustomerProfile
+            if (order.getCustomer().getCustomerProfile() != null) {
+                dto.setCustomerName(order.getCustomer().getCustomerProfile().getFullName());
+            } else {
+                dto.setCustomerName(order.getCustomer().getUsername()); // Fallback
+            }
+        }
+        return dto;
+    }
+
     @Transactional
     public Order updateOrderStatus(Integer orderId, String newStatus) {
         Order order = orderRepository.findByIdWithDetails(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng ID: " + orderId));
 
-        validateStatusTransition(order.getStatus(), newStatus);
+        String oldStatus = order.getStatus();
+        validateStatusTransition(oldStatus, newStatus);
         order.setStatus(newStatus);
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        publishFeedChange(saved, oldStatus);
+        dailyStatsService.orderChanged(saved, oldStatus);
+        if ("SHIPPING".equals(oldStatus) && !"SHIPPING".equals(newStatus)) {
+            overdueOrderService.forget(orderId);
+        }
+        return saved;
     }
 
     public Order getOrderDetailsById(Integer orderId) {
@@ -106,6 +209,15 @@ public class OrderService {
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy chi tiết đơn hàng"));
     }
 
+    // Owner duyệt đơn -> đẩy cho shipper; đơn rời trạng thái PREPARING -> báo đơn đã bị nhận/hủy
+    private void publishFeedChange(Order order, String oldStatus) {
+        if ("PREPARING".equals(order.getStatus()) && !"PREPARING".equals(oldStatus)) {
+            eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.available(order.getId()));
+        } else if ("PREPARING".equals(oldStatus) && !"PREPARING".equals(order.getStatus())) {
+            eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.taken(order.getId()));
+        }
+    }
+
     private void validateStatusTransition(String current, String next) {
         boolean isValid = switch (next) {
             case "PREPARING", "CANCELLED" -> "PAID".equals(current);
@@ -0,0 +1,102 @@
+package com.shopeefood.backend.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shopeefood.backend.entity.Order;
+import com.shopeefood.backend.repository.OrderRepository;
+
+/**
+ * Theo dõi đơn giao quá hạn.
+ * Job định kỳ lấy các đơn SHIPPING có due_at <= now + lookahead (query theo index trên due_at)
+ * và giữ trong bộ nhớ. Khi đọc, đơn nào đã qua hạn tại thời điểm đọc là quá hạn,
+ * nên đơn được tính quá hạn ngay khi hết giờ chứ không phải chờ lần quét tiếp theo.
+ * Màn nhà hàng / admin đọc danh sách này trong O(số đơn quá hạn), không query DB.
+ */
+@Service
+public class OverdueOrderService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    // Lấy trước các đơn sắp hết hạn trong khoảng này (nên >= chu kỳ quét)
+    @Value("${order.overdue.lookahead-seconds:60}")
+    private long lookaheadSeconds;
+
+    /**
+     * Thông tin đơn cần hiển thị ở màn quá hạn.
+     */
+    public record OverdueOrder(
+            Integer id,
+            Integer restaurantId,
+            String restaurantName,
+            String shippingAddress,
+            BigDecimal totalAmount,
+            LocalDateTime shippedAt,
+            LocalDateTime dueAt,
+            Integer estimatedDeliveryTimeMinutes,
+            Integer shipperId,
+            String shipperName) {
+    }
+
+    // orderId -> đơn SHIPPING đã / sắp quá hạn
+    private volatile Map<Integer, OverdueOrder> tracked = new ConcurrentHashMap<>();
+
+    /**
+     * Quét lại danh sách đơn sắp / đã quá hạn.
+     */
+    @Scheduled(fixedDelayString = "${order.overdue.scan-ms:10000}")
+    @Transactional(readOnly = true)
+    public void scan() {
+        LocalDateTime until = LocalDateTime.now().plusSeconds(lookaheadSeconds);
+        Map<Integer, OverdueOrder> fresh = new ConcurrentHashMap<>();
+        for (Order order : orderRepository.findShippingDueBefore(until)) {
+            fresh.put(order.getId(), toOverdueOrder(order));
+        }
+        tracked = fresh;
+    }
+
+    /**
+     * Đơn đang quá hạn (tại thời điểm gọi), lọc theo nhà hàng nếu có, hạn sớm nhất trước.
+     */
+    public List<OverdueOrder> getOverdueOrders(Integer restaurantId) {
+        LocalDateTime now = LocalDateTime.now();
+        return tracked.values().stream()
+                .filter(o -> o.dueAt() != null && now.isAfter(o.dueAt()))
+                .filter(o -> restaurantId == null || restaurantId.equals(o.restaurantId()))
+                .sorted(Comparator.comparing(OverdueOrder::dueAt))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gọi khi đơn rời trạng thái SHIPPING (hoàn thành / hủy) để bỏ khỏi danh sách ngay.
+     */
+    public void forget(Integer orderId) {
+        tracked.remove(orderId);
+    }
+
+    private OverdueOrder toOverdueOrder(Order order) {
+        return new OverdueOrder(
+                order.getId(),
+                order.getRestaurant() != null ? order.getRestaurant().getId() : null,
+                order.getRestaurant() != null ? order.getRestaurant().getName() : "N/A",
+                order.getShippingAddress(),
+                order.getTotalAmount(),
+                order.getShippedAt(),
+                order.getDueAt(),
+                order.resolveEstimatedDeliveryMinutes(),
+                order.getShipper() != null ? order.getShipper().getAccountId() : null,
+                order.getShipper() != null ? order.getShipper().getFullName() : null);
+    }
+}
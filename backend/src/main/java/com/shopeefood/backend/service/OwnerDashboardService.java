@@ -3,8 +3,6 @@ package com.shopeefood.backend.service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,33 +20,30 @@ public class OwnerDashboardService {
     private OwnerDashboardRepository ownerDashboardRepository;
 
     public OwnerDashboardResponse getFullDashboardData(Integer ownerId, Integer restaurantId, String startStr, String endStr) {
-        // Chuyển String thành LocalDateTime để Postgres không báo lỗi operator
+        // Bảng tổng hợp lưu theo ngày nên chỉ cần khoảng ngày [start, end]
         LocalDate startDate = LocalDate.parse(startStr);
         LocalDate endDate = LocalDate.parse(endStr);
-        
-        LocalDateTime start = startDate.atStartOfDay(); // 00:00:00
-        LocalDateTime end = endDate.atTime(LocalTime.MAX); // 23:59:59.999
 
         // 1. Dữ liệu biểu đồ & Top sản phẩm
-        List<OwnerDashboardResponse.ChartData> chartData = ownerDashboardRepository.getRevenueByDate(ownerId, restaurantId, start, end)
+        List<OwnerDashboardResponse.ChartData> chartData = ownerDashboardRepository.getRevenueByDate(ownerId, restaurantId, startDate, endDate)
                 .stream().map(obj -> new OwnerDashboardResponse.ChartData(obj[0].toString(), new BigDecimal(obj[1].toString())))
                 .collect(Collectors.toList());
 
-        List<OwnerDashboardResponse.TopProduct> topProducts = ownerDashboardRepository.getTopProducts(ownerId, restaurantId, start, end)
+        List<OwnerDashboardResponse.TopProduct> topProducts = ownerDashboardRepository.getTopProducts(ownerId, restaurantId, startDate, endDate)
                 .stream().map(obj -> new OwnerDashboardResponse.TopProduct(obj[0].toString(), 
                         ((Number)obj[1]).longValue(), new BigDecimal(obj[2].toString())))
                 .collect(Collectors.toList());
 
         // 2. Dữ liệu so sánh chi nhánh
-        List<OwnerDashboardResponse.BranchComparison> branchComparison = ownerDashboardRepository.getBranchComparison(ownerId, start, end)
+        List<OwnerDashboardResponse.BranchComparison> branchComparison = ownerDashboardRepository.getBranchComparison(ownerId, startDate, endDate)
                 .stream().map(obj -> new OwnerDashboardResponse.BranchComparison(obj[0].toString(), 
                         ((Number)obj[1]).longValue(), obj[2] != null ? new BigDecimal(obj[2].toString()) : BigDecimal.ZERO))
                 .collect(Collectors.toList());
 
         // 3. Tính toán Tăng trưởng (Kỳ trước)
         long daysDiff = ChronoUnit.DAYS.between(startDate, endDate) + 1;
-        LocalDateTime prevStart = startDate.minusDays(daysDiff).atStartOfDay();
-        LocalDateTime prevEnd = startDate.minusDays(1).atTime(LocalTime.MAX);
+        LocalDate prevStart = startDate.minusDays(daysDiff);
+        LocalDate prevEnd = startDate.minusDays(1);
 
         BigDecimal currentRevenue = branchComparison.stream().map(OwnerDashboardResponse.BranchComparison::getTotalRevenue).reduce(BigDecimal.ZERO, BigDecimal::add);
         long currentOrders = branchComparison.stream().mapToLong(OwnerDashboardResponse.BranchComparison::getOrderCount).sum();
@@ -32,6 +32,8 @@ public class OwnerIssueService {
     private IssueEventRepository eventRepository;
     @Autowired
     private OrderRepository orderRepository;
+    @Autowired
+    private DailyStatsService dailyStatsService;
 
     /**
      * Tìm kiếm và lọc danh sách Khiếu nại - Đã sửa lỗi mapping DTO
@@ -110,6 +112,7 @@ public class OwnerIssueService {
         Order order = orderRepository.findById(issue.getOrderId())
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy đơn hàng."));
 
+        String oldOrderStatus = order.getStatus();
         String decision = (req.getDecision() == null ? "" : req.getDecision().trim().toUpperCase());
         String reason = (req.getResolvedReason() != null) ? req.getResolvedReason().trim() : "";
 
@@ -145,6 +148,8 @@ public class OwnerIssueService {
         eventRepository.save(event);
 
         Issue savedIssue = issueRepository.save(issue);
+        // Trạng thái đơn / tiền hoàn đổi -> doanh thu thuần của ngày đó đổi
+        dailyStatsService.orderChanged(order, oldOrderStatus);
         return new IssueResponseDTO(savedIssue);
     }
 }
\ No newline at end of file
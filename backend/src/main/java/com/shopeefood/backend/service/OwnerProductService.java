@@ -1,18 +1,17 @@
 package com.shopeefood.backend.service;
 
-import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.shopeefood.backend.dto.OwnerProductDTO;
@@ -27,6 +26,7 @@ import com.shopeefood.backend.repository.CategoryAttributeRepository;
 import com.shopeefood.backend.repository.CategoryRepository;
 import com.shopeefood.backend.repository.ProductRepository;
 import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
 
 import lombok.RequiredArgsConstructor;
 
@@ -38,7 +38,7 @@ public class OwnerProductService {
     private final CategoryRepository categoryRepository;
     private final CategoryAttributeRepository categoryAttributeRepository;
     private final RestaurantRepository restaurantRepository;
-    private final CloudinaryService cloudinaryService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional(readOnly = true)
     public Page<OwnerProductDTO> getProductsByOwner(
@@ -76,7 +76,7 @@ public class OwnerProductService {
      * TẠO MỚI SẢN PHẨM (POST)
      */
     @Transactional
-    public OwnerProductDTO createProduct(ProductUpdateRequestDTO requestDto, MultipartFile imageFile) {
+    public OwnerProductDTO createProduct(ProductUpdateRequestDTO requestDto, String imageUrl) {
         // 1. Validate định dạng cơ bản
         validateProductRequest(requestDto);
 
@@ -90,13 +90,9 @@ public class OwnerProductService {
 
         Product product = new Product();
 
-        // 3. Xử lý Ảnh
-        if (imageFile != null && !imageFile.isEmpty()) {
-            try {
-                product.setImage(cloudinaryService.uploadImage(imageFile));
-            } catch (IOException e) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi upload ảnh.");
-            }
+        // 3. Ảnh đã được OwnerProductController lưu xong trước khi vào transaction
+        if (imageUrl != null) {
+            product.setImage(imageUrl);
         }
 
         // 4. Các trường cơ bản
@@ -134,7 +130,9 @@ public class OwnerProductService {
             product.setDetails(details);
         }
 
-        return new OwnerProductDTO(productRepository.save(product));
+        Product savedProduct = productRepository.save(product);
+        publishReindex(savedProduct);
+        return new OwnerProductDTO(savedProduct);
     }
 
     /**
@@ -147,7 +145,7 @@ public class OwnerProductService {
     public OwnerProductDTO updateProduct(
             Integer productId,
             ProductUpdateRequestDTO requestDto,
-            MultipartFile imageFile) {
+            String imageUrl) {
 
         // 1. Tìm sản phẩm hiện tại (Chỉ gọi 1 lần duy nhất)
         Product existingProduct = productRepository.findById(productId)
@@ -179,13 +177,9 @@ public class OwnerProductService {
             }
         }
 
-        // 5. Xử lý Ảnh (Nếu có file mới thì mới upload)
-        if (imageFile != null && !imageFile.isEmpty()) {
-            try {
-                existingProduct.setImage(cloudinaryService.uploadImage(imageFile));
-            } catch (IOException e) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi upload ảnh lên Cloudinary.");
-            }
+        // 5. Ảnh mới (null = giữ ảnh cũ)
+        if (imageUrl != null) {
+            existingProduct.setImage(imageUrl);
         }
 
         // 6. Cập nhật các thông tin cơ bản
@@ -249,7 +243,9 @@ public class OwnerProductService {
                 }
             }
         }
-        return new OwnerProductDTO(productRepository.save(existingProduct));
+        Product savedProduct = productRepository.save(existingProduct);
+        publishReindex(savedProduct);
+        return new OwnerProductDTO(savedProduct);
     }
 
     // xoá mềm sản phẩm
@@ -259,6 +255,14 @@ public class OwnerProductService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
         product.setIsAvailable(false);
         productRepository.save(product);
+        publishReindex(product);
+    }
+
+    // Cập nhật chỉ mục tìm kiếm của quán chứa món (sau khi commit)
+    private void publishReindex(Product product) {
+        if (product.getRestaurant() != null) {
+            eventPublisher.publishEvent(SearchIndexEvent.restaurant(product.getRestaurant().getId()));
+        }
     }
 
     // Validation Patterns
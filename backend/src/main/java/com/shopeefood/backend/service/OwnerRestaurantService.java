@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,6 +15,7 @@ import com.shopeefood.backend.entity.Owner;
 import com.shopeefood.backend.entity.Restaurant;
 import com.shopeefood.backend.repository.OwnerRepository;
 import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -26,6 +28,9 @@ public class OwnerRestaurantService {
         @Autowired
         private OwnerRepository ownerRepository;
 
+        @Autowired
+        private ApplicationEventPublisher eventPublisher;
+
 
         /**
          * Lấy danh sách tất cả nhà hàng mà Owner đang sở hữu.
@@ -75,6 +80,7 @@ public class OwnerRestaurantService {
 
                 restaurant.setStatus(requestedStatus);
                 Restaurant updatedRestaurant = restaurantRepository.save(restaurant);
+                eventPublisher.publishEvent(SearchIndexEvent.restaurant(updatedRestaurant.getId()));
 
                 return new RestaurantDTO(updatedRestaurant);
         }
@@ -115,6 +121,7 @@ public class OwnerRestaurantService {
                 restaurant.setStatus(Restaurant.RestaurantStatus.PENDING);
 
                 Restaurant updatedRestaurant = restaurantRepository.save(restaurant);
+                eventPublisher.publishEvent(SearchIndexEvent.restaurant(updatedRestaurant.getId()));
                 return new RestaurantDTO(updatedRestaurant);
         }
 }
\ No newline at end of file
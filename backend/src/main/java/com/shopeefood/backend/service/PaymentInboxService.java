@@ -0,0 +1,244 @@
+package com.shopeefood.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.entity.PaymentWebhookEvent;
+import com.shopeefood.backend.payment.vnpay.VnpayService;
+import com.shopeefood.backend.repository.PaymentWebhookInboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Inbox cho callback của cổng thanh toán (PayOS webhook, VNPay return, client xác nhận).
+ * - Nhận: xác thực chữ ký xong chỉ INSERT 1 dòng vào payment_webhook_inbox rồi trả lời ngay.
+ *   Cổng gửi lại cùng callback -> trùng khóa (gateway, transaction_code), không làm gì thêm
+ *   (trừ khi lần trước đã FAILED: nhận lại và xử lý lại từ đầu)
+ * - Xử lý: worker lấy các dòng PENDING, chia theo orderId vào payment.inbox.workers luồng
+ *   (cùng 1 đơn luôn vào cùng 1 luồng -> xử lý đúng thứ tự nhận). Mỗi callback 1 transaction:
+ *   khóa dòng inbox, cập nhật Transaction / Order, đánh dấu DONE
+ * - Lỗi: giữ PENDING để lượt sau thử lại, quá payment.inbox.max-attempts lần -> FAILED
+ * Metric: payment.inbox.received{result}, payment.inbox.processed{result}
+ */
+@Service
+public class PaymentInboxService {
+
+    public static final String GATEWAY_PAYOS = "PAYOS";
+    public static final String GATEWAY_VNPAY = "VNPAY";
+    public static final String GATEWAY_CLIENT = "CLIENT";
+
+    @Autowired
+    private PaymentWebhookInboxRepository inboxRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private VnpayService vnpayService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${payment.inbox.workers:4}")
+    private int workerCount;
+
+    @Value("${payment.inbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${payment.inbox.max-attempts:5}")
+    private int maxAttempts;
+
+    /**
+     * Callback đã xác thực chữ ký, chuẩn bị ghi vào inbox.
+     */
+    public record InboxEvent(String gateway, String transactionCode, Integer orderId, Long amount,
+            boolean success, String payload) {
+    }
+
+    private ExecutorService[] lanes;
+    // Luồng gom lệnh "có callback mới" để luồng HTTP không phải chờ
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "payment-inbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // id callback đã giao cho worker nhưng chưa xử lý xong (không giao lại lần 2)
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean rerun = new AtomicBoolean();
+
+    private Counter receivedNew;
+    private Counter receivedDuplicate;
+    private Counter processedDone;
+    private Counter processedRetry;
+    private Counter processedFailed;
+
+    @PostConstruct
+    void init() {
+        lanes = new ExecutorService[Math.max(1, workerCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "payment-inbox-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        receivedNew = meterRegistry.counter("payment.inbox.received", "result", "new");
+        receivedDuplicate = meterRegistry.counter("payment.inbox.received", "result", "duplicate");
+        processedDone = meterRegistry.counter("payment.inbox.processed", "result", "done");
+        processedRetry = meterRegistry.counter("payment.inbox.processed", "result", "retry");
+        processedFailed = meterRegistry.counter("payment.inbox.processed", "result", "failed");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Ghi callback vào inbox (1 câu INSERT). Trả về false nếu callback này đã nhận trước đó và chưa FAILED.
+     */
+    public boolean receive(InboxEvent event) {
+        Integer inserted = new TransactionTemplate(transactionManager).execute(status ->
+                inboxRepository.insertIfAbsent(event.gateway(), event.transactionCode(), event.orderId(),
+                        event.amount(), event.success(), event.payload()));
+        if (inserted == null || inserted == 0) {
+            receivedDuplicate.increment();
+            return false;
+        }
+        receivedNew.increment();
+        try {
+            dispatcher.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Đang tắt ứng dụng: lần khởi động sau job định kỳ sẽ xử lý
+        }
+        return true;
+    }
+
+    /**
+     * Quét định kỳ: xử lý lại callback lỗi và callback nhận lúc worker đang bận.
+     */
+    @Scheduled(fixedDelayString = "${payment.inbox.poll-ms:1000}")
+    public void poll() {
+        drain();
+    }
+
+    // Giao các callback PENDING cho worker (gộp các yêu cầu đến cùng lúc thành 1 lượt chạy lại)
+    private void drain() {
+        rerun.set(true);
+        while (rerun.get() && drainLock.tryLock()) {
+            try {
+                rerun.set(false);
+                List<Object[]> pending = inboxRepository.findPending(batchSize);
+                for (Object[] row : pending) {
+                    Long id = ((Number) row[0]).longValue();
+                    int orderId = ((Number) row[1]).intValue();
+                    if (!inFlight.add(id)) {
+                        continue;
+                    }
+                    try {
+                        lanes[Math.floorMod(orderId, lanes.length)].execute(() -> {
+                            try {
+                                process(id);
+                            } finally {
+                                inFlight.remove(id);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        inFlight.remove(id);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Lỗi đọc payment inbox: " + e.getMessage());
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    private void process(Long id) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        try {
+            Boolean done = tx.execute(status -> {
+                PaymentWebhookEvent event = inboxRepository.findForUpdate(id).orElse(null);
+                // Instance khác đã xử lý xong
+                if (event == null || !"PENDING".equals(event.getStatus())) {
+                    return false;
+                }
+                apply(event);
+                event.setStatus("DONE");
+                event.setAttempts(attempts(event) + 1);
+                event.setLastError(null);
+                event.setProcessedAt(LocalDateTime.now());
+                inboxRepository.save(event);
+                return true;
+            });
+            if (Boolean.TRUE.equals(done)) {
+                processedDone.increment();
+            }
+        } catch (RuntimeException e) {
+            recordFailure(id, e);
+        }
+    }
+
+    private void apply(PaymentWebhookEvent event) {
+        switch (event.getGateway()) {
+            case GATEWAY_PAYOS -> paymentService.applyPayOSPayment(event.getOrderId(), event.getTransactionCode(),
+                    event.getAmount(), event.getPayload());
+            case GATEWAY_VNPAY -> vnpayService.applyReturn(event.getOrderId(), event.getTransactionCode(),
+                    Boolean.TRUE.equals(event.getSuccess()), event.getPayload());
+            case GATEWAY_CLIENT -> paymentService.markPaidFromClient(event.getOrderId());
+            default -> throw new IllegalArgumentException("Cổng thanh toán không hỗ trợ: " + event.getGateway());
+        }
+    }
+
+    private void recordFailure(Long id, RuntimeException error) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    inboxRepository.findById(id).ifPresent(event -> {
+                        int attempts = attempts(event) + 1;
+                        event.setAttempts(attempts);
+                        event.setLastError(String.valueOf(error.getMessage()));
+                        if (attempts >= maxAttempts) {
+                            event.setStatus("FAILED");
+                            processedFailed.increment();
+                            System.err.println("Callback thanh toán #" + id + " lỗi " + attempts
+                                    + " lần, bỏ qua: " + error.getMessage());
+                        } else {
+                            processedRetry.increment();
+                        }
+                        inboxRepository.save(event);
+                    }));
+        } catch (RuntimeException e) {
+            System.err.println("Không ghi được lỗi cho callback thanh toán #" + id + ": " + e.getMessage());
+        }
+    }
+
+    private static int attempts(PaymentWebhookEvent event) {
+        return event.getAttempts() != null ? event.getAttempts() : 0;
+    }
+}
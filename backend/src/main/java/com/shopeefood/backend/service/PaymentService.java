@@ -6,12 +6,15 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.shopeefood.backend.dto.PaymentLinkDTO;
 import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.entity.Transaction;
+import com.shopeefood.backend.payment.payos.PayOSClient;
 import com.shopeefood.backend.repository.OrderRepository;
 import com.shopeefood.backend.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import vn.payos.PayOS;
 import vn.payos.type.Webhook;
 import vn.payos.type.WebhookData;
@@ -19,10 +22,6 @@ import vn.payos.type.WebhookData;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
@@ -33,12 +32,10 @@ public class PaymentService {
     private final OrderRepository orderRepository;
     private final TransactionRepository transactionRepository;
     private final PayOS payOS;
-
-    @Value("${payos.client-id}")
-    private String clientId;
-
-    @Value("${payos.api-key}")
-    private String apiKey;
+    private final CartStore cartStore;
+    private final PayOSClient payOSClient;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
 
     @Value("${payos.checksum-key}")
     private String checksumKey;
@@ -53,26 +50,30 @@ public class PaymentService {
     //  1. Tạo Link Thanh Toán PayOS
     // =============================
 
-    @Transactional
-    public PaymentLinkDTO createPaymentLink(Integer orderId) throws Exception {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found"));
+    // Dữ liệu đọc từ đơn để gửi sang PayOS
+    private record PaymentRequestData(BigDecimal totalAmount, int amount, long orderCode, String description) {
+    }
 
-        BigDecimal totalAmount = order.getTotalAmount();
-        int amount = totalAmount.intValue();
+    /**
+     * Không giữ connection DB trong lúc chờ PayOS (pool chỉ có vài connection):
+     * 1. Transaction ngắn: ghi giỏ hàng, đọc tổng tiền
+     * 2. Gọi PayOS ngoài transaction (PayOSClient có timeout, giới hạn đồng thời, circuit breaker)
+     * 3. Transaction ngắn: lưu Transaction PENDING
+     */
+    public PaymentLinkDTO createPaymentLink(Integer orderId) throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
 
-        // Tạo orderCode
-        String nano = String.valueOf(System.nanoTime());
-        String orderCodeStr = order.getId() + nano.substring(nano.length() - 6);
-        long orderCode = Long.parseLong(orderCodeStr);
+        PaymentRequestData requestData = tx.execute(status -> {
+            // Giỏ hàng còn thay đổi chưa ghi -> ghi xuống DB trước khi đọc tổng tiền
+            cartStore.flushForCheckout(orderId);
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found"));
+            return buildRequestData(order);
+        });
 
-        // Nội dung ck
-        String description = order.getOrderNumber(); // FOyyyyMMddNNNN
-        if (description == null || description.isBlank()) {
-            description = "FO" + order.getId();
-        }
-        description = description.toUpperCase().replaceAll("[^A-Z0-9]", "");
-        if (description.length() > 25) description = description.substring(0, 25);
+        int amount = requestData.amount();
+        long orderCode = requestData.orderCode();
+        String description = requestData.description();
 
         // Tạo signature
         String stringToSign =
@@ -85,8 +86,7 @@ public class PaymentService {
         String signature = createHmacSha256(stringToSign, checksumKey);
 
         // Gửi API
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode body = mapper.createObjectNode();
+        ObjectNode body = objectMapper.createObjectNode();
         body.put("orderCode", orderCode);
         body.put("amount", amount);
         body.put("description", description);
@@ -94,39 +94,25 @@ public class PaymentService {
         body.put("returnUrl", returnUrl);
         body.put("signature", signature);
 
-        HttpClient client = HttpClient.newHttpClient();
+        JsonNode data = payOSClient.createPaymentRequest(body);
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api-merchant.payos.vn/v2/payment-requests"))
-                .header("Content-Type", "application/json")
-                .header("x-client-id", clientId)
-                .header("x-api-key", apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
-                .build();
+        tx.executeWithoutResult(status -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found"));
 
-        HttpResponse<String> response =
-                client.send(request, HttpResponse.BodyHandlers.ofString());
-
-        JsonNode resNode = mapper.readTree(response.body());
-
-        if (!"00".equals(resNode.get("code").asText())) {
-            throw new RuntimeException("PayOS error: " + resNode.path("desc").asText());
-        }
-
-        JsonNode data = resNode.get("data");
-
-        // Lưu Transaction
-        Transaction transaction = new Transaction();
-        transaction.setOrder(order);
-        transaction.setAmount(totalAmount);
-        transaction.setTransactionCode(String.valueOf(orderCode));
-        transaction.setStatus("PENDING");
-        transaction.setGatewayResponse(null);
-        transactionRepository.save(transaction);
+            // Lưu Transaction
+            Transaction transaction = new Transaction();
+            transaction.setOrder(order);
+            transaction.setAmount(requestData.totalAmount());
+            transaction.setTransactionCode(String.valueOf(orderCode));
+            transaction.setStatus("PENDING");
+            transaction.setGatewayResponse(null);
+            transactionRepository.save(transaction);
 
-        // Cập nhật Order
-        order.setPaymentMethod("PAYOS");
-        orderRepository.save(order);
+            // Cập nhật Order
+            order.setPaymentMethod("PAYOS");
+            orderRepository.save(order);
+        });
 
         return new PaymentLinkDTO(
                 data.path("bin").asText(),
@@ -140,27 +126,52 @@ public class PaymentService {
         );
     }
 
+    private PaymentRequestData buildRequestData(Order order) {
+        BigDecimal totalAmount = order.getTotalAmount();
+        int amount = totalAmount.intValue();
+
+        // Tạo orderCode
+        String nano = String.valueOf(System.nanoTime());
+        String orderCodeStr = order.getId() + nano.substring(nano.length() - 6);
+        long orderCode = Long.parseLong(orderCodeStr);
+
+        // Nội dung ck
+        String description = order.getOrderNumber(); // FOyyyyMMddNNNN
+        if (description == null || description.isBlank()) {
+            description = "FO" + order.getId();
+        }
+        description = description.toUpperCase().replaceAll("[^A-Z0-9]", "");
+        if (description.length() > 25) description = description.substring(0, 25);
+
+        return new PaymentRequestData(totalAmount, amount, orderCode, description);
+    }
+
     // =============================
     //  2. Xử lý Webhook PayOS
     // =============================
-    @Transactional
-    public void processPayOSWebhook(JsonNode webhookBody) throws Exception {
-
-        ObjectMapper mapper = new ObjectMapper();
-        Webhook webhook = mapper.treeToValue(webhookBody, Webhook.class);
+    /**
+     * Xác thực chữ ký webhook (không đụng DB). Xử lý thật chạy sau qua PaymentInboxService.
+     */
+    public PaymentInboxService.InboxEvent verifyPayOSWebhook(JsonNode webhookBody) throws Exception {
+        Webhook webhook = objectMapper.treeToValue(webhookBody, Webhook.class);
         WebhookData data = payOS.verifyPaymentWebhookData(webhook);
 
-        long orderCode = data.getOrderCode();
-        long paidAmount = data.getAmount();
-
-        String orderCodeStr = String.valueOf(orderCode);
-
+        String orderCodeStr = String.valueOf(data.getOrderCode());
         Integer orderId = Integer.parseInt(orderCodeStr.substring(0, orderCodeStr.length() - 6));
 
+        return new PaymentInboxService.InboxEvent(PaymentInboxService.GATEWAY_PAYOS, orderCodeStr, orderId,
+                (long) data.getAmount(), true, webhookBody.toString());
+    }
+
+    /**
+     * Ghi nhận thanh toán PayOS thành công (gọi từ worker của inbox, mỗi webhook đúng 1 lần).
+     */
+    @Transactional
+    public void applyPayOSPayment(Integer orderId, String orderCodeStr, Long paidAmount, String payload) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
-        if (order.getTotalAmount().intValue() != paidAmount) {
+        if (paidAmount == null || order.getTotalAmount().intValue() != paidAmount) {
             System.err.println("Amount mismatch!");
             return;
         }
@@ -175,7 +186,7 @@ public class PaymentService {
         transaction.setAmount(order.getTotalAmount());
         transaction.setTransactionCode(orderCodeStr);
         transaction.setStatus("SUCCESS");
-        transaction.setGatewayResponse(webhookBody.toString());
+        transaction.setGatewayResponse(payload);
 
         transactionRepository.save(transaction);
 
@@ -211,6 +222,7 @@ public class PaymentService {
     // =============================
     @Transactional
     public void markPaidFromClient(Integer orderId) {
+        cartStore.flushForCheckout(orderId);
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
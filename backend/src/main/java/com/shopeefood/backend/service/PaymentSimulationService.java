@@ -4,7 +4,6 @@ import com.shopeefood.backend.entity.Order;
 import com.shopeefood.backend.entity.PaymentGateway;
 import com.shopeefood.backend.entity.Transaction;
 import com.shopeefood.backend.repository.OrderRepository;
-import com.shopeefood.backend.repository.PaymentGatewayRepository;
 import com.shopeefood.backend.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -38,7 +37,10 @@ public class PaymentSimulationService {
     private TransactionRepository transactionRepository;
 
     @Autowired
-    private PaymentGatewayRepository paymentGatewayRepository;
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private CartStore cartStore;
 
     /**
      * Giả lập callback thanh toán thành công từ PayOS (dev only).
@@ -48,6 +50,8 @@ public class PaymentSimulationService {
      */
     @Transactional
     public void simulatePaymentSuccess(Integer orderId) {
+        // Giỏ hàng còn thay đổi chưa ghi -> ghi xuống DB trước khi đọc tổng tiền
+        cartStore.flushForCheckout(orderId);
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() ->
                         new ResponseStatusException(HttpStatus.NOT_FOUND, "ORDER_NOT_FOUND"));
@@ -69,8 +73,8 @@ public class PaymentSimulationService {
         }
 
         // Lấy gateway PAYOS (nếu không có thì để null cũng được)
-        PaymentGateway gateway = paymentGatewayRepository
-                .findByCode(GATEWAY_CODE_PAYOS)
+        PaymentGateway gateway = referenceDataCache
+                .findGateway(GATEWAY_CODE_PAYOS)
                 .orElse(null);
 
         BigDecimal amount = order.getTotalAmount();
@@ -0,0 +1,110 @@
+package com.shopeefood.backend.service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.shopeefood.backend.repository.AccountRepository;
+import com.shopeefood.backend.security.AccountSnapshot;
+import com.shopeefood.backend.security.RequestPrincipal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Cache ngắn hạn (auth.principal-cache.ttl-seconds) thông tin tài khoản dùng để kiểm tra quyền
+ * (role, trạng thái hoạt động, email), thay cho accountRepository.findById ở đầu mỗi request.
+ * Đổi role / khóa / mở khóa tài khoản gọi invalidate để có hiệu lực ngay, còn lại tối đa trễ 1 TTL.
+ * Metric: auth.principal.cache{result}
+ */
+@Service
+public class PrincipalCache {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${auth.principal-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${auth.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    private record Entry(AccountSnapshot snapshot, long expiresAtNanos) {
+    }
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        hits = meterRegistry.counter("auth.principal.cache", "result", "hit");
+        misses = meterRegistry.counter("auth.principal.cache", "result", "miss");
+    }
+
+    /**
+     * Thông tin tài khoản (từ cache nếu còn hạn), empty nếu không tồn tại.
+     */
+    public Optional<AccountSnapshot> get(Integer accountId) {
+        if (accountId == null) {
+            return Optional.empty();
+        }
+        long now = System.nanoTime();
+        Entry entry = entries.get(accountId);
+        if (entry != null && now - entry.expiresAtNanos() < 0) {
+            hits.increment();
+            return Optional.of(entry.snapshot());
+        }
+        misses.increment();
+        Optional<AccountSnapshot> loaded = accountRepository.findById(accountId).map(AccountSnapshot::of);
+        loaded.ifPresent(snapshot -> {
+            if (entries.size() >= maxSize) {
+                evictExpired(now);
+            }
+            entries.put(accountId, new Entry(snapshot, now + ttlSeconds * 1_000_000_000L));
+        });
+        return loaded;
+    }
+
+    /**
+     * Người thực hiện thao tác: id từ token (hoặc id client gửi khi chưa dùng token), phải tồn tại và đang hoạt động.
+     */
+    public AccountSnapshot requireActor(Integer requestedId) {
+        Integer actorId = RequestPrincipal.resolveActorId(requestedId);
+        if (actorId == null) {
+            throw new IllegalArgumentException("actorId is required");
+        }
+        AccountSnapshot actor = get(actorId)
+                .orElseThrow(() -> new IllegalArgumentException("Actor not found: " + actorId));
+        if (!actor.active()) {
+            throw new SecurityException("Tài khoản đã bị vô hiệu hóa");
+        }
+        return actor;
+    }
+
+    /**
+     * Gọi sau khi đổi role / trạng thái / email của tài khoản.
+     */
+    public void invalidate(Integer accountId) {
+        if (accountId != null) {
+            entries.remove(accountId);
+        }
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> now - entry.expiresAtNanos() >= 0);
+        // Vẫn đầy (nhiều tài khoản hoạt động cùng lúc): bỏ hết, các request sau nạp lại
+        if (entries.size() >= maxSize) {
+            entries.clear();
+        }
+    }
+}
@@ -5,9 +5,10 @@ import com.shopeefood.backend.entity.*;
 import com.shopeefood.backend.dto.ProductCreationRequest;
 import com.shopeefood.backend.dto.ProductDetailRequest;
 import com.shopeefood.backend.dto.ProductUpdateRequestDTO;
+import com.shopeefood.backend.search.SearchIndexEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 import jakarta.transaction.Transactional;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -20,7 +21,8 @@ public class ProductService {
     private final RestaurantRepository restaurantRepository;
     private final CategoryAttributeRepository attributeRepository;
     private final ObjectMapper objectMapper;
-    private final CloudinaryService cloudinaryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReferenceDataCache referenceDataCache;
 
     // Constructor injection
     public ProductService(
@@ -29,20 +31,21 @@ public class ProductService {
             RestaurantRepository restaurantRepository,
             CategoryAttributeRepository attributeRepository,
             ObjectMapper objectMapper,
-            CloudinaryService cloudinaryService) {
+            ApplicationEventPublisher eventPublisher,
+            ReferenceDataCache referenceDataCache) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
         this.restaurantRepository = restaurantRepository;
         this.attributeRepository = attributeRepository;
         this.objectMapper = objectMapper;
-        this.cloudinaryService = cloudinaryService;
+        this.eventPublisher = eventPublisher;
+        this.referenceDataCache = referenceDataCache;
     }
 
     @Transactional
-    public Product createNewProduct(ProductCreationRequest request, MultipartFile imageFile) throws Exception {
+    public Product createNewProduct(ProductCreationRequest request, String imageUrl) throws Exception {
 
-        // 1. Xử lý File Upload (Gọi hàm uploadImage)
-        String imageUrl = cloudinaryService.uploadImage(imageFile);
+        // 1. Ảnh đã được ProductController lưu xong trước khi vào transaction
 
         // 2. Lấy Entities phụ thuộc
         Category category = categoryRepository.findById(request.getCategoryId())
@@ -86,6 +89,7 @@ public class ProductService {
             productRepository.save(savedProduct);
         }
 
+        eventPublisher.publishEvent(SearchIndexEvent.restaurant(restaurant.getId()));
         return savedProduct;
     }
 
@@ -96,21 +100,25 @@ public class ProductService {
 
     // Hàm tìm Categories
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        return referenceDataCache.getCategories();
     }
 
     // Hàm tìm Attributes theo Category
     public List<CategoryAttribute> getAttributesByCategoryId(Integer categoryId) {
-        return attributeRepository.findByCategory_Id(categoryId);
+        return referenceDataCache.getAttributes(categoryId);
     }
 
     @Transactional
-    public Product updateProduct(ProductUpdateRequestDTO request, MultipartFile imageFile) throws Exception {
+    public Product updateProduct(ProductUpdateRequestDTO request, String newImageUrl) throws Exception {
 
         // 1. TÌM SẢN PHẨM HIỆN CÓ
         Product existingProduct = productRepository.findById(request.getId())
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy sản phẩm có ID: " + request.getId()));
 
+        Integer oldRestaurantId = existingProduct.getRestaurant() != null
+                ? existingProduct.getRestaurant().getId()
+                : null;
+
         // 2. CẬP NHẬT CÁC TRƯỜNG CƠ BẢN
 
         // Lấy Category và Restaurant
@@ -128,9 +136,8 @@ public class ProductService {
         existingProduct.setCategory(category);
         existingProduct.setRestaurant(restaurant);
 
-        // 3. XỬ LÝ ẢNH
-        if (imageFile != null && !imageFile.isEmpty()) {
-            String newImageUrl = cloudinaryService.uploadImage(imageFile);
+        // 3. XỬ LÝ ẢNH (null = giữ ảnh cũ)
+        if (newImageUrl != null) {
             existingProduct.setImage(newImageUrl);
         }
 
@@ -163,6 +170,13 @@ public class ProductService {
 
             existingProduct.setDetails(newDetails);
         }
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+
+        // Cập nhật chỉ mục tìm kiếm (cả quán cũ nếu món bị chuyển quán)
+        eventPublisher.publishEvent(SearchIndexEvent.restaurant(restaurant.getId()));
+        if (oldRestaurantId != null && !oldRestaurantId.equals(restaurant.getId())) {
+            eventPublisher.publishEvent(SearchIndexEvent.restaurant(oldRestaurantId));
+        }
+        return savedProduct;
     }
 }
\ No newline at end of file
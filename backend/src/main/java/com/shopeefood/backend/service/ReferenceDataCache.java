@@ -0,0 +1,141 @@
+package com.shopeefood.backend.service;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.shopeefood.backend.entity.Category;
+import com.shopeefood.backend.entity.CategoryAttribute;
+import com.shopeefood.backend.entity.PaymentGateway;
+import com.shopeefood.backend.repository.CategoryRepository;
+import com.shopeefood.backend.repository.PaymentGatewayRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
+import com.shopeefood.backend.util.ExpiringCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Cache dữ liệu tham chiếu ít thay đổi: danh mục (kèm thuộc tính) và cổng thanh toán.
+ * - Danh mục: cả danh sách nạp 1 lần (kèm thuộc tính, 1 query), lọc theo id / từ khóa trong bộ nhớ
+ * - Cổng thanh toán: theo code (không có cũng được cache để khỏi query lại)
+ * Thêm / sửa / xóa danh mục (AdminCategoryService publish SearchIndexEvent) xóa cache sau khi commit;
+ * sửa trực tiếp trong DB có hiệu lực sau tối đa reference-cache.ttl-seconds.
+ * Entity trả về dùng chung giữa các request: chỉ đọc / trả JSON, không sửa rồi save.
+ * Metric: reference.cache{region, result}, reference.cache.size{region}
+ */
+@Service
+public class ReferenceDataCache {
+
+    private static final String ALL = "all";
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PaymentGatewayRepository paymentGatewayRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${reference-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${reference-cache.max-size:1000}")
+    private int maxSize;
+
+    private ExpiringCache<String, CategorySet> categories;
+    private ExpiringCache<String, Optional<PaymentGateway>> gateways;
+
+    // Danh sách danh mục theo id (giữ thứ tự id tăng dần)
+    private record CategorySet(List<Category> list, Map<Integer, Category> byId) {
+    }
+
+    @PostConstruct
+    void init() {
+        categories = new ExpiringCache<>(ttlSeconds, 1);
+        gateways = new ExpiringCache<>(ttlSeconds, maxSize);
+        registerMetrics("categories", categories);
+        registerMetrics("payment-gateways", gateways);
+    }
+
+    public List<Category> getCategories() {
+        return categorySet().list();
+    }
+
+    /**
+     * Danh mục theo danh sách id, giữ thứ tự của ids, bỏ id không tồn tại.
+     */
+    public List<Category> getCategories(List<Integer> ids) {
+        Map<Integer, Category> byId = categorySet().byId();
+        return ids.stream().map(byId::get).filter(c -> c != null).collect(Collectors.toList());
+    }
+
+    /**
+     * Tìm theo tên danh mục hoặc tên thuộc tính (không phân biệt hoa thường), như CategoryRepository.searchByKeyword.
+     */
+    public List<Category> searchCategories(String keyword) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        return categorySet().list().stream()
+                .filter(c -> contains(c.getName(), needle)
+                        || c.getAttributes().stream().anyMatch(a -> contains(a.getName(), needle)))
+                .collect(Collectors.toList());
+    }
+
+    public List<CategoryAttribute> getAttributes(Integer categoryId) {
+        Category category = categorySet().byId().get(categoryId);
+        return category != null ? Collections.unmodifiableList(category.getAttributes()) : List.of();
+    }
+
+    public Optional<PaymentGateway> findGateway(String code) {
+        return gateways.get(code, paymentGatewayRepository::findByCode);
+    }
+
+    /**
+     * Danh mục thay đổi: xóa sau khi transaction commit (xóa trước commit thì request khác có thể nạp lại bản cũ).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSearchIndexEvent(SearchIndexEvent event) {
+        if (event != null && event.target() == SearchIndexEvent.Target.CATEGORY) {
+            categories.invalidateAll();
+        }
+    }
+
+    private CategorySet categorySet() {
+        return categories.get(ALL, key -> {
+            List<Category> list = categoryRepository.findAllWithAttributes().stream()
+                    .sorted(Comparator.comparing(Category::getId))
+                    .collect(Collectors.toList());
+            Map<Integer, Category> byId = new LinkedHashMap<>();
+            for (Category category : list) {
+                byId.put(category.getId(), category);
+            }
+            return new CategorySet(Collections.unmodifiableList(list), Collections.unmodifiableMap(byId));
+        });
+    }
+
+    private static boolean contains(String value, String needle) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(needle);
+    }
+
+    private void registerMetrics(String region, ExpiringCache<?, ?> cache) {
+        FunctionCounter.builder("reference.cache", cache, ExpiringCache::getHits)
+                .tag("region", region).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("reference.cache", cache, ExpiringCache::getMisses)
+                .tag("region", region).tag("result", "miss").register(meterRegistry);
+        Gauge.builder("reference.cache.size", cache, ExpiringCache::size)
+                .tag("region", region).register(meterRegistry);
+    }
+}
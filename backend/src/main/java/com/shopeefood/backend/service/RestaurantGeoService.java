@@ -0,0 +1,176 @@
+package com.shopeefood.backend.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shopeefood.backend.entity.Restaurant;
+import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.util.GeoUtils;
+
+/**
+ * Tìm quán gần nhất dựa trên cột geohash + bounding box.
+ * Thay vì tính 6371 * acos(...) cho từng dòng trong bảng restaurants,
+ * ta chỉ lấy các quán nằm trong 9 ô geohash quanh người dùng rồi tính
+ * khoảng cách chính xác trên tập nhỏ đó. Nếu chưa đủ quán thì mở rộng ô.
+ */
+@Service
+public class RestaurantGeoService {
+
+    // Độ chính xác bắt đầu khi không giới hạn bán kính (~0.6km)
+    private static final int START_PRECISION = GeoUtils.STORED_PRECISION - 1;
+
+    private static final String MATCH_ALL = "%";
+
+    // Tập quán khớp từ chỉ mục tìm kiếm nhỏ hơn ngưỡng này -> load thẳng theo id, không quét ô geohash
+    private static final int MAX_DIRECT_IDS = 500;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    /**
+     * Một quán kèm khoảng cách (km) tới người dùng.
+     */
+    public record NearbyRestaurant(Restaurant restaurant, double distanceKm) {
+    }
+
+    /**
+     * Lấy quán ACTIVE gần (lat, lng) nhất, sắp xếp theo khoảng cách tăng dần.
+     * radiusKm != null: chỉ lấy quán trong bán kính.
+     * restaurantIds != null: chỉ lấy các quán trong tập này (kết quả tìm trong chỉ mục), keyword không dùng.
+     */
+    public Page<NearbyRestaurant> findNearest(String keyword, Set<Integer> restaurantIds, double lat, double lng,
+            Double radiusKm, Pageable pageable) {
+        String status = Restaurant.RestaurantStatus.ACTIVE.name();
+
+        if (radiusKm != null && radiusKm > 0) {
+            List<NearbyRestaurant> inRadius = withinRadius(keyword, restaurantIds, status, lat, lng, radiusKm);
+            return toPage(inRadius, pageable, inRadius.size());
+        }
+        if (restaurantIds != null && restaurantIds.size() <= MAX_DIRECT_IDS) {
+            List<NearbyRestaurant> all = loadByIds(restaurantIds, status, lat, lng);
+            return toPage(all, pageable, all.size());
+        }
+
+        long needed = pageable.getOffset() + pageable.getPageSize();
+
+        // Mở rộng dần ô geohash cho tới khi có đủ quán "chắc chắn gần nhất"
+        for (int precision = START_PRECISION; precision >= 1; precision--) {
+            double coverageKm = GeoUtils.coverageRadiusKm(precision, lat);
+            List<NearbyRestaurant> trusted = loadCandidates(keyword, restaurantIds, status, lat, lng, coverageKm,
+                    GeoUtils.neighborCells(lat, lng, precision)).stream()
+                    .filter(n -> n.distanceKm() <= coverageKm)
+                    .collect(Collectors.toList());
+
+            if (trusted.size() >= needed) {
+                long total = restaurantIds != null
+                        ? restaurantRepository.countLocatedByIdIn(restaurantIds, status)
+                        : restaurantRepository.countLocatedByKeyword(keyword, status);
+                return toPage(trusted, pageable, total);
+            }
+        }
+
+        // Dữ liệu quá thưa -> quét toàn bộ (vẫn không dùng acos trong SQL)
+        List<NearbyRestaurant> all = loadCandidates(keyword, restaurantIds, status, lat, lng, null, null);
+        return toPage(all, pageable, all.size());
+    }
+
+    /**
+     * Tất cả quán trong bán kính radiusKm, đã sắp xếp theo khoảng cách.
+     * restaurantIds != null: chỉ lấy các quán trong tập này, keyword không dùng.
+     */
+    public List<NearbyRestaurant> withinRadius(String keyword, Set<Integer> restaurantIds, String status,
+            double lat, double lng, double radiusKm) {
+        List<NearbyRestaurant> result;
+        if (restaurantIds != null && restaurantIds.size() <= MAX_DIRECT_IDS) {
+            result = loadByIds(restaurantIds, status, lat, lng);
+        } else {
+            int precision = GeoUtils.precisionForRadius(radiusKm, lat);
+            List<String> cells = precision > 0 ? GeoUtils.neighborCells(lat, lng, precision) : null;
+            result = loadCandidates(keyword, restaurantIds, status, lat, lng, radiusKm, cells);
+        }
+        result.removeIf(n -> n.distanceKm() > radiusKm);
+        return result;
+    }
+
+    // Tập quán nhỏ: load theo id rồi tính khoảng cách, bỏ quán khác status / chưa có tọa độ
+    private List<NearbyRestaurant> loadByIds(Set<Integer> restaurantIds, String status, double lat, double lng) {
+        List<NearbyRestaurant> result = new ArrayList<>(restaurantIds.size());
+        if (restaurantIds.isEmpty()) {
+            return result;
+        }
+        for (Restaurant r : restaurantRepository.findAllById(restaurantIds)) {
+            if (r.getStatus() == null || !r.getStatus().name().equals(status)
+                    || r.getLatitude() == null || r.getLongitude() == null) {
+                continue;
+            }
+            result.add(new NearbyRestaurant(r, GeoUtils.distanceKm(lat, lng, r.getLatitude(), r.getLongitude())));
+        }
+        result.sort(Comparator.comparingDouble(NearbyRestaurant::distanceKm));
+        return result;
+    }
+
+    private List<NearbyRestaurant> loadCandidates(String keyword, Set<Integer> restaurantIds, String status,
+            double lat, double lng, Double radiusKm, List<String> cells) {
+        double[] box = radiusKm != null
+                ? GeoUtils.boundingBox(lat, lng, radiusKm)
+                : new double[] { -90.0, 90.0, -180.0, 180.0 };
+
+        String[] patterns = new String[9];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = cells != null ? cells.get(i) + "%" : MATCH_ALL;
+        }
+
+        List<Restaurant> candidates = restaurantRepository.findNearbyCandidates(
+                restaurantIds != null ? null : keyword, status,
+                box[0], box[1], box[2], box[3],
+                patterns[0], patterns[1], patterns[2],
+                patterns[3], patterns[4], patterns[5],
+                patterns[6], patterns[7], patterns[8]);
+
+        List<NearbyRestaurant> result = new ArrayList<>(candidates.size());
+        for (Restaurant r : candidates) {
+            if (restaurantIds != null && !restaurantIds.contains(r.getId())) {
+                continue;
+            }
+            double d = GeoUtils.distanceKm(lat, lng, r.getLatitude(), r.getLongitude());
+            result.add(new NearbyRestaurant(r, d));
+        }
+        result.sort(Comparator.comparingDouble(NearbyRestaurant::distanceKm));
+        return result;
+    }
+
+    private Page<NearbyRestaurant> toPage(List<NearbyRestaurant> sorted, Pageable pageable, long total) {
+        int from = (int) Math.min(pageable.getOffset(), sorted.size());
+        int to = Math.min(from + pageable.getPageSize(), sorted.size());
+        return new PageImpl<>(sorted.subList(from, to), pageable, total);
+    }
+
+    /**
+     * Bổ sung geohash cho dữ liệu cũ (các quán tạo trước khi có cột geohash).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillGeohash() {
+        List<Restaurant> missing = restaurantRepository
+                .findByGeohashIsNullAndLatitudeIsNotNullAndLongitudeIsNotNull();
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (Restaurant r : missing) {
+            r.setGeohash(GeoUtils.encodeGeohash(r.getLatitude(), r.getLongitude()));
+        }
+        restaurantRepository.saveAll(missing);
+    }
+}
@@ -0,0 +1,80 @@
+package com.shopeefood.backend.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shopeefood.backend.dto.RestaurantRatingSummary;
+import com.shopeefood.backend.entity.RestaurantRatingStat;
+import com.shopeefood.backend.repository.RestaurantRatingStatRepository;
+
+/**
+ * Quản lý bảng tổng hợp rating (restaurant_rating_stats).
+ * - Cộng dồn mỗi khi khách / shipper lưu Feedback
+ * - Job đối soát định kỳ tính lại từ bảng feedbacks
+ */
+@Service
+public class RestaurantRatingService {
+
+    @Autowired
+    private RestaurantRatingStatRepository ratingStatRepository;
+
+    /**
+     * Gọi sau khi lưu Feedback (trong cùng transaction).
+     * oldRating: rating trước khi sửa (null nếu chưa có), newRating: rating mới.
+     * isNewFeedback: true nếu đây là Feedback mới tạo.
+     */
+    @Transactional
+    public void onFeedbackSaved(Integer restaurantId, Integer oldRating, Integer newRating, boolean isNewFeedback) {
+        if (restaurantId == null) {
+            return;
+        }
+        long sumDelta = (newRating != null ? newRating : 0) - (oldRating != null ? oldRating : 0);
+        long countDelta = (newRating != null ? 1 : 0) - (oldRating != null ? 1 : 0);
+        long reviewDelta = isNewFeedback ? 1 : 0;
+
+        if (sumDelta == 0 && countDelta == 0 && reviewDelta == 0) {
+            return;
+        }
+        ratingStatRepository.applyDelta(restaurantId, sumDelta, countDelta, reviewDelta);
+    }
+
+    /**
+     * Lấy rating của nhiều quán trong 1 query (quán chưa có feedback -> 0).
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, RestaurantRatingSummary> getSummaries(List<Integer> restaurantIds) {
+        Map<Integer, RestaurantRatingSummary> result = new HashMap<>();
+        if (restaurantIds == null || restaurantIds.isEmpty()) {
+            return result;
+        }
+        for (RestaurantRatingStat stat : ratingStatRepository.findByRestaurantIdIn(restaurantIds)) {
+            result.put(stat.getRestaurantId(), toSummary(stat));
+        }
+        for (Integer id : restaurantIds) {
+            result.putIfAbsent(id, new RestaurantRatingSummary(id, 0.0, 0L));
+        }
+        return result;
+    }
+
+    /**
+     * Job đối soát: tính lại toàn bộ bảng tổng hợp từ feedbacks
+     * (phòng trường hợp feedback bị sửa/xóa trực tiếp trong DB).
+     */
+    @Scheduled(cron = "${rating.reconcile-cron:0 0 3 * * *}")
+    @Transactional
+    public void reconcile() {
+        ratingStatRepository.rebuildFromFeedbacks();
+        ratingStatRepository.deleteOrphans();
+    }
+
+    private RestaurantRatingSummary toSummary(RestaurantRatingStat stat) {
+        double avg = stat.getAverageRating() != null ? stat.getAverageRating().doubleValue() : 0.0;
+        return new RestaurantRatingSummary(stat.getRestaurantId(), avg, stat.getReviewCount());
+    }
+}
@@ -0,0 +1,300 @@
+package com.shopeefood.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.entity.Category;
+import com.shopeefood.backend.entity.CategoryAttribute;
+import com.shopeefood.backend.entity.Product;
+import com.shopeefood.backend.entity.ProductDetail;
+import com.shopeefood.backend.entity.Restaurant;
+import com.shopeefood.backend.repository.CategoryRepository;
+import com.shopeefood.backend.repository.ProductRepository;
+import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.InvertedIndex;
+import com.shopeefood.backend.search.SearchIndexEvent;
+
+/**
+ * Tìm kiếm toàn văn cho quán ăn / món / danh mục / option (ProductDetail.value).
+ * Dữ liệu được đánh chỉ mục trong bộ nhớ (bỏ dấu tiếng Việt, khớp tiền tố, gõ sai).
+ * - Dựng toàn bộ chỉ mục ở background khi ứng dụng khởi động
+ * - Cập nhật từng quán / danh mục sau khi transaction ghi dữ liệu commit (SearchIndexEvent)
+ * - Khi chỉ mục chưa sẵn sàng (isReady() = false) các Service gọi SQL như cũ
+ */
+@Service
+public class RestaurantSearchService {
+
+    // Trọng số field: khớp tên quán quan trọng hơn khớp tên option
+    private static final double RESTAURANT_NAME = 3.0;
+    private static final double PRODUCT_NAME = 2.0;
+    private static final double CATEGORY_NAME = 1.5;
+    private static final double OPTION_VALUE = 1.0;
+    private static final double OWNER_NAME = 2.0;
+    private static final double ADDRESS = 1.0;
+    private static final double ATTRIBUTE_NAME = 1.0;
+
+    private static final int BATCH_SIZE = 200;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Thông tin tối thiểu của quán giữ kèm chỉ mục để lọc / sắp xếp không cần query DB.
+     */
+    public record IndexedRestaurant(Restaurant.RestaurantStatus status, LocalDateTime createdAt) {
+    }
+
+    // Chỉ mục cho khách: tên quán, món, danh mục, option
+    private volatile InvertedIndex menuIndex = new InvertedIndex();
+    // Chỉ mục cho admin: tên quán, tên chủ quán, địa chỉ
+    private volatile InvertedIndex adminIndex = new InvertedIndex();
+    // Chỉ mục danh mục: tên danh mục, tên thuộc tính
+    private volatile InvertedIndex categoryIndex = new InvertedIndex();
+    private volatile Map<Integer, IndexedRestaurant> restaurants = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    // Trong lúc dựng lại toàn bộ, các thay đổi được ghi lại để áp dụng sau khi dựng xong
+    private final Object buildLock = new Object();
+    private boolean building = false;
+    private final Set<SearchIndexEvent> pendingEvents = new HashSet<>();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * ID các quán có status khớp keyword, sắp xếp theo độ liên quan giảm dần.
+     */
+    public List<Integer> searchRestaurants(String keyword, Restaurant.RestaurantStatus status) {
+        List<Integer> result = new ArrayList<>();
+        for (InvertedIndex.Hit hit : menuIndex.search(keyword)) {
+            IndexedRestaurant info = restaurants.get(hit.docId());
+            if (info != null && info.status() == status) {
+                result.add(hit.docId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tìm quán cho màn admin (tên quán, chủ quán, địa chỉ) trong các status cho trước.
+     */
+    public List<Integer> searchManagedRestaurants(String keyword, Collection<Restaurant.RestaurantStatus> statuses) {
+        List<Integer> result = new ArrayList<>();
+        for (InvertedIndex.Hit hit : adminIndex.search(keyword)) {
+            IndexedRestaurant info = restaurants.get(hit.docId());
+            if (info != null && statuses.contains(info.status())) {
+                result.add(hit.docId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ID danh mục khớp keyword (tên danh mục hoặc tên thuộc tính).
+     */
+    public List<Integer> searchCategories(String keyword) {
+        List<Integer> result = new ArrayList<>();
+        for (InvertedIndex.Hit hit : categoryIndex.search(keyword)) {
+            result.add(hit.docId());
+        }
+        return result;
+    }
+
+    public LocalDateTime getCreatedAt(Integer restaurantId) {
+        IndexedRestaurant info = restaurants.get(restaurantId);
+        return info != null ? info.createdAt() : null;
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục (chạy nền khi khởi động, không chặn request).
+     * Đọc DB theo từng lô BATCH_SIZE quán để không giữ cả bảng trong 1 persistence context.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        synchronized (buildLock) {
+            if (building) {
+                return;
+            }
+            building = true;
+            pendingEvents.clear();
+        }
+
+        try {
+            InvertedIndex newMenu = new InvertedIndex();
+            InvertedIndex newAdmin = new InvertedIndex();
+            InvertedIndex newCategories = new InvertedIndex();
+            Map<Integer, IndexedRestaurant> newRestaurants = new ConcurrentHashMap<>();
+
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setReadOnly(true);
+
+            List<Integer> ids = tx.execute(status -> restaurantRepository.findAllIds());
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                List<Integer> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+                tx.executeWithoutResult(status -> indexRestaurants(batch, newMenu, newAdmin, newRestaurants));
+            }
+            tx.executeWithoutResult(status -> {
+                for (Category category : categoryRepository.findAllWithAttributes()) {
+                    newCategories.put(category.getId(), categoryDocument(category));
+                }
+            });
+
+            List<SearchIndexEvent> missed;
+            synchronized (buildLock) {
+                menuIndex = newMenu;
+                adminIndex = newAdmin;
+                categoryIndex = newCategories;
+                restaurants = newRestaurants;
+                building = false;
+                missed = new ArrayList<>(pendingEvents);
+                pendingEvents.clear();
+            }
+
+            // Áp dụng các thay đổi xảy ra trong lúc đang dựng
+            for (SearchIndexEvent event : missed) {
+                tx.executeWithoutResult(status -> apply(event));
+            }
+            ready = true;
+        } catch (RuntimeException e) {
+            synchronized (buildLock) {
+                building = false;
+            }
+            System.err.println("Không dựng được chỉ mục tìm kiếm, dùng SQL thay thế: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cập nhật chỉ mục sau khi transaction ghi dữ liệu commit thành công
+     * (hoặc ngay lập tức nếu publish ngoài transaction).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onIndexEvent(SearchIndexEvent event) {
+        if (event == null || event.id() == null) {
+            return;
+        }
+        synchronized (buildLock) {
+            if (building) {
+                pendingEvents.add(event);
+                return;
+            }
+        }
+        apply(event);
+    }
+
+    private void apply(SearchIndexEvent event) {
+        if (event.target() == SearchIndexEvent.Target.RESTAURANT) {
+            reindexRestaurant(event.id());
+        } else {
+            reindexCategory(event.id());
+        }
+    }
+
+    private void reindexRestaurant(Integer restaurantId) {
+        if (!restaurantRepository.existsById(restaurantId)) {
+            menuIndex.remove(restaurantId);
+            adminIndex.remove(restaurantId);
+            restaurants.remove(restaurantId);
+            return;
+        }
+        indexRestaurants(List.of(restaurantId), menuIndex, adminIndex, restaurants);
+    }
+
+    private void reindexCategory(Integer categoryId) {
+        Category category = categoryRepository.findById(categoryId).orElse(null);
+        if (category == null) {
+            categoryIndex.remove(categoryId);
+        } else {
+            categoryIndex.put(categoryId, categoryDocument(category));
+        }
+
+        // Tên danh mục nằm trong chỉ mục của các quán có món thuộc danh mục này
+        List<Integer> affected = productRepository.findRestaurantIdsByCategoryId(categoryId);
+        for (int from = 0; from < affected.size(); from += BATCH_SIZE) {
+            List<Integer> batch = affected.subList(from, Math.min(from + BATCH_SIZE, affected.size()));
+            indexRestaurants(batch, menuIndex, adminIndex, restaurants);
+        }
+    }
+
+    // Phải gọi trong transaction (đọc details lazy)
+    private void indexRestaurants(List<Integer> restaurantIds, InvertedIndex menu, InvertedIndex admin,
+            Map<Integer, IndexedRestaurant> infos) {
+        Map<Integer, List<Product>> productsByRestaurant = new HashMap<>();
+        for (Product product : productRepository.findByRestaurantIdInWithDetails(restaurantIds)) {
+            productsByRestaurant
+                    .computeIfAbsent(product.getRestaurant().getId(), id -> new ArrayList<>())
+                    .add(product);
+        }
+
+        for (Restaurant restaurant : restaurantRepository.findAllById(restaurantIds)) {
+            Integer id = restaurant.getId();
+
+            InvertedIndex.Document menuDoc = new InvertedIndex.Document()
+                    .add(restaurant.getName(), RESTAURANT_NAME);
+            for (Product product : productsByRestaurant.getOrDefault(id, List.of())) {
+                menuDoc.add(product.getName(), PRODUCT_NAME);
+                if (product.getCategory() != null) {
+                    menuDoc.add(product.getCategory().getName(), CATEGORY_NAME);
+                }
+                if (product.getDetails() != null) {
+                    for (ProductDetail detail : product.getDetails()) {
+                        if (!Boolean.TRUE.equals(detail.getIsDeleted())) {
+                            menuDoc.add(detail.getValue(), OPTION_VALUE);
+                        }
+                    }
+                }
+            }
+            menu.put(id, menuDoc);
+
+            InvertedIndex.Document adminDoc = new InvertedIndex.Document()
+                    .add(restaurant.getName(), RESTAURANT_NAME)
+                    .add(restaurant.getAddress(), ADDRESS);
+            if (restaurant.getOwner() != null) {
+                adminDoc.add(restaurant.getOwner().getFullName(), OWNER_NAME);
+            }
+            admin.put(id, adminDoc);
+
+            infos.put(id, new IndexedRestaurant(restaurant.getStatus(), restaurant.getCreatedAt()));
+        }
+    }
+
+    private InvertedIndex.Document categoryDocument(Category category) {
+        InvertedIndex.Document doc = new InvertedIndex.Document().add(category.getName(), CATEGORY_NAME);
+        if (category.getAttributes() != null) {
+            for (CategoryAttribute attribute : category.getAttributes()) {
+                doc.add(attribute.getName(), ATTRIBUTE_NAME);
+            }
+        }
+        return doc;
+    }
+}
@@ -8,13 +8,25 @@ import com.shopeefood.backend.repository.AccountRepository;
 import com.shopeefood.backend.repository.OwnerRepository;
 import com.shopeefood.backend.repository.RestaurantRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.shopeefood.backend.dto.RestaurantLandingDTO;
-import com.shopeefood.backend.repository.FeedbackRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import com.shopeefood.backend.dto.RestaurantRatingSummary;
+import com.shopeefood.backend.search.SearchIndexEvent;
+import com.shopeefood.backend.util.GeoUtils;
+import org.springframework.data.domain.PageImpl;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.time.LocalDateTime;
 
@@ -31,7 +43,16 @@ public class RestaurantService {
     private AccountRepository accountRepository;
 
     @Autowired
-    private FeedbackRepository feedbackRepository;
+    private RestaurantRatingService restaurantRatingService;
+
+    @Autowired
+    private RestaurantGeoService restaurantGeoService;
+
+    @Autowired
+    private RestaurantSearchService restaurantSearchService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Restaurant registerRestaurant(RestaurantRegistrationRequest request) {
@@ -76,7 +97,9 @@ public class RestaurantService {
         restaurant.setStatus(Restaurant.RestaurantStatus.PENDING);
         restaurant.setCreatedAt(LocalDateTime.now());
 
-        return restaurantRepository.save(restaurant);
+        Restaurant saved = restaurantRepository.save(restaurant);
+        eventPublisher.publishEvent(SearchIndexEvent.restaurant(saved.getId()));
+        return saved;
     }
 
     @Transactional
@@ -121,7 +144,9 @@ public class RestaurantService {
         // 4. QUAN TRỌNG: Reset trạng thái về PENDING để chờ duyệt lại
         restaurant.setStatus(Restaurant.RestaurantStatus.PENDING);
 
-        return restaurantRepository.save(restaurant);
+        Restaurant saved = restaurantRepository.save(restaurant);
+        eventPublisher.publishEvent(SearchIndexEvent.restaurant(saved.getId()));
+        return saved;
     }
 
     // Hàm lấy danh sách cho Landing Page
@@ -130,68 +155,134 @@ public class RestaurantService {
             Double userLat,
             Double userLng,
             String sortBy,
+            Double radiusKm,
             Pageable pageable) {
 
-        // --- SỬA LỖI Ở ĐÂY ---
-        // 1. TẠO BIẾN MỚI (EFFECTIVELY FINAL)
-        // Thay vì gán đè lên tham số (userLat = ...), ta tạo biến mới.
-        // Điều này giúp Java hiểu rằng giá trị này không đổi và có thể dùng an toàn
-        // trong Lambda (.map)
-        Double finalLat = (userLat == null) ? 0.0 : userLat;
-        Double finalLng = (userLng == null) ? 0.0 : userLng;
+        String finalKeyword = (keyword != null && !keyword.trim().isEmpty()) ? keyword.trim() : null;
         String finalSortBy = (sortBy == null || sortBy.isEmpty()) ? "newest" : sortBy;
+        boolean hasLocation = userLat != null && userLng != null && (userLat != 0.0 || userLng != 0.0);
 
-        // 2. GỌI REPOSITORY VỚI BIẾN MỚI
-        // Lưu ý: Dùng finalLat, finalLng, finalSortBy thay vì biến cũ
-        Page<Restaurant> restaurantPage = restaurantRepository.searchRestaurantsAdvanced(
-                (keyword != null && !keyword.trim().isEmpty()) ? keyword.trim() : null,
-                Restaurant.RestaurantStatus.ACTIVE.name(),
-                finalLat,
-                finalLng,
-                finalSortBy,
-                pageable);
-
-        // 3. MAP ENTITY -> DTO
-        return restaurantPage.map(restaurant -> {
-            RestaurantLandingDTO dto = new RestaurantLandingDTO();
-            dto.setId(restaurant.getId());
-            dto.setName(restaurant.getName());
-            dto.setAddress(restaurant.getAddress());
-            dto.setCoverImage(restaurant.getCoverImage());
-
-            if (restaurant.getOwner() != null && restaurant.getOwner().getAccount() != null) {
-                dto.setOwnerAccountId(restaurant.getOwner().getAccount().getId());
+        // 1. SẮP XẾP THEO KHOẢNG CÁCH / LỌC BÁN KÍNH -> dùng geohash + bounding box
+        if (hasLocation && ("distance".equals(finalSortBy) || radiusKm != null)) {
+            // Có keyword và chỉ mục đã sẵn sàng -> lọc ứng viên theo kết quả chỉ mục (bỏ dấu, tiền tố, gõ sai)
+            // thay cho LIKE trong SQL; thứ tự của set là thứ tự liên quan
+            Set<Integer> matchedIds = null;
+            if (finalKeyword != null && restaurantSearchService.isReady()) {
+                matchedIds = new LinkedHashSet<>(restaurantSearchService.searchRestaurants(finalKeyword,
+                        Restaurant.RestaurantStatus.ACTIVE));
             }
+            Page<RestaurantGeoService.NearbyRestaurant> nearbyPage;
+            if ("distance".equals(finalSortBy)) {
+                nearbyPage = restaurantGeoService.findNearest(finalKeyword, matchedIds, userLat, userLng, radiusKm,
+                        pageable);
+            } else {
+                // Lọc trong bán kính rồi sắp xếp theo tiêu chí khác (mới nhất / rating / liên quan)
+                List<RestaurantGeoService.NearbyRestaurant> inRadius = new ArrayList<>(
+                        restaurantGeoService.withinRadius(finalKeyword, matchedIds,
+                                Restaurant.RestaurantStatus.ACTIVE.name(), userLat, userLng, radiusKm));
+                sortNearby(inRadius, finalSortBy, matchedIds);
+                int from = (int) Math.min(pageable.getOffset(), inRadius.size());
+                int to = Math.min(from + pageable.getPageSize(), inRadius.size());
+                nearbyPage = new PageImpl<>(inRadius.subList(from, to), pageable, inRadius.size());
+            }
+            Map<Integer, RestaurantRatingSummary> ratings = restaurantRatingService.getSummaries(
+                    nearbyPage.getContent().stream().map(n -> n.restaurant().getId()).collect(Collectors.toList()));
+            return nearbyPage.map(n -> {
+                RestaurantLandingDTO dto = toLandingDTO(n.restaurant(), ratings);
+                dto.setDistance(n.distanceKm());
+                return dto;
+            });
+        }
 
-            Double avgRating = feedbackRepository.getAverageRating(restaurant.getId());
-            Long totalReviews = feedbackRepository.countByRestaurantId(restaurant.getId());
+        // 2. CÁC KIỂU SORT CÒN LẠI (mới nhất, rating, liên quan)
+        // Có keyword và chỉ mục đã sẵn sàng -> tìm trong chỉ mục, ngược lại dùng SQL
+        Page<Restaurant> restaurantPage;
+        if (finalKeyword != null && restaurantSearchService.isReady()) {
+            restaurantPage = searchByIndex(finalKeyword, finalSortBy, pageable);
+        } else {
+            restaurantPage = restaurantRepository.searchRestaurantsAdvanced(
+                    finalKeyword,
+                    Restaurant.RestaurantStatus.ACTIVE.name(),
+                    finalSortBy,
+                    pageable);
+        }
 
-            dto.setAverageRating(avgRating != null ? avgRating : 0.0);
-            dto.setTotalReviews(totalReviews != null ? totalReviews : 0L);
+        // 3. MAP ENTITY -> DTO (rating của cả trang lấy trong 1 query từ bảng tổng hợp)
+        Map<Integer, RestaurantRatingSummary> ratings = restaurantRatingService.getSummaries(
+                restaurantPage.getContent().stream().map(Restaurant::getId).collect(Collectors.toList()));
+        return restaurantPage.map(restaurant -> {
+            RestaurantLandingDTO dto = toLandingDTO(restaurant, ratings);
 
             // TÍNH KHOẢNG CÁCH
-            // Lưu ý: Dùng finalLat và finalLng ở đây để tránh lỗi biên dịch
-            if (restaurant.getLatitude() != null && restaurant.getLongitude() != null) {
-                // Kiểm tra khác 0.0
-                if (finalLat != 0.0 && finalLng != 0.0) {
-                    double dist = calculateDistance(finalLat, finalLng, restaurant.getLatitude(),
-                            restaurant.getLongitude());
-                    dto.setDistance(dist);
-                }
+            if (hasLocation && restaurant.getLatitude() != null && restaurant.getLongitude() != null) {
+                dto.setDistance(GeoUtils.distanceKm(userLat, userLng, restaurant.getLatitude(),
+                        restaurant.getLongitude()));
             }
 
             return dto;
         });
     }
 
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Bán kính trái đất (km)
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                        * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c; // Trả về km
+    private Page<Restaurant> searchByIndex(String keyword, String sortBy, Pageable pageable) {
+        // Kết quả từ chỉ mục đã xếp theo độ liên quan
+        List<Integer> ids = new ArrayList<>(
+                restaurantSearchService.searchRestaurants(keyword, Restaurant.RestaurantStatus.ACTIVE));
+
+        if ("rating".equals(sortBy)) {
+            Map<Integer, RestaurantRatingSummary> ratings = restaurantRatingService.getSummaries(ids);
+            ids.sort(Comparator.comparingDouble((Integer id) -> ratings.get(id).getAverageRating()).reversed());
+        } else if (!"relevance".equals(sortBy)) {
+            ids.sort(Comparator.comparing(restaurantSearchService::getCreatedAt,
+                    Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        List<Integer> pageIds = ids.subList(from, to);
+
+        Map<Integer, Restaurant> byId = restaurantRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Restaurant::getId, Function.identity()));
+        List<Restaurant> content = pageIds.stream().map(byId::get).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, ids.size());
+    }
+
+    private void sortNearby(List<RestaurantGeoService.NearbyRestaurant> list, String sortBy, Set<Integer> matchedIds) {
+        if ("relevance".equals(sortBy) && matchedIds != null) {
+            Map<Integer, Integer> rank = new HashMap<>();
+            for (Integer id : matchedIds) {
+                rank.put(id, rank.size());
+            }
+            list.sort(Comparator.comparingInt(
+                    (RestaurantGeoService.NearbyRestaurant n) -> rank.getOrDefault(n.restaurant().getId(),
+                            Integer.MAX_VALUE)));
+        } else if ("rating".equals(sortBy)) {
+            Map<Integer, RestaurantRatingSummary> ratings = restaurantRatingService.getSummaries(
+                    list.stream().map(n -> n.restaurant().getId()).collect(Collectors.toList()));
+            list.sort(Comparator.comparingDouble(
+                    (RestaurantGeoService.NearbyRestaurant n) -> ratings.get(n.restaurant().getId()).getAverageRating())
+                    .reversed());
+        } else {
+            list.sort(Comparator.comparing(
+                    (RestaurantGeoService.NearbyRestaurant n) -> n.restaurant().getCreatedAt(),
+                    Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+    }
+
+    private RestaurantLandingDTO toLandingDTO(Restaurant restaurant, Map<Integer, RestaurantRatingSummary> ratings) {
+        RestaurantLandingDTO dto = new RestaurantLandingDTO();
+        dto.setId(restaurant.getId());
+        dto.setName(restaurant.getName());
+        dto.setAddress(restaurant.getAddress());
+        dto.setCoverImage(restaurant.getCoverImage());
+
+        if (restaurant.getOwner() != null && restaurant.getOwner().getAccount() != null) {
+            dto.setOwnerAccountId(restaurant.getOwner().getAccount().getId());
+        }
+
+        RestaurantRatingSummary rating = ratings.get(restaurant.getId());
+        dto.setAverageRating(rating != null ? rating.getAverageRating() : 0.0);
+        dto.setTotalReviews(rating != null ? rating.getTotalReviews() : 0L);
+        return dto;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,308 @@
+package com.shopeefood.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.dto.LocationFixBatchRequest;
+import com.shopeefood.backend.entity.Shipper;
+import com.shopeefood.backend.repository.ShipperRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Nhận vị trí GPS tần suất cao của shipper.
+ * - Vị trí mới nhất của mỗi shipper giữ trong bộ nhớ (đọc trực tiếp, không query DB)
+ * - Định kỳ ghi xuống bảng shippers bằng 1 câu UPDATE cho cả lô; nhiều fix của cùng shipper
+ *   giữa 2 lần ghi chỉ tốn 1 dòng UPDATE
+ * - Metric (actuator /metrics): shipper.location.fixes, shipper.location.pending,
+ *   shipper.location.flush.lag, shipper.location.flush, shipper.location.ingest.delay
+ */
+@Service
+public class ShipperLocationService {
+
+    // Fix có thời điểm lệch quá xa so với server bị coi là sai (đồng hồ thiết bị lỗi)
+    private static final long MAX_CLOCK_SKEW_MS = 60_000L;
+
+    @Autowired
+    private ShipperRepository shipperRepository;
+
+    @Autowired
+    private AvailableOrderFeedService availableOrderFeedService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${shipper.location.flush-batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Vị trí mới nhất. recordedAt: thời điểm thiết bị ghi nhận (epoch millis).
+     * version: số thứ tự thay đổi (tăng dần toàn cục), 0 nếu lấy từ DB.
+     */
+    public record Position(double lat, double lng, long recordedAt, long version) {
+    }
+
+    private final Map<Integer, Position> latest = new ConcurrentHashMap<>();
+    // shipperId -> thời điểm (ms) có thay đổi đầu tiên chưa ghi xuống DB
+    private final Map<Integer, Long> dirty = new ConcurrentHashMap<>();
+    // Shipper đã kiểm tra tồn tại, tránh giữ vị trí cho id rác
+    private final Map<Integer, Boolean> knownShippers = new ConcurrentHashMap<>();
+
+    // Đồng hồ phiên bản cho bản đồ live: client gửi lại version đã nhận để chỉ lấy phần thay đổi.
+    // Bắt đầu từ thời gian hiện tại (micro giây) để version sau khi khởi động lại vẫn lớn hơn version cũ
+    private final AtomicLong changeVersion = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private Counter acceptedFixes;
+    private Counter staleFixes;
+    private Counter invalidFixes;
+    private Counter flushedRows;
+    private Timer flushTimer;
+    private DistributionSummary ingestDelay;
+
+    @PostConstruct
+    void registerMetrics() {
+        acceptedFixes = meterRegistry.counter("shipper.location.fixes", "result", "accepted");
+        staleFixes = meterRegistry.counter("shipper.location.fixes", "result", "stale");
+        invalidFixes = meterRegistry.counter("shipper.location.fixes", "result", "invalid");
+        flushedRows = meterRegistry.counter("shipper.location.flushed.rows");
+        flushTimer = meterRegistry.timer("shipper.location.flush");
+        ingestDelay = DistributionSummary.builder("shipper.location.ingest.delay")
+                .baseUnit("milliseconds")
+                .description("Độ trễ từ lúc thiết bị ghi nhận đến lúc server nhận")
+                .register(meterRegistry);
+        Gauge.builder("shipper.location.pending", dirty, Map::size)
+                .description("Số shipper có vị trí chưa ghi xuống DB")
+                .register(meterRegistry);
+        Gauge.builder("shipper.location.flush.lag", this, s -> s.flushLagMillis() / 1000.0)
+                .baseUnit("seconds")
+                .description("Tuổi của thay đổi cũ nhất chưa ghi xuống DB")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Nhận 1 lô fix của shipper. Fix sai tọa độ hoặc cũ hơn vị trí đang giữ bị bỏ qua.
+     * Trả về số fix được chấp nhận.
+     */
+    public int ingest(Integer shipperId, List<LocationFixBatchRequest.Fix> fixes) {
+        if (shipperId == null || fixes == null || fixes.isEmpty()) {
+            return 0;
+        }
+        if (!isKnownShipper(shipperId)) {
+            throw new IllegalArgumentException("Shipper không tồn tại");
+        }
+
+        long now = System.currentTimeMillis();
+        int accepted = 0;
+        for (LocationFixBatchRequest.Fix fix : fixes) {
+            if (fix == null || !isValid(fix.getLat(), fix.getLng())) {
+                invalidFixes.increment();
+                continue;
+            }
+            long recordedAt = fix.getRecordedAt() != null ? fix.getRecordedAt() : now;
+            if (recordedAt > now + MAX_CLOCK_SKEW_MS) {
+                invalidFixes.increment();
+                continue;
+            }
+            if (record(shipperId, fix.getLat(), fix.getLng(), recordedAt, now)) {
+                ingestDelay.record(Math.max(0, now - recordedAt));
+                accepted++;
+            } else {
+                staleFixes.increment();
+            }
+        }
+        acceptedFixes.increment(accepted);
+        return accepted;
+    }
+
+    /**
+     * Cập nhật 1 vị trí (vd: shipper sửa vị trí trong trang profile).
+     */
+    public void update(Integer shipperId, double lat, double lng) {
+        if (shipperId != null && isValid(lat, lng)) {
+            long now = System.currentTimeMillis();
+            record(shipperId, lat, lng, now, now);
+        }
+    }
+
+    /**
+     * Vị trí mới nhất đang giữ trong bộ nhớ (null nếu shipper chưa gửi vị trí từ khi khởi động).
+     */
+    public Position getPosition(Integer shipperId) {
+        return shipperId != null ? latest.get(shipperId) : null;
+    }
+
+    /**
+     * Vị trí mới nhất của shipper: ưu tiên bộ nhớ, không có thì lấy giá trị đã lưu trong DB.
+     * Trả về null nếu chưa có vị trí nào.
+     */
+    public Position resolve(Shipper shipper) {
+        if (shipper == null) {
+            return null;
+        }
+        Position position = latest.get(shipper.getAccountId());
+        if (position != null) {
+            return position;
+        }
+        if (shipper.getCurrentLat() == null || shipper.getCurrentLong() == null) {
+            return null;
+        }
+        return new Position(shipper.getCurrentLat(), shipper.getCurrentLong(), 0L, 0L);
+    }
+
+    /**
+     * Phiên bản hiện tại: mọi thay đổi sau thời điểm gọi đều có version lớn hơn.
+     */
+    public long currentVersion() {
+        return changeVersion.get();
+    }
+
+    /**
+     * Cấp 1 version mới cho thay đổi không phải vị trí (vd: quán trên bản đồ đổi thông tin).
+     */
+    public long nextVersion() {
+        return changeVersion.incrementAndGet();
+    }
+
+    /**
+     * Các shipper có vị trí thay đổi sau version since.
+     */
+    public Map<Integer, Position> changedSince(long since) {
+        Map<Integer, Position> result = new HashMap<>();
+        latest.forEach((id, position) -> {
+            if (position.version() > since) {
+                result.put(id, position);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Các shipper đang giữ vị trí trong bộ nhớ nằm trong khung [minLat, maxLat] x [minLng, maxLng].
+     */
+    public Map<Integer, Position> positionsIn(double minLat, double maxLat, double minLng, double maxLng) {
+        Map<Integer, Position> result = new HashMap<>();
+        latest.forEach((id, position) -> {
+            if (position.lat() >= minLat && position.lat() <= maxLat
+                    && position.lng() >= minLng && position.lng() <= maxLng) {
+                result.put(id, position);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Ghi các vị trí đã thay đổi xuống DB theo lô. Lỗi -> giữ lại để lần sau ghi tiếp.
+     */
+    @Scheduled(fixedDelayString = "${shipper.location.flush-ms:2000}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(dirty.keySet());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            flushBatch(ids.subList(from, Math.min(from + batchSize, ids.size())));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private boolean record(Integer shipperId, double lat, double lng, long recordedAt, long now) {
+        boolean[] changed = new boolean[1];
+        latest.compute(shipperId, (id, current) -> {
+            if (current != null && current.recordedAt() > recordedAt) {
+                return current;
+            }
+            changed[0] = true;
+            return new Position(lat, lng, recordedAt, changeVersion.incrementAndGet());
+        });
+        if (changed[0]) {
+            dirty.putIfAbsent(shipperId, now);
+            availableOrderFeedService.updatePosition(shipperId, lat, lng);
+        }
+        return changed[0];
+    }
+
+    private void flushBatch(List<Integer> batch) {
+        // Lấy ra khỏi dirty trước khi đọc vị trí: fix đến sau đó sẽ đánh dấu lại cho lần ghi sau
+        Map<Integer, Long> taken = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(batch.size());
+        List<Double> lats = new ArrayList<>(batch.size());
+        List<Double> lngs = new ArrayList<>(batch.size());
+        for (Integer id : batch) {
+            Long since = dirty.remove(id);
+            Position position = latest.get(id);
+            if (since == null || position == null) {
+                continue;
+            }
+            taken.put(id, since);
+            ids.add(id);
+            lats.add(position.lat());
+            lngs.add(position.lng());
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        try {
+            Integer updated = flushTimer.record(() -> new TransactionTemplate(transactionManager)
+                    .execute(status -> shipperRepository.bulkUpdateLocations(
+                            ids.toArray(new Integer[0]),
+                            lats.toArray(new Double[0]),
+                            lngs.toArray(new Double[0]))));
+            flushedRows.increment(updated != null ? updated : 0);
+        } catch (RuntimeException e) {
+            taken.forEach(dirty::putIfAbsent);
+            System.err.println("Không ghi được vị trí shipper xuống DB, thử lại sau: " + e.getMessage());
+        }
+    }
+
+    private long flushLagMillis() {
+        long oldest = Long.MAX_VALUE;
+        for (Long since : dirty.values()) {
+            oldest = Math.min(oldest, since);
+        }
+        return oldest == Long.MAX_VALUE ? 0L : System.currentTimeMillis() - oldest;
+    }
+
+    private boolean isKnownShipper(Integer shipperId) {
+        if (knownShippers.containsKey(shipperId)) {
+            return true;
+        }
+        boolean exists = shipperRepository.existsById(shipperId);
+        if (exists) {
+            knownShippers.put(shipperId, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    private static boolean isValid(Double lat, Double lng) {
+        return lat != null && lng != null
+                && !lat.isNaN() && !lng.isNaN()
+                && lat >= -90 && lat <= 90
+                && lng >= -180 && lng <= 180
+                && !(lat == 0 && lng == 0);
+    }
+}
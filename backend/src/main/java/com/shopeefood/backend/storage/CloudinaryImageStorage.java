@@ -0,0 +1,39 @@
+package com.shopeefood.backend.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+
+/**
+ * Lưu ảnh lên Cloudinary. public_id = key bỏ phần đuôi, upload từ File nên thư viện
+ * đọc dạng stream từ đĩa (không nạp cả file vào heap). overwrite=false: ảnh đã có thì giữ nguyên.
+ */
+public class CloudinaryImageStorage implements ImageStorage {
+
+    private final Cloudinary cloudinary;
+
+    public CloudinaryImageStorage(Cloudinary cloudinary) {
+        this.cloudinary = cloudinary;
+    }
+
+    @Override
+    public String urlFor(String key) {
+        return cloudinary.url().secure(true).resourceType("image").generate(key);
+    }
+
+    @Override
+    public void store(String key, Path file, String contentType) throws IOException {
+        cloudinary.uploader().upload(file.toFile(), ObjectUtils.asMap(
+                "public_id", publicId(key),
+                "resource_type", "image",
+                "overwrite", false,
+                "unique_filename", false));
+    }
+
+    private static String publicId(String key) {
+        int dot = key.lastIndexOf('.');
+        return dot > key.lastIndexOf('/') ? key.substring(0, dot) : key;
+    }
+}
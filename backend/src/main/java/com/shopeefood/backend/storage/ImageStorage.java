@@ -0,0 +1,21 @@
+package com.shopeefood.backend.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Nơi lưu ảnh đã upload (Cloudinary khi chạy thật, thư mục local khi dev / kiểm thử).
+ * key dạng "img/<sha256>.jpg": cùng nội dung -> cùng key -> cùng URL, nên URL biết trước khi upload xong.
+ */
+public interface ImageStorage {
+
+    /**
+     * URL công khai của ảnh có key này (không gọi mạng).
+     */
+    String urlFor(String key);
+
+    /**
+     * Lưu file (đọc dạng stream từ đĩa). Gọi lại với cùng key phải an toàn (không tạo bản thứ 2).
+     */
+    void store(String key, Path file, String contentType) throws IOException;
+}
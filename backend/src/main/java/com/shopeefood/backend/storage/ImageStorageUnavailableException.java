@@ -0,0 +1,18 @@
+package com.shopeefood.backend.storage;
+
+/**
+ * Chưa lưu được ảnh lúc này: hàng đợi upload đầy, storage chậm quá upload.image.store-timeout-seconds
+ * hoặc storage lỗi. Trả về 503 + Retry-After (IssueExceptionHandler), client gửi lại cùng ảnh sau vài giây.
+ */
+public class ImageStorageUnavailableException extends RuntimeException {
+
+    public static final int RETRY_AFTER_SECONDS = 5;
+
+    public ImageStorageUnavailableException(String message) {
+        super(message);
+    }
+
+    public ImageStorageUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,227 @@
+package com.shopeefood.backend.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Quy trình upload ảnh:
+ * 1. Băm SHA-256 file tạm (đọc stream 64KB một lần, không nạp cả file vào heap)
+ * 2. Nội dung đã lưu trước đó (ImageIndex) hoặc đang upload dở -> dùng lại, không upload lần 2
+ * 3. Ảnh mới: định dạng lấy từ nội dung file (ImageVariants), giao cho executor (giới hạn số luồng + hàng đợi)
+ *    tạo bản thu nhỏ rồi lưu bản gốc + các bản thu nhỏ vào ImageStorage. Trả về ngay PendingUpload,
+ *    done hoàn thành khi ảnh đã nằm trên storage (người gọi chờ done trước khi dùng URL)
+ * Không phụ thuộc Spring, kiểm tra trong ImageUploadPipelineTest.
+ */
+public class ImageUploadPipeline {
+
+    private static final String KEY_PREFIX = "img/";
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Ảnh đã lưu xong (bản gốc). format: đuôi file ("jpg", "png", "webp"...).
+     * variantWidths: chiều rộng các bản thu nhỏ đã lưu cùng ảnh (định dạng variantFormat).
+     */
+    public record StoredImage(String hash, String key, String url, String format, String contentType,
+            long sizeBytes, Integer width, Integer height, String variantFormat, List<Integer> variantWidths) {
+    }
+
+    /**
+     * Tra cứu / ghi nhận ảnh đã lưu theo mã băm nội dung.
+     */
+    public interface ImageIndex {
+        StoredImage find(String hash);
+
+        void record(StoredImage image);
+    }
+
+    /**
+     * Kết quả upload: URL dùng được ngay để lưu vào DB, done hoàn thành khi ảnh đã nằm trên storage.
+     * duplicate = true nếu nội dung này đã có / đang upload (không upload thêm).
+     * variants: chiều rộng -> URL bản thu nhỏ.
+     */
+    public record PendingUpload(String hash, String url, Map<Integer, String> variants, boolean duplicate,
+            CompletableFuture<StoredImage> done) {
+    }
+
+    private final ImageStorage storage;
+    private final Executor executor;
+    private final ImageIndex index;
+    private final int[] variantWidths;
+    // mã băm -> lần upload đang chạy (2 request cùng ảnh chỉ upload 1 lần)
+    private final Map<String, PendingUpload> inFlight = new ConcurrentHashMap<>();
+
+    public ImageUploadPipeline(ImageStorage storage, Executor executor, ImageIndex index, int[] variantWidths) {
+        this.storage = storage;
+        this.executor = executor;
+        this.index = index;
+        this.variantWidths = variantWidths.clone();
+    }
+
+    /**
+     * Nhận file tạm đã ghi xuống đĩa (pipeline chịu trách nhiệm xóa file này).
+     * Ném IllegalArgumentException nếu nội dung không phải ảnh, RejectedExecutionException nếu hàng đợi đầy.
+     */
+    public PendingUpload submit(Path stagedFile) throws IOException {
+        boolean handedOff = false;
+        try {
+            String hash = sha256(stagedFile);
+            PendingUpload existing = findExisting(hash);
+            if (existing != null) {
+                return existing;
+            }
+
+            ImageVariants.ImageInfo info = ImageVariants.probe(stagedFile);
+            // Định dạng ImageIO không đọc được (WebP, AVIF, HEIC): vẫn lưu bản gốc, không có bản thu nhỏ
+            String format = info != null ? info.format() : ImageVariants.sniffFormat(stagedFile);
+            if (format == null) {
+                throw new IllegalArgumentException("File không phải ảnh hợp lệ");
+            }
+
+            String key = KEY_PREFIX + hash + "." + format;
+            String variantFormat = ImageVariants.variantFormat(format);
+            List<Integer> widths = info != null ? widthsBelow(info.width()) : List.of();
+            StoredImage image = new StoredImage(hash, key, storage.urlFor(key), format,
+                    ImageVariants.contentType(format), Files.size(stagedFile),
+                    info != null ? info.width() : null, info != null ? info.height() : null, variantFormat, widths);
+            PendingUpload pending = new PendingUpload(hash, image.url(), variantUrls(image), false,
+                    new CompletableFuture<>());
+            PendingUpload raced = inFlight.putIfAbsent(hash, pending);
+            if (raced != null) {
+                return asDuplicate(raced);
+            }
+
+            try {
+                executor.execute(() -> upload(stagedFile, image, pending.done()));
+                handedOff = true;
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(hash, pending);
+                throw e;
+            }
+            return pending;
+        } finally {
+            if (!handedOff) {
+                Files.deleteIfExists(stagedFile);
+            }
+        }
+    }
+
+    private PendingUpload findExisting(String hash) {
+        PendingUpload running = inFlight.get(hash);
+        if (running != null) {
+            return asDuplicate(running);
+        }
+        StoredImage stored = index.find(hash);
+        if (stored == null) {
+            return null;
+        }
+        return new PendingUpload(hash, stored.url(), variantUrls(stored), true,
+                CompletableFuture.completedFuture(stored));
+    }
+
+    // Chạy trên luồng của executor
+    private void upload(Path stagedFile, StoredImage image, CompletableFuture<StoredImage> done) {
+        List<Path> variantFiles = new ArrayList<>();
+        try {
+            String variantContentType = ImageVariants.contentType(image.variantFormat());
+            for (int width : image.variantWidths()) {
+                Path variant = Files.createTempFile(stagedFile.getParent(), "variant-", "." + image.variantFormat());
+                variantFiles.add(variant);
+                ImageVariants.writeScaled(stagedFile, width, variant, image.variantFormat());
+                storeWithRetry(variantKey(image.hash(), image.variantFormat(), width), variant, variantContentType);
+            }
+            // Bản thu nhỏ trước, bản gốc sau cùng: bản gốc có trên storage nghĩa là cả bộ đã đủ
+            storeWithRetry(image.key(), stagedFile, image.contentType());
+            index.record(image);
+            // Bỏ khỏi inFlight trước khi báo xong: ai chờ done xong thấy ngay trạng thái cuối
+            inFlight.remove(image.hash());
+            done.complete(image);
+        } catch (Exception e) {
+            inFlight.remove(image.hash());
+            done.completeExceptionally(e);
+        } finally {
+            try {
+                Files.deleteIfExists(stagedFile);
+                for (Path variant : variantFiles) {
+                    Files.deleteIfExists(variant);
+                }
+            } catch (IOException e) {
+                // file tạm sẽ bị hệ điều hành dọn
+            }
+        }
+    }
+
+    // Lỗi mạng thoáng qua: thử lại 1 lần (store với cùng key an toàn khi gọi lại)
+    private void storeWithRetry(String key, Path file, String contentType) throws IOException {
+        try {
+            storage.store(key, file, contentType);
+        } catch (IOException e) {
+            storage.store(key, file, contentType);
+        }
+    }
+
+    private List<Integer> widthsBelow(int originalWidth) {
+        List<Integer> widths = new ArrayList<>();
+        for (int width : variantWidths) {
+            if (width > 0 && width < originalWidth) {
+                widths.add(width);
+            }
+        }
+        return widths;
+    }
+
+    /**
+     * Chiều rộng -> URL các bản thu nhỏ của ảnh đã lưu (không gọi mạng).
+     */
+    public Map<Integer, String> variantUrls(StoredImage image) {
+        Map<Integer, String> urls = new LinkedHashMap<>();
+        if (image.variantWidths() == null || image.variantFormat() == null) {
+            return urls;
+        }
+        for (int width : image.variantWidths()) {
+            urls.put(width, storage.urlFor(variantKey(image.hash(), image.variantFormat(), width)));
+        }
+        return urls;
+    }
+
+    private static String variantKey(String hash, String format, int width) {
+        return KEY_PREFIX + hash + "_w" + width + "." + format;
+    }
+
+    private static PendingUpload asDuplicate(PendingUpload pending) {
+        return new PendingUpload(pending.hash(), pending.url(), pending.variants(), true, pending.done());
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_BYTES];
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            while (in.read(buffer) != -1) {
+                // DigestInputStream cập nhật digest khi đọc
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,190 @@
+package com.shopeefood.backend.storage;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Đọc thông tin ảnh và tạo bản thu nhỏ bằng ImageIO (không cần thư viện ngoài).
+ * - probe chỉ đọc header (kích thước, định dạng), không giải mã ảnh
+ * - sniffFormat nhận diện WebP / AVIF / HEIC theo chữ ký đầu file (ImageIO không đọc được các định dạng này)
+ * Định dạng luôn lấy từ nội dung file, không tin Content-Type client gửi lên
+ * - Thu nhỏ: đọc ảnh gốc với subsampling (bỏ bớt điểm ảnh ngay khi giải mã) nên ảnh 4000px
+ *   làm bản 320px không phải giải mã đủ 4000px vào heap, rồi mới co mượt về đúng chiều rộng
+ */
+public final class ImageVariants {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private ImageVariants() {
+    }
+
+    /**
+     * format: đuôi file của ảnh gốc theo nội dung ("jpg", "png", "gif", "bmp"...).
+     */
+    public record ImageInfo(String format, int width, int height) {
+    }
+
+    /**
+     * Kích thước + định dạng của ảnh, null nếu ImageIO không đọc được (không phải ảnh / WebP...).
+     */
+    public static ImageInfo probe(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            ImageReader reader = firstReader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, true, true);
+                return new ImageInfo(extension(reader.getFormatName()), reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Định dạng ảnh ImageIO không đọc được, theo chữ ký đầu file: "webp", "avif", "heic" hoặc null.
+     */
+    public static String sniffFormat(Path file) throws IOException {
+        byte[] header = new byte[12];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        if (read < header.length) {
+            return null;
+        }
+        String riff = new String(header, 0, 4, StandardCharsets.US_ASCII);
+        String brand = new String(header, 8, 4, StandardCharsets.US_ASCII);
+        if ("RIFF".equals(riff) && "WEBP".equals(brand)) {
+            return "webp";
+        }
+        // ISO BMFF: [4 byte độ dài] "ftyp" [brand]
+        if ("ftyp".equals(new String(header, 4, 4, StandardCharsets.US_ASCII))) {
+            switch (brand) {
+                case "avif", "avis":
+                    return "avif";
+                case "heic", "heix", "hevc", "hevx", "heim", "heis", "mif1", "msf1":
+                    return "heic";
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Định dạng bản thu nhỏ: ảnh có thể trong suốt (png, gif) -> png, còn lại jpg.
+     */
+    public static String variantFormat(String format) {
+        return "png".equals(format) || "gif".equals(format) ? "png" : "jpg";
+    }
+
+    /**
+     * Content-Type lưu kèm ảnh (theo định dạng đã nhận diện).
+     */
+    public static String contentType(String format) {
+        return switch (format) {
+            case "jpg" -> "image/jpeg";
+            case "tif" -> "image/tiff";
+            case "wbmp" -> "image/vnd.wap.wbmp";
+            default -> "image/" + format;
+        };
+    }
+
+    /**
+     * Ghi bản thu nhỏ chiều rộng targetWidth (giữ tỉ lệ) của source ra target, định dạng format.
+     */
+    public static void writeScaled(Path source, int targetWidth, Path target, String format) throws IOException {
+        BufferedImage scaled;
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = input != null ? firstReader(input) : null;
+            if (reader == null) {
+                throw new IOException("Không đọc được ảnh");
+            }
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // Giải mã ở khoảng 2 lần kích thước đích, phần còn lại co mượt bằng Graphics2D
+                int step = Math.max(1, width / (targetWidth * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                int targetHeight = Math.max(1, (int) Math.round((double) height * targetWidth / width));
+                scaled = scale(decoded, targetWidth, targetHeight, "png".equals(format));
+            } finally {
+                reader.dispose();
+            }
+        }
+        write(scaled, target, format);
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean keepAlpha) {
+        BufferedImage result = new BufferedImage(width, height,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    private static void write(BufferedImage image, Path target, String format) throws IOException {
+        if (!"jpg".equals(format)) {
+            if (!ImageIO.write(image, format, target.toFile())) {
+                throw new IOException("Không ghi được ảnh định dạng " + format);
+            }
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static ImageReader firstReader(ImageInputStream input) {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    // Tên định dạng của ImageIO ("JPEG", "png", "gif", "tif"...) -> đuôi file
+    private static String extension(String formatName) {
+        String name = formatName.toLowerCase(Locale.ROOT);
+        return switch (name) {
+            case "jpeg" -> "jpg";
+            case "tiff" -> "tif";
+            default -> name.replaceAll("[^a-z0-9]", "");
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.shopeefood.backend.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Lưu ảnh vào thư mục local (mặc định ./uploads, WebConfig phục vụ ở /images/**).
+ * Dùng khi dev / kiểm thử không cần tài khoản Cloudinary.
+ */
+public class LocalDiskImageStorage implements ImageStorage {
+
+    private final Path root;
+    private final String baseUrl;
+
+    public LocalDiskImageStorage(Path root, String baseUrl) {
+        this.root = root.toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public String urlFor(String key) {
+        return baseUrl + "/" + key;
+    }
+
+    @Override
+    public void store(String key, Path file, String contentType) throws IOException {
+        Path target = root.resolve(key).normalize();
+        if (!target.startsWith(root)) {
+            throw new IllegalArgumentException("Key ảnh không hợp lệ: " + key);
+        }
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        // Chép ra file tạm cùng thư mục rồi đổi tên: người đọc không bao giờ thấy file ghi dở
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+}
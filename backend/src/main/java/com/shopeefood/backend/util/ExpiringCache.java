@@ -0,0 +1,84 @@
+package com.shopeefood.backend.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache trong bộ nhớ có giới hạn số phần tử và thời gian sống (TTL), dùng cho dữ liệu ít thay đổi.
+ * - Hết hạn / chưa có -> gọi loader rồi lưu lại (2 luồng cùng miss có thể cùng load, chấp nhận được)
+ * - invalidate / invalidateAll tăng "thế hệ": giá trị đang load dở từ trước lúc xóa không được lưu lại,
+ *   tránh nạp lại dữ liệu cũ ngay sau khi vừa xóa cache
+ * - Đầy: bỏ các phần tử hết hạn, vẫn đầy thì xóa hết (dữ liệu tham chiếu nhỏ, ít khi xảy ra)
+ * Không phụ thuộc Spring; số hit / miss đọc qua getHits / getMisses để đăng ký metric.
+ */
+public class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final long ttlNanos;
+    private final int maxSize;
+
+    public ExpiringCache(long ttlSeconds, int maxSize) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Giá trị của key, load bằng loader nếu chưa có hoặc đã hết hạn. loader không được trả về null.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && now - entry.expiresAtNanos() < 0) {
+            hits.increment();
+            return entry.value();
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        V value = loader.apply(key);
+        if (ttlNanos > 0 && generation.get() == loadGeneration) {
+            if (entries.size() >= maxSize && !entries.containsKey(key)) {
+                evictExpired(now);
+            }
+            entries.put(key, new Entry<>(value, now + ttlNanos));
+        }
+        return value;
+    }
+
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> now - entry.expiresAtNanos() >= 0);
+        if (entries.size() >= maxSize) {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.shopeefood.backend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper cho các phép tính địa lý: geohash, bounding box, khoảng cách Haversine.
+ * Dùng chung cho tìm quán gần nhất, bản đồ và các chức năng dựa trên vị trí.
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Độ dài 1 độ vĩ (km)
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    // Độ chính xác lưu trong DB (7 ký tự ~ ô 150m x 150m)
+    public static final int STORED_PRECISION = 7;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Mã hóa tọa độ thành geohash với số ký tự = precision.
+     */
+    public static String encodeGeohash(double lat, double lng, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder sb = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (sb.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (lng >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (lat >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                sb.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Trả về geohash lưu DB, null nếu thiếu tọa độ.
+     */
+    public static String encodeGeohash(Double lat, Double lng) {
+        if (lat == null || lng == null) {
+            return null;
+        }
+        return encodeGeohash(lat, lng, STORED_PRECISION);
+    }
+
+    /**
+     * Kích thước 1 ô geohash (độ): [chiều cao (lat), chiều rộng (lng)].
+     */
+    public static double[] cellSizeDegrees(int precision) {
+        int totalBits = precision * 5;
+        int lngBits = (totalBits + 1) / 2;
+        int latBits = totalBits / 2;
+        return new double[] { 180.0 / (1L << latBits), 360.0 / (1L << lngBits) };
+    }
+
+    /**
+     * Bán kính (km) chắc chắn được phủ bởi ô trung tâm + 8 ô lân cận
+     * quanh điểm (lat) ở độ chính xác precision.
+     */
+    public static double coverageRadiusKm(int precision, double lat) {
+        double[] size = cellSizeDegrees(precision);
+        double heightKm = size[0] * KM_PER_DEGREE;
+        double widthKm = size[1] * KM_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        return Math.min(heightKm, widthKm);
+    }
+
+    /**
+     * Chọn độ chính xác lớn nhất (ô nhỏ nhất) mà 9 ô vẫn phủ hết bán kính radiusKm.
+     * Trả về 0 nếu bán kính quá lớn (không lọc được bằng geohash).
+     */
+    public static int precisionForRadius(double radiusKm, double lat) {
+        for (int p = STORED_PRECISION; p >= 1; p--) {
+            if (coverageRadiusKm(p, lat) >= radiusKm) {
+                return p;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Ô chứa điểm + 8 ô lân cận ở độ chính xác precision (luôn trả về 9 phần tử,
+     * có thể trùng nhau ở vùng cực / kinh tuyến 180).
+     */
+    public static List<String> neighborCells(double lat, double lng, int precision) {
+        double[] size = cellSizeDegrees(precision);
+        List<String> cells = new ArrayList<>(9);
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                double nLat = clamp(lat + dy * size[0], -89.999999, 89.999999);
+                double nLng = wrapLongitude(lng + dx * size[1]);
+                cells.add(encodeGeohash(nLat, nLng, precision));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Bounding box quanh điểm: [minLat, maxLat, minLng, maxLng].
+     */
+    public static double[] boundingBox(double lat, double lng, double radiusKm) {
+        double dLat = radiusKm / KM_PER_DEGREE;
+        double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.000001);
+        double dLng = Math.min(radiusKm / (KM_PER_DEGREE * cosLat), 180.0);
+        return new double[] {
+                Math.max(lat - dLat, -90.0),
+                Math.min(lat + dLat, 90.0),
+                Math.max(lng - dLng, -180.0),
+                Math.min(lng + dLng, 180.0)
+        };
+    }
+
+    /**
+     * Khoảng cách Haversine giữa 2 điểm (km).
+     */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lngDistance = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(lngDistance / 2) * Math.sin(lngDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double wrapLongitude(double lng) {
+        if (lng > 180) {
+            return lng - 360;
+        }
+        if (lng < -180) {
+            return lng + 360;
+        }
+        return lng;
+    }
+}
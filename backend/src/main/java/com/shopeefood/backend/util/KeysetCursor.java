@@ -0,0 +1,40 @@
+package com.shopeefood.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Vị trí trong danh sách sắp xếp theo (thời điểm, id) giảm dần, dùng cho phân trang keyset:
+ * trang sau = các dòng đứng sau (at, id) của dòng cuối trang trước, DB đi thẳng tới vị trí đó
+ * qua index thay vì OFFSET đọc lại và bỏ qua các trang trước.
+ * Client nhận / gửi lại dạng chuỗi mờ (base64url), không tự tạo.
+ */
+public record KeysetCursor(LocalDateTime at, long id) {
+
+    public String encode() {
+        String raw = at + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * null / rỗng -> null (trang đầu). Chuỗi không hợp lệ -> IllegalArgumentException.
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("cursor không hợp lệ");
+            }
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // NumberFormatException cũng là IllegalArgumentException
+            throw new IllegalArgumentException("cursor không hợp lệ");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.shopeefood.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Dấu vân tay của tập option (ProductDetail id) được chọn cho 1 dòng món.
+ * Cùng tập id (không phân biệt thứ tự, bỏ trùng) -> cùng fingerprint, nên gộp dòng giỏ hàng
+ * chỉ cần so sánh (productId, fingerprint) thay vì load và so từng OrderItemOption.
+ * Cách tính phải khớp với script backfill scripts/add_order_item_fingerprint.sql:
+ * 16 ký tự hex đầu của SHA-256 chuỗi id tăng dần nối bằng dấu phẩy ("3,7,12").
+ */
+public final class OptionFingerprint {
+
+    public static final int LENGTH = 16;
+
+    private OptionFingerprint() {
+    }
+
+    /**
+     * Chuỗi chuẩn hóa: id tăng dần, không trùng, nối bằng dấu phẩy. Tập rỗng -> "".
+     */
+    public static String canonical(Collection<Integer> detailIds) {
+        if (detailIds == null || detailIds.isEmpty()) {
+            return "";
+        }
+        return detailIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+    }
+
+    public static String of(Collection<Integer> detailIds) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical(detailIds).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            // JVM nào cũng bắt buộc có SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.shopeefood.backend.util;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Đếm số câu SQL Hibernate gửi xuống DB trên luồng hiện tại (đăng ký qua
+ * spring.jpa.properties.hibernate.session_factory.statement_inspector).
+ * SqlStatementCountFilter reset đầu mỗi request và đọc lại cuối request để phát hiện N+1.
+ * Hibernate tự tạo instance bằng constructor rỗng nên bộ đếm để static.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,23 @@
+package com.shopeefood.backend;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/**
+ * Nền cho test tích hợp cần PostgreSQL thật (UPDATE có điều kiện, khóa dòng, native query...).
+ * 1 container dùng chung cho mọi lớp test (Spring giữ context giữa các lớp nên container không dừng
+ * sau từng lớp), schema tạo từ entity (profile "it"). Cần Docker.
+ */
+@SpringBootTest
+@ActiveProfiles("it")
+public abstract class PostgresIntegrationTest {
+
+    @ServiceConnection
+    static final PostgreSQLContainer POSTGRES = new PostgreSQLContainer("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+}
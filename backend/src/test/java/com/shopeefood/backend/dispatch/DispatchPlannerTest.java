@@ -0,0 +1,76 @@
+package com.shopeefood.backend.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.shopeefood.backend.dispatch.DispatchPlanner.Assignment;
+import com.shopeefood.backend.dispatch.DispatchPlanner.Point;
+
+/**
+ * Ghép tham lam theo khoảng cách. Mọi điểm cùng kinh độ, vị trí cho theo km về phía bắc từ vĩ độ 10.
+ */
+class DispatchPlannerTest {
+
+    private static final double KM = 1 / 111.32;
+
+    @Test
+    void cheapestPairIsTakenFirst() {
+        // Đơn 2 và shipper 10 là cặp gần nhất -> đơn 1 nhận shipper 20 dù shipper 10 cũng gần đơn 1 hơn
+        List<Point> orders = List.of(at(1, 0.0), at(2, 1.0));
+        List<Point> shippers = List.of(at(10, 0.9), at(20, -1.5));
+
+        List<Assignment> result = DispatchPlanner.plan(orders, shippers, 5, 5, 0.5, (o, s) -> false);
+
+        assertThat(result).extracting(Assignment::orderId, Assignment::shipperId)
+                .containsExactlyInAnyOrder(tuple(2, 10), tuple(1, 20));
+    }
+
+    @Test
+    void equalDistanceFavoursEarlierOrder() {
+        List<Point> orders = List.of(at(1, 0.0), at(2, 2.0));
+        List<Point> shippers = List.of(at(10, 1.0));
+
+        List<Assignment> result = DispatchPlanner.plan(orders, shippers, 5, 5, 0.5, (o, s) -> false);
+
+        assertThat(result).extracting(Assignment::orderId).containsExactly(1);
+    }
+
+    @Test
+    void orderWhoseCandidatesWereTakenSearchesAgain() {
+        // Mỗi đơn chỉ lấy 1 ứng viên: cả 2 đơn đều chọn shipper 10, đơn 2 tìm lại ở lượt sau
+        List<Point> orders = List.of(at(1, 0.0), at(2, 0.3));
+        List<Point> shippers = List.of(at(10, 0.0), at(20, 2.0));
+
+        List<Assignment> result = DispatchPlanner.plan(orders, shippers, 1, 5, 0.5, (o, s) -> false);
+
+        assertThat(result).extracting(Assignment::orderId, Assignment::shipperId)
+                .containsExactly(tuple(1, 10), tuple(2, 20));
+    }
+
+    @Test
+    void excludedPairIsNeverPlanned() {
+        List<Point> orders = List.of(at(1, 0.0));
+        List<Point> shippers = List.of(at(10, 0.1), at(20, 1.0));
+
+        List<Assignment> result = DispatchPlanner.plan(orders, shippers, 5, 5, 0.5,
+                (o, s) -> o == 1 && s == 10);
+
+        assertThat(result).extracting(Assignment::shipperId).containsExactly(20);
+    }
+
+    @Test
+    void shipperOutsideRadiusIsNotPlanned() {
+        List<Point> orders = List.of(at(1, 0.0));
+        List<Point> shippers = List.of(at(10, 6.0));
+
+        assertThat(DispatchPlanner.plan(orders, shippers, 5, 5, 0.5, (o, s) -> false)).isEmpty();
+    }
+
+    private static Point at(int id, double northKm) {
+        return new Point(id, 10.0 + northKm * KM, 106.0);
+    }
+}
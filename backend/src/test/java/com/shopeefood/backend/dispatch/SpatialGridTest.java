@@ -0,0 +1,93 @@
+package com.shopeefood.backend.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tìm k điểm gần nhất trên lưới: kết quả giống hệt duyệt toàn bộ, kể cả khi điểm gần nhất nằm ở ô khác.
+ */
+class SpatialGridTest {
+
+    private static final double KM_PER_DEGREE = 111.32;
+
+    @Test
+    void nearestInNeighbourCellBeatsFartherPointInSameCell() {
+        // Ô 0.5 km theo vĩ độ: điểm truy vấn sát mép trên ô, điểm 0 cùng ô nhưng ở mép dưới,
+        // điểm 1 ngay bên kia mép ở ô kế bên
+        double cellLat = 0.5 / KM_PER_DEGREE;
+        double base = Math.floor(10.0 / cellLat) * cellLat;
+        double[] lats = { base + cellLat * 0.05, base + cellLat * 1.05, base + cellLat * 3.5 };
+        double[] lngs = { 106.0, 106.0, 106.0 };
+        SpatialGrid grid = new SpatialGrid(lats, lngs, 0.5);
+
+        List<SpatialGrid.Neighbor> result = grid.nearest(base + cellLat * 0.95, 106.0, 2, 5, i -> true);
+
+        assertThat(result).extracting(SpatialGrid.Neighbor::index).containsExactly(1, 0);
+        assertThat(result.get(0).distanceKm()).isCloseTo(0.05, within(1e-6));
+        assertThat(result.get(1).distanceKm()).isCloseTo(0.45, within(1e-6));
+    }
+
+    @Test
+    void matchesBruteForceAcrossManyCells() {
+        Random random = new Random(42);
+        int n = 2000;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 10.70 + random.nextDouble() * 0.15;
+            lngs[i] = 106.60 + random.nextDouble() * 0.15;
+        }
+        SpatialGrid grid = new SpatialGrid(lats, lngs, 0.5);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 10.68 + random.nextDouble() * 0.19;
+            double lng = 106.58 + random.nextDouble() * 0.19;
+            List<Integer> expected = bruteForce(lats, lngs, lat, lng, 5, 3.0);
+
+            assertThat(grid.nearest(lat, lng, 5, 3.0, i -> true))
+                    .extracting(SpatialGrid.Neighbor::index)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void respectsRadiusAndFilter() {
+        double km = 1 / KM_PER_DEGREE;
+        double[] lats = { 10.0 + 0.2 * km, 10.0 + 0.4 * km, 10.0 + 3 * km };
+        double[] lngs = { 106.0, 106.0, 106.0 };
+        SpatialGrid grid = new SpatialGrid(lats, lngs, 0.5);
+
+        // Điểm 0 bị loại, điểm 2 ngoài bán kính 1 km
+        assertThat(grid.nearest(10.0, 106.0, 3, 1.0, i -> i != 0))
+                .extracting(SpatialGrid.Neighbor::index)
+                .containsExactly(1);
+        assertThat(grid.nearest(10.0, 106.0, 3, 1.0, i -> false)).isEmpty();
+    }
+
+    private static List<Integer> bruteForce(double[] lats, double[] lngs, double lat, double lng, int k,
+            double maxKm) {
+        double meanLat = 0;
+        for (double value : lats) {
+            meanLat += value;
+        }
+        double lngScale = Math.cos(Math.toRadians(meanLat / lats.length));
+        List<double[]> within = new ArrayList<>();
+        for (int i = 0; i < lats.length; i++) {
+            double dLat = lats[i] - lat;
+            double dLng = (lngs[i] - lng) * lngScale;
+            double d = KM_PER_DEGREE * Math.sqrt(dLat * dLat + dLng * dLng);
+            if (d <= maxKm) {
+                within.add(new double[] { i, d });
+            }
+        }
+        within.sort(Comparator.comparingDouble(e -> e[1]));
+        return within.stream().limit(k).map(e -> (int) e[0]).toList();
+    }
+}
@@ -0,0 +1,148 @@
+package com.shopeefood.backend.payment.payos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.payment.CircuitBreaker;
+import com.shopeefood.backend.payment.PaymentGatewayUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * PayOSClient với server PayOS giả (trả 200 / 5xx theo từng test): breaker mở, thử lại (HALF_OPEN), đóng lại.
+ */
+class PayOSClientTest {
+
+    private static final long OPEN_MILLIS = 200;
+    private static final String OK_BODY = "{\"code\":\"00\",\"desc\":\"success\",\"data\":{\"checkoutUrl\":\"http://stub\"}}";
+
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile String responseBody = OK_BODY;
+
+    private HttpServer server;
+    private ObjectMapper objectMapper;
+    private CircuitBreaker breaker;
+    private PayOSClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v2/payment-requests", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            hits.incrementAndGet();
+            byte[] bytes = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status.get(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        objectMapper = spy(new ObjectMapper());
+        breaker = new CircuitBreaker("payos-test", 2, OPEN_MILLIS);
+        client = new PayOSClient("http://localhost:" + server.getAddress().getPort(), "id", "key", objectMapper,
+                Duration.ofSeconds(1), Duration.ofSeconds(2), 4, Duration.ofMillis(200), breaker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void serverErrorsOpenBreakerAndLaterCallsFailFast() {
+        openBreaker();
+
+        assertUnavailable();
+        // Breaker mở: không gọi sang PayOS nữa
+        assertThat(hits.get()).isEqualTo(2);
+        assertThat(client.getAvailablePermits()).isEqualTo(4);
+    }
+
+    @Test
+    void successfulTrialClosesBreaker() throws InterruptedException {
+        openBreaker();
+        Thread.sleep(OPEN_MILLIS + 50);
+        status.set(200);
+
+        JsonNode data = client.createPaymentRequest(body());
+
+        assertThat(data.path("checkoutUrl").asText()).isEqualTo("http://stub");
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialReopensBreaker() throws InterruptedException {
+        openBreaker();
+        Thread.sleep(OPEN_MILLIS + 50);
+
+        assertUnavailable();
+
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(hits.get()).isEqualTo(3);
+    }
+
+    @Test
+    void unexpectedExceptionDuringTrialStillReleasesIt() throws Exception {
+        openBreaker();
+        Thread.sleep(OPEN_MILLIS + 50);
+        doThrow(new IllegalStateException("boom")).when(objectMapper).writeValueAsString(any());
+
+        assertThatThrownBy(() -> client.createPaymentRequest(body())).isInstanceOf(IllegalStateException.class);
+
+        // Lượt thử được tính là lỗi -> OPEN, không bị kẹt ở HALF_OPEN
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(client.getAvailablePermits()).isEqualTo(4);
+
+        reset(objectMapper);
+        Thread.sleep(OPEN_MILLIS + 50);
+        status.set(200);
+        client.createPaymentRequest(body());
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void businessErrorDoesNotCountAsFailure() {
+        responseBody = "{\"code\":\"20\",\"desc\":\"Đơn thanh toán đã tồn tại\"}";
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> client.createPaymentRequest(body()))
+                    .isInstanceOf(RuntimeException.class)
+                    .isNotInstanceOf(PaymentGatewayUnavailableException.class);
+        }
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private void openBreaker() {
+        status.set(503);
+        assertUnavailable();
+        assertUnavailable();
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void assertUnavailable() {
+        assertThatThrownBy(() -> client.createPaymentRequest(body()))
+                .isInstanceOf(PaymentGatewayUnavailableException.class);
+    }
+
+    private JsonNode body() {
+        return new ObjectMapper().createObjectNode().put("orderCode", 1);
+    }
+}
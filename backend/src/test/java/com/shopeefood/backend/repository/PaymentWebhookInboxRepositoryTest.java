@@ -0,0 +1,74 @@
+package com.shopeefood.backend.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.PostgresIntegrationTest;
+
+/**
+ * Khóa chống trùng của inbox thanh toán: callback gửi lại bị bỏ qua khi đang PENDING / DONE,
+ * nhưng callback đã FAILED thì client / cổng gửi lại vẫn được xử lý lại.
+ */
+class PaymentWebhookInboxRepositoryTest extends PostgresIntegrationTest {
+
+    private static final String GATEWAY = "CLIENT";
+    private static final String CODE = "order-987654";
+
+    @Autowired
+    private PaymentWebhookInboxRepository inboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM payment_webhook_inbox WHERE transaction_code = ?", CODE);
+    }
+
+    @Test
+    void duplicateIsIgnoredWhilePendingOrDone() {
+        assertThat(insert()).isEqualTo(1);
+        assertThat(insert()).isZero();
+
+        jdbc.update("UPDATE payment_webhook_inbox SET status = 'DONE', attempts = 1 WHERE transaction_code = ?", CODE);
+        assertThat(insert()).isZero();
+        assertThat(row().get("status")).isEqualTo("DONE");
+    }
+
+    @Test
+    void failedRowIsRearmedOnRetry() {
+        insert();
+        jdbc.update("UPDATE payment_webhook_inbox SET status = 'FAILED', attempts = 5, last_error = 'lỗi' "
+                + "WHERE transaction_code = ?", CODE);
+
+        assertThat(insert()).isEqualTo(1);
+
+        Map<String, Object> row = row();
+        assertThat(row.get("status")).isEqualTo("PENDING");
+        assertThat(row.get("attempts")).isEqualTo(0);
+        assertThat(row.get("last_error")).isNull();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM payment_webhook_inbox WHERE transaction_code = ?",
+                Long.class, CODE)).isEqualTo(1L);
+    }
+
+    private int insert() {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                inboxRepository.insertIfAbsent(GATEWAY, CODE, 987654, null, true, null));
+    }
+
+    private Map<String, Object> row() {
+        return jdbc.queryForMap("SELECT status, attempts, last_error FROM payment_webhook_inbox "
+                + "WHERE transaction_code = ?", CODE);
+    }
+}
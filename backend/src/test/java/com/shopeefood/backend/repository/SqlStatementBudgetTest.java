@@ -0,0 +1,170 @@
+package com.shopeefood.backend.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.shopeefood.backend.PostgresIntegrationTest;
+import com.shopeefood.backend.util.SqlStatementCounter;
+
+/**
+ * Số câu SQL của các màn danh sách đơn (chống N+1 quay lại sau khi chuyển quan hệ sang LAZY).
+ * Gọi endpoint thật qua MockMvc (chạy trên luồng test, open-in-view như khi chạy thật) và đọc SqlStatementCounter:
+ * - Mỗi màn không vượt ngân sách
+ * - Ít đơn hay nhiều đơn (mỗi đơn 1 khách, 1 shipper khác nhau) đều chạy cùng số câu SQL
+ * Bỏ qua filter (bảo mật, SqlStatementCountFilter) để bộ đếm chỉ tính phần controller / service.
+ */
+@AutoConfigureMockMvc(addFilters = false)
+class SqlStatementBudgetTest extends PostgresIntegrationTest {
+
+    private static final int OWNER_BOARD_BUDGET = 8;
+    private static final int SHIPPER_ORDERS_BUDGET = 6;
+    private static final int AVAILABLE_BUDGET = 4;
+    private static final int ADMIN_PAGE_BUDGET = 10;
+    private static final int CART_BUDGET = 6;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Integer ownerId;
+    private Integer restaurantId;
+    private Integer productId;
+    private int seq;
+
+    @BeforeEach
+    void setUp() {
+        ownerId = account("budget_owner", "OWNER");
+        jdbc.update("INSERT INTO owners (account_id, full_name) VALUES (?, 'Chủ quán test')", ownerId);
+        restaurantId = jdbc.queryForObject("INSERT INTO restaurants (name, latitude, longitude, status, owner_id) "
+                + "VALUES ('Quán budget', 10.77, 106.70, 'ACTIVE', ?) RETURNING id", Integer.class, ownerId);
+        Integer categoryId = jdbc.queryForObject(
+                "INSERT INTO categories (name) VALUES ('Danh mục budget') RETURNING id", Integer.class);
+        productId = jdbc.queryForObject("INSERT INTO products (name, price, is_available, category_id, restaurant_id) "
+                + "VALUES ('Cơm tấm', 35000, true, ?, ?) RETURNING id", Integer.class, categoryId, restaurantId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM order_items WHERE order_id IN "
+                + "(SELECT id FROM orders WHERE order_number LIKE 'BUDGET-%')");
+        jdbc.update("DELETE FROM orders WHERE order_number LIKE 'BUDGET-%'");
+        jdbc.update("DELETE FROM products WHERE restaurant_id = ?", restaurantId);
+        jdbc.update("DELETE FROM categories WHERE name = 'Danh mục budget'");
+        jdbc.update("DELETE FROM restaurants WHERE id = ?", restaurantId);
+        for (String table : new String[] { "customers", "shippers", "owners" }) {
+            jdbc.update("DELETE FROM " + table + " WHERE account_id IN "
+                    + "(SELECT id FROM accounts WHERE username LIKE 'budget_%')");
+        }
+        jdbc.update("DELETE FROM accounts WHERE username LIKE 'budget_%'");
+    }
+
+    @Test
+    void ownerBoardDoesNotGrowWithPageSize() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            order("PENDING", customer(), shipper());
+        }
+        String url = "/api/owner/orders?ownerId=" + ownerId + "&restaurantId=" + restaurantId;
+
+        int small = statements(url + "&size=5");
+        int large = statements(url + "&size=50");
+
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(OWNER_BOARD_BUDGET);
+    }
+
+    @Test
+    void shipperOrdersDoNotGrowWithOrderCount() throws Exception {
+        Integer few = shipper();
+        Integer many = shipper();
+        for (int i = 0; i < 2; i++) {
+            order("COMPLETED", customer(), few);
+        }
+        for (int i = 0; i < 20; i++) {
+            order("COMPLETED", customer(), many);
+        }
+
+        int small = statements("/api/shipper/orders/my-orders?shipperId=" + few);
+        int large = statements("/api/shipper/orders/my-orders?shipperId=" + many);
+
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(SHIPPER_ORDERS_BUDGET);
+    }
+
+    @Test
+    void availableOrdersDoNotGrowWithOrderCount() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            order("PREPARING", customer(), null);
+        }
+        int small = statements("/api/shipper/orders/available");
+
+        for (int i = 0; i < 20; i++) {
+            order("PREPARING", customer(), null);
+        }
+        int large = statements("/api/shipper/orders/available");
+
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(AVAILABLE_BUDGET);
+    }
+
+    @Test
+    void adminOrderPageDoesNotGrowWithLimit() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            order("COMPLETED", customer(), shipper());
+        }
+
+        int small = statements("/api/admin/orders/page?status=ALL&limit=3");
+        int large = statements("/api/admin/orders/page?status=ALL&limit=30");
+
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(ADMIN_PAGE_BUDGET);
+    }
+
+    @Test
+    void cartStaysWithinBudget() throws Exception {
+        Integer customerId = customer();
+
+        assertThat(statements("/api/cart?accountId=" + customerId + "&restaurantId=" + restaurantId))
+                .isLessThanOrEqualTo(CART_BUDGET);
+    }
+
+    private int statements(String url) throws Exception {
+        SqlStatementCounter.reset();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        return SqlStatementCounter.current();
+    }
+
+    private Integer account(String username, String role) {
+        return jdbc.queryForObject("INSERT INTO accounts (username, password, email, role, is_active) "
+                + "VALUES (?, 'x', ? || '@test.vn', ?, true) RETURNING id", Integer.class, username, username, role);
+    }
+
+    private Integer customer() {
+        Integer id = account("budget_customer_" + (++seq), "CUSTOMER");
+        jdbc.update("INSERT INTO customers (account_id, full_name, address) VALUES (?, 'Khách ' || ?, 'Quận 1')",
+                id, id);
+        return id;
+    }
+
+    private Integer shipper() {
+        Integer id = account("budget_shipper_" + (++seq), "SHIPPER");
+        jdbc.update("INSERT INTO shippers (account_id, full_name, status) VALUES (?, 'Shipper ' || ?, 'ONLINE')", id, id);
+        return id;
+    }
+
+    private void order(String status, Integer customerId, Integer shipperId) {
+        int n = ++seq;
+        Integer orderId = jdbc.queryForObject("INSERT INTO orders (order_number, customer_id, restaurant_id, shipper_id, "
+                + "status, subtotal, shipping_fee, total_amount, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, 35000, 15000, 50000, now() - make_interval(secs => ?)) RETURNING id",
+                Integer.class, "BUDGET-" + n, customerId, restaurantId, shipperId, status, n);
+        jdbc.update("INSERT INTO order_items (order_id, product_id, quantity, price) VALUES (?, ?, 1, 35000)",
+                orderId, productId);
+    }
+}
@@ -0,0 +1,75 @@
+package com.shopeefood.backend.security;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.shopeefood.backend.config.JacksonConfig;
+import com.shopeefood.backend.config.SecurityConfig;
+import com.shopeefood.backend.controller.AdminMapController;
+import com.shopeefood.backend.service.AdminMapService;
+import com.shopeefood.backend.service.CustomUserDetailsService;
+import com.shopeefood.backend.service.PrincipalCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Chuỗi filter thật của SecurityConfig khi auth.token.required=true: bản đồ live (số điện thoại, vị trí shipper)
+ * chỉ ADMIN xem được.
+ */
+@WebMvcTest(controllers = AdminMapController.class)
+@Import({ SecurityConfig.class, JacksonConfig.class, SimpleMeterRegistry.class })
+@TestPropertySource(properties = {
+        "auth.token.required=true",
+        "auth.token.secret=khoa-bi-mat-dung-cho-test-bao-mat-0123456789"
+})
+class AdminRouteSecurityTest {
+
+    private static final String MAP = "/api/admin/map/locations";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionTokenCodec codec;
+
+    @MockitoBean
+    private AdminMapService adminMapService;
+
+    @MockitoBean
+    private PrincipalCache principalCache;
+
+    @MockitoBean
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Test
+    void liveMapNeedsToken() throws Exception {
+        mockMvc.perform(get(MAP)).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void liveMapIsAdminOnly() throws Exception {
+        when(principalCache.get(5)).thenReturn(Optional.of(new AccountSnapshot(5, "ship", null, "SHIPPER", true)));
+
+        mockMvc.perform(get(MAP).header("Authorization", "Bearer " + codec.issue(5, "SHIPPER")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void adminSeesLiveMap() throws Exception {
+        when(principalCache.get(1)).thenReturn(Optional.of(new AccountSnapshot(1, "admin", null, "ADMIN", true)));
+
+        mockMvc.perform(get(MAP).header("Authorization", "Bearer " + codec.issue(1, "ADMIN")))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,163 @@
+package com.shopeefood.backend.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.service.PrincipalCache;
+
+import jakarta.servlet.FilterChain;
+
+/**
+ * Token hợp lệ nhưng tài khoản bị khóa -> 403; quyền theo role hiện tại; ?access_token chỉ nhận ở kênh SSE.
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenAuthenticationFilterTest {
+
+    private static final String STREAM = "/api/shipper/orders/available/stream";
+
+    @Mock
+    private PrincipalCache principalCache;
+
+    private SessionTokenCodec codec;
+    private TokenAuthenticationFilter filter;
+    // Người gọi mà endpoint nhìn thấy (null: chain không được gọi hoặc gọi như khách)
+    private final AtomicReference<Authentication> seen = new AtomicReference<>();
+    private boolean chainCalled;
+    private final FilterChain chain = (request, response) -> {
+        chainCalled = true;
+        seen.set(SecurityContextHolder.getContext().getAuthentication());
+    };
+
+    @BeforeEach
+    void setUp() {
+        codec = new SessionTokenCodec("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8),
+                Duration.ofMinutes(5), new ObjectMapper(), Clock.systemUTC());
+        filter = new TokenAuthenticationFilter(codec, principalCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void activeAccountGetsCurrentRole() throws Exception {
+        // Token cấp lúc còn là CUSTOMER, nay đã được duyệt thành OWNER
+        when(principalCache.get(7)).thenReturn(Optional.of(new AccountSnapshot(7, "an", null, "OWNER", true)));
+
+        MockHttpServletResponse response = run(bearer(get("/api/owner/orders"), codec.issue(7, "CUSTOMER")));
+
+        assertThat(chainCalled).isTrue();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(seen.get().getPrincipal()).isEqualTo(new AuthPrincipal(7, "OWNER"));
+        assertThat(seen.get().getAuthorities()).extracting(Object::toString).containsExactly("ROLE_OWNER");
+    }
+
+    @Test
+    void disabledAccountIsRefusedEverywhere() throws Exception {
+        when(principalCache.get(7)).thenReturn(Optional.of(new AccountSnapshot(7, "an", null, "SHIPPER", false)));
+
+        MockHttpServletResponse response = run(bearer(get("/api/shipper/orders/my-orders"), codec.issue(7, "SHIPPER")));
+
+        assertThat(chainCalled).isFalse();
+        assertThat(response.getStatus()).isEqualTo(403);
+        assertThat(response.getContentAsString()).contains("vô hiệu hóa");
+    }
+
+    @Test
+    void deletedAccountIsUnauthorized() throws Exception {
+        when(principalCache.get(7)).thenReturn(Optional.empty());
+
+        MockHttpServletResponse response = run(bearer(get("/api/cart"), codec.issue(7, "CUSTOMER")));
+
+        assertThat(chainCalled).isFalse();
+        assertThat(response.getStatus()).isEqualTo(401);
+    }
+
+    @Test
+    void queryTokenAcceptedOnSseStream() throws Exception {
+        when(principalCache.get(9)).thenReturn(Optional.of(new AccountSnapshot(9, "ship", null, "SHIPPER", true)));
+        MockHttpServletRequest request = get(STREAM);
+        request.setParameter("access_token", codec.issue(9, "SHIPPER"));
+
+        run(request);
+
+        assertThat(seen.get().getPrincipal()).isEqualTo(new AuthPrincipal(9, "SHIPPER"));
+    }
+
+    @Test
+    void queryTokenIgnoredOutsideSse() throws Exception {
+        MockHttpServletRequest request = get("/api/shipper/orders/my-orders");
+        request.setParameter("access_token", codec.issue(9, "SHIPPER"));
+
+        run(request);
+
+        assertThat(chainCalled).isTrue();
+        assertThat(seen.get()).isNull();
+        verifyNoInteractions(principalCache);
+    }
+
+    @Test
+    void liveMapGetsNoAdminRoleFromOtherAccounts() throws Exception {
+        // Bản đồ live không còn public: shipper có token vẫn chỉ mang ROLE_SHIPPER, SecurityConfig chặn ở /api/admin/**
+        when(principalCache.get(9)).thenReturn(Optional.of(new AccountSnapshot(9, "ship", null, "SHIPPER", true)));
+
+        run(bearer(get("/api/admin/map/viewport"), codec.issue(9, "ADMIN")));
+
+        assertThat(seen.get().getAuthorities()).extracting(Object::toString).containsExactly("ROLE_SHIPPER");
+    }
+
+    @Test
+    void queryTokenIgnoredOnLiveMap() throws Exception {
+        MockHttpServletRequest request = get("/api/admin/map/viewport");
+        request.setParameter("access_token", codec.issue(1, "ADMIN"));
+
+        run(request);
+
+        assertThat(seen.get()).isNull();
+        verifyNoInteractions(principalCache);
+    }
+
+    @Test
+    void invalidTokenIsUnauthorized() throws Exception {
+        MockHttpServletResponse response = run(bearer(get("/api/cart"), "khong-phai-token"));
+
+        assertThat(chainCalled).isFalse();
+        assertThat(response.getStatus()).isEqualTo(401);
+        verifyNoInteractions(principalCache);
+    }
+
+    private MockHttpServletResponse run(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private static MockHttpServletRequest bearer(MockHttpServletRequest request, String token) {
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,159 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.shopeefood.backend.dto.MapLocationDTO;
+import com.shopeefood.backend.dto.MapViewportResponse;
+import com.shopeefood.backend.entity.Shipper;
+import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.repository.ShipperRepository;
+import com.shopeefood.backend.service.ShipperLocationService.Position;
+
+/**
+ * Bản đồ live chế độ delta: chỉ báo xóa các shipper client đang hiển thị (snapshot trước) mà đã ra khỏi khung.
+ * Khung nhìn: lat [10, 11] x lng [106, 107].
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AdminMapServiceTest {
+
+    @Mock
+    private RestaurantRepository restaurantRepository;
+
+    @Mock
+    private ShipperRepository shipperRepository;
+
+    @Mock
+    private ShipperLocationService shipperLocationService;
+
+    @InjectMocks
+    private AdminMapService service;
+
+    private final Map<Integer, Position> positions = new HashMap<>();
+    private long version = 100;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "markerZoom", 14);
+        ReflectionTestUtils.setField(service, "maxMarkers", 2000);
+        ReflectionTestUtils.setField(service, "maxSnapshots", 10);
+
+        when(shipperLocationService.currentVersion()).thenAnswer(invocation -> version);
+        when(shipperLocationService.resolve(any()))
+                .thenAnswer(invocation -> positions.get(((Shipper) invocation.getArgument(0)).getAccountId()));
+        when(shipperLocationService.changedSince(anyLong())).thenAnswer(invocation -> {
+            long since = invocation.getArgument(0);
+            Map<Integer, Position> changed = new HashMap<>();
+            positions.forEach((id, p) -> {
+                if (p.version() > since) {
+                    changed.put(id, p);
+                }
+            });
+            return changed;
+        });
+        when(shipperLocationService.positionsIn(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Map.of());
+        when(restaurantRepository.findMapRestaurants(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+                .thenReturn(List.of());
+        when(shipperRepository.findWithAccountByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<Shipper> result = new ArrayList<>();
+            for (Object id : (Collection<?>) invocation.getArgument(0)) {
+                Shipper shipper = new Shipper();
+                shipper.setAccountId((Integer) id);
+                shipper.setFullName("Shipper " + id);
+                result.add(shipper);
+            }
+            return result;
+        });
+    }
+
+    @Test
+    void onlyShownShippersAreRemoved() {
+        move(1, 10.5, 106.5);
+        when(shipperRepository.findIdsInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+                .thenReturn(List.of(1));
+        MapViewportResponse first = viewport(null, null);
+        assertThat(first.isFull()).isTrue();
+        assertThat(shipperIds(first)).containsExactly(1);
+
+        // Shipper 1 đi ra ngoài, shipper 2 chưa từng hiện lên đổi vị trí ở nơi khác
+        move(1, 12.0, 106.5);
+        move(2, 15.0, 108.0);
+        MapViewportResponse delta = viewport(first.getVersion(), first.getSnapshot());
+
+        assertThat(delta.isFull()).isFalse();
+        assertThat(delta.getRemovedShipperIds()).containsExactly(1);
+        assertThat(delta.getMarkers()).isEmpty();
+
+        // Đã xóa ở lần trước -> lần sau không báo lại
+        move(1, 13.0, 106.5);
+        MapViewportResponse next = viewport(delta.getVersion(), delta.getSnapshot());
+        assertThat(next.getRemovedShipperIds()).isEmpty();
+    }
+
+    @Test
+    void shipperEnteringViewportIsAddedToSnapshot() {
+        when(shipperRepository.findIdsInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+                .thenReturn(List.of());
+        MapViewportResponse first = viewport(null, null);
+
+        move(3, 10.2, 106.2);
+        MapViewportResponse entered = viewport(first.getVersion(), first.getSnapshot());
+        assertThat(shipperIds(entered)).containsExactly(3);
+        assertThat(entered.getRemovedShipperIds()).isEmpty();
+
+        move(3, 9.0, 106.2);
+        MapViewportResponse left = viewport(entered.getVersion(), entered.getSnapshot());
+        assertThat(left.getRemovedShipperIds()).containsExactly(3);
+    }
+
+    @Test
+    void unknownSnapshotFallsBackToFull() {
+        move(1, 10.5, 106.5);
+        when(shipperRepository.findIdsInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+                .thenReturn(List.of(1));
+        MapViewportResponse first = viewport(null, null);
+
+        MapViewportResponse response = viewport(first.getVersion(), 12345L);
+
+        assertThat(response.isFull()).isTrue();
+        assertThat(shipperIds(response)).containsExactly(1);
+    }
+
+    private MapViewportResponse viewport(Long since, Long snapshot) {
+        return service.getViewport(10, 11, 106, 107, 15, since, snapshot);
+    }
+
+    private void move(int shipperId, double lat, double lng) {
+        positions.put(shipperId, new Position(lat, lng, 0L, ++version));
+    }
+
+    private static List<Integer> shipperIds(MapViewportResponse response) {
+        return response.getMarkers().stream()
+                .filter(m -> "SHIPPER".equals(m.getType()))
+                .map(MapLocationDTO::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Xuất CSV đơn hàng: ô dạng công thức bị vô hiệu hóa, quá số lượt xuất cùng lúc -> 503 trước khi mở file.
+ */
+class AdminOrderServiceExportTest {
+
+    private AdminOrderService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AdminOrderService();
+        ReflectionTestUtils.setField(service, "exportMaxConcurrent", 1);
+        service.init();
+    }
+
+    @Test
+    void formulaCellsArePrefixed() {
+        assertThat(AdminOrderService.csvCell("=HYPERLINK(\"http://x\")")).isEqualTo("\"'=HYPERLINK(\"\"http://x\"\")\"");
+        assertThat(AdminOrderService.csvCell("+84901234567")).isEqualTo("'+84901234567");
+        assertThat(AdminOrderService.csvCell("-1+1")).isEqualTo("'-1+1");
+        assertThat(AdminOrderService.csvCell("@SUM(A1)")).isEqualTo("'@SUM(A1)");
+        assertThat(AdminOrderService.csvCell("\tx")).isEqualTo("'\tx");
+        assertThat(AdminOrderService.csvCell("\rx")).isEqualTo("\"'\rx\"");
+    }
+
+    @Test
+    void plainCellsAreUnchanged() {
+        assertThat(AdminOrderService.csvCell("Cơm tấm x2")).isEqualTo("Cơm tấm x2");
+        assertThat(AdminOrderService.csvCell("50000")).isEqualTo("50000");
+        assertThat(AdminOrderService.csvCell("")).isEmpty();
+        assertThat(AdminOrderService.csvCell("12 Lê Lợi, Q1")).isEqualTo("\"12 Lê Lợi, Q1\"");
+        assertThat(AdminOrderService.csvCell("a=b")).isEqualTo("a=b");
+    }
+
+    @Test
+    void exportOverLimitIsRejectedBeforeOpeningTarget() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Lượt đầu giữ permit (đang "tải"), rồi báo lỗi ghi để không cần tới DB
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                service.exportCsv(null, "ALL", LocalDate.now(), LocalDate.now(), () -> {
+                    opened.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IOException("client ngắt kết nối");
+                });
+            } catch (IOException e) {
+                // mong đợi
+            }
+        });
+        assertThat(opened.await(10, TimeUnit.SECONDS)).isTrue();
+
+        AtomicInteger secondOpened = new AtomicInteger();
+        assertThatThrownBy(() -> service.exportCsv(null, "ALL", LocalDate.now(), LocalDate.now(), () -> {
+            secondOpened.incrementAndGet();
+            throw new IOException("không được mở");
+        })).isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(secondOpened).hasValue(0);
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        // Permit được trả kể cả khi lượt trước lỗi
+        assertThatThrownBy(() -> service.exportCsv(null, "ALL", LocalDate.now(), LocalDate.now(), () -> {
+            throw new IOException("lượt mới đã vào");
+        })).isInstanceOf(IOException.class).hasMessage("lượt mới đã vào");
+    }
+}
@@ -0,0 +1,136 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shopeefood.backend.repository.CustomerRepository;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ShipperRepository;
+
+/**
+ * ETag của GET /api/shipper/orders/available đổi ngay khi transaction ghi đơn commit xong,
+ * không phụ thuộc luồng @Async đẩy SSE (executor trong test không bao giờ chạy việc được giao).
+ */
+@SpringJUnitConfig(AvailableOrderFeedVersionTest.Config.class)
+class AvailableOrderFeedVersionTest {
+
+    @Autowired
+    private AvailableOrderFeedService feedService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private HeldExecutor asyncExecutor;
+
+    @Test
+    void versionChangesBeforeWriterReturns() {
+        long before = feedService.getVersion();
+        int pushes = asyncExecutor.tasks.size();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.taken(7));
+            // Chưa commit: poll lúc này vẫn thấy danh sách cũ với ETag cũ
+            assertThat(feedService.getVersion()).isEqualTo(before);
+        });
+
+        assertThat(feedService.getVersion()).isEqualTo(before + 2);
+        // Việc đẩy SSE vẫn được giao cho luồng @Async
+        assertThat(asyncExecutor.tasks).hasSize(pushes + 1);
+    }
+
+    @Test
+    void versionChangesWithoutTransaction() {
+        long before = feedService.getVersion();
+
+        eventPublisher.publishEvent(AvailableOrderFeedService.OrderFeedEvent.available(8));
+
+        assertThat(feedService.getVersion()).isGreaterThan(before);
+    }
+
+    static class HeldExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+    }
+
+    // Transaction giả: chỉ chạy các callback trước / sau commit
+    static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @Configuration
+    @EnableAsync
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        AvailableOrderFeedService availableOrderFeedService() {
+            return new AvailableOrderFeedService();
+        }
+
+        @Bean
+        OrderRepository orderRepository() {
+            return mock(OrderRepository.class);
+        }
+
+        @Bean
+        CustomerRepository customerRepository() {
+            return mock(CustomerRepository.class);
+        }
+
+        @Bean
+        ShipperRepository shipperRepository() {
+            return mock(ShipperRepository.class);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new NoOpTransactionManager();
+        }
+
+        @Bean
+        HeldExecutor taskExecutor() {
+            return new HeldExecutor();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.shopeefood.backend.dto.OrderItemRequest;
+import com.shopeefood.backend.dto.OrderRequest;
+import com.shopeefood.backend.repository.CustomerRepository;
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ProductRepository;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @InjectMocks
+    private CheckoutService checkoutService;
+
+    @Test
+    void lineWithoutProductIdIsRejectedBeforeQuery() {
+        OrderItemRequest valid = new OrderItemRequest();
+        valid.setProductId(1);
+        valid.setQuantity(1);
+        OrderItemRequest missing = new OrderItemRequest();
+        missing.setQuantity(2);
+
+        assertBadRequest(request(List.of(valid, missing)));
+        verify(productRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void nullLineIsRejectedBeforeQuery() {
+        List<OrderItemRequest> items = new ArrayList<>();
+        items.add(null);
+
+        assertBadRequest(request(items));
+        verify(productRepository, never()).findAllById(any());
+    }
+
+    private static OrderRequest request(List<OrderItemRequest> items) {
+        OrderRequest request = new OrderRequest();
+        request.setAccountId(1);
+        request.setRestaurantId(1);
+        request.setItems(items);
+        return request;
+    }
+
+    private void assertBadRequest(OrderRequest request) {
+        assertThatThrownBy(() -> checkoutService.createOrder(request))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+}
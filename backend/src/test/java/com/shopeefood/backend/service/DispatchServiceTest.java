@@ -0,0 +1,140 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.shopeefood.backend.repository.OrderRepository;
+import com.shopeefood.backend.repository.ShipperRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Vòng đời lời mời nhận đơn: shipper đã từ chối / để hết hạn không được mời lại đơn đó, đơn chuyển sang shipper kế tiếp.
+ * Quán của đơn 100 ở (10.0, 106.0); shipper 1 cách ~0.1 km, shipper 2 cách ~1 km.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DispatchServiceTest {
+
+    private static final double KM = 1 / 111.32;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ShipperRepository shipperRepository;
+
+    @Mock
+    private ShipperLocationService shipperLocationService;
+
+    @Mock
+    private AvailableOrderFeedService availableOrderFeedService;
+
+    @Mock
+    private OrderClaimService orderClaimService;
+
+    @InjectMocks
+    private DispatchService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        // requestRun chạy ngay trên luồng test
+        ReflectionTestUtils.setField(service, "taskExecutor", (TaskExecutor) Runnable::run);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "offerTimeoutSeconds", 20);
+        ReflectionTestUtils.setField(service, "maxRadiusKm", 5.0);
+        ReflectionTestUtils.setField(service, "candidatesPerOrder", 5);
+        ReflectionTestUtils.setField(service, "gridCellKm", 0.5);
+        service.registerMetrics();
+
+        List<Object[]> orders = new ArrayList<>();
+        orders.add(new Object[] { 100, 10.0, 106.0 });
+        when(orderRepository.findOpenOrderLocations()).thenReturn(orders);
+        List<Object[]> shippers = new ArrayList<>();
+        shippers.add(new Object[] { 1, 10.0 + 0.1 * KM, 106.0 });
+        shippers.add(new Object[] { 2, 10.0 + 1.0 * KM, 106.0 });
+        when(shipperRepository.findOnlineShipperLocations()).thenReturn(shippers);
+    }
+
+    @Test
+    void nearestShipperGetsTheOffer() {
+        service.run();
+
+        assertThat(service.getOffer(1)).isNotNull().extracting(DispatchService.Offer::orderId).isEqualTo(100);
+        assertThat(service.getOffer(2)).isNull();
+        verify(availableOrderFeedService).sendToShipper(eq(1), eq(AvailableOrderFeedService.EVENT_OFFER), any());
+    }
+
+    @Test
+    void declinedShipperIsNotOfferedAgain() {
+        service.run();
+
+        assertThat(service.declineOffer(100, 1)).isTrue();
+
+        // Mời ngay shipper kế tiếp
+        assertThat(service.getOffer(1)).isNull();
+        assertThat(service.getOffer(2)).isNotNull();
+
+        // Shipper 2 cũng từ chối -> không còn ai để mời, shipper 1 không được mời lại
+        assertThat(service.declineOffer(100, 2)).isTrue();
+        service.run();
+        assertThat(service.getOffer(1)).isNull();
+        assertThat(service.getOffer(2)).isNull();
+    }
+
+    @Test
+    void declineOfOfferHeldByOtherShipperIsRejected() {
+        service.run();
+
+        assertThat(service.declineOffer(100, 2)).isFalse();
+        assertThat(service.getOffer(1)).isNotNull();
+    }
+
+    @Test
+    void expiredOfferMovesToNextShipper() {
+        // Lời mời đầu hết hạn ngay khi tạo
+        ReflectionTestUtils.setField(service, "offerTimeoutSeconds", 0);
+        service.run();
+        assertThat(service.getOffer(1)).isNull();
+        assertThat(service.acceptOffer(100, 1)).isEqualTo(OrderClaimService.ClaimResult.OFFER_NOT_FOUND);
+
+        ReflectionTestUtils.setField(service, "offerTimeoutSeconds", 20);
+        service.run();
+
+        verify(availableOrderFeedService).sendToShipper(1, AvailableOrderFeedService.EVENT_OFFER_CANCELLED,
+                Map.of("orderId", 100));
+        assertThat(service.getOffer(1)).isNull();
+        assertThat(service.getOffer(2)).isNotNull().extracting(DispatchService.Offer::orderId).isEqualTo(100);
+        verify(orderClaimService, never()).claim(anyInt(), anyInt());
+    }
+
+    @Test
+    void acceptedOfferClaimsTheOrder() {
+        when(orderClaimService.claim(100, 1)).thenReturn(OrderClaimService.ClaimResult.CLAIMED);
+        service.run();
+
+        assertThat(service.acceptOffer(100, 1)).isEqualTo(OrderClaimService.ClaimResult.CLAIMED);
+        assertThat(service.getOffer(1)).isNull();
+    }
+}
@@ -0,0 +1,231 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.shopeefood.backend.entity.MailOutbox;
+import com.shopeefood.backend.repository.MailOutboxRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Gửi lỗi -> thử lại sau backoff-base x 2^(lần thử - 1) (+ tối đa 10%), quá max-attempts -> FAILED.
+ */
+@ExtendWith(MockitoExtension.class)
+class MailOutboxDispatcherTest {
+
+    private static final long BACKOFF_BASE = 30;
+    private static final long BACKOFF_MAX = 3600;
+    private static final int MAX_ATTEMPTS = 6;
+
+    @Mock
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Mock
+    private JavaMailSender mailSender;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private MailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "noreply@test.local");
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(dispatcher, "backoffBaseSeconds", BACKOFF_BASE);
+        ReflectionTestUtils.setField(dispatcher, "backoffMaxSeconds", BACKOFF_MAX);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(dispatcher, "smtpConnectTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(dispatcher, "smtpReadTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(dispatcher, "smtpWriteTimeoutMs", 10000L);
+        dispatcher.init();
+    }
+
+    @Test
+    void failedSendIsRetriedWithExponentialBackoff() {
+        MailOutbox mail = mail(1L, 0);
+        due(mail);
+        doThrow(new MailSendException("SMTP không phản hồi")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            LocalDateTime before = LocalDateTime.now();
+            dispatcher.sendBatch();
+
+            long delay = BACKOFF_BASE << (attempt - 1);
+            assertThat(mail.getStatus()).isEqualTo("PENDING");
+            assertThat(mail.getAttempts()).isEqualTo(attempt);
+            assertThat(mail.getLastError()).contains("SMTP không phản hồi");
+            assertThat(mail.getNextAttemptAt())
+                    .isAfterOrEqualTo(before.plusSeconds(delay))
+                    .isBefore(LocalDateTime.now().plusSeconds(delay + delay / 10 + 1));
+        }
+    }
+
+    @Test
+    void backoffIsCappedAtMaximum() {
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 100);
+        MailOutbox mail = mail(1L, 20);
+        due(mail);
+        doThrow(new MailSendException("lỗi")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.sendBatch();
+
+        assertThat(mail.getNextAttemptAt())
+                .isAfterOrEqualTo(before.plusSeconds(BACKOFF_MAX))
+                .isBefore(LocalDateTime.now().plusSeconds(BACKOFF_MAX + BACKOFF_MAX / 10 + 1));
+    }
+
+    @Test
+    void lastAttemptMarksFailed() {
+        MailOutbox mail = mail(1L, MAX_ATTEMPTS - 1);
+        due(mail);
+        doThrow(new MailSendException("550 hộp thư không tồn tại")).when(mailSender)
+                .send(any(SimpleMailMessage[].class));
+
+        dispatcher.sendBatch();
+
+        assertThat(mail.getStatus()).isEqualTo("FAILED");
+        assertThat(mail.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(mail.getLastError()).contains("550");
+        assertThat(mail.getSentAt()).isNull();
+    }
+
+    @Test
+    void onlyRejectedMessagesOfBatchAreRetried() {
+        MailOutbox ok = mail(1L, 0);
+        MailOutbox rejected = mail(2L, 0);
+        due(ok, rejected);
+        doAnswer(invocation -> {
+            // send(SimpleMailMessage...) là varargs: getArgument(0) chỉ trả về phần tử đầu
+            SimpleMailMessage[] messages = (SimpleMailMessage[]) invocation.getRawArguments()[0];
+            SimpleMailMessage failed = messages[0].getTo()[0].equals(rejected.getRecipient()) ? messages[0] : messages[1];
+            throw new MailSendException(Map.<Object, Exception>of(failed, new Exception("451 thử lại sau")));
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.sendBatch();
+
+        assertThat(ok.getStatus()).isEqualTo("SENT");
+        assertThat(ok.getSentAt()).isNotNull();
+        assertThat(rejected.getStatus()).isEqualTo("PENDING");
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+        assertThat(rejected.getLastError()).contains("451");
+        // Còn phải gửi lại nên giữ nguyên nội dung
+        assertThat(rejected.getBody()).isEqualTo("Nội dung");
+    }
+
+    @Test
+    void sentBodyIsRedacted() {
+        MailOutbox mail = mail(1L, 0);
+        mail.setBody("Mật khẩu mới của bạn là: Abc123xyz9");
+        mail.setSensitive(true);
+        due(mail);
+
+        dispatcher.sendBatch();
+
+        assertThat(mail.getStatus()).isEqualTo("SENT");
+        assertThat(mail.getBody()).isEqualTo(MailOutboxDispatcher.REDACTED_BODY);
+    }
+
+    @Test
+    void failedSensitiveBodyIsRedacted() {
+        MailOutbox secret = mail(1L, MAX_ATTEMPTS - 1);
+        secret.setSensitive(true);
+        MailOutbox notice = mail(2L, MAX_ATTEMPTS - 1);
+        due(secret, notice);
+        doThrow(new MailSendException("550")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.sendBatch();
+
+        assertThat(secret.getStatus()).isEqualTo("FAILED");
+        assertThat(secret.getBody()).isEqualTo(MailOutboxDispatcher.REDACTED_BODY);
+        // Email thường giữ nội dung để gửi lại bằng tay
+        assertThat(notice.getStatus()).isEqualTo("FAILED");
+        assertThat(notice.getBody()).isEqualTo("Nội dung");
+    }
+
+    @Test
+    void purgeDeletesFinishedMailsOlderThanRetention() {
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "retentionDays", 30);
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.purge();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(mailOutboxRepository).deleteFinishedBefore(cutoff.capture());
+        assertThat(cutoff.getValue())
+                .isAfterOrEqualTo(before.minusDays(30))
+                .isBeforeOrEqualTo(LocalDateTime.now().minusDays(30));
+    }
+
+    @Test
+    void leaseCoversSlowestBatch() {
+        due(mail(1L, 0));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.sendBatch();
+
+        // 5s kết nối + 50 x (10s đọc + 10s ghi) + 30s
+        ArgumentCaptor<LocalDateTime> leaseUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(mailOutboxRepository).lease(anyList(), leaseUntil.capture());
+        assertThat(leaseUntil.getValue()).isAfterOrEqualTo(before.plusSeconds(1035));
+    }
+
+    @Test
+    void leaseSecondsKeepsLongerConfiguredValue() {
+        assertThat(MailOutboxDispatcher.leaseSeconds(120, 50, 5000, 10000, 10000)).isEqualTo(1035);
+        assertThat(MailOutboxDispatcher.leaseSeconds(3000, 50, 5000, 10000, 10000)).isEqualTo(3000);
+        assertThat(MailOutboxDispatcher.leaseSeconds(120, 50, 0, 0, 0)).isEqualTo(120);
+    }
+
+    private void due(MailOutbox... mails) {
+        List<Long> ids = new ArrayList<>();
+        for (MailOutbox mail : mails) {
+            ids.add(mail.getId());
+        }
+        when(mailOutboxRepository.lockDue(any(LocalDateTime.class), anyInt())).thenReturn(ids);
+        when(mailOutboxRepository.findAllById(eq(ids))).thenReturn(List.of(mails));
+    }
+
+    private static MailOutbox mail(Long id, int attempts) {
+        MailOutbox mail = new MailOutbox();
+        mail.setId(id);
+        mail.setRecipient("user" + id + "@test.local");
+        mail.setSubject("Thông báo");
+        mail.setBody("Nội dung");
+        mail.setStatus("PENDING");
+        mail.setAttempts(attempts);
+        mail.setNextAttemptAt(LocalDateTime.now());
+        return mail;
+    }
+}
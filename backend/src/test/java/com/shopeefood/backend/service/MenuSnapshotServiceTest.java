@@ -0,0 +1,130 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopeefood.backend.repository.ProductRepository;
+import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.SearchIndexEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Cache thực đơn: món của quán khác đổi trong lúc dựng không làm mất bản dựng, id quán không tồn tại -> 404
+ * và không được lưu.
+ */
+class MenuSnapshotServiceTest {
+
+    private MenuSnapshotService service;
+    private ProductRepository productRepository;
+    private RestaurantRepository restaurantRepository;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        restaurantRepository = mock(RestaurantRepository.class);
+        ImageUploadService imageUploadService = mock(ImageUploadService.class);
+        when(imageUploadService.findVariantUrls(anySet())).thenReturn(Map.of());
+
+        service = new MenuSnapshotService();
+        ReflectionTestUtils.setField(service, "productRepository", productRepository);
+        ReflectionTestUtils.setField(service, "restaurantRepository", restaurantRepository);
+        ReflectionTestUtils.setField(service, "imageUploadService", imageUploadService);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "maxBytes", 1_000_000L);
+        service.init();
+        when(restaurantRepository.existsById(1)).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void changeInOtherRestaurantKeepsBuild() {
+        when(productRepository.findByRestaurantIdWithDetails(1)).thenAnswer(invocation -> {
+            service.onSearchIndexEvent(SearchIndexEvent.restaurant(2));
+            return List.of();
+        });
+
+        service.getMenu(1);
+        service.getMenu(1);
+
+        verify(productRepository, times(1)).findByRestaurantIdWithDetails(1);
+    }
+
+    @Test
+    void changeInSameRestaurantDiscardsBuild() {
+        when(productRepository.findByRestaurantIdWithDetails(1))
+                .thenAnswer(invocation -> {
+                    service.onSearchIndexEvent(SearchIndexEvent.restaurant(1));
+                    return List.of();
+                })
+                .thenReturn(List.of());
+
+        service.getMenu(1);
+        service.getMenu(1);
+        service.getMenu(1);
+
+        // Bản đầu cũ ngay khi dựng xong -> không lưu, lần 2 dựng lại và được cache
+        verify(productRepository, times(2)).findByRestaurantIdWithDetails(1);
+    }
+
+    @Test
+    void categoryChangeDiscardsBuild() {
+        when(productRepository.findByRestaurantIdWithDetails(1))
+                .thenAnswer(invocation -> {
+                    service.onSearchIndexEvent(SearchIndexEvent.category(3));
+                    return List.of();
+                })
+                .thenReturn(List.of());
+
+        service.getMenu(1);
+        service.getMenu(1);
+
+        verify(productRepository, times(2)).findByRestaurantIdWithDetails(1);
+    }
+
+    @Test
+    void unknownRestaurantIsNotFoundAndNotCached() {
+        when(productRepository.findByRestaurantIdWithDetails(99)).thenReturn(List.of());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> service.getMenu(99)).isInstanceOfSatisfying(ResponseStatusException.class,
+                    e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+        }
+        verify(productRepository, times(2)).findByRestaurantIdWithDetails(99);
+        assertThat(service.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void emptyMenuOfExistingRestaurantIsCached() {
+        when(productRepository.findByRestaurantIdWithDetails(1)).thenReturn(List.of());
+
+        assertThat(new String(service.getMenu(1).json())).isEqualTo("[]");
+        service.getMenu(1);
+
+        verify(productRepository, times(1)).findByRestaurantIdWithDetails(1);
+    }
+}
@@ -0,0 +1,115 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.shopeefood.backend.PostgresIntegrationTest;
+import com.shopeefood.backend.service.OrderClaimService.ClaimResult;
+
+/**
+ * Nhiều shipper cùng bấm nhận 1 đơn: gọi OrderClaimService.claim thật, song song, trên PostgreSQL thật.
+ * Chỉ đúng 1 shipper thắng, các shipper còn lại bị từ chối và vẫn ONLINE, đơn chỉ có 1 shipper_id.
+ */
+class OrderClaimConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int SHIPPERS = 300;
+
+    @Autowired
+    private OrderClaimService orderClaimService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Integer orderId;
+    private List<Integer> shipperIds;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("INSERT INTO accounts (username, password, email, role, is_active) "
+                + "SELECT 'claim_shipper_' || g, 'x', 'claim_shipper_' || g || '@test.vn', 'SHIPPER', true "
+                + "FROM generate_series(1, ?) g", SHIPPERS);
+        jdbc.update("INSERT INTO shippers (account_id, full_name, status) "
+                + "SELECT id, username, 'ONLINE' FROM accounts WHERE username LIKE 'claim_shipper_%'");
+        shipperIds = jdbc.queryForList("SELECT account_id FROM shippers ORDER BY account_id", Integer.class);
+
+        Integer restaurantId = jdbc.queryForObject(
+                "INSERT INTO restaurants (name, latitude, longitude) VALUES ('Quán test', 10.77, 106.70) RETURNING id",
+                Integer.class);
+        orderId = jdbc.queryForObject(
+                "INSERT INTO orders (order_number, restaurant_id, status, shipping_lat, shipping_long, created_at) "
+                        + "VALUES ('FO-CLAIM-RACE', ?, 'PREPARING', 10.78, 106.69, now()) RETURNING id",
+                Integer.class, restaurantId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM orders WHERE order_number = 'FO-CLAIM-RACE'");
+        jdbc.update("DELETE FROM restaurants WHERE name = 'Quán test'");
+        jdbc.update("DELETE FROM shippers WHERE full_name LIKE 'claim_shipper_%'");
+        jdbc.update("DELETE FROM accounts WHERE username LIKE 'claim_shipper_%'");
+    }
+
+    @Test
+    void concurrentClaimsOnOneOrderHaveExactlyOneWinner() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ClaimResult>> futures = new ArrayList<>();
+        try {
+            for (Integer shipperId : shipperIds) {
+                Callable<ClaimResult> call = () -> {
+                    start.await();
+                    return orderClaimService.claim(orderId, shipperId);
+                };
+                futures.add(pool.submit(call));
+            }
+            start.countDown();
+
+            List<Integer> winners = new ArrayList<>();
+            int rejected = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                ClaimResult result = futures.get(i).get(60, TimeUnit.SECONDS);
+                if (result == ClaimResult.CLAIMED) {
+                    winners.add(shipperIds.get(i));
+                } else {
+                    assertThat(result).isEqualTo(ClaimResult.ALREADY_TAKEN);
+                    rejected++;
+                }
+            }
+
+            assertThat(winners).hasSize(1);
+            assertThat(rejected).isEqualTo(SHIPPERS - 1);
+
+            Map<String, Object> order = jdbc.queryForMap(
+                    "SELECT shipper_id, status, estimated_delivery_time_minutes, due_at FROM orders WHERE id = ?", orderId);
+            assertThat(order.get("shipper_id")).isEqualTo(winners.get(0));
+            assertThat(order.get("status")).isEqualTo("SHIPPING");
+            assertThat(order.get("estimated_delivery_time_minutes")).isNotNull();
+            assertThat(order.get("due_at")).isNotNull();
+
+            // Shipper thắng BUSY, các shipper thua được trả về ONLINE (transaction rollback)
+            assertThat(jdbc.queryForObject("SELECT count(*) FROM shippers WHERE status = 'BUSY'", Integer.class))
+                    .isEqualTo(1);
+            assertThat(jdbc.queryForObject("SELECT status FROM shippers WHERE account_id = ?", String.class,
+                    winners.get(0))).isEqualTo("BUSY");
+            assertThat(jdbc.queryForObject("SELECT count(*) FROM shippers WHERE status = 'ONLINE'", Integer.class))
+                    .isEqualTo(SHIPPERS - 1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
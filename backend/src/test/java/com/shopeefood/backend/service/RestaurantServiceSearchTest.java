@@ -0,0 +1,167 @@
+package com.shopeefood.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.shopeefood.backend.dto.RestaurantLandingDTO;
+import com.shopeefood.backend.entity.Restaurant;
+import com.shopeefood.backend.repository.RestaurantRepository;
+import com.shopeefood.backend.search.InvertedIndex;
+
+/**
+ * Tìm quán theo keyword kèm vị trí (sắp xếp theo khoảng cách / lọc bán kính) đi qua chỉ mục tìm kiếm:
+ * "pho" khớp "Phở", khớp tiền tố và gõ sai, sắp xếp theo độ liên quan trong bán kính.
+ * Người dùng ở (10.0, 106.0); vị trí quán cho theo km về phía bắc.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RestaurantServiceSearchTest {
+
+    private static final double KM = 1 / 111.32;
+
+    @Mock
+    private RestaurantRepository restaurantRepository;
+
+    @Mock
+    private RestaurantRatingService restaurantRatingService;
+
+    private RestaurantService service;
+    private RestaurantSearchService searchService;
+    private final Map<Integer, Restaurant> stored = new ConcurrentHashMap<>();
+    private final InvertedIndex menuIndex = new InvertedIndex();
+    private final Map<Integer, RestaurantSearchService.IndexedRestaurant> indexed = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        searchService = new RestaurantSearchService();
+        ReflectionTestUtils.setField(searchService, "menuIndex", menuIndex);
+        ReflectionTestUtils.setField(searchService, "restaurants", indexed);
+        ReflectionTestUtils.setField(searchService, "ready", true);
+
+        RestaurantGeoService geoService = new RestaurantGeoService();
+        ReflectionTestUtils.setField(geoService, "restaurantRepository", restaurantRepository);
+
+        service = new RestaurantService();
+        ReflectionTestUtils.setField(service, "restaurantRepository", restaurantRepository);
+        ReflectionTestUtils.setField(service, "restaurantRatingService", restaurantRatingService);
+        ReflectionTestUtils.setField(service, "restaurantGeoService", geoService);
+        ReflectionTestUtils.setField(service, "restaurantSearchService", searchService);
+
+        when(restaurantRatingService.getSummaries(anyList())).thenReturn(Map.of());
+        when(restaurantRepository.findAllById(anyCollection())).thenAnswer(invocation -> {
+            List<Restaurant> result = new ArrayList<>();
+            for (Object id : (Collection<?>) invocation.getArgument(0)) {
+                if (stored.containsKey(id)) {
+                    result.add(stored.get(id));
+                }
+            }
+            return result;
+        });
+
+        restaurant(1, "Phở Thìn Lò Đúc", 2.0, new String[] { "Phở bò tái" });
+        restaurant(2, "Bánh mì Huỳnh Hoa", 1.0, new String[] { "Bánh mì thập cẩm" });
+        restaurant(3, "Quán Ốc Oanh", 0.5, new String[] { "Ốc hương", "Phở cuốn" });
+        restaurant(4, "Phở Hòa Pasteur", 8.0, new String[] { "Phở gà" });
+    }
+
+    @Test
+    void foldedKeywordMatchesNearestFirst() {
+        List<Integer> ids = search("pho", "distance", null);
+
+        assertThat(ids).containsExactly(3, 1, 4);
+        // Không quay lại LIKE trong SQL
+        verify(restaurantRepository, never()).findNearbyCandidates(any(), anyString(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void prefixAndTypoMatch() {
+        assertThat(search("banh m", "distance", null)).containsExactly(2);
+        assertThat(search("huyhn", "distance", null)).containsExactly(2);
+        assertThat(search("PHỞ Thin", "distance", null)).containsExactly(1);
+    }
+
+    @Test
+    void radiusKeepsOnlyNearbyMatches() {
+        assertThat(search("pho", "distance", 5.0)).containsExactly(3, 1);
+        assertThat(search("pho", "newest", 5.0)).containsExactlyInAnyOrder(3, 1);
+    }
+
+    @Test
+    void relevanceInsideRadiusPutsNameMatchesFirst() {
+        // Quán 1 khớp ở tên quán, quán 3 chỉ khớp tên món dù gần hơn
+        assertThat(search("pho", "relevance", 5.0)).containsExactly(1, 3);
+    }
+
+    @Test
+    void distanceIsFilledIn() {
+        List<RestaurantLandingDTO> page = service.getActiveRestaurantsWithRating("pho", 10.0, 106.0, "distance",
+                null, PageRequest.of(0, 10)).getContent();
+
+        assertThat(page.get(0).getDistance()).isBetween(0.49, 0.51);
+    }
+
+    @Test
+    void indexNotReadyFallsBackToSql() {
+        ReflectionTestUtils.setField(searchService, "ready", false);
+        when(restaurantRepository.findNearbyCandidates(any(), anyString(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyString())).thenReturn(List.of());
+
+        search("pho", "distance", 5.0);
+
+        verify(restaurantRepository).findNearbyCandidates(eq("pho"), anyString(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyString(), anyString());
+    }
+
+    private List<Integer> search(String keyword, String sortBy, Double radiusKm) {
+        return service.getActiveRestaurantsWithRating(keyword, 10.0, 106.0, sortBy, radiusKm, PageRequest.of(0, 10))
+                .getContent().stream().map(RestaurantLandingDTO::getId).toList();
+    }
+
+    private void restaurant(int id, String name, double northKm, String[] products) {
+        Restaurant r = new Restaurant();
+        r.setId(id);
+        r.setName(name);
+        r.setStatus(Restaurant.RestaurantStatus.ACTIVE);
+        r.setLatitude(10.0 + northKm * KM);
+        r.setLongitude(106.0);
+        r.setCreatedAt(LocalDateTime.now().minusDays(id));
+        stored.put(id, r);
+
+        // Cùng trọng số field với RestaurantSearchService: tên quán 3, tên món 2
+        InvertedIndex.Document document = new InvertedIndex.Document().add(name, 3.0);
+        for (String product : products) {
+            document.add(product, 2.0);
+        }
+        menuIndex.put(id, document);
+        indexed.put(id, new RestaurantSearchService.IndexedRestaurant(r.getStatus(), r.getCreatedAt()));
+    }
+}
@@ -0,0 +1,254 @@
+package com.shopeefood.backend.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.shopeefood.backend.storage.ImageUploadPipeline.PendingUpload;
+import com.shopeefood.backend.storage.ImageUploadPipeline.StoredImage;
+
+/**
+ * ImageUploadPipeline với storage local (không cần Cloudinary / DB):
+ * ảnh trùng chỉ lưu 1 lần, định dạng lấy từ nội dung file, bản thu nhỏ được lưu, done chỉ xong khi đã lưu.
+ */
+class ImageUploadPipelineTest {
+
+    private static final String BASE_URL = "http://localhost:8080/images";
+
+    @TempDir
+    Path work;
+
+    private Path staging;
+    private LocalDiskImageStorage disk;
+    private final AtomicInteger stores = new AtomicInteger();
+    // Storage chờ latch này trước khi lưu (giả lập upload chậm)
+    private volatile CountDownLatch storeGate = new CountDownLatch(0);
+    private final Map<String, StoredImage> index = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private ImageUploadPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        staging = Files.createDirectories(work.resolve("staging"));
+        disk = new LocalDiskImageStorage(work.resolve("store"), BASE_URL);
+        ImageStorage storage = new ImageStorage() {
+            @Override
+            public String urlFor(String key) {
+                return disk.urlFor(key);
+            }
+
+            @Override
+            public void store(String key, Path file, String contentType) throws IOException {
+                try {
+                    storeGate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                stores.incrementAndGet();
+                disk.store(key, file, contentType);
+            }
+        };
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        pipeline = new ImageUploadPipeline(storage, executor, new ImageUploadPipeline.ImageIndex() {
+            @Override
+            public StoredImage find(String hash) {
+                return index.get(hash);
+            }
+
+            @Override
+            public void record(StoredImage image) {
+                index.put(image.hash(), image);
+            }
+        }, new int[] { 320, 800, 4000 });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        storeGate.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void concurrentDuplicatesAreStoredOnce() throws Exception {
+        Path photo = writeImage("photo.jpg", 1200, 800, false, "jpg");
+        storeGate = new CountDownLatch(1);
+
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+        List<Future<PendingUpload>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Path staged = Files.copy(photo, staging.resolve("req-" + i + ".tmp"));
+            futures.add(requests.submit(() -> pipeline.submit(staged)));
+        }
+        List<PendingUpload> results = new ArrayList<>();
+        for (Future<PendingUpload> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        requests.shutdown();
+        assertThat(results.get(0).done()).isNotDone();
+        storeGate.countDown();
+        for (PendingUpload result : results) {
+            result.done().get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(results).filteredOn(r -> !r.duplicate()).hasSize(1);
+        assertThat(results).extracting(PendingUpload::url).containsOnly(results.get(0).url());
+        // gốc + 320 + 800, không tạo bản rộng hơn ảnh gốc
+        assertThat(stores.get()).isEqualTo(3);
+        assertThat(results.get(0).variants()).containsOnlyKeys(320, 800);
+        assertThat(pipeline.getInFlightCount()).isZero();
+        assertStagingEmpty();
+    }
+
+    @Test
+    void variantsAreStoredWithScaledWidth() throws Exception {
+        Path photo = writeImage("photo.jpg", 1200, 800, false, "jpg");
+
+        PendingUpload upload = pipeline.submit(Files.copy(photo, staging.resolve("photo.tmp")));
+        StoredImage stored = upload.done().get(10, TimeUnit.SECONDS);
+
+        assertThat(stored.format()).isEqualTo("jpg");
+        assertThat(stored.variantWidths()).containsExactly(320, 800);
+        assertThat(pipeline.variantUrls(stored)).isEqualTo(upload.variants());
+        for (Map.Entry<Integer, String> variant : upload.variants().entrySet()) {
+            BufferedImage image = ImageIO.read(stored(variant.getValue()).toFile());
+            assertThat(image.getWidth()).isEqualTo(variant.getKey());
+            assertThat(image.getHeight()).isEqualTo(Math.round(800.0 * variant.getKey() / 1200));
+        }
+        assertThat(stored(upload.url())).exists();
+    }
+
+    @Test
+    void storedImageIsServedFromIndex() throws Exception {
+        Path photo = writeImage("photo.jpg", 600, 400, false, "jpg");
+        PendingUpload first = pipeline.submit(Files.copy(photo, staging.resolve("first.tmp")));
+        first.done().get(10, TimeUnit.SECONDS);
+        int storedFiles = stores.get();
+
+        PendingUpload again = pipeline.submit(Files.copy(photo, staging.resolve("again.tmp")));
+
+        assertThat(again.duplicate()).isTrue();
+        assertThat(again.done()).isDone();
+        assertThat(again.url()).isEqualTo(first.url());
+        assertThat(again.variants()).isEqualTo(first.variants());
+        assertThat(stores.get()).isEqualTo(storedFiles);
+        assertStagingEmpty();
+    }
+
+    @Test
+    void formatComesFromContentNotFileName() throws Exception {
+        // PNG trong suốt đặt tên .jpg: vẫn lưu là png, bản thu nhỏ giữ png
+        Path logo = writeImage("logo.jpg", 1000, 1000, true, "png");
+
+        PendingUpload upload = pipeline.submit(Files.copy(logo, staging.resolve("logo.tmp")));
+        StoredImage stored = upload.done().get(10, TimeUnit.SECONDS);
+
+        assertThat(stored.format()).isEqualTo("png");
+        assertThat(stored.contentType()).isEqualTo("image/png");
+        assertThat(upload.url()).endsWith(".png");
+        assertThat(upload.variants().get(320)).endsWith(".png");
+    }
+
+    @Test
+    void webpIsStoredWithoutVariants() throws Exception {
+        // Header RIFF....WEBPVP8 : ImageIO không đọc được, nhận diện theo chữ ký
+        byte[] webp = new byte[64];
+        System.arraycopy("RIFF".getBytes(StandardCharsets.US_ASCII), 0, webp, 0, 4);
+        System.arraycopy("WEBPVP8 ".getBytes(StandardCharsets.US_ASCII), 0, webp, 8, 8);
+        Path staged = Files.write(staging.resolve("anh.tmp"), webp);
+
+        PendingUpload upload = pipeline.submit(staged);
+        StoredImage stored = upload.done().get(10, TimeUnit.SECONDS);
+
+        assertThat(stored.format()).isEqualTo("webp");
+        assertThat(stored.contentType()).isEqualTo("image/webp");
+        assertThat(upload.variants()).isEmpty();
+        assertThat(stores.get()).isEqualTo(1);
+    }
+
+    @Test
+    void nonImageIsRejected() throws Exception {
+        Path text = Files.writeString(staging.resolve("note.tmp"), "không phải ảnh");
+
+        assertThatThrownBy(() -> pipeline.submit(text)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(stores.get()).isZero();
+        assertStagingEmpty();
+    }
+
+    @Test
+    void fullQueueRejectsAndCleansUp() throws Exception {
+        storeGate = new CountDownLatch(1);
+        // 1 luồng đang chạy + 1 chỗ trong hàng đợi
+        PendingUpload running = pipeline.submit(copy(writeImage("a.jpg", 200, 100, false, "jpg")));
+        PendingUpload queued = pipeline.submit(copy(writeImage("b.jpg", 210, 100, false, "jpg")));
+        Path third = copy(writeImage("c.jpg", 220, 100, false, "jpg"));
+
+        assertThatThrownBy(() -> pipeline.submit(third)).isInstanceOf(RejectedExecutionException.class);
+        assertThat(third).doesNotExist();
+
+        storeGate.countDown();
+        running.done().get(10, TimeUnit.SECONDS);
+        queued.done().get(10, TimeUnit.SECONDS);
+        assertThat(pipeline.getInFlightCount()).isZero();
+    }
+
+    private Path writeImage(String name, int width, int height, boolean alpha, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(width * 31L + height);
+        for (int i = 0; i < 200; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), alpha ? 128 : 255));
+            g.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        g.dispose();
+        Path file = work.resolve(name);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+
+    private Path copy(Path file) throws IOException {
+        return Files.copy(file, staging.resolve(file.getFileName() + ".tmp"));
+    }
+
+    private Path stored(String url) {
+        return disk.getRoot().resolve(url.substring(BASE_URL.length() + 1));
+    }
+
+    // File tạm được xóa sau khi done hoàn thành: chờ executor chạy hết rồi mới kiểm tra
+    private void assertStagingEmpty() throws IOException, InterruptedException {
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        try (var left = Files.list(staging)) {
+            assertThat(left).isEmpty();
+        }
+    }
+}
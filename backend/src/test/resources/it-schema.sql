@@ -0,0 +1,4 @@
+-- Bổ sung cho schema do Hibernate tạo trong test tích hợp (xem scripts/*.sql)
+CREATE SEQUENCE IF NOT EXISTS order_number_seq;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_payment_webhook_inbox_gateway_code
+    ON payment_webhook_inbox (gateway, transaction_code);
@@ -80,23 +80,20 @@ export default function OwnerOrders() {
     const [search, setSearch] = useState("");
     const [fromDate, setFromDate] = useState(null);
     const [toDate, setToDate] = useState(null);
-    const [pagination, setPagination] = useState({
-        current: 1,
-        pageSize: 5,
-        total: 0,
-    });
-
-    const [sort, setSort] = useState({
-        field: "createdAt",
-        order: "descend",
-    });
+    // Phân trang theo cursor (mới nhất trước): cursors[i] là cursor để tải trang i, trang đầu = null
+    const [pageSize, setPageSize] = useState(5);
+    const [page, setPage] = useState(0);
+    const [cursors, setCursors] = useState([null]);
+    const [hasMore, setHasMore] = useState(false);
+    const [total, setTotal] = useState(0);
+    const currentCursor = cursors[page];
 
     const [loading, setLoading] = useState(false);
 
-    const mapSortOrderToDir = (order) => {
-        if (order === 'ascend') return 'asc';
-        if (order === 'descend') return 'desc';
-        return 'desc';
+    // Bộ lọc đổi -> quay về trang đầu
+    const resetPaging = () => {
+        setPage(0);
+        setCursors([null]);
     };
 
     // Load Owner ID và Restaurants
@@ -127,33 +124,36 @@ export default function OwnerOrders() {
     }, [user, accountId]);
 
 
-    // Fetch Orders (Sử dụng state pagination và sort mới)
+    // Fetch Orders theo cursor: trang đầu kèm tổng số đơn, các trang sau chỉ lấy đơn
     const fetchOrders = useCallback(async () => {
         if (!ownerId) return;
         setLoading(true);
 
-        const sortDir = mapSortOrderToDir(sort.order);
-
         try {
-            const res = await axios.get("http://localhost:8080/api/owner/orders", {
+            const res = await axios.get("http://localhost:8080/api/owner/orders/page", {
                 params: {
                     ownerId,
                     restaurantId: selectedRestaurant || null,
                     status: selectedStatus || null,
-                    search: activeSearch,
+                    search: activeSearch || null,
                     from: fromDate ? fromDate.startOf('day').toISOString() : null,
                     to: toDate ? toDate.endOf('day').toISOString() : null,
-                    page: pagination.current - 1,
-                    size: pagination.pageSize,
-                    sortField: sort.field,
-                    sortDir: sortDir,
+                    cursor: currentCursor || null,
+                    limit: pageSize,
+                    includeTotal: page === 0,
                 },
             });
-            setOrders(res.data.content);
-            setPagination(prev => ({
-                ...prev,
-                total: res.data.totalElements,
-            }));
+            const data = res.data;
+            setOrders(data.items || []);
+            setHasMore(!!data.hasMore);
+            if (page === 0) {
+                setTotal(data.total ?? 0);
+            }
+            setCursors(prev => {
+                const next = prev.slice(0, page + 1);
+                if (data.nextCursor) next[page + 1] = data.nextCursor;
+                return next;
+            });
         } catch (err) {
             console.error("Error fetching orders:", err);
             notification.error({
@@ -163,18 +163,14 @@ export default function OwnerOrders() {
             setOrders([]);
         }
         setLoading(false);
-    }, [ownerId, selectedRestaurant, selectedStatus, activeSearch, fromDate, toDate, pagination.current, pagination.pageSize, sort.field, sort.order]);
+    }, [ownerId, selectedRestaurant, selectedStatus, activeSearch, fromDate, toDate, currentCursor, pageSize, page]);
 
+    const goNext = () => {
+        if (hasMore && cursors[page + 1]) setPage(page + 1);
+    };
 
-    // Xử lý thay đổi Table (Phân trang và Sắp xếp)
-    const handleTableChange = (newPagination, filters, sorter) => {
-        setPagination(newPagination);
-        if (sorter.field) {
-            setSort({
-                field: sorter.field,
-                order: sorter.order || 'descend',
-            });
-        }
+    const goPrev = () => {
+        if (page > 0) setPage(page - 1);
     };
 
     // Hàm xử lý hành động thay đổi trạng thái đơn hàng
@@ -215,7 +211,7 @@ export default function OwnerOrders() {
 
     const handleSearchSubmit = () => {
         setActiveSearch(search);
-        setPagination(prev => ({ ...prev, current: 1 }));
+        resetPaging();
     };
     // Reset Filter
     const handleReset = () => {
@@ -225,8 +221,7 @@ export default function OwnerOrders() {
         setSelectedRestaurant(null);
         setFromDate(null);
         setToDate(null);
-        setSort({ field: "createdAt", order: "descend" });
-        setPagination(prev => ({ ...prev, current: 1 }));
+        resetPaging();
     };
 
     useEffect(() => {
@@ -238,14 +233,13 @@ export default function OwnerOrders() {
         //     title: 'STT',
         //     key: 'stt',
         //     width: 60,
-        //     render: (text, record, index) => (pagination.current - 1) * pagination.pageSize + index + 1,
+        //     render: (text, record, index) => page * pageSize + index + 1,
         //     align: 'center',
         // },
         {
             title: 'Mã đơn',
             dataIndex: 'orderNumber',
             key: 'orderNumber',
-            sorter: true,
             width: 100,
             align: 'center',
             fixed: 'left',
@@ -269,7 +263,6 @@ export default function OwnerOrders() {
             title: 'Tổng tiền',
             dataIndex: 'subtotal',
             key: 'subtotal',
-            sorter: true,
             render: (subtotal) => (
                 <span className="fw-bold text-danger">
                     {subtotal ? subtotal.toLocaleString('vi-VN') : 0}₫
@@ -306,7 +299,6 @@ export default function OwnerOrders() {
             title: 'Thời gian tạo đơn',
             dataIndex: 'createdAt',
             key: 'createdAt',
-            sorter: true,
             align: 'center',
             width: 130,
             render: (dateString) => {
@@ -374,7 +366,7 @@ export default function OwnerOrders() {
                     allowClear
                     onChange={(value) => {
                         setSelectedRestaurant(value || null);
-                        setPagination(prev => ({ ...prev, current: 1 }));
+                        resetPaging();
                     }}
                 >
                     {restaurants.map((r) => (
@@ -389,7 +381,7 @@ export default function OwnerOrders() {
                     allowClear
                     onChange={(value) => {
                         setSelectedStatus(value || null);
-                        setPagination(prev => ({ ...prev, current: 1 }));
+                        resetPaging();
                     }}
                 >
                     {Object.entries(STATUS_TRANSLATIONS).map(([value, label]) => (
@@ -404,7 +396,7 @@ export default function OwnerOrders() {
                     value={fromDate}
                     onChange={(date) => {
                         setFromDate(date);
-                        setPagination(prev => ({ ...prev, current: 1 }));
+                        resetPaging();
                     }}
                     format="DD/MM/YYYY"
                     style={{ width: 200 }}
@@ -415,7 +407,7 @@ export default function OwnerOrders() {
                     value={toDate}
                     onChange={(date) => {
                         setToDate(date);
-                        setPagination(prev => ({ ...prev, current: 1 }));
+                        resetPaging();
                     }}
                     format="DD/MM/YYYY"
                     style={{ width: 200 }}
@@ -454,16 +446,34 @@ export default function OwnerOrders() {
                 rowKey="id"
                 loading={loading}
                 scroll={{ x: 1300 }}
-                pagination={{
-                    ...pagination,
-                    showSizeChanger: true,
-                    pageSizeOptions: ['5', '10', '20', '50'],
-                    showTotal: (total, range) => `${range[0]}-${range[1]} của ${total} đơn`,
-                    locale: { items_per_page: '/ trang' }
-                }}
-                onChange={handleTableChange}
-                sortDirections={['descend', 'ascend', null]}
+                pagination={false}
             />
+            <Space className="mt-3" style={{ width: '100%', justifyContent: 'flex-end' }}>
+                <span>
+                    {orders.length > 0
+                        ? `${page * pageSize + 1}-${page * pageSize + orders.length} của ${total} đơn`
+                        : `0 của ${total} đơn`}
+                </span>
+                <AntButton onClick={goPrev} disabled={page === 0 || loading}>
+                    Trang trước
+                </AntButton>
+                <span>Trang {page + 1}</span>
+                <AntButton onClick={goNext} disabled={!hasMore || loading}>
+                    Trang sau
+                </AntButton>
+                <Select
+                    style={{ width: 110 }}
+                    value={pageSize}
+                    onChange={(value) => {
+                        setPageSize(value);
+                        resetPaging();
+                    }}
+                >
+                    {[5, 10, 20, 50].map((n) => (
+                        <Option key={n} value={n}>{n} / trang</Option>
+                    ))}
+                </Select>
+            </Space>
         </div>
     );
 }
\ No newline at end of file
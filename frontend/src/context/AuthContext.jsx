@@ -1,7 +1,17 @@
 import React, { createContext, useState, useEffect } from 'react';
+import axios from 'axios';
 
 export const AuthContext = createContext();
 
+// Gắn token đăng nhập vào mọi request axios (backend kiểm tra chữ ký, không cần gửi lại mật khẩu)
+const applyToken = (token) => {
+  if (token) {
+    axios.defaults.headers.common.Authorization = `Bearer ${token}`;
+  } else {
+    delete axios.defaults.headers.common.Authorization;
+  }
+};
+
 export const AuthProvider = ({ children }) => {
   const [user, setUser] = useState(null);
   const [loading, setLoading] = useState(true);
@@ -11,7 +21,14 @@ export const AuthProvider = ({ children }) => {
     const storedUser = localStorage.getItem('user');
     if (storedUser) {
       try {
-        setUser(JSON.parse(storedUser));
+        const parsed = JSON.parse(storedUser);
+        // Token hết hạn -> coi như chưa đăng nhập
+        if (parsed.tokenExpiresAt && parsed.tokenExpiresAt < Date.now()) {
+          localStorage.removeItem('user');
+        } else {
+          applyToken(parsed.token);
+          setUser(parsed);
+        }
       } catch (error) {
         console.error('Failed to parse user from localStorage', error);
         localStorage.removeItem('user');
@@ -22,12 +39,14 @@ export const AuthProvider = ({ children }) => {
 
   // Hàm Đăng nhập
   const login = (userData) => {
+    applyToken(userData.token);
     setUser(userData);
     localStorage.setItem('user', JSON.stringify(userData));
   };
 
   // Hàm Đăng xuất
   const logout = () => {
+    applyToken(null);
     setUser(null);
     localStorage.removeItem('user');
   };
@@ -26,8 +26,9 @@ import {
 import { getAdminUserDetail } from '../services/adminService';
 import { useAuth } from '../context/AuthContext';
 import {
-    listIssues,
+    listIssuePage,
     getIssueDetail,
+    loadOlderIssueEvents,
     adminCreditDecision,
     replyAction,
 } from '../services/issueService';
@@ -35,6 +36,9 @@ import '../css/AdminIssuesPage.css';
 
 const { Title, Text } = Typography;
 
+// Số issue mỗi lần tải (server giới hạn tối đa 100)
+const ISSUE_PAGE_SIZE = 50;
+
 const STATUS_META = {
     OPEN: { color: 'default', label: 'Mới tạo' },
     NEED_ADMIN_ACTION: { color: 'orange', label: 'Cần Admin xử lý' },
@@ -168,6 +172,10 @@ const AdminIssuesPage = () => {
 
     const [loading, setLoading] = useState(false);
     const [issues, setIssues] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [hasMore, setHasMore] = useState(false);
+    const [loadingMore, setLoadingMore] = useState(false);
+    const [loadingOlderEvents, setLoadingOlderEvents] = useState(false);
 
     const [createdByNameMap, setCreatedByNameMap] = useState({});
 
@@ -244,12 +252,23 @@ const AdminIssuesPage = () => {
     const [creditForm] = Form.useForm();
     const [crediting, setCrediting] = useState(false);
 
+    // Trạng thái / đối tượng lọc tại server (/api/issues/page), từ khóa lọc trên các trang đã tải
+    const fetchPage = (cursor) => listIssuePage(user.id, {
+        scope: 'ALL',
+        status: status === 'ALL' ? undefined : status,
+        targetType: targetType === 'ALL' ? undefined : targetType,
+        cursor,
+        limit: ISSUE_PAGE_SIZE,
+    });
+
     const fetchIssues = async () => {
         if (!user?.id) return;
         try {
             setLoading(true);
-            const data = await listIssues(user.id, 'ALL');
-            setIssues(data || []);
+            const page = await fetchPage(null);
+            setIssues(page?.items || []);
+            setNextCursor(page?.nextCursor || null);
+            setHasMore(!!page?.hasMore);
         } catch (err) {
             console.error(err);
             message.error('Không thể tải danh sách issue.');
@@ -258,10 +277,26 @@ const AdminIssuesPage = () => {
         }
     };
 
+    const loadMoreIssues = async () => {
+        if (!user?.id || !nextCursor) return;
+        try {
+            setLoadingMore(true);
+            const page = await fetchPage(nextCursor);
+            setIssues((prev) => [...prev, ...(page?.items || [])]);
+            setNextCursor(page?.nextCursor || null);
+            setHasMore(!!page?.hasMore);
+        } catch (err) {
+            console.error(err);
+            message.error('Không thể tải thêm issue.');
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     useEffect(() => {
         fetchIssues();
         // eslint-disable-next-line react-hooks/exhaustive-deps
-    }, [user?.id]);
+    }, [user?.id, status, targetType]);
 
     const filtered = useMemo(() => {
 
@@ -269,9 +304,6 @@ const AdminIssuesPage = () => {
         return (issues || []).filter((it) => {
             if (!isAdminHandledIssue(it)) return false;
 
-            const okStatus = status === 'ALL' ? true : String(it.status || '') === status;
-            const okTarget = targetType === 'ALL' ? true : String(it.targetType || '') === targetType;
-
             const hay = [
                 it.code,
                 it.title,
@@ -285,10 +317,9 @@ const AdminIssuesPage = () => {
                 .join(' ')
                 .toLowerCase();
 
-            const okQ = kw ? hay.includes(kw) : true;
-            return okStatus && okTarget && okQ;
+            return kw ? hay.includes(kw) : true;
         });
-    }, [issues, q, status, targetType]);
+    }, [issues, q]);
 
     // chỉ allow credit với case giao hàng/shipper (tuỳ business bạn muốn)
     const isAdminCreditAllowed = (it) => {
@@ -372,6 +403,19 @@ const AdminIssuesPage = () => {
         creditForm.resetFields();
     };
 
+    const loadOlderEvents = async () => {
+        if (!user?.id || !detail) return;
+        try {
+            setLoadingOlderEvents(true);
+            setDetail(await loadOlderIssueEvents(detail, user.id));
+        } catch (err) {
+            console.error(err);
+            message.error('Không thể tải lịch sử cũ hơn.');
+        } finally {
+            setLoadingOlderEvents(false);
+        }
+    };
+
     const refreshDetail = async () => {
         if (!user?.id || !issue?.id) return;
         const data = await getIssueDetail(issue.id, user.id);
@@ -620,6 +664,14 @@ const AdminIssuesPage = () => {
                     pagination={{ pageSize: 10 }}
                     className="admin-issues-table"
                 />
+
+                {hasMore && (
+                    <div style={{ textAlign: 'center', marginTop: 12 }}>
+                        <Button onClick={loadMoreIssues} loading={loadingMore}>
+                            Tải thêm issue cũ hơn
+                        </Button>
+                    </div>
+                )}
             </Card>
 
             <Modal
@@ -919,6 +971,15 @@ const AdminIssuesPage = () => {
                                                 label: 'Xem lịch sử xử lý',
                                                 children: (
                                                     <div className="admin-issue-events">
+                                                        {detail?.hasMoreEvents && (
+                                                            <Button
+                                                                type="link"
+                                                                onClick={loadOlderEvents}
+                                                                loading={loadingOlderEvents}
+                                                            >
+                                                                Xem sự kiện cũ hơn
+                                                            </Button>
+                                                        )}
                                                         {events.map((ev) => {
                                                             const type = (ev.eventType || '').toUpperCase();
                                                             const lineRight = (() => {
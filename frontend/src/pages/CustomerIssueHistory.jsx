@@ -19,7 +19,7 @@ import { EyeOutlined, PlusOutlined, ReloadOutlined, SearchOutlined } from '@ant-
 import dayjs from 'dayjs';
 
 import { useAuth } from '../context/AuthContext';
-import { listIssues, getIssueDetail } from '../services/issueService';
+import { listIssuePage, getIssueDetail, listIssueEvents } from '../services/issueService';
 
 import '../css/CustomerIssueHistory.css';
 
@@ -122,12 +122,18 @@ const targetTag = (t) => {
 
 const fmtDate = (d) => (d ? dayjs(d).format('DD/MM/YYYY HH:mm') : '—');
 
+// Số yêu cầu mỗi lần tải (server giới hạn tối đa 100)
+const ISSUE_PAGE_SIZE = 50;
+
 const CustomerIssuesHistory = () => {
     const { user } = useAuth();
     const navigate = useNavigate();
 
     const [loading, setLoading] = useState(false);
     const [issues, setIssues] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [hasMore, setHasMore] = useState(false);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [q, setQ] = useState('');
 
     const [detailOpen, setDetailOpen] = useState(false);
@@ -135,13 +141,19 @@ const CustomerIssuesHistory = () => {
     const [detailIssue, setDetailIssue] = useState(null);
     const [detailEvents, setDetailEvents] = useState([]);
     const [detailOrderSummary, setDetailOrderSummary] = useState(null);
+    // Trang sự kiện cũ hơn của timeline (chỉ tải khi bấm xem thêm)
+    const [detailEventsCursor, setDetailEventsCursor] = useState(null);
+    const [detailHasMoreEvents, setDetailHasMoreEvents] = useState(false);
+    const [loadingOlderEvents, setLoadingOlderEvents] = useState(false);
 
     const fetchIssues = async () => {
         if (!user?.id) return;
         try {
             setLoading(true);
-            const data = await listIssues(user.id, 'MY');
-            setIssues(Array.isArray(data) ? data : []);
+            const page = await listIssuePage(user.id, { scope: 'MY', limit: ISSUE_PAGE_SIZE });
+            setIssues(page?.items || []);
+            setNextCursor(page?.nextCursor || null);
+            setHasMore(!!page?.hasMore);
         } catch (e) {
             console.error(e);
             message.error('Không thể tải lịch sử yêu cầu hỗ trợ.');
@@ -150,6 +162,38 @@ const CustomerIssuesHistory = () => {
         }
     };
 
+    const loadMoreIssues = async () => {
+        if (!user?.id || !nextCursor) return;
+        try {
+            setLoadingMore(true);
+            const page = await listIssuePage(user.id, { scope: 'MY', cursor: nextCursor, limit: ISSUE_PAGE_SIZE });
+            setIssues((prev) => [...prev, ...(page?.items || [])]);
+            setNextCursor(page?.nextCursor || null);
+            setHasMore(!!page?.hasMore);
+        } catch (e) {
+            console.error(e);
+            message.error('Không thể tải thêm yêu cầu.');
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
+    const loadOlderEvents = async () => {
+        if (!user?.id || !detailIssue?.id || !detailEventsCursor) return;
+        try {
+            setLoadingOlderEvents(true);
+            const page = await listIssueEvents(detailIssue.id, user.id, detailEventsCursor);
+            setDetailEvents((prev) => [...(page?.items || []), ...(prev || [])]);
+            setDetailEventsCursor(page?.nextCursor || null);
+            setDetailHasMoreEvents(!!page?.hasMore);
+        } catch (e) {
+            console.error(e);
+            message.error('Không thể tải lịch sử cũ hơn.');
+        } finally {
+            setLoadingOlderEvents(false);
+        }
+    };
+
     useEffect(() => {
         if (!user?.id) return;
         fetchIssues();
@@ -187,6 +231,8 @@ const CustomerIssuesHistory = () => {
 
             setDetailIssue(issueObj);
             setDetailEvents(Array.isArray(eventsArr) ? eventsArr : []);
+            setDetailEventsCursor(data?.eventsCursor || null);
+            setDetailHasMoreEvents(!!data?.hasMoreEvents);
             setDetailOrderSummary(os);
         } catch (e) {
             console.error(e);
@@ -305,6 +351,14 @@ const CustomerIssuesHistory = () => {
                     pagination={{ pageSize: 8 }}
                     scroll={{ x: 980 }}
                 />
+
+                {hasMore && (
+                    <div style={{ textAlign: 'center', marginTop: 12 }}>
+                        <Button onClick={loadMoreIssues} loading={loadingMore}>
+                            Tải thêm yêu cầu cũ hơn
+                        </Button>
+                    </div>
+                )}
             </Card>
 
             <Modal
@@ -351,6 +405,11 @@ const CustomerIssuesHistory = () => {
                             )}
 
                             <Divider orientation="left">Lịch sử xử lý</Divider>
+                            {detailHasMoreEvents && (
+                                <Button type="link" onClick={loadOlderEvents} loading={loadingOlderEvents}>
+                                    Xem sự kiện cũ hơn
+                                </Button>
+                            )}
                             <Timeline
                                 className="issue-timeline"
                                 items={(detailEvents || []).map((ev) => ({
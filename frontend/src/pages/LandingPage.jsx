@@ -266,6 +266,7 @@ const LandingPage = () => {
               options={[
                 { value: 'newest', label: 'Mới nhất' },
                 { value: 'rating', label: 'Đánh giá cao' },
+                { value: 'relevance', label: 'Liên quan nhất' },
               ]}
             />
           </div>
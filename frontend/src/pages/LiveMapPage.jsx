@@ -1,7 +1,7 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef, useCallback } from 'react';
 import { Card, Button, Typography, Tag, Avatar, message } from 'antd';
 import { ReloadOutlined, ShopOutlined, UserOutlined } from '@ant-design/icons';
-import { MapContainer, TileLayer, Marker, Popup, useMap } from 'react-leaflet';
+import { MapContainer, TileLayer, Marker, Popup, useMapEvents } from 'react-leaflet';
 import L from 'leaflet';
 import axios from 'axios';
 
@@ -9,7 +9,8 @@ import axios from 'axios';
 import 'leaflet/dist/leaflet.css';
 
 const { Title } = Typography;
-const API_URL = 'http://localhost:8080/api/admin/map/locations';
+const API_URL = 'http://localhost:8080/api/admin/map/viewport';
+const DELTA_INTERVAL_MS = 5000; // Chỉ lấy các shipper đổi vị trí
 
 // --- CẤU HÌNH ICON (Tận dụng logic Leaflet giống MapModal của bạn) ---
 // Tạo icon riêng cho Nhà hàng (Màu đỏ)
@@ -34,54 +35,99 @@ const shipperIcon = L.divIcon({
     popupAnchor: [0, -30]
 });
 
-// Component con để tự động zoom bản đồ bao trọn các điểm
-const FitBounds = ({ locations }) => {
-    const map = useMap();
+// Icon cụm (zoom xa): hiển thị số điểm trong cụm
+const clusterIcon = (cluster) => {
+    const color = cluster.type === 'RESTAURANT' ? '#ff4d4f' : '#1677ff';
+    const size = Math.min(60, 28 + Math.log10(cluster.count + 1) * 10);
+    return L.divIcon({
+        className: 'custom-icon-cluster',
+        html: `<div style="background-color: ${color}; opacity: 0.85; width: ${size}px; height: ${size}px; border-radius: 50%; border: 2px solid white; display: flex; justify-content: center; align-items: center; color: white; font-weight: bold; box-shadow: 0 2px 5px rgba(0,0,0,0.3);">${cluster.count}</div>`,
+        iconSize: [size, size],
+        iconAnchor: [size / 2, size / 2]
+    });
+};
+
+// Component con: báo khung nhìn mỗi khi kéo / zoom bản đồ
+const ViewportWatcher = ({ onChange }) => {
+    const map = useMapEvents({
+        moveend: () => onChange(map),
+    });
     useEffect(() => {
-        if (locations.length > 0) {
-            const markers = locations.map(loc => [loc.latitude, loc.longitude]);
-            const bounds = L.latLngBounds(markers);
-            map.fitBounds(bounds, { padding: [50, 50] });
-        }
-    }, [locations, map]);
+        onChange(map);
+    }, [map, onChange]);
     return null;
 };
 
 const LiveMapPage = () => {
     const [locations, setLocations] = useState([]);
+    const [clusters, setClusters] = useState([]);
     const [loading, setLoading] = useState(false);
 
+    // Khung nhìn hiện tại, version và snapshot đã nhận (lần sau chỉ lấy phần thay đổi)
+    const viewportRef = useRef(null);
+    const versionRef = useRef(null);
+    const snapshotRef = useRef(null);
+    const markersRef = useRef(new Map());
+
     // Tọa độ mặc định (Hà Nội) phòng khi chưa có dữ liệu
     const defaultCenter = [21.0285, 105.8542];
 
-    useEffect(() => {
-        fetchLocations();
-        const interval = setInterval(fetchLocations, 30000); // 30s refresh 1 lần
-        return () => clearInterval(interval);
-    }, []);
-
-    const fetchLocations = async () => {
-        setLoading(true);
+    const fetchLocations = useCallback(async (full) => {
+        const viewport = viewportRef.current;
+        if (!viewport) return;
+        if (full) setLoading(true);
         try {
-            const response = await axios.get(API_URL);
-
-            // --- KIỂM TRA DỮ LIỆU TRƯỚC KHI DÙNG ---
-            // Chỉ xử lý nếu response.data thực sự là một Mảng (Array)
-            if (Array.isArray(response.data)) {
-                const validData = response.data.filter(l =>
-                    l.latitude && l.longitude && !isNaN(Number(l.latitude)) && !isNaN(Number(l.longitude))
-                );
-                setLocations(validData);
-            } else {
-                console.warn("API không trả về danh sách JSON hợp lệ:", response.data);
-                // Có thể API đang trả về HTML lỗi hoặc trang login
+            const response = await axios.get(API_URL, {
+                params: {
+                    ...viewport,
+                    since: full ? undefined : versionRef.current,
+                    snapshot: full ? undefined : snapshotRef.current,
+                }
+            });
+            const data = response.data;
+            if (!data || !Array.isArray(data.markers)) {
+                console.warn("API không trả về dữ liệu bản đồ hợp lệ:", data);
+                return;
             }
+
+            const markers = full || data.full ? new Map() : markersRef.current;
+            data.removedShipperIds.forEach(id => markers.delete(`SHIPPER-${id}`));
+            data.markers
+                .filter(l => l.latitude && l.longitude && !isNaN(Number(l.latitude)) && !isNaN(Number(l.longitude)))
+                .forEach(l => markers.set(`${l.type}-${l.id}`, l));
+
+            markersRef.current = markers;
+            versionRef.current = data.version;
+            snapshotRef.current = data.snapshot;
+            setClusters(data.clustered ? data.clusters : []);
+            setLocations(data.clustered ? [] : Array.from(markers.values()));
         } catch (error) {
             console.error("Lỗi tải map:", error);
         } finally {
-            setLoading(false);
+            if (full) setLoading(false);
         }
-    };
+    }, []);
+
+    const handleViewportChange = useCallback((map) => {
+        const bounds = map.getBounds();
+        viewportRef.current = {
+            minLat: bounds.getSouth(),
+            maxLat: bounds.getNorth(),
+            minLng: bounds.getWest(),
+            maxLng: bounds.getEast(),
+            zoom: map.getZoom(),
+        };
+        fetchLocations(true);
+    }, [fetchLocations]);
+
+    useEffect(() => {
+        const interval = setInterval(() => fetchLocations(false), DELTA_INTERVAL_MS);
+        return () => clearInterval(interval);
+    }, [fetchLocations]);
+
+    const countOf = (type) => clusters.length > 0
+        ? clusters.filter(c => c.type === type).reduce((sum, c) => sum + c.count, 0)
+        : locations.filter(l => l.type === type).length;
 
     return (
         <div style={{ padding: 20, height: '100vh', display: 'flex', flexDirection: 'column' }}>
@@ -90,9 +136,9 @@ const LiveMapPage = () => {
                     <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center' }}>
                         <Title level={4} style={{ margin: 0 }}>🗺️ Bản đồ Hoạt động</Title>
                         <div style={{ display: 'flex', gap: 10 }}>
-                            <Tag color="red">🏠 Nhà hàng: {locations.filter(l => l.type === 'RESTAURANT').length}</Tag>
-                            <Tag color="blue">🛵 Shipper: {locations.filter(l => l.type === 'SHIPPER').length}</Tag>
-                            <Button icon={<ReloadOutlined />} onClick={fetchLocations} loading={loading} type="primary">Cập nhật</Button>
+                            <Tag color="red">🏠 Nhà hàng: {countOf('RESTAURANT')}</Tag>
+                            <Tag color="blue">🛵 Shipper: {countOf('SHIPPER')}</Tag>
+                            <Button icon={<ReloadOutlined />} onClick={() => fetchLocations(true)} loading={loading} type="primary">Cập nhật</Button>
                         </div>
                     </div>
                 }
@@ -110,8 +156,16 @@ const LiveMapPage = () => {
                         url="https://mt1.google.com/vt/lyrs=m&x={x}&y={y}&z={z}&hl=vi&gl=VN"
                     />
 
-                    {/* Tự động zoom fit toàn bộ marker */}
-                    <FitBounds locations={locations} />
+                    {/* Tải lại dữ liệu theo khung nhìn mỗi khi kéo / zoom */}
+                    <ViewportWatcher onChange={handleViewportChange} />
+
+                    {clusters.map((cluster) => (
+                        <Marker
+                            key={`cluster-${cluster.type}-${cluster.latitude}-${cluster.longitude}`}
+                            position={[cluster.latitude, cluster.longitude]}
+                            icon={clusterIcon(cluster)}
+                        />
+                    ))}
 
                     {locations.map((loc) => (
                         <Marker
@@ -5,7 +5,7 @@ import {
 } from 'antd';
 import {
     ReloadOutlined, EyeOutlined, ClockCircleOutlined, CheckCircleOutlined, CloseCircleOutlined,
-    PhoneOutlined, WarningOutlined, UserOutlined, ShopOutlined, SearchOutlined
+    PhoneOutlined, WarningOutlined, UserOutlined, ShopOutlined, SearchOutlined, DownloadOutlined
 } from '@ant-design/icons';
 import dayjs from 'dayjs';
 import axios from 'axios';
@@ -17,10 +17,15 @@ const { Option } = Select;
 const { Title, Text } = Typography;
 
 const API_URL = 'http://localhost:8080/api/admin/orders';
+// Số đơn mỗi lần tải (danh sách phân trang theo cursor ở backend)
+const PAGE_LIMIT = 50;
 
 const OrdersPage = () => {
     const [loading, setLoading] = useState(false);
     const [orders, setOrders] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
+    const [exporting, setExporting] = useState(false);
     const [dateRange, setDateRange] = useState([dayjs().startOf('day'), dayjs().endOf('day')]);
     const [statusFilter, setStatusFilter] = useState('ALL');
     const [keyword, setKeyword] = useState(''); // [NEW] State từ khóa tìm kiếm
@@ -32,41 +37,84 @@ const OrdersPage = () => {
     const [drawerVisible, setDrawerVisible] = useState(false);
     const [selectedOrder, setSelectedOrder] = useState(null);
 
-    const fetchOrders = useCallback(async () => {
-        setLoading(true);
-        try {
-            const params = {};
+    // Bộ lọc hiện tại -> params gửi lên BE (dùng chung cho danh sách và xuất CSV)
+    const buildParams = useCallback(() => {
+        const params = {};
 
-            // 1. LUÔN LUÔN lấy status từ state người dùng chọn
-            params.status = statusFilter;
+        // 1. LUÔN LUÔN lấy status từ state người dùng chọn
+        params.status = statusFilter;
 
-            // [NEW] Gửi từ khóa tìm kiếm xuống BE
-            if (keyword && keyword.trim() !== '') {
-                params.keyword = keyword.trim();
-            }
+        // [NEW] Gửi từ khóa tìm kiếm xuống BE
+        if (keyword && keyword.trim() !== '') {
+            params.keyword = keyword.trim();
+        }
 
-            // 2. Xử lý thời gian
-            if (isAll) {
-                // Nếu tick "Hiện tất cả" -> Gửi khoảng thời gian "từ cổ chí kim"
-                params.startDate = '2000-01-01';
-                params.endDate = dayjs().format('YYYY-MM-DD');
-            } else {
-                // Nếu không tick -> Lấy theo DatePicker
-                if (dateRange && dateRange[0] && dateRange[1]) {
-                    params.startDate = dateRange[0].format('YYYY-MM-DD');
-                    params.endDate = dateRange[1].format('YYYY-MM-DD');
-                }
+        // 2. Xử lý thời gian
+        if (isAll) {
+            // Nếu tick "Hiện tất cả" -> Gửi khoảng thời gian "từ cổ chí kim"
+            params.startDate = '2000-01-01';
+            params.endDate = dayjs().format('YYYY-MM-DD');
+        } else {
+            // Nếu không tick -> Lấy theo DatePicker
+            if (dateRange && dateRange[0] && dateRange[1]) {
+                params.startDate = dateRange[0].format('YYYY-MM-DD');
+                params.endDate = dateRange[1].format('YYYY-MM-DD');
             }
+        }
 
-            console.log("Params gửi đi:", params);
-            const response = await axios.get(API_URL, { params });
-            setOrders(response.data);
+        return params;
+    }, [dateRange, statusFilter, isAll, keyword]); // [NEW] Thêm keyword vào dependency
+
+    // Tải trang đầu (bộ lọc thay đổi / làm mới)
+    const fetchOrders = useCallback(async () => {
+        setLoading(true);
+        try {
+            const params = { ...buildParams(), limit: PAGE_LIMIT };
+            const response = await axios.get(`${API_URL}/page`, { params });
+            setOrders(response.data.items);
+            setNextCursor(response.data.hasMore ? response.data.nextCursor : null);
         } catch (error) {
             message.error('Không thể tải danh sách đơn hàng!');
         } finally {
             setLoading(false);
         }
-    }, [dateRange, statusFilter, isAll, keyword]); // [NEW] Thêm keyword vào dependency
+    }, [buildParams]);
+
+    // Tải thêm các đơn cũ hơn (trang sau theo cursor)
+    const handleLoadMore = async () => {
+        if (!nextCursor) return;
+        setLoadingMore(true);
+        try {
+            const params = { ...buildParams(), limit: PAGE_LIMIT, cursor: nextCursor };
+            const response = await axios.get(`${API_URL}/page`, { params });
+            setOrders(prev => [...prev, ...response.data.items]);
+            setNextCursor(response.data.hasMore ? response.data.nextCursor : null);
+        } catch (error) {
+            message.error('Không thể tải thêm đơn hàng!');
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
+    // Xuất CSV theo bộ lọc hiện tại (BE ghi từng dòng, không giới hạn số đơn)
+    const handleExport = async () => {
+        setExporting(true);
+        try {
+            const response = await axios.get(`${API_URL}/export`, { params: buildParams(), responseType: 'blob' });
+            const url = window.URL.createObjectURL(response.data);
+            const link = document.createElement('a');
+            link.href = url;
+            link.download = `don-hang_${dayjs().format('YYYYMMDD_HHmm')}.csv`;
+            document.body.appendChild(link);
+            link.click();
+            link.remove();
+            window.URL.revokeObjectURL(url);
+        } catch (error) {
+            message.error('Không thể xuất file CSV!');
+        } finally {
+            setExporting(false);
+        }
+    };
 
     useEffect(() => {
         fetchOrders();
@@ -348,9 +396,14 @@ const OrdersPage = () => {
                     <Checkbox checked={isAll} onChange={handleCheckboxAll}>Hiện tất cả các đơn hàng</Checkbox>
 
                     <div style={{ flex: 1, textAlign: 'right' }}>
-                        <Button icon={<ReloadOutlined />} onClick={handleRefresh} loading={loading}>
-                            Làm mới
-                        </Button>
+                        <Space>
+                            <Button icon={<DownloadOutlined />} onClick={handleExport} loading={exporting}>
+                                Xuất CSV
+                            </Button>
+                            <Button icon={<ReloadOutlined />} onClick={handleRefresh} loading={loading}>
+                                Làm mới
+                            </Button>
+                        </Space>
                     </div>
                 </div>
 
@@ -363,11 +416,16 @@ const OrdersPage = () => {
                     pagination={{
                         pageSize: 8,
                         showSizeChanger: false,
-                        showTotal: (total) => `Tổng ${total} đơn hàng`
+                        showTotal: (total) => nextCursor ? `Đã tải ${total} đơn hàng` : `Tổng ${total} đơn hàng`
                     }}
                     size="small" // Dùng size nhỏ để gọn hơn
                     // Đã bỏ scroll={{ x: 'max-content' }} để bảng tự co giãn full màn hình
                 />
+                {nextCursor && (
+                    <div style={{ textAlign: 'center', marginTop: 12 }}>
+                        <Button onClick={handleLoadMore} loading={loadingMore}>Tải thêm đơn cũ hơn</Button>
+                    </div>
+                )}
             </Card>
 
             {/* --- DRAWER CHI TIẾT ĐƠN HÀNG --- */}
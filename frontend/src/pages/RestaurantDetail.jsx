@@ -835,6 +835,13 @@ const RestaurantDetail = () => {
         setBrokenImages((prev) => ({ ...prev, [productId]: true }));
     };
 
+    // Ô ảnh món chỉ 96px: dùng bản thu nhỏ nhỏ nhất (imageVariants: chiều rộng -> URL), chưa có thì dùng ảnh gốc
+    const getThumbnail = (product) => {
+        const variants = product.imageVariants || {};
+        const widths = Object.keys(variants).map(Number).sort((a, b) => a - b);
+        return widths.length > 0 ? variants[widths[0]] : product.image;
+    };
+
     if (!restaurant) {
         return <div className="detail-loading">Đang tải dữ liệu quán ăn...</div>;
     }
@@ -899,7 +906,7 @@ const RestaurantDetail = () => {
                                                 <div className="menu-item-thumb">
                                                     {showImage ? (
                                                         <img
-                                                            src={p.image}
+                                                            src={getThumbnail(p)}
                                                             alt={p.name}
                                                             onError={() => handleImageError(p.id)}
                                                             className="menu-item-thumb-img"
@@ -12,6 +12,7 @@ import { useNavigate } from 'react-router-dom';
 import { useAuth } from '../context/AuthContext';
 import {
     getAvailableOrders,
+    subscribeAvailableOrders,
     getMyOrders,
     acceptOrder,
     updateShipperStatus,
@@ -110,6 +111,19 @@ const ShipperDashboard = () => {
         }
     };
 
+    // Nhận đơn mới / đơn đã bị nhận qua SSE thay vì tải lại cả danh sách
+    useEffect(() => {
+        if (!shipperId || shipperStatus !== 'ONLINE') return undefined;
+        const sortByCreatedAt = (list) =>
+            [...list].sort((a, b) => new Date(b.createdAt || 0) - new Date(a.createdAt || 0));
+        return subscribeAvailableOrders(shipperId, {
+            onSnapshot: (orders) => setAvailableOrders(sortByCreatedAt(orders)),
+            onAvailable: (order) =>
+                setAvailableOrders((prev) => sortByCreatedAt([order, ...prev.filter((o) => o.id !== order.id)])),
+            onTaken: ({ id }) => setAvailableOrders((prev) => prev.filter((o) => o.id !== id)),
+        });
+    }, [shipperId, shipperStatus]);
+
     // Timer đếm thời gian từ lúc nhận đơn
     useEffect(() => {
         let interval = null;
@@ -227,6 +241,10 @@ const ShipperDashboard = () => {
             setShipperStatus('BUSY');
             await fetchData();
         } catch (error) {
+            // 409: shipper khác đã nhận trước -> bỏ đơn khỏi danh sách
+            if (error.response?.status === 409) {
+                setAvailableOrders((prev) => prev.filter((o) => o.id !== orderId));
+            }
             message.error(error.response?.data || 'Không thể nhận đơn hàng!');
         }
     };
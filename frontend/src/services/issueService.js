@@ -12,12 +12,12 @@ export const createIssue = async (payload) => {
 };
 
 /* =======================
- * LIST
+ * LIST (theo trang, mới nhất trước)
  * ======================= */
-export const listIssues = async (actorId, scope = 'MY') => {
-    // GET APIs dùng actorId
-    const res = await axios.get(API_BASE_URL, {
-        params: { actorId, scope },
+export const listIssuePage = async (actorId, { scope = 'MY', status, category, targetType, cursor, limit } = {}) => {
+    // Trả về { items, nextCursor, hasMore }; trang sau: gửi lại nextCursor làm cursor
+    const res = await axios.get(`${API_BASE_URL}/page`, {
+        params: { actorId, scope, status, category, targetType, cursor, limit },
     });
     return res.data;
 };
@@ -29,7 +29,32 @@ export const getIssueDetail = async (issueId, actorId) => {
     const res = await axios.get(`${API_BASE_URL}/${issueId}`, {
         params: { actorId },
     });
-    return res.data; // { issue, events }
+    // { issue, events, eventsCursor, hasMoreEvents, orderSummary }: chỉ có trang sự kiện mới nhất,
+    // trang cũ hơn tải khi người dùng bấm xem thêm (loadOlderIssueEvents)
+    return res.data;
+};
+
+// Ghép trang sự kiện cũ hơn vào detail (kết quả của getIssueDetail), trả về detail mới
+export const loadOlderIssueEvents = async (detail, actorId) => {
+    if (!detail?.issue?.id || !detail?.hasMoreEvents || !detail?.eventsCursor) return detail;
+    const page = await listIssueEvents(detail.issue.id, actorId, detail.eventsCursor);
+    return {
+        ...detail,
+        events: [...(page.items || []), ...(detail.events || [])],
+        eventsCursor: page.nextCursor,
+        hasMoreEvents: !!page.hasMore,
+    };
+};
+
+/* =======================
+ * EVENTS (timeline theo trang)
+ * ======================= */
+export const listIssueEvents = async (issueId, actorId, before = null, limit = 50) => {
+    // Trả về { items, nextCursor, hasMore }, items theo thứ tự thời gian tăng dần
+    const res = await axios.get(`${API_BASE_URL}/${issueId}/events`, {
+        params: { actorId, before, limit },
+    });
+    return res.data;
 };
 
 /* =======================
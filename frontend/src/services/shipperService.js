@@ -8,6 +8,26 @@ export const getAvailableOrders = async () => {
     return response.data;
 };
 
+// Kênh SSE nhận đơn có sẵn (server tự đẩy, không cần poll lại /orders/available)
+// Trả về hàm đóng kết nối
+export const subscribeAvailableOrders = (shipperId, handlers, position) => {
+    const params = new URLSearchParams({ shipperId });
+    // EventSource không gửi được header Authorization -> truyền token qua query
+    const token = JSON.parse(localStorage.getItem('user') || '{}').token;
+    if (token) {
+        params.append('access_token', token);
+    }
+    if (position) {
+        params.append('lat', position.lat);
+        params.append('lng', position.lng);
+    }
+    const source = new EventSource(`${API_BASE_URL}/orders/available/stream?${params}`);
+    source.addEventListener('snapshot', (e) => handlers.onSnapshot?.(JSON.parse(e.data)));
+    source.addEventListener('order-available', (e) => handlers.onAvailable?.(JSON.parse(e.data)));
+    source.addEventListener('order-taken', (e) => handlers.onTaken?.(JSON.parse(e.data)));
+    return () => source.close();
+};
+
 // Lấy danh sách đơn hàng của shipper
 export const getMyOrders = async (shipperId) => {
     const response = await axios.get(`${API_BASE_URL}/orders/my-orders`, {